@@ -25,6 +25,7 @@ package br.com.autonomiccs.autonomic.administration.algorithms;
 import java.util.List;
 import java.util.Map;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
 
@@ -35,6 +36,11 @@ import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
  * clusters to be consolidated and creating the mapping of VMs. All of that is
  * done according to the knowledge that the implementation of this class will
  * provide for the environment.
+ *
+ * @note the methods that receive a {@link ClusterPlanningContext} keep all data of the cluster
+ *       being planned in the given context; therefore, one instance can plan many clusters at the
+ *       same time, as long as each cluster uses its own context. The methods without a context keep
+ *       it in the instance and must not be called concurrently.
  */
 public interface ClusterAdministrationHeuristicAlgorithm {
 
@@ -51,6 +57,12 @@ public interface ClusterAdministrationHeuristicAlgorithm {
      * */
     public List<HostResources> rankHosts(List<HostResources> hosts);
 
+    /**
+     * Same as {@link #rankHosts(List)}, keeping the data computed while ranking the hosts in the
+     * given context; the same context must be used to map the VMs and rank the hosts to power off.
+     */
+    public List<HostResources> rankHosts(List<HostResources> hosts, ClusterPlanningContext context);
+
     /**
      * Map VMs and hosts to be migrate in order to optimize the environment. The
      * returned {@link Map} should have a key as the VM 'id' and the object as
@@ -63,6 +75,12 @@ public interface ClusterAdministrationHeuristicAlgorithm {
      */
     public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts);
 
+    /**
+     * Same as {@link #mapVMsToHost(List)}, using the context given to
+     * {@link #rankHosts(List, ClusterPlanningContext)}.
+     */
+    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts, ClusterPlanningContext context);
+
     /**
      * Receive a list of active idle hosts that should be ordered. The top hosts
      * have priority to be deactivated.
@@ -73,6 +91,12 @@ public interface ClusterAdministrationHeuristicAlgorithm {
      */
     public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts);
 
+    /**
+     * Same as {@link #rankHostToPowerOff(List)}, using the context given to
+     * {@link #rankHosts(List, ClusterPlanningContext)}.
+     */
+    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts, ClusterPlanningContext context);
+
     /**
      * This method checks if the agent can power off the host.
      *
@@ -0,0 +1,44 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms;
+
+/**
+ * Heuristics that balance the cluster workload by simulating the VMs migrations with several
+ * standard deviations of the hosts memory usage and keeping the best simulation. The agent
+ * configures the number of simulated standard deviations of each cluster before using the
+ * heuristic.
+ */
+public interface DispersionClusterAdministrationHeuristicAlgorithm extends ClusterAdministrationHeuristicAlgorithm {
+
+    /**
+     * @return number of standard deviations simulated while mapping VMs to hosts.
+     */
+    public int getNumberOfStandardDeviationCandidates();
+
+    /**
+     * Sets the number of standard deviations simulated while mapping VMs to hosts; more candidates
+     * may find a better balance at the cost of a longer planning.
+     */
+    public void setNumberOfStandardDeviationCandidates(int numberOfStandardDeviationCandidates);
+
+}
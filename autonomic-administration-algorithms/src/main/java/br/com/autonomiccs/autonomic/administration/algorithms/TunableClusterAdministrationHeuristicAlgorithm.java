@@ -0,0 +1,63 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
+
+/**
+ * Heuristics whose consolidation parameters can be tuned for each cluster. The agent configures the
+ * parameters of each cluster before using the heuristic.
+ */
+public interface TunableClusterAdministrationHeuristicAlgorithm extends ClusterAdministrationHeuristicAlgorithm {
+
+    /**
+     * Sets the interval (seconds) between two consolidations of the cluster (
+     * {@link ClusterAdministrationHeuristicAlgorithm#getClusterIntervalBetweenConsolidation()}).
+     */
+    public void setClusterIntervalBetweenConsolidation(int clusterIntervalBetweenConsolidation);
+
+    /**
+     * @return maximum usage (from 0 to 1) of CPU and memory of the cloud resources (
+     *         {@link CloudResources}) that still allows hosts to be powered off.
+     */
+    public double getMaximumUsageToPowerOffHosts();
+
+    /**
+     * Sets the maximum usage (from 0 to 1) of CPU and memory of the cloud resources that still
+     * allows hosts to be powered off; higher values result in a denser packing of VMs.
+     */
+    public void setMaximumUsageToPowerOffHosts(double maximumUsageToPowerOffHosts);
+
+    /**
+     * @return maximum number of hosts evacuated by each migration plan; if lower than 1, there is no
+     *         limit.
+     */
+    public int getMaximumNumberOfHostsToEvacuate();
+
+    /**
+     * Sets the maximum number of hosts evacuated by each migration plan (values lower than 1 remove
+     * the limit); heuristics that do not create migration plans ignore it.
+     */
+    public void setMaximumNumberOfHostsToEvacuate(int maximumNumberOfHostsToEvacuate);
+
+}
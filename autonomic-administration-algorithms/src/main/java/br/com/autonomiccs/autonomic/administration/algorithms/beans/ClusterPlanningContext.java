@@ -0,0 +1,148 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.beans;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.profilers.HostProfiler;
+
+/**
+ * Contains the data that a {@link ClusterAdministrationHeuristicAlgorithm} computes while ranking
+ * the hosts of a cluster and uses later to map the VMs and rank the hosts to be powered off. Each
+ * cluster being planned must use its own context; thus, one heuristic instance can plan many
+ * clusters at the same time.
+ */
+public class ClusterPlanningContext {
+
+    private HostProfiler hostProfiler;
+    private long numberOfHostsInCluster;
+
+    /**
+     * Cluster CPU capacity (CPU over-provisioning * CPU speed * number of CPUs of all hosts).
+     */
+    private double clusterCpuCapacity = 1;
+
+    /**
+     * Cluster memory capacity in Mega Bytes (memory over-provisioning * total memory of all hosts).
+     */
+    private double clusterMemoryCapacity = 1;
+
+    /**
+     * Sum of hosts used memory (in Mega Bytes) divided by the number of hosts.
+     */
+    private double clusterMemoryUsageAverage;
+
+    /**
+     * Standard deviation of VMs memory configuration.
+     */
+    private double standardDeviationVmsConfiguration;
+
+    /**
+     * Standard deviation of hosts memory usage.
+     */
+    private double standardDeviationHostsUsage;
+
+    /**
+     * Average between the {@link #standardDeviationVmsConfiguration} and
+     * {@link #standardDeviationHostsUsage}.
+     */
+    private double standardDeviationAverage;
+
+    /**
+     * Migration plan created by the heuristics that build a {@link MigrationPlan} while mapping the
+     * VMs; otherwise, it is null.
+     */
+    private MigrationPlan migrationPlan;
+
+    public HostProfiler getHostProfiler() {
+        return hostProfiler;
+    }
+
+    public void setHostProfiler(HostProfiler hostProfiler) {
+        this.hostProfiler = hostProfiler;
+    }
+
+    public long getNumberOfHostsInCluster() {
+        return numberOfHostsInCluster;
+    }
+
+    public void setNumberOfHostsInCluster(long numberOfHostsInCluster) {
+        this.numberOfHostsInCluster = numberOfHostsInCluster;
+    }
+
+    public double getClusterCpuCapacity() {
+        return clusterCpuCapacity;
+    }
+
+    public void setClusterCpuCapacity(double clusterCpuCapacity) {
+        this.clusterCpuCapacity = clusterCpuCapacity;
+    }
+
+    public double getClusterMemoryCapacity() {
+        return clusterMemoryCapacity;
+    }
+
+    public void setClusterMemoryCapacity(double clusterMemoryCapacity) {
+        this.clusterMemoryCapacity = clusterMemoryCapacity;
+    }
+
+    public double getClusterMemoryUsageAverage() {
+        return clusterMemoryUsageAverage;
+    }
+
+    public void setClusterMemoryUsageAverage(double clusterMemoryUsageAverage) {
+        this.clusterMemoryUsageAverage = clusterMemoryUsageAverage;
+    }
+
+    public double getStandardDeviationVmsConfiguration() {
+        return standardDeviationVmsConfiguration;
+    }
+
+    public void setStandardDeviationVmsConfiguration(double standardDeviationVmsConfiguration) {
+        this.standardDeviationVmsConfiguration = standardDeviationVmsConfiguration;
+    }
+
+    public double getStandardDeviationHostsUsage() {
+        return standardDeviationHostsUsage;
+    }
+
+    public void setStandardDeviationHostsUsage(double standardDeviationHostsUsage) {
+        this.standardDeviationHostsUsage = standardDeviationHostsUsage;
+    }
+
+    public double getStandardDeviationAverage() {
+        return standardDeviationAverage;
+    }
+
+    public void setStandardDeviationAverage(double standardDeviationAverage) {
+        this.standardDeviationAverage = standardDeviationAverage;
+    }
+
+    public MigrationPlan getMigrationPlan() {
+        return migrationPlan;
+    }
+
+    public void setMigrationPlan(MigrationPlan migrationPlan) {
+        this.migrationPlan = migrationPlan;
+    }
+
+}
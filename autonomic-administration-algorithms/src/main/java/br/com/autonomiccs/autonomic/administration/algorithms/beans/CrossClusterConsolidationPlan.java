@@ -0,0 +1,60 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+
+/**
+ * Consolidation plan created for a set of clusters at once. It contains the VMs migrations (
+ * {@link MigrationPlan}), which may move VMs between the clusters, and the hosts that will be idle
+ * after those migrations, sorted by priority to be shut down.
+ */
+public class CrossClusterConsolidationPlan {
+
+    private MigrationPlan migrationPlan;
+    private List<HostResources> hostsToShutdown = new ArrayList<>();
+
+    public CrossClusterConsolidationPlan(MigrationPlan migrationPlan, List<HostResources> hostsToShutdown) {
+        this.migrationPlan = migrationPlan;
+        this.hostsToShutdown = hostsToShutdown;
+    }
+
+    public MigrationPlan getMigrationPlan() {
+        return migrationPlan;
+    }
+
+    /**
+     * @return hosts without VMs after the migrations, sorted by priority to be shut down.
+     */
+    public List<HostResources> getHostsToShutdown() {
+        return hostsToShutdown;
+    }
+
+    @Override
+    public String toString() {
+        return migrationPlan.toString() + ", hostsToShutdown= " + Integer.toString(hostsToShutdown.size());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.beans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Directed acyclic graph of VMs migrations. Each migration has the migrations that must be finished
+ * before it starts (its dependencies), the ones that free the capacity the migration needs on its
+ * target host. Migrations are kept in an order where the dependencies of a migration always come
+ * before it. Migrations that cannot be executed without overcommitting their target hosts (e.g.
+ * VMs swapping hosts without free capacity) are kept apart as unschedulable migrations.
+ */
+public class MigrationGraph {
+
+    private List<VmMigration> migrations = new ArrayList<>();
+    private Map<VmMigration, List<VmMigration>> migrationsDependencies = new HashMap<>();
+    private List<VmMigration> unschedulableMigrations = new ArrayList<>();
+
+    /**
+     * Adds the migration with its dependencies; the dependencies must have already been added.
+     */
+    public void addMigration(VmMigration migration, List<VmMigration> dependencies) {
+        migrations.add(migration);
+        migrationsDependencies.put(migration, dependencies);
+    }
+
+    public void addUnschedulableMigration(VmMigration migration) {
+        unschedulableMigrations.add(migration);
+    }
+
+    /**
+     * @return the migrations of the graph; the dependencies of a migration come before it.
+     */
+    public List<VmMigration> getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * @return the migrations that must be finished before the given migration starts.
+     */
+    public List<VmMigration> getDependencies(VmMigration migration) {
+        List<VmMigration> dependencies = migrationsDependencies.get(migration);
+        if (dependencies == null) {
+            return new ArrayList<>();
+        }
+        return dependencies;
+    }
+
+    public List<VmMigration> getUnschedulableMigrations() {
+        return unschedulableMigrations;
+    }
+
+    @Override
+    public String toString() {
+        return "migrations= " + Integer.toString(migrations.size()) + ", unschedulableMigrations= " + Integer.toString(unschedulableMigrations.size());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.beans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+/**
+ * Contains the VMs migrations mapped by a heuristic (VM 'id' to target {@link HostResources}), the
+ * hosts that will be evacuated by those migrations and the estimated migration volume (the sum of
+ * the memory of the VMs migrated, in Mega Bytes).
+ */
+public class MigrationPlan {
+
+    private Map<Long, HostResources> vmsToHost = new HashMap<>();
+    private List<HostResources> evacuatedHosts = new ArrayList<>();
+    private long migrationVolumeInMegaBytes;
+
+    /**
+     * Adds the migration of the given VM to the target host, summing the VM memory to the migration
+     * volume.
+     */
+    public void addVmMigration(VmResources vm, HostResources targetHost) {
+        HostResources previousTargetHost = vmsToHost.put(vm.getVmId(), targetHost);
+        if (previousTargetHost == null) {
+            migrationVolumeInMegaBytes += vm.getMemoryInMegaBytes();
+        }
+    }
+
+    public void addEvacuatedHost(HostResources host) {
+        evacuatedHosts.add(host);
+    }
+
+    public Map<Long, HostResources> getVmsToHost() {
+        return vmsToHost;
+    }
+
+    public List<HostResources> getEvacuatedHosts() {
+        return evacuatedHosts;
+    }
+
+    public long getMigrationVolumeInMegaBytes() {
+        return migrationVolumeInMegaBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "migrations= " + Integer.toString(vmsToHost.size()) + ", evacuatedHosts= " + Integer.toString(evacuatedHosts.size()) + ", migrationVolumeInMegaBytes= "
+                + Long.toString(migrationVolumeInMegaBytes);
+    }
+}
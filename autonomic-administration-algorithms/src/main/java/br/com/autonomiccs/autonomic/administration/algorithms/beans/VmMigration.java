@@ -0,0 +1,67 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.beans;
+
+/**
+ * A VM migration to be executed: the VM 'id', the host (and its cluster) where the VM is running
+ * and the target host (and its cluster).
+ */
+public class VmMigration {
+
+    private final long vmId;
+    private final long sourceHostId, sourceClusterId;
+    private final long targetHostId, targetClusterId;
+
+    public VmMigration(long vmId, long sourceHostId, long sourceClusterId, long targetHostId, long targetClusterId) {
+        this.vmId = vmId;
+        this.sourceHostId = sourceHostId;
+        this.sourceClusterId = sourceClusterId;
+        this.targetHostId = targetHostId;
+        this.targetClusterId = targetClusterId;
+    }
+
+    public long getVmId() {
+        return vmId;
+    }
+
+    public long getSourceHostId() {
+        return sourceHostId;
+    }
+
+    public long getSourceClusterId() {
+        return sourceClusterId;
+    }
+
+    public long getTargetHostId() {
+        return targetHostId;
+    }
+
+    public long getTargetClusterId() {
+        return targetClusterId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("vm[id=%d] from host[id=%d] to host[id=%d]", vmId, sourceHostId, targetHostId);
+    }
+}
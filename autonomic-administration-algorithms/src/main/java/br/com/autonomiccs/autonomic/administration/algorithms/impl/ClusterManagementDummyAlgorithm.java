@@ -31,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
@@ -39,31 +40,65 @@ public class ClusterManagementDummyAlgorithm implements ClusterAdministrationHeu
 
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * Context used by the methods that do not receive a {@link ClusterPlanningContext}; a new one
+     * is created at each {@link #rankHosts(List)} call.
+     */
+    private ClusterPlanningContext planningContext = new ClusterPlanningContext();
+
     @Override
     public int getClusterIntervalBetweenConsolidation() {
         return Integer.MAX_VALUE;
     }
 
+    /**
+     * It creates a new {@link ClusterPlanningContext} (kept by this instance) and ranks the hosts
+     * with {@link #rankHosts(List, ClusterPlanningContext)}.
+     */
+    @Override
+    public List<HostResources> rankHosts(List<HostResources> hosts) {
+        planningContext = new ClusterPlanningContext();
+        return rankHosts(hosts, planningContext);
+    }
+
     /**
      * Uses the {@link #cloneListOfHosts(List)} method. It does not alter sequence from the original
      * list; it will return a clone of the original list.
      */
     @Override
-    public List<HostResources> rankHosts(List<HostResources> hosts) {
+    public List<HostResources> rankHosts(List<HostResources> hosts, ClusterPlanningContext context) {
         return cloneListOfHosts(hosts);
     }
 
+    /**
+     * It maps the VMs with {@link #mapVMsToHost(List, ClusterPlanningContext)}, using the context
+     * created by the last {@link #rankHosts(List)} call.
+     */
     @Override
     public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts) {
+        return mapVMsToHost(rankedHosts, planningContext);
+    }
+
+    @Override
+    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts, ClusterPlanningContext context) {
         return new HashMap<>();
     }
 
+    /**
+     * It ranks the hosts with {@link #rankHostToPowerOff(List, ClusterPlanningContext)}, using the
+     * context created by the last {@link #rankHosts(List)} call.
+     */
+    @Override
+    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts) {
+        return rankHostToPowerOff(idleHosts, planningContext);
+    }
+
     /**
      * Uses the {@link #cloneListOfHosts(List)} method. It does not alter the sequence from the
      * original list; it returns a cloned list.
      */
     @Override
-    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts) {
+    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts, ClusterPlanningContext context) {
         return cloneListOfHosts(idleHosts);
     }
 
@@ -26,6 +26,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.TunableClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
@@ -33,7 +35,7 @@ import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 /**
  * Provides basic heuristics to be extended by specialized consolidation algorithms.
  */
-public class ConsolidationAlgorithmBase extends ClusterManagementDummyAlgorithm {
+public class ConsolidationAlgorithmBase extends ClusterManagementDummyAlgorithm implements TunableClusterAdministrationHeuristicAlgorithm {
 
     /**
      * This constant was created to divide a number (in Bytes) by 1.000.000 (resulting in a number
@@ -41,6 +43,30 @@ public class ConsolidationAlgorithmBase extends ClusterManagementDummyAlgorithm
      */
     protected final static int BYTES_TO_MEGA_BYTES = 1000000;
 
+    /**
+     * Default interval (seconds) between two consolidations of a cluster.
+     */
+    public final static int DEFAULT_CLUSTER_INTERVAL_BETWEEN_CONSOLIDATION = 600;
+
+    /**
+     * Default maximum usage of the cloud resources that still allows hosts to be powered off.
+     */
+    public final static double DEFAULT_MAXIMUM_USAGE_TO_POWER_OFF_HOSTS = 0.7;
+
+    private int clusterIntervalBetweenConsolidation = DEFAULT_CLUSTER_INTERVAL_BETWEEN_CONSOLIDATION;
+
+    /**
+     * It is used by heuristics that check the cloud usage before powering off hosts (e.g.
+     * {@link ConsolidationScoredPreferenceForSmallHosts}).
+     */
+    private double maximumUsageToPowerOffHosts = DEFAULT_MAXIMUM_USAGE_TO_POWER_OFF_HOSTS;
+
+    /**
+     * It is used by heuristics that create migration plans (e.g.
+     * {@link ConsolidationVectorBinPackingBestFitDecreasing}); if lower than 1, there is no limit.
+     */
+    private int maximumNumberOfHostsToEvacuate;
+
     /**
      * It indicates if the given heuristic is going to shutdown hosts.
      * This is used to control the deployment of Autonomiccs system VMs.
@@ -49,7 +75,32 @@ public class ConsolidationAlgorithmBase extends ClusterManagementDummyAlgorithm
 
     @Override
     public int getClusterIntervalBetweenConsolidation() {
-        return 600;
+        return clusterIntervalBetweenConsolidation;
+    }
+
+    @Override
+    public void setClusterIntervalBetweenConsolidation(int clusterIntervalBetweenConsolidation) {
+        this.clusterIntervalBetweenConsolidation = clusterIntervalBetweenConsolidation;
+    }
+
+    @Override
+    public double getMaximumUsageToPowerOffHosts() {
+        return maximumUsageToPowerOffHosts;
+    }
+
+    @Override
+    public void setMaximumUsageToPowerOffHosts(double maximumUsageToPowerOffHosts) {
+        this.maximumUsageToPowerOffHosts = maximumUsageToPowerOffHosts;
+    }
+
+    @Override
+    public int getMaximumNumberOfHostsToEvacuate() {
+        return maximumNumberOfHostsToEvacuate;
+    }
+
+    @Override
+    public void setMaximumNumberOfHostsToEvacuate(int maximumNumberOfHostsToEvacuate) {
+        this.maximumNumberOfHostsToEvacuate = maximumNumberOfHostsToEvacuate;
     }
 
     /**
@@ -57,21 +108,36 @@ public class ConsolidationAlgorithmBase extends ClusterManagementDummyAlgorithm
      * (more interesting to keep running).
      *
      * @note For each {@link HostResources} in the given {@link List} (starts from the
-     *       higher index to the lower), it gets a {@link List} of {@link VmResources}; then, for
-     *       each host (starts from the higher index to the lower), maps a migration of the selected
-     *       VM to the selected host.
+     *       higher index to the lower), it gets a {@link List} of {@link VmResources}; then, maps a
+     *       migration of each VM to the first host of the ranking that can allocate it.
      */
     @Override
-    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts) {
+    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts, ClusterPlanningContext context) {
+        return mapVMsToFirstRankedHostThatCanAllocateThem(rankedHosts, 1);
+    }
+
+    /**
+     * Maps the VMs of the hosts ranked from the last position down to the given position to the
+     * first host of the ranking that can allocate each VM. The hosts that can allocate the VMs are
+     * found through a {@link HostsAvailableResourcesIndex}, avoiding to check every host of the
+     * ranking for each VM.
+     *
+     * @param rankedHosts
+     * @param lastHostPositionToMapVms
+     *            hosts ranked before this position do not have their VMs mapped
+     * @return
+     */
+    protected Map<Long, HostResources> mapVMsToFirstRankedHostThatCanAllocateThem(List<HostResources> rankedHosts, int lastHostPositionToMapVms) {
         Map<Long, HostResources> vmsToHost = new HashMap<>();
-        for (int i = rankedHosts.size() - 1; i > 0; i--) {
+        HostsAvailableResourcesIndex hostsIndex = new HostsAvailableResourcesIndex(rankedHosts, this);
+        for (int i = rankedHosts.size() - 1; i >= lastHostPositionToMapVms; i--) {
             for (VmResources vmResources : rankedHosts.get(i).getVmsResources()) {
-                for (HostResources hostCandidateToStayRunning : rankedHosts) {
-                    if (canMigrateVmToHost(vmResources, hostCandidateToStayRunning)) {
-                        vmsToHost.put(vmResources.getVmId(), hostCandidateToStayRunning);
-                        updateHostUsedResources(vmResources, hostCandidateToStayRunning);
-                        break;
-                    }
+                int hostPosition = hostsIndex.findFirstHostThatCanAllocateVm(vmResources);
+                if (hostPosition != -1) {
+                    HostResources hostCandidateToStayRunning = rankedHosts.get(hostPosition);
+                    vmsToHost.put(vmResources.getVmId(), hostCandidateToStayRunning);
+                    updateHostUsedResources(vmResources, hostCandidateToStayRunning);
+                    hostsIndex.updateHost(hostPosition);
                 }
             }
         }
@@ -0,0 +1,121 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationPlan;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+/**
+ * Extends the {@link ConsolidationVectorBinPackingBestFitDecreasing} considering the cost of the
+ * migrations. The cost of migrating a VM is modeled as its memory (the amount of data copied
+ * through the network during a live migration); the cost of evacuating a host is the sum of the
+ * memory of its VMs (see {@link #getHostMigrationVolumeInMegaBytes(HostResources)}).
+ *
+ * @note evacuating the cheapest hosts first results in less migration volume per host evacuated,
+ *       but it might evacuate fewer hosts than following the ranking order; when
+ *       {@link #getMaximumNumberOfHostsToEvacuate()} is set, both orders are evaluated and it
+ *       returns the plan that evacuates more hosts (up to that limit) with less migration volume.
+ */
+public class ConsolidationMigrationCostAwareBestFitDecreasing extends ConsolidationVectorBinPackingBestFitDecreasing {
+
+    /**
+     * Creates a {@link MigrationPlan} evacuating the cheapest hosts first (see
+     * {@link #getHostsEvacuationOrderByMigrationVolume(List)}). If
+     * {@link #getMaximumNumberOfHostsToEvacuate()} is set and that plan does not reach it, it also
+     * creates a plan following the ranking order; the plan that evacuates more hosts is returned, and
+     * on ties the one with less migration volume.
+     *
+     * @note the plans are created over clones of the ranked hosts; the given hosts are not changed.
+     */
+    @Override
+    public MigrationPlan createMigrationPlan(List<HostResources> rankedHosts) {
+        MigrationPlan cheapestHostsFirstPlan = createMigrationPlan(cloneListOfHosts(rankedHosts), getHostsEvacuationOrderByMigrationVolume(rankedHosts));
+        int maximumNumberOfHostsToEvacuate = getMaximumNumberOfHostsToEvacuate();
+        if (maximumNumberOfHostsToEvacuate < 1 || cheapestHostsFirstPlan.getEvacuatedHosts().size() >= maximumNumberOfHostsToEvacuate) {
+            return cheapestHostsFirstPlan;
+        }
+        MigrationPlan rankingOrderPlan = createMigrationPlan(cloneListOfHosts(rankedHosts), getHostsEvacuationOrder(rankedHosts));
+        logger.debug(String.format("Cheapest hosts first plan [%s], ranking order plan [%s].", cheapestHostsFirstPlan, rankingOrderPlan));
+        return getBestMigrationPlan(cheapestHostsFirstPlan, rankingOrderPlan);
+    }
+
+    /**
+     * Returns the plan that evacuates more hosts; if both evacuate the same number of hosts, it
+     * returns the one with less migration volume (preferring the first plan on ties).
+     */
+    protected MigrationPlan getBestMigrationPlan(MigrationPlan migrationPlan1, MigrationPlan migrationPlan2) {
+        int evacuatedHosts1 = migrationPlan1.getEvacuatedHosts().size();
+        int evacuatedHosts2 = migrationPlan2.getEvacuatedHosts().size();
+        if (evacuatedHosts1 != evacuatedHosts2) {
+            return evacuatedHosts1 > evacuatedHosts2 ? migrationPlan1 : migrationPlan2;
+        }
+        if (migrationPlan2.getMigrationVolumeInMegaBytes() < migrationPlan1.getMigrationVolumeInMegaBytes()) {
+            return migrationPlan2;
+        }
+        return migrationPlan1;
+    }
+
+    /**
+     * Returns the positions of the hosts given by {@link #getHostsEvacuationOrder(List)} sorted
+     * upward by migration volume ({@link #getHostMigrationVolumeInMegaBytes(HostResources)}); hosts
+     * with the same migration volume are kept in the ranking evacuation order.
+     */
+    protected List<Integer> getHostsEvacuationOrderByMigrationVolume(List<HostResources> rankedHosts) {
+        List<Integer> hostsEvacuationOrder = getHostsEvacuationOrder(rankedHosts);
+        final long[] hostsMigrationVolume = new long[rankedHosts.size()];
+        for (int i : hostsEvacuationOrder) {
+            hostsMigrationVolume[i] = getHostMigrationVolumeInMegaBytes(rankedHosts.get(i));
+        }
+        List<Integer> sortedHostsEvacuationOrder = new ArrayList<>(hostsEvacuationOrder);
+        Collections.sort(sortedHostsEvacuationOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer position1, Integer position2) {
+                long volume1 = hostsMigrationVolume[position1];
+                long volume2 = hostsMigrationVolume[position2];
+                if (volume1 == volume2) {
+                    return 0;
+                }
+                return volume1 < volume2 ? -1 : 1;
+            }
+        });
+        return sortedHostsEvacuationOrder;
+    }
+
+    /**
+     * Returns the amount of memory that must be migrated to evacuate the given host (sum of the
+     * memory of its VMs).
+     */
+    protected long getHostMigrationVolumeInMegaBytes(HostResources host) {
+        long migrationVolume = 0;
+        for (VmResources vm : host.getVmsResources()) {
+            migrationVolume += vm.getMemoryInMegaBytes();
+        }
+        return migrationVolume;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 
 import org.apache.commons.collections.ComparatorUtils;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
 import br.com.autonomiccs.autonomic.administration.algorithms.beans.HostProfile;
 import br.com.autonomiccs.autonomic.administration.algorithms.profilers.HostProfiler;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
@@ -45,19 +46,17 @@ public class ConsolidationScoredPreferenceForSmallHosts extends ConsolidationAlg
      */
     protected final static double BYTES_TO_MEGA_BYTES_AS_DOUBLE = ConsolidationAlgorithmBase.BYTES_TO_MEGA_BYTES;
 
-    protected HostProfiler profiler;
-
     /**
      * It ranks hosts to be kept running. It clones the given list (using
-     * {@link #cloneListOfHosts(List)}),
-     * sets each host score using {@link #setEachHostScore(List)} and sorts the list using
-     * {@link #sortHosts(List)} method.
+     * {@link #cloneListOfHosts(List)}), sets the {@link HostProfiler} of the hosts in the given
+     * context, sets each host score using {@link #setEachHostScore(List, ClusterPlanningContext)}
+     * and sorts the list using {@link #sortHosts(List)} method.
      */
     @Override
-    public List<HostResources> rankHosts(List<HostResources> hostsList) {
+    public List<HostResources> rankHosts(List<HostResources> hostsList, ClusterPlanningContext context) {
         List<HostResources> sortedHosts = cloneListOfHosts(hostsList);
-        this.profiler = new HostProfiler(sortedHosts);
-        setEachHostScore(sortedHosts);
+        context.setHostProfiler(new HostProfiler(sortedHosts));
+        setEachHostScore(sortedHosts, context);
         sortHosts(sortedHosts);
         return sortedHosts;
     }
@@ -123,41 +122,42 @@ public class ConsolidationScoredPreferenceForSmallHosts extends ConsolidationAlg
     }
 
     /**
-     * It calculates each host score using the {@link #calculateHostScore(HostResources)} method.
+     * It calculates each host score using the
+     * {@link #calculateHostScore(HostResources, ClusterPlanningContext)} method.
      *
      * @param hosts
-     * @param vmsProfile
+     * @param context
      */
-    protected List<HostResources> setEachHostScore(List<HostResources> hosts) {
+    protected List<HostResources> setEachHostScore(List<HostResources> hosts, ClusterPlanningContext context) {
         for (HostResources host : hosts) {
-            host.setScore(calculateHostScore(host));
+            host.setScore(calculateHostScore(host, context));
         }
         return hosts;
     }
 
     /**
      * This method calculates the host score based on its resources amount considering the
-     * {@link HostProfiler}.
+     * {@link HostProfiler} of the given context.
      * It calculates the profile using {@link HostProfiler#hostVMsResourceProportion(HostResources)}
      * method; then returns the result of (cpu speed profile * number of cpus profile * memory
      * profile)
      *
      * @param host
      */
-    protected double calculateHostScore(HostResources host) {
-        HostProfile hostProfile = profiler.hostVMsResourceProportion(host);
+    protected double calculateHostScore(HostResources host, ClusterPlanningContext context) {
+        HostProfile hostProfile = context.getHostProfiler().hostVMsResourceProportion(host);
         return hostProfile.getCpuSpeedProfile() * hostProfile.getCpusProfile() * hostProfile.getMemoryProfile();
     }
 
     /**
      * It clones the given list using the {@link #cloneListOfHosts(List)} method; sets each host
-     * score with {@link #setEachHostScore(List)} method; returns the resulting list from
-     * {@link #sortHostsDownwardScore(List)} method.
+     * score with {@link #setEachHostScore(List, ClusterPlanningContext)} method; returns the
+     * resulting list from {@link #sortHostsDownwardScore(List)} method.
      */
     @Override
-    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts) {
+    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts, ClusterPlanningContext context) {
         List<HostResources> idleHostSorted = cloneListOfHosts(idleHosts);
-        sortHostsDownwardScore(setEachHostScore(idleHostSorted));
+        sortHostsDownwardScore(setEachHostScore(idleHostSorted, context));
         return idleHostSorted;
     }
 
@@ -168,19 +168,21 @@ public class ConsolidationScoredPreferenceForSmallHosts extends ConsolidationAlg
      * {@link #getCloudExpetedMemoryUsagePercentageAfterHostShutdown(HostResources, CloudResources)}
      * method)
      * in case of power off the host. If some of both expected usage percentage result is higher
-     * than 70%, then it returns false;
+     * than the maximum usage ({@link #getMaximumUsageToPowerOffHosts()}, 70% by default), then it
+     * returns false;
      *
-     * @note it first tests if expectedCpuUsagePercentage > 70%, if returns true then does not
-     *       waists time testing if the expectedMemoryUsagePercentage < 70%
+     * @note it first tests if expectedCpuUsagePercentage > maximum usage, if returns true then does
+     *       not waists time testing if the expectedMemoryUsagePercentage < maximum usage
      */
     @Override
     protected boolean internalCanPowerOffHost(HostResources hostToPowerOff, CloudResources cloudResources) {
+        double maximumUsage = getMaximumUsageToPowerOffHosts();
         double expectedCpuUsagePercentage = getCloudExpetedCpuUsageAfterHostShutdown(hostToPowerOff, cloudResources);
-        if (expectedCpuUsagePercentage > 0.7) {
+        if (expectedCpuUsagePercentage > maximumUsage) {
             return false;
         }
         double expectedMemoryUsagePercentage = getCloudExpetedMemoryUsagePercentageAfterHostShutdown(hostToPowerOff, cloudResources);
-        return expectedMemoryUsagePercentage < 0.7;
+        return expectedMemoryUsagePercentage < maximumUsage;
     }
 
     /**
@@ -227,19 +229,21 @@ public class ConsolidationScoredPreferenceForSmallHosts extends ConsolidationAlg
      * It calculates the current CPU usage percentage (using
      * {@link #cloudCpuUsagePercentage(CloudResources)} method); it calculates the current memory
      * usage percentage (using {@link #cloudMemoryUsagePercentage(CloudResources)} method). If some
-     * of both usage percentage is higher than 70%, then it returns false.
+     * of both usage percentage is higher than the maximum usage (
+     * {@link #getMaximumUsageToPowerOffHosts()}, 70% by default), then it returns false.
      *
-     * @note it first tests if expectedCpuUsagePercentage > 70%, if returns true then does not
-     *       waists time testing if the expectedMemoryUsagePercentage < 70%
+     * @note it first tests if expectedCpuUsagePercentage > maximum usage, if returns true then does
+     *       not waists time testing if the expectedMemoryUsagePercentage < maximum usage
      */
     @Override
     protected boolean internalCanPowerOffAnotherHostInCloud(CloudResources cloudResources) {
+        double maximumUsage = getMaximumUsageToPowerOffHosts();
         double cpuUsagePercentage = cloudCpuUsagePercentage(cloudResources);
-        if (cpuUsagePercentage > 0.7) {
+        if (cpuUsagePercentage > maximumUsage) {
             return false;
         }
         double memoryUsagePercentage = cloudMemoryUsagePercentage(cloudResources);
-        return memoryUsagePercentage < 0.7;
+        return memoryUsagePercentage < maximumUsage;
     }
 
     /**
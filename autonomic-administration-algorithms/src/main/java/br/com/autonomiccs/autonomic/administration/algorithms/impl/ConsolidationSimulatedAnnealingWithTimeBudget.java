@@ -0,0 +1,243 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.TimeBudgetedClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+
+/**
+ * Anytime consolidation heuristic. It starts from the VMs mapping of
+ * {@link ConsolidationAlgorithmBase#mapVMsToHost(List)} (using the ranking of
+ * {@link ConsolidationScoredPreferenceForBigHosts}) and improves it with simulated annealing over
+ * the VM to host assignment until the planning time budget expires; then, it returns the best
+ * assignment found (the one with fewer hosts running VMs and, on ties, fewer migrations).
+ *
+ * @note VMs are only moved to hosts that already run VMs; therefore, the number of hosts running
+ *       VMs never increases.
+ */
+public class ConsolidationSimulatedAnnealingWithTimeBudget extends ConsolidationScoredPreferenceForBigHosts implements TimeBudgetedClusterAdministrationHeuristicAlgorithm {
+
+    protected final static long DEFAULT_PLANNING_TIME_BUDGET_IN_MILLISECONDS = 1000;
+
+    /**
+     * Temperature at the beginning of the annealing; it decreases linearly to zero until the
+     * planning time budget expires.
+     */
+    protected final static double INITIAL_TEMPERATURE = 0.05;
+
+    /**
+     * Number of annealing iterations between two verifications of the planning deadline.
+     */
+    private final static int ITERATIONS_BETWEEN_DEADLINE_VERIFICATIONS = 64;
+
+    private long planningTimeBudgetInMilliseconds = DEFAULT_PLANNING_TIME_BUDGET_IN_MILLISECONDS;
+
+    protected Random random = new Random();
+
+    /**
+     * Maps the VMs with
+     * {@link ConsolidationAlgorithmBase#mapVMsToHost(List, ClusterPlanningContext)} and improves
+     * the mapping with {@link #anneal(ClusterSnapshot, long)} until the planning time budget
+     * expires.
+     * The returned {@link Map} contains only the VMs that have to be migrated.
+     */
+    @Override
+    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts, ClusterPlanningContext context) {
+        long planningStartTime = System.nanoTime();
+        long planningDeadline = planningStartTime + TimeUnit.MILLISECONDS.toNanos(planningTimeBudgetInMilliseconds);
+        ClusterSnapshot snapshot = new ClusterSnapshot(rankedHosts);
+        applyVmsMigrations(snapshot, super.mapVMsToHost(rankedHosts, context));
+        int greedyActiveHosts = countActiveHosts(snapshot);
+
+        ClusterSnapshot bestSnapshot = anneal(snapshot, planningDeadline);
+        logger.debug(String.format("Simulated annealing reduced active hosts from [%d] to [%d] in [%d] ms.", greedyActiveHosts, countActiveHosts(bestSnapshot),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - planningStartTime)));
+        return createVmsToHost(bestSnapshot, rankedHosts);
+    }
+
+    /**
+     * Applies the given VMs migrations into the snapshot.
+     */
+    protected void applyVmsMigrations(ClusterSnapshot snapshot, Map<Long, HostResources> vmsToHost) {
+        Map<Long, Integer> vmsIndexes = new HashMap<>();
+        for (int vm = 0; vm < snapshot.getNumberOfVms(); vm++) {
+            vmsIndexes.put(snapshot.getVmId(vm), vm);
+        }
+        for (Entry<Long, HostResources> vmToHost : vmsToHost.entrySet()) {
+            Integer vm = vmsIndexes.get(vmToHost.getKey());
+            int targetHost = snapshot.getHostIndex(vmToHost.getValue().getHostId());
+            if (vm != null && targetHost != -1) {
+                snapshot.migrateVm(vm, targetHost);
+            }
+        }
+    }
+
+    /**
+     * Moves random VMs to random hosts that run VMs, until the deadline. A move that leaves its
+     * source host without VMs is always accepted; other moves are accepted if they concentrate
+     * the load ({@link #getLoadConcentrationGain(ClusterSnapshot, int, int, int)} is not negative),
+     * or with probability e^(gain / temperature).
+     *
+     * @return a fork of the given snapshot with the best assignment found; the given snapshot is
+     *         changed by the annealing.
+     */
+    protected ClusterSnapshot anneal(ClusterSnapshot snapshot, long planningDeadline) {
+        ClusterSnapshot bestSnapshot = snapshot.fork();
+        int numberOfHosts = snapshot.getNumberOfHosts();
+        int numberOfVms = snapshot.getNumberOfVms();
+        if (numberOfHosts < 2 || numberOfVms == 0) {
+            return bestSnapshot;
+        }
+        int[] hostsNumberOfVms = new int[numberOfHosts];
+        for (int vm = 0; vm < numberOfVms; vm++) {
+            hostsNumberOfVms[snapshot.getVmHost(vm)]++;
+        }
+        int activeHosts = countActiveHosts(snapshot);
+        int migrations = snapshot.getMigratedVms().size();
+        int bestActiveHosts = activeHosts;
+        int bestMigrations = migrations;
+
+        long annealingStartTime = System.nanoTime();
+        double temperature = INITIAL_TEMPERATURE;
+        for (long iteration = 0;; iteration++) {
+            if (iteration % ITERATIONS_BETWEEN_DEADLINE_VERIFICATIONS == 0) {
+                long now = System.nanoTime();
+                if (now - planningDeadline >= 0) {
+                    break;
+                }
+                temperature = INITIAL_TEMPERATURE * (planningDeadline - now) / Math.max(1, planningDeadline - annealingStartTime);
+            }
+            int vm = random.nextInt(numberOfVms);
+            int sourceHost = snapshot.getVmHost(vm);
+            int targetHost = random.nextInt(numberOfHosts);
+            if (targetHost == sourceHost || hostsNumberOfVms[targetHost] == 0 || !snapshot.canAllocateVm(vm, targetHost)) {
+                continue;
+            }
+            boolean emptiesSourceHost = hostsNumberOfVms[sourceHost] == 1;
+            if (!emptiesSourceHost) {
+                double gain = getLoadConcentrationGain(snapshot, vm, sourceHost, targetHost);
+                if (gain < 0 && (temperature <= 0 || random.nextDouble() >= Math.exp(gain / temperature))) {
+                    continue;
+                }
+            }
+            snapshot.migrateVm(vm, targetHost);
+            hostsNumberOfVms[sourceHost]--;
+            hostsNumberOfVms[targetHost]++;
+            if (emptiesSourceHost) {
+                activeHosts--;
+            }
+            if (sourceHost == snapshot.getVmOriginalHost(vm)) {
+                migrations++;
+            } else if (targetHost == snapshot.getVmOriginalHost(vm)) {
+                migrations--;
+            }
+            if (activeHosts < bestActiveHosts || (activeHosts == bestActiveHosts && migrations < bestMigrations)) {
+                bestSnapshot = snapshot.fork();
+                bestActiveHosts = activeHosts;
+                bestMigrations = migrations;
+            }
+        }
+        return bestSnapshot;
+    }
+
+    /**
+     * Returns the variation of the sum of squared hosts usage (CPU and memory usage percentages)
+     * caused by moving the VM from the source host to the target host. A positive gain means that
+     * the load becomes more concentrated, which makes it easier to empty the hosts with less load.
+     */
+    protected double getLoadConcentrationGain(ClusterSnapshot snapshot, int vm, int sourceHost, int targetHost) {
+        long vmCpu = snapshot.getVmCpuDemand(vm);
+        long vmMemory = snapshot.getVmMemoryInMegaBytes(vm);
+        double before = getHostSquaredUsage(snapshot, sourceHost, 0, 0) + getHostSquaredUsage(snapshot, targetHost, 0, 0);
+        double after = getHostSquaredUsage(snapshot, sourceHost, -vmCpu, -vmMemory) + getHostSquaredUsage(snapshot, targetHost, vmCpu, vmMemory);
+        return after - before;
+    }
+
+    /**
+     * Returns the sum of the squared CPU and memory usage percentages of the host, with the given
+     * variations of used CPU and memory.
+     */
+    private double getHostSquaredUsage(ClusterSnapshot snapshot, int host, long usedCpuVariation, long usedMemoryVariation) {
+        double cpuCapacity = snapshot.getHostCpuOverprovisioning(host) * snapshot.getHostCpuSpeed(host) * snapshot.getHostCpus(host);
+        double memoryCapacity = snapshot.getHostMemoryOverprovisioning(host) * snapshot.getHostTotalMemoryInMegaBytes(host);
+        double squaredUsage = 0;
+        if (cpuCapacity > 0) {
+            double cpuUsage = (snapshot.getHostUsedCpu(host) + usedCpuVariation) / cpuCapacity;
+            squaredUsage += cpuUsage * cpuUsage;
+        }
+        if (memoryCapacity > 0) {
+            double memoryUsage = (snapshot.getHostUsedMemoryInMegaBytes(host) + usedMemoryVariation) / memoryCapacity;
+            squaredUsage += memoryUsage * memoryUsage;
+        }
+        return squaredUsage;
+    }
+
+    /**
+     * Returns the number of hosts that have at least one VM allocated in the snapshot.
+     */
+    protected int countActiveHosts(ClusterSnapshot snapshot) {
+        boolean[] activeHosts = new boolean[snapshot.getNumberOfHosts()];
+        int numberOfActiveHosts = 0;
+        for (int vm = 0; vm < snapshot.getNumberOfVms(); vm++) {
+            int host = snapshot.getVmHost(vm);
+            if (!activeHosts[host]) {
+                activeHosts[host] = true;
+                numberOfActiveHosts++;
+            }
+        }
+        return numberOfActiveHosts;
+    }
+
+    /**
+     * Creates the VMs mapping (VM 'id' to target {@link HostResources}) with the VMs that are not
+     * in the host they were when the snapshot was created.
+     *
+     * @note hosts indexes in the snapshot are the positions of the given ranked hosts.
+     */
+    protected Map<Long, HostResources> createVmsToHost(ClusterSnapshot snapshot, List<HostResources> rankedHosts) {
+        Map<Long, HostResources> vmsToHost = new HashMap<>();
+        for (int vm : snapshot.getMigratedVms()) {
+            vmsToHost.put(snapshot.getVmId(vm), rankedHosts.get(snapshot.getVmHost(vm)));
+        }
+        return vmsToHost;
+    }
+
+    @Override
+    public long getPlanningTimeBudgetInMilliseconds() {
+        return planningTimeBudgetInMilliseconds;
+    }
+
+    @Override
+    public void setPlanningTimeBudgetInMilliseconds(long planningTimeBudgetInMilliseconds) {
+        this.planningTimeBudgetInMilliseconds = Math.max(0, planningTimeBudgetInMilliseconds);
+    }
+}
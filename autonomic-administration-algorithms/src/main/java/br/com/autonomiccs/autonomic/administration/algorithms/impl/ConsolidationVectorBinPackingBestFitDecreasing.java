@@ -0,0 +1,339 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationPlan;
+import br.com.autonomiccs.autonomic.administration.algorithms.profilers.HostProfiler;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+/**
+ * This class handles the consolidation as a two-dimensional (CPU and memory) vector bin packing
+ * problem. Hosts with less capacity are evacuated first; the VMs of each host are placed using the
+ * best-fit decreasing heuristic over the CPU and memory normalized by the cluster capacity. A host
+ * only has its VMs mapped if all of them can be migrated; therefore, every host with VMs mapped
+ * can be powered off. It extends {@link ConsolidationScoredPreferenceForBigHosts} to use the same
+ * policies to rank idle hosts and decide if they can be powered off.
+ *
+ * @note the cost of {@link #mapVMsToHost(List)} is O(V * H), V being the number of VMs and H the
+ *       number of hosts of the cluster.
+ */
+public class ConsolidationVectorBinPackingBestFitDecreasing extends ConsolidationScoredPreferenceForBigHosts {
+
+    /**
+     * It ranks hosts to be kept running. Each host score is its normalized capacity (CPU + memory);
+     * hosts with higher capacity are positioned on lower indexes of the list, and hosts with the same
+     * capacity are sorted downward by normalized load (used CPU + used memory). The cluster capacity
+     * used to normalize the resources is kept in the given context.
+     */
+    @Override
+    public List<HostResources> rankHosts(List<HostResources> hostsList, ClusterPlanningContext context) {
+        List<HostResources> sortedHosts = cloneListOfHosts(hostsList);
+        context.setHostProfiler(new HostProfiler(sortedHosts));
+        updateClusterCapacity(sortedHosts, context);
+        for (HostResources host : sortedHosts) {
+            host.setScore(getHostNormalizedCapacity(host, context));
+        }
+        Collections.sort(sortedHosts, new HostCapacityDownwardComparator(context));
+        return sortedHosts;
+    }
+
+    /**
+     * Returns the VMs migrations of the {@link MigrationPlan} created by
+     * {@link #createMigrationPlan(List)}; the plan (with its migration volume) is kept in the given
+     * context.
+     */
+    @Override
+    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts, ClusterPlanningContext context) {
+        MigrationPlan migrationPlan = createMigrationPlan(rankedHosts);
+        context.setMigrationPlan(migrationPlan);
+        return migrationPlan.getVmsToHost();
+    }
+
+    /**
+     * Creates a {@link MigrationPlan} evacuating the hosts in the order given by
+     * {@link #getHostsEvacuationOrder(List)}.
+     */
+    public MigrationPlan createMigrationPlan(List<HostResources> rankedHosts) {
+        return createMigrationPlan(rankedHosts, getHostsEvacuationOrder(rankedHosts));
+    }
+
+    /**
+     * Evacuates the hosts in the given order (positions of the ranked hosts list). For each host, it
+     * sorts its VMs by normalized size (using {@link VmSizeDownwardComparator}) and maps each VM
+     * using {@link #findBestFitHost(VmResources, List, HostState[], ClusterPlanningContext)}. If any
+     * VM of the host cannot be mapped, none of them are migrated and the host is kept running. It
+     * stops when {@link #canEvacuateAnotherHost(MigrationPlan)} returns false.
+     *
+     * @note hosts without VMs and hosts evacuated do not receive VMs; hosts that received VMs are not
+     *       evacuated. The resources are normalized by the capacity of the given hosts, kept in a
+     *       {@link ClusterPlanningContext} created for this plan.
+     */
+    protected MigrationPlan createMigrationPlan(List<HostResources> rankedHosts, List<Integer> hostsEvacuationOrder) {
+        MigrationPlan migrationPlan = new MigrationPlan();
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        updateClusterCapacity(rankedHosts, context);
+        HostState[] hostsStates = new HostState[rankedHosts.size()];
+        for (int i = 0; i < rankedHosts.size(); i++) {
+            hostsStates[i] = rankedHosts.get(i).getVmsResources().isEmpty() ? HostState.NOT_ALLOWED_TO_RECEIVE_VMS : HostState.NOT_EVALUATED;
+        }
+        if (hostsStates.length > 0 && hostsStates[0] == HostState.NOT_EVALUATED) {
+            hostsStates[0] = HostState.KEPT_RUNNING;
+        }
+        for (int i : hostsEvacuationOrder) {
+            if (!canEvacuateAnotherHost(migrationPlan)) {
+                break;
+            }
+            if (hostsStates[i] != HostState.NOT_EVALUATED) {
+                continue;
+            }
+            hostsStates[i] = HostState.NOT_ALLOWED_TO_RECEIVE_VMS;
+            HostResources hostToEvacuate = rankedHosts.get(i);
+            Map<Long, HostResources> hostVmsToHost = mapVmsOfHost(hostToEvacuate, rankedHosts, hostsStates, context);
+            if (hostVmsToHost.isEmpty()) {
+                hostsStates[i] = HostState.KEPT_RUNNING;
+                continue;
+            }
+            for (VmResources vm : hostToEvacuate.getVmsResources()) {
+                migrationPlan.addVmMigration(vm, hostVmsToHost.get(vm.getVmId()));
+            }
+            migrationPlan.addEvacuatedHost(hostToEvacuate);
+        }
+        return migrationPlan;
+    }
+
+    /**
+     * Returns the positions of the hosts in the order that they are evacuated; it starts from the
+     * last position of the ranking to the second (the first host is always kept running).
+     */
+    protected List<Integer> getHostsEvacuationOrder(List<HostResources> rankedHosts) {
+        List<Integer> hostsEvacuationOrder = new ArrayList<>();
+        for (int i = rankedHosts.size() - 1; i > 0; i--) {
+            hostsEvacuationOrder.add(i);
+        }
+        return hostsEvacuationOrder;
+    }
+
+    /**
+     * It returns false when the migration plan already evacuates
+     * {@link #getMaximumNumberOfHostsToEvacuate()} hosts; if it is lower than 1, there is no limit.
+     */
+    protected boolean canEvacuateAnotherHost(MigrationPlan migrationPlan) {
+        return getMaximumNumberOfHostsToEvacuate() < 1 || migrationPlan.getEvacuatedHosts().size() < getMaximumNumberOfHostsToEvacuate();
+    }
+
+    /**
+     * Maps all VMs of the given host using best-fit decreasing. If some VM cannot be allocated, it
+     * reverts the resources allocated in the target hosts and returns an empty {@link Map};
+     * otherwise, the target hosts are marked as {@link HostState#KEPT_RUNNING}.
+     */
+    protected Map<Long, HostResources> mapVmsOfHost(HostResources hostToEvacuate, List<HostResources> rankedHosts, HostState[] hostsStates, ClusterPlanningContext context) {
+        List<VmResources> vms = new ArrayList<>(hostToEvacuate.getVmsResources());
+        Collections.sort(vms, new VmSizeDownwardComparator(context));
+
+        Map<Long, HostResources> vmsToHost = new HashMap<>();
+        List<Integer> targetHostsPositions = new ArrayList<>();
+        for (VmResources vm : vms) {
+            int targetHostPosition = findBestFitHost(vm, rankedHosts, hostsStates, context);
+            if (targetHostPosition == -1) {
+                for (VmResources mappedVm : vms) {
+                    HostResources mappedTargetHost = vmsToHost.get(mappedVm.getVmId());
+                    if (mappedTargetHost != null) {
+                        releaseHostUsedResources(mappedVm, mappedTargetHost);
+                    }
+                }
+                return new HashMap<>();
+            }
+            HostResources targetHost = rankedHosts.get(targetHostPosition);
+            updateHostUsedResources(vm, targetHost);
+            vmsToHost.put(vm.getVmId(), targetHost);
+            targetHostsPositions.add(targetHostPosition);
+        }
+        for (int targetHostPosition : targetHostsPositions) {
+            hostsStates[targetHostPosition] = HostState.KEPT_RUNNING;
+        }
+        return vmsToHost;
+    }
+
+    /**
+     * Returns the position of the host that will receive the VM. Among the hosts
+     * {@link HostState#KEPT_RUNNING} (the open bins), it chooses the one that will have the lowest
+     * amount of normalized resources (CPU + memory) available after allocating the VM (best fit); if
+     * none of them can allocate the VM, it chooses the first host of the ranking, not evaluated yet,
+     * that can allocate it. It returns -1 if no host can allocate the VM.
+     */
+    protected int findBestFitHost(VmResources vm, List<HostResources> rankedHosts, HostState[] hostsStates, ClusterPlanningContext context) {
+        double vmNormalizedSize = getVmNormalizedSize(vm, context);
+        int bestFitHostPosition = -1;
+        double bestFitResourcesLeft = Double.POSITIVE_INFINITY;
+        int firstNotEvaluatedHostPosition = -1;
+        for (int i = 0; i < rankedHosts.size(); i++) {
+            if (hostsStates[i] == HostState.NOT_ALLOWED_TO_RECEIVE_VMS) {
+                continue;
+            }
+            if (hostsStates[i] == HostState.NOT_EVALUATED && firstNotEvaluatedHostPosition != -1) {
+                continue;
+            }
+            HostResources host = rankedHosts.get(i);
+            if (!canMigrateVmToHost(vm, host)) {
+                continue;
+            }
+            if (hostsStates[i] == HostState.NOT_EVALUATED) {
+                firstNotEvaluatedHostPosition = i;
+                continue;
+            }
+            double resourcesLeft = getNormalizedCpu(getHostAvailableCpu(host), context) + getNormalizedMemory(getHostAvailableMemory(host), context) - vmNormalizedSize;
+            if (resourcesLeft < bestFitResourcesLeft) {
+                bestFitResourcesLeft = resourcesLeft;
+                bestFitHostPosition = i;
+            }
+        }
+        if (bestFitHostPosition == -1) {
+            return firstNotEvaluatedHostPosition;
+        }
+        return bestFitHostPosition;
+    }
+
+    /**
+     * Subtracts the memory and CPU allocated by the VM from the usage of the host; it reverts
+     * {@link #updateHostUsedResources(VmResources, HostResources)}.
+     */
+    protected void releaseHostUsedResources(VmResources vm, HostResources host) {
+        host.setUsedCpu(host.getUsedCpu() - vm.getNumberOfCpus() * vm.getCpuSpeed());
+        host.setUsedMemoryInMegaBytes(host.getUsedMemoryInMegaBytes() - vm.getMemoryInMegaBytes());
+    }
+
+    /**
+     * Updates the cluster CPU capacity (CPU over-provisioning * CPU speed * number of CPUs of all
+     * hosts) and memory capacity (memory over-provisioning * total memory of all hosts) of the given
+     * context with the capacity of the given hosts; they are used to normalize the resources of hosts
+     * and VMs.
+     */
+    protected void updateClusterCapacity(List<HostResources> hosts, ClusterPlanningContext context) {
+        double cpuCapacity = 0;
+        double memoryCapacity = 0;
+        for (HostResources host : hosts) {
+            cpuCapacity += host.getCpuOverprovisioning() * host.getSpeed() * host.getCpus();
+            memoryCapacity += host.getMemoryOverprovisioning() * getHostTotalMemoryInMegaBytes(host);
+        }
+        context.setClusterCpuCapacity(cpuCapacity > 0 ? cpuCapacity : 1);
+        context.setClusterMemoryCapacity(memoryCapacity > 0 ? memoryCapacity : 1);
+    }
+
+    protected double getNormalizedCpu(double cpu, ClusterPlanningContext context) {
+        return cpu / context.getClusterCpuCapacity();
+    }
+
+    protected double getNormalizedMemory(double memoryInMegaBytes, ClusterPlanningContext context) {
+        return memoryInMegaBytes / context.getClusterMemoryCapacity();
+    }
+
+    /**
+     * Returns the host capacity: the sum of its normalized CPU (CPU over-provisioning * CPU speed *
+     * number of CPUs) and normalized memory (memory over-provisioning * total memory).
+     */
+    protected double getHostNormalizedCapacity(HostResources host, ClusterPlanningContext context) {
+        return getNormalizedCpu(host.getCpuOverprovisioning() * host.getSpeed() * host.getCpus(), context)
+                + getNormalizedMemory(host.getMemoryOverprovisioning() * getHostTotalMemoryInMegaBytes(host), context);
+    }
+
+    /**
+     * Returns the host load: the sum of its normalized used CPU and normalized used memory.
+     */
+    protected double getHostNormalizedLoad(HostResources host, ClusterPlanningContext context) {
+        return getNormalizedCpu(host.getUsedCpu(), context) + getNormalizedMemory(host.getUsedMemoryInMegaBytes(), context);
+    }
+
+    /**
+     * Returns the VM size: the sum of its normalized CPU (number of CPUs * CPU speed) and normalized
+     * memory.
+     */
+    protected double getVmNormalizedSize(VmResources vm, ClusterPlanningContext context) {
+        return getNormalizedCpu(vm.getNumberOfCpus() * vm.getCpuSpeed(), context) + getNormalizedMemory(vm.getMemoryInMegaBytes(), context);
+    }
+
+    /**
+     * State of the hosts while mapping VMs in {@link #mapVMsToHost(List)}.
+     */
+    protected enum HostState {
+        /**
+         * The host was not evacuated yet; it can receive VMs if no host {@link #KEPT_RUNNING} can.
+         */
+        NOT_EVALUATED,
+        /**
+         * The host is going to keep running (it received VMs, it could not be evacuated or it is the
+         * first of the ranking); it cannot be evacuated.
+         */
+        KEPT_RUNNING,
+        /**
+         * The host was evacuated (or is being evacuated) or it has no VMs.
+         */
+        NOT_ALLOWED_TO_RECEIVE_VMS
+    }
+
+    /**
+     * Compares hosts downward by score (normalized capacity); hosts with the same score are compared
+     * downward by normalized load.
+     */
+    public class HostCapacityDownwardComparator implements Comparator<HostResources> {
+        private ClusterPlanningContext context;
+
+        public HostCapacityDownwardComparator(ClusterPlanningContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public int compare(HostResources h1, HostResources h2) {
+            int result = Double.compare(h2.getScore(), h1.getScore());
+            if (result != 0) {
+                return result;
+            }
+            return Double.compare(getHostNormalizedLoad(h2, context), getHostNormalizedLoad(h1, context));
+        }
+    }
+
+    /**
+     * Compares VMs downward by normalized size
+     * ({@link #getVmNormalizedSize(VmResources, ClusterPlanningContext)}).
+     */
+    public class VmSizeDownwardComparator implements Comparator<VmResources> {
+        private ClusterPlanningContext context;
+
+        public VmSizeDownwardComparator(ClusterPlanningContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public int compare(VmResources vm1, VmResources vm2) {
+            return Double.compare(getVmNormalizedSize(vm2, context), getVmNormalizedSize(vm1, context));
+        }
+    }
+}
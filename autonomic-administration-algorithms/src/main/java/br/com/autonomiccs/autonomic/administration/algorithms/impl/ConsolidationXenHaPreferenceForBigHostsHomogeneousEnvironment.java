@@ -23,12 +23,11 @@
 package br.com.autonomiccs.autonomic.administration.algorithms.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
-import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 
 /**
  * Extends the {@link ConsolidationScoredPreferenceForBigHosts} overriding
@@ -43,12 +42,14 @@ public class ConsolidationXenHaPreferenceForBigHostsHomogeneousEnvironment exten
 
     protected VmsDispersionAlgorithmForHomogeneousEnvironment vmsDispersionHomogeneousHosts = new VmsDispersionAlgorithmForHomogeneousEnvironment();
 
-    protected long totalNumbersOfHostsInCluster = 0;
-
+    /**
+     * It sets the number of hosts of the cluster in the given context and ranks the hosts with
+     * {@link ConsolidationScoredPreferenceForBigHosts#rankHosts(List, ClusterPlanningContext)}.
+     */
     @Override
-    public List<HostResources> rankHosts(List<HostResources> hostsList) {
-        totalNumbersOfHostsInCluster = hostsList.size();
-        return super.rankHosts(hostsList);
+    public List<HostResources> rankHosts(List<HostResources> hostsList, ClusterPlanningContext context) {
+        context.setNumberOfHostsInCluster(hostsList.size());
+        return super.rankHosts(hostsList, context);
     }
 
     /**
@@ -57,37 +58,27 @@ public class ConsolidationXenHaPreferenceForBigHostsHomogeneousEnvironment exten
      * power off hosts until it has only 3.
      */
     @Override
-    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts) {
-        Map<Long, HostResources> vmsToHost = new HashMap<>();
+    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts, ClusterPlanningContext context) {
         if (rankedHosts.size() > 3) {
-            for (int i = rankedHosts.size() - 1; i > 2; i--) {
-                for (VmResources vmResources : rankedHosts.get(i).getVmsResources()) {
-                    for (HostResources hostCandidateToStayRunning : rankedHosts) {
-                        if (canMigrateVmToHost(vmResources, hostCandidateToStayRunning)) {
-                            vmsToHost.put(vmResources.getVmId(), hostCandidateToStayRunning);
-                            updateHostUsedResources(vmResources, hostCandidateToStayRunning);
-                            break;
-                        }
-                    }
-                }
-            }
-            return vmsToHost;
+            return mapVMsToFirstRankedHostThatCanAllocateThem(rankedHosts, 3);
         }
-        vmsDispersionHomogeneousHosts.rankHosts(rankedHosts);
-        return vmsDispersionHomogeneousHosts.mapVMsToHost(rankedHosts);
+        ClusterPlanningContext vmsDispersionContext = new ClusterPlanningContext();
+        vmsDispersionHomogeneousHosts.rankHosts(rankedHosts, vmsDispersionContext);
+        return vmsDispersionHomogeneousHosts.mapVMsToHost(rankedHosts, vmsDispersionContext);
     }
 
     /**
      * If the cluster size is of 4 hosts or bigger, it ranks the host according the super class (
-     * {@link ConsolidationScoredPreferenceForBigHosts#rankHostToPowerOff(List)})but removes 3 hosts
+     * {@link ConsolidationScoredPreferenceForBigHosts#rankHostToPowerOff(List, ClusterPlanningContext)})but removes 3 hosts
      * that are more interesting to keep running.
      */
     @Override
-    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts) {
+    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts, ClusterPlanningContext context) {
+        long totalNumbersOfHostsInCluster = context.getNumberOfHostsInCluster();
         if(totalNumbersOfHostsInCluster < 4){
             return new ArrayList<>();
         }
-        List<HostResources> rankedHostToPowerOff = super.rankHostToPowerOff(idleHosts);
+        List<HostResources> rankedHostToPowerOff = super.rankHostToPowerOff(idleHosts, context);
         long hostsThatAreBeingKeptUp = totalNumbersOfHostsInCluster - idleHosts.size();
         for (int i = 0; i < 3 - hostsThatAreBeingKeptUp; i++) {
             removeOneIfPossible(rankedHostToPowerOff);
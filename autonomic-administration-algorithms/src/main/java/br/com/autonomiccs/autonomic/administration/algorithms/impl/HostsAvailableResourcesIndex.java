@@ -0,0 +1,128 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.impl;
+
+import java.util.List;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+/**
+ * Index of the available resources of a ranked {@link List} of {@link HostResources}. It is a
+ * segment tree over the hosts ranking positions; each node keeps the maximum number of CPUs, the
+ * maximum available CPU and the maximum available memory of the hosts below it. It finds the first
+ * host (in the ranking order) that can allocate a VM in logarithmic time for most of the cases,
+ * instead of checking every host of the list.
+ *
+ * @note the available resources of the hosts are calculated by the given
+ *       {@link ConsolidationAlgorithmBase} and the final decision is taken by
+ *       {@link ConsolidationAlgorithmBase#canMigrateVmToHost(VmResources, HostResources)}; the
+ *       tree is only used to skip hosts that cannot allocate the VM.
+ */
+public class HostsAvailableResourcesIndex {
+
+    private final ConsolidationAlgorithmBase algorithm;
+    private final List<HostResources> rankedHosts;
+    private final int numberOfLeaves;
+
+    private final int[] maxCpus;
+    private final float[] maxAvailableCpu;
+    private final long[] maxAvailableMemory;
+
+    public HostsAvailableResourcesIndex(List<HostResources> rankedHosts, ConsolidationAlgorithmBase algorithm) {
+        this.algorithm = algorithm;
+        this.rankedHosts = rankedHosts;
+        int leaves = 1;
+        while (leaves < rankedHosts.size()) {
+            leaves = leaves << 1;
+        }
+        numberOfLeaves = leaves;
+        maxCpus = new int[2 * numberOfLeaves];
+        maxAvailableCpu = new float[2 * numberOfLeaves];
+        maxAvailableMemory = new long[2 * numberOfLeaves];
+        for (int node = numberOfLeaves + rankedHosts.size(); node < 2 * numberOfLeaves; node++) {
+            maxCpus[node] = Integer.MIN_VALUE;
+            maxAvailableCpu[node] = Float.NEGATIVE_INFINITY;
+            maxAvailableMemory[node] = Long.MIN_VALUE;
+        }
+        for (int i = 0; i < rankedHosts.size(); i++) {
+            updateLeaf(i);
+        }
+        for (int node = numberOfLeaves - 1; node > 0; node--) {
+            updateNode(node);
+        }
+    }
+
+    /**
+     * Returns the position of the first host of the ranked list that can allocate the given VM, or
+     * -1 if there is no host with enough resources.
+     */
+    public int findFirstHostThatCanAllocateVm(VmResources vm) {
+        return findFirstHostThatCanAllocateVm(1, vm, vm.getNumberOfCpus() * vm.getCpuSpeed(), vm.getMemoryInMegaBytes());
+    }
+
+    private int findFirstHostThatCanAllocateVm(int node, VmResources vm, long vmCpuNeeds, long vmMemory) {
+        if (maxCpus[node] < vm.getNumberOfCpus() || maxAvailableCpu[node] < vmCpuNeeds || maxAvailableMemory[node] < vmMemory) {
+            return -1;
+        }
+        if (node >= numberOfLeaves) {
+            int hostPosition = node - numberOfLeaves;
+            if (algorithm.canMigrateVmToHost(vm, rankedHosts.get(hostPosition))) {
+                return hostPosition;
+            }
+            return -1;
+        }
+        int hostPosition = findFirstHostThatCanAllocateVm(2 * node, vm, vmCpuNeeds, vmMemory);
+        if (hostPosition != -1) {
+            return hostPosition;
+        }
+        return findFirstHostThatCanAllocateVm(2 * node + 1, vm, vmCpuNeeds, vmMemory);
+    }
+
+    /**
+     * It must be called after the resources of the host at the given position change (e.g. after
+     * {@link ConsolidationAlgorithmBase#updateHostUsedResources(VmResources, HostResources)}).
+     */
+    public void updateHost(int hostPosition) {
+        updateLeaf(hostPosition);
+        for (int node = (numberOfLeaves + hostPosition) >> 1; node > 0; node = node >> 1) {
+            updateNode(node);
+        }
+    }
+
+    private void updateLeaf(int hostPosition) {
+        HostResources host = rankedHosts.get(hostPosition);
+        int leaf = numberOfLeaves + hostPosition;
+        maxCpus[leaf] = host.getCpus();
+        maxAvailableCpu[leaf] = algorithm.getHostAvailableCpu(host);
+        maxAvailableMemory[leaf] = algorithm.getHostAvailableMemory(host);
+    }
+
+    private void updateNode(int node) {
+        int left = 2 * node;
+        int right = left + 1;
+        maxCpus[node] = Math.max(maxCpus[left], maxCpus[right]);
+        maxAvailableCpu[node] = Math.max(maxAvailableCpu[left], maxAvailableCpu[right]);
+        maxAvailableMemory[node] = Math.max(maxAvailableMemory[left], maxAvailableMemory[right]);
+    }
+}
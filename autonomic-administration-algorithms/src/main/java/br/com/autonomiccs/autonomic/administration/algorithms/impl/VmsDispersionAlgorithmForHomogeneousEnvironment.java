@@ -22,66 +22,79 @@
  */
 package br.com.autonomiccs.autonomic.administration.algorithms.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
 import org.apache.commons.math3.util.MathUtils;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.DispersionClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
+import br.com.autonomiccs.autonomic.administration.algorithms.statistics.StreamingStandardDeviation;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostCapacity;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.PlanningOverlay;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmDemand;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 
 /**
  * This class provides heuristics that allows the manager to balance the cluster workload among its
  * hosts. This heuristic does not power off hosts, its actions are related to VMs migrations.
+ * <p>
+ * While ranking the hosts, it computes the following values of the cluster, kept in the
+ * {@link ClusterPlanningContext} and used to map the VMs:
+ * <ul>
+ * <li>cluster memory usage average: the sum of hosts used memory divided by the number of hosts;</li>
+ * <li>standard deviation of VMs memory configuration: it considers scenarios where there are a high
+ * variability in the VMs amount of resources, given the maximum and minimum load allowed
+ * considering that some VMs might be big;</li>
+ * <li>standard deviation of hosts memory usage: it considers the heterogeneous usage of resources
+ * in the hosts, if the usage is very different, it will have a higher standard deviation and allows
+ * the maximum and minimum load based on this evaluation;</li>
+ * <li>standard deviation average: the average between both standard deviations above.</li>
+ * </ul>
  */
-public class VmsDispersionAlgorithmForHomogeneousEnvironment extends ConsolidationScoredPreferenceForSmallHosts {
+public class VmsDispersionAlgorithmForHomogeneousEnvironment extends ConsolidationScoredPreferenceForSmallHosts implements DispersionClusterAdministrationHeuristicAlgorithm {
 
     /**
-     * Represents the sum of hosts used memory divided by the sum of hosts total memory.
+     * Default number of standard deviations simulated by
+     * {@link #mapVMsToHost(List, ClusterPlanningContext)}: the standard deviation of VMs memory
+     * configuration, the standard deviation average and the standard deviation of hosts memory
+     * usage.
      */
-    private double clusterMemoryUsageAverage;
+    public final static int DEFAULT_NUMBER_OF_STANDARD_DEVIATION_CANDIDATES = 3;
 
     /**
-     * Standard deviation of VMs memory configuration. This value considers scenarios where there
-     * are a high variability in the VMs amount of resources, given the maximum and minimum load
-     * allowed considering that some VMs might be big.
+     * Pool shared by all instances of this heuristic to execute the VMs migrations simulations.
      */
-    private double standardDeviationVmsConfiguration;
+    protected final static ForkJoinPool SIMULATIONS_POOL = new ForkJoinPool();
 
-    /**
-     * Standard deviation of hosts memory usage. This value considers the heterogeneous usage of
-     * resources in the hosts, if the usage is very different, it will have a higher standard
-     * deviation and allows the maximum and minimum load based on this evaluation.
-     */
-    private double standardDeviationHostsUsage;
-
-    /**
-     * It is the average between the {@link #standardDeviationVmsConfiguration} and
-     * {@link #standardDeviationHostsUsage} standard deviation values.
-     */
-    private double standardDeviationAverage;
-
-    private StandardDeviation std = new StandardDeviation(false);
+    private int numberOfStandardDeviationCandidates = DEFAULT_NUMBER_OF_STANDARD_DEVIATION_CANDIDATES;
 
     public VmsDispersionAlgorithmForHomogeneousEnvironment() {
         canHeuristicShutdownHost = false;
     }
 
     /**
-     * It ranks hosts to receive VMs. It clones the given list (using
-     * {@link #cloneListOfHosts(List)}),
-     * sets each host score using {@link #setEachHostScore(List)} and sorts the list using
+     * It ranks hosts to receive VMs. It updates the cluster memory usage statistics of the given
+     * context (using {@link #clusterMemoryUsagePercentage(List, ClusterPlanningContext)}), clones
+     * the given list (using {@link #cloneListOfHosts(List)}), sets each host score using
+     * {@link #setEachHostScore(List, ClusterPlanningContext)} and sorts the list using
      * {@link #sortHosts(List)} method.
      */
     @Override
-    public List<HostResources> rankHosts(List<HostResources> hostsList) {
-        clusterMemoryUsagePercentage(hostsList);
+    public List<HostResources> rankHosts(List<HostResources> hostsList, ClusterPlanningContext context) {
+        clusterMemoryUsagePercentage(hostsList, context);
         List<HostResources> sortedHosts = cloneListOfHosts(hostsList);
-        setEachHostScore(sortedHosts);
+        setEachHostScore(sortedHosts, context);
         sortHosts(sortedHosts);
         return sortedHosts;
     }
@@ -98,7 +111,7 @@ public class VmsDispersionAlgorithmForHomogeneousEnvironment extends Consolidati
      * It clones the given list using the {@link #cloneListOfHosts(List)} method
      */
     @Override
-    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts) {
+    public List<HostResources> rankHostToPowerOff(List<HostResources> idleHosts, ClusterPlanningContext context) {
         return cloneListOfHosts(idleHosts);
     }
 
@@ -107,7 +120,7 @@ public class VmsDispersionAlgorithmForHomogeneousEnvironment extends Consolidati
      * memory)
      */
     @Override
-    protected double calculateHostScore(HostResources host) {
+    protected double calculateHostScore(HostResources host, ClusterPlanningContext context) {
         if (host.getUsedMemoryInMegaBytes() != 0) {
             return (host.getTotalMemoryInBytes() / BYTES_TO_MEGA_BYTES) / host.getUsedMemoryInMegaBytes();
         }
@@ -123,119 +136,265 @@ public class VmsDispersionAlgorithmForHomogeneousEnvironment extends Consolidati
     }
 
     /**
-     * It updates the cluster memory usage average, and the standard deviations (
-     * {@link #clusterMemoryUsageAverage}, {@link #standardDeviationAverage},
-     * {@link #standardDeviationHostsUsage}, {@link #standardDeviationVmsConfiguration})
+     * It updates the cluster memory usage average and the standard deviations (of VMs memory
+     * configuration, of hosts memory usage and their average) of the given context in a single pass
+     * over the hosts and their VMs.
      */
-    protected void clusterMemoryUsagePercentage(List<HostResources> hosts) {
+    protected void clusterMemoryUsagePercentage(List<HostResources> hosts, ClusterPlanningContext context) {
         double clusterUsedMemory = 0;
-        double vmsUsedMemory[] = null;
-        double hostsUsedMemory[] = new double[hosts.size()];
-        for (int hostIterator = 0; hostIterator < hosts.size(); hostIterator++) {
-            List<VmResources> vmsResources = hosts.get(hostIterator).getVmsResources();
-            double hostVmsUsedMemory[] = new double[vmsResources.size()];
-            for (int vmIterator = 0; vmIterator < vmsResources.size(); vmIterator++) {
-                hostVmsUsedMemory[vmIterator] = vmsResources.get(vmIterator).getMemoryInMegaBytes();
+        StreamingStandardDeviation vmsUsedMemory = new StreamingStandardDeviation();
+        StreamingStandardDeviation hostsUsedMemory = new StreamingStandardDeviation();
+        for (HostResources host : hosts) {
+            for (VmResources vmResources : host.getVmsResources()) {
+                vmsUsedMemory.add(vmResources.getMemoryInMegaBytes());
             }
-            vmsUsedMemory = ArrayUtils.addAll(vmsUsedMemory, hostVmsUsedMemory);
-
-            long hostUsedMemoryInMegaBytes = hosts.get(hostIterator).getUsedMemoryInMegaBytes();
-            hostsUsedMemory[hostIterator] = hostUsedMemoryInMegaBytes;
+            long hostUsedMemoryInMegaBytes = host.getUsedMemoryInMegaBytes();
+            hostsUsedMemory.add(hostUsedMemoryInMegaBytes);
             clusterUsedMemory += hostUsedMemoryInMegaBytes;
         }
-        clusterMemoryUsageAverage = clusterUsedMemory / hosts.size();
-        standardDeviationVmsConfiguration = std.evaluate(vmsUsedMemory);
-        standardDeviationHostsUsage = std.evaluate(hostsUsedMemory);
-        standardDeviationAverage = (standardDeviationVmsConfiguration + standardDeviationHostsUsage) / 2;
+        context.setClusterMemoryUsageAverage(clusterUsedMemory / hosts.size());
+        context.setStandardDeviationVmsConfiguration(vmsUsedMemory.getStandardDeviation());
+        context.setStandardDeviationHostsUsage(hostsUsedMemory.getStandardDeviation());
+        context.setStandardDeviationAverage((context.getStandardDeviationVmsConfiguration() + context.getStandardDeviationHostsUsage()) / 2);
+    }
+
+    /**
+     * Creates a {@link StreamingStandardDeviation} with the memory usage of the given hosts.
+     */
+    protected StreamingStandardDeviation createHostsUsedMemoryStandardDeviation(List<HostResources> hosts) {
+        StreamingStandardDeviation hostsUsedMemory = new StreamingStandardDeviation();
+        for (HostResources host : hosts) {
+            hostsUsedMemory.add(host.getUsedMemoryInMegaBytes());
+        }
+        return hostsUsedMemory;
     }
 
     /**
      * It maps VMs from hosts with lower score (interest in distribute some of its VMs) to hosts
      * with
-     * higher score (interesting to allocate more VMs). This methods simulates three different
-     * mappings methods; the simulation that give the best standard deviation on the hosts workload
-     * will be the chosen one. Each simulation is done by calling the {@link simulateVmsMigrations}
-     * method with a different standard deviation ({@link #standardDeviationVmsConfiguration},
-     * {@link #standardDeviationHostsUsage}, {@link #standardDeviationAverage}).
+     * higher score (interesting to allocate more VMs). This methods simulates different mappings
+     * (one for each standard deviation returned by
+     * {@link #getStandardDeviationCandidates(ClusterPlanningContext)}); the simulation that give the
+     * best standard deviation on the hosts workload will be the chosen one. Each simulation is done
+     * by calling the {@link simulateVmsMigrations} method with a different standard deviation. By
+     * default, the standard deviations are the standard deviation of VMs memory configuration, the
+     * standard deviation average and the standard deviation of hosts memory usage (computed by
+     * {@link #rankHosts(List, ClusterPlanningContext)} in the given context).
      * The standard deviation is used to give a maximum load in each host (host average load +
      * standard deviation) and the minimum load (host average load - standard deviation).
+     *
+     * @note the simulations are independent from each other (each one records its migrations in
+     *       its own {@link PlanningOverlay}, sharing the {@link HostCapacity} created by
+     *       {@link #createHostsCapacities(List)}); therefore, they are executed concurrently at the
+     *       {@link #SIMULATIONS_POOL}.
      */
     @Override
-    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts) {
-        if (MathUtils.equals(standardDeviationHostsUsage, 0)) {
+    public Map<Long, HostResources> mapVMsToHost(List<HostResources> rankedHosts, ClusterPlanningContext context) {
+        if (MathUtils.equals(context.getStandardDeviationHostsUsage(), 0)) {
             return new HashMap<>();
         }
-        List<HostResources> rankedHostsStdVms = cloneListOfHosts(rankedHosts);
-        List<HostResources> rankedHostsStdHosts = cloneListOfHosts(rankedHosts);
-        List<HostResources> rankedHostsStdAverage = cloneListOfHosts(rankedHosts);
+        double[] standardDeviationCandidates = getStandardDeviationCandidates(context);
+        List<HostCapacity> rankedHostsCapacities = createHostsCapacities(rankedHosts);
+        List<StreamingStandardDeviation> hostsUsedMemoryOfSimulations = new ArrayList<>();
+        List<PlanningOverlay> plansOfSimulations = new ArrayList<>();
+        List<Callable<Map<Long, Long>>> simulations = new ArrayList<>();
+        for (double standardDeviation : standardDeviationCandidates) {
+            StreamingStandardDeviation hostsUsedMemory = createHostsUsedMemoryStandardDeviation(rankedHosts);
+            hostsUsedMemoryOfSimulations.add(hostsUsedMemory);
+            PlanningOverlay plan = new PlanningOverlay(rankedHostsCapacities);
+            plansOfSimulations.add(plan);
+            simulations.add(createSimulationOfVmsMigrations(plan, standardDeviation, hostsUsedMemory, context));
+        }
 
-        logger.debug("Simulating migration mapping with VMs resource standard deviation");
-        Map<Long, HostResources> vmsToHostStdVms = simulateVmsMigrations(rankedHostsStdVms, standardDeviationVmsConfiguration);
+        logger.debug(String.format("Simulating [%d] migration mappings with standard deviations %s", standardDeviationCandidates.length,
+                Arrays.toString(standardDeviationCandidates)));
+        List<Future<Map<Long, Long>>> simulationsResults = SIMULATIONS_POOL.invokeAll(simulations);
+
+        Map<Long, Long> bestVmsToHost = new HashMap<>();
+        PlanningOverlay bestPlan = null;
+        double bestStd = Double.POSITIVE_INFINITY;
+        for (int candidate : getStandardDeviationCandidatesPreferenceOrder(standardDeviationCandidates.length)) {
+            Map<Long, Long> vmsToHost = getSimulationResult(simulationsResults.get(candidate));
+            if (vmsToHost == null) {
+                continue;
+            }
+            double stdAchieved = hostsUsedMemoryOfSimulations.get(candidate).getStandardDeviation();
+            logger.debug(String.format("The Std. achieved using [%f] as the standard deviation parameter for the simulation was [%f]", standardDeviationCandidates[candidate],
+                    stdAchieved));
+            if (stdAchieved < bestStd) {
+                bestStd = stdAchieved;
+                bestVmsToHost = vmsToHost;
+                bestPlan = plansOfSimulations.get(candidate);
+            }
+        }
+        logger.debug(String.format("The number of migrations that will be executed is[%d].", bestVmsToHost.size()));
+        return createVmsToHostMap(bestVmsToHost, bestPlan, rankedHosts);
+    }
 
-        logger.debug("Simulating migration mapping with hosts resource standard deviation");
-        Map<Long, HostResources> vmsToHostStdHosts = simulateVmsMigrations(rankedHostsStdHosts, standardDeviationHostsUsage);
+    /**
+     * It creates the (immutable) {@link HostCapacity} of each given host, keeping the order of the
+     * given {@link List}.
+     */
+    protected List<HostCapacity> createHostsCapacities(List<HostResources> hosts) {
+        List<HostCapacity> hostsCapacities = new ArrayList<>(hosts.size());
+        for (HostResources host : hosts) {
+            hostsCapacities.add(new HostCapacity(host));
+        }
+        return hostsCapacities;
+    }
 
-        logger.debug("Simulating migration mapping with the average of hosts resource and VMs resource standard deviation");
-        Map<Long, HostResources> vmsToHostStdAverage = simulateVmsMigrations(rankedHostsStdAverage, standardDeviationAverage);
+    /**
+     * It maps each VM 'id' to the {@link HostResources} of the host whose 'id' is mapped to the VM
+     * in the given map. Only the target hosts are copied (from the given hosts), with the VMs and
+     * usage they have in the given plan.
+     */
+    protected Map<Long, HostResources> createVmsToHostMap(Map<Long, Long> vmsToHostId, PlanningOverlay plan, List<HostResources> hosts) {
+        Map<Long, HostResources> hostsById = new HashMap<>();
+        for (HostResources host : hosts) {
+            hostsById.put(host.getHostId(), host);
+        }
+        Map<Long, HostResources> targetHosts = new HashMap<>();
+        Map<Long, HostResources> vmsToHost = new HashMap<>();
+        for (Map.Entry<Long, Long> vmToHostId : vmsToHostId.entrySet()) {
+            HostResources targetHost = targetHosts.get(vmToHostId.getValue());
+            if (targetHost == null) {
+                targetHost = createPlannedHost(hostsById.get(vmToHostId.getValue()), plan);
+                targetHosts.put(vmToHostId.getValue(), targetHost);
+            }
+            vmsToHost.put(vmToHostId.getKey(), targetHost);
+        }
+        return vmsToHost;
+    }
 
-        double usedMemoryHostsWithStdVms[] = new double[rankedHosts.size()];
-        for (int i = 0; i < rankedHostsStdVms.size(); i++) {
-            usedMemoryHostsWithStdVms[i] = rankedHostsStdVms.get(i).getUsedMemoryInMegaBytes();
+    /**
+     * It creates a copy of the given {@link HostResources} with the VMs and usage (cpu and memory)
+     * that the host has in the given plan.
+     */
+    protected HostResources createPlannedHost(HostResources host, PlanningOverlay plan) {
+        HostCapacity hostCapacity = plan.getHost(host.getHostId());
+        List<VmResources> vms = new ArrayList<>();
+        for (VmDemand vm : plan.getHostVms(hostCapacity)) {
+            vms.add(new VmResources(vm.getVmId(), vm.getNumberOfCpus(), vm.getCpuSpeed(), vm.getMemoryInMegaBytes()));
+        }
+        HostResources plannedHost = cloneListOfHosts(Collections.singletonList(host)).get(0);
+        plannedHost.setVmsResources(vms);
+        plannedHost.setUsedCpu(plan.getHostUsedCpu(hostCapacity));
+        plannedHost.setUsedMemoryInMegaBytes(plan.getHostUsedMemoryInMegaBytes(hostCapacity));
+        return plannedHost;
+    }
+
+    /**
+     * Returns the standard deviations used to simulate the VMs migrations. They are
+     * {@link #numberOfStandardDeviationCandidates} values evenly spaced from the standard deviation
+     * of VMs memory configuration to the standard deviation of hosts memory usage of the given
+     * context; if only one candidate is configured, it returns the standard deviation average.
+     */
+    protected double[] getStandardDeviationCandidates(ClusterPlanningContext context) {
+        if (numberOfStandardDeviationCandidates < 2) {
+            return new double[] {context.getStandardDeviationAverage()};
         }
-        double stdWithStdVms = std.evaluate(usedMemoryHostsWithStdVms);
-        logger.debug(String.format("The Std. achieved using the VMs resource standard deviation as parameter for the simulation was [%f]", stdWithStdVms));
-        double usedMemoryHostsWithStdHost[] = new double[rankedHosts.size()];
-        for (int i = 0; i < rankedHostsStdHosts.size(); i++) {
-            usedMemoryHostsWithStdHost[i] = rankedHostsStdHosts.get(i).getUsedMemoryInMegaBytes();
+        double standardDeviationVmsConfiguration = context.getStandardDeviationVmsConfiguration();
+        double standardDeviationHostsUsage = context.getStandardDeviationHostsUsage();
+        double[] standardDeviationCandidates = new double[numberOfStandardDeviationCandidates];
+        int intervals = numberOfStandardDeviationCandidates - 1;
+        for (int k = 0; k < numberOfStandardDeviationCandidates; k++) {
+            standardDeviationCandidates[k] = ((intervals - k) * standardDeviationVmsConfiguration + k * standardDeviationHostsUsage) / intervals;
         }
-        double stdWithStdHosts = std.evaluate(usedMemoryHostsWithStdHost);
-        logger.debug(String.format("The Std. achieved using the hosts resource standard deviation as parameter for the simulation was [%f]", stdWithStdHosts));
+        return standardDeviationCandidates;
+    }
 
-        double usedMemoryHostsWithStdAverage[] = new double[rankedHosts.size()];
-        for (int i = 0; i < rankedHostsStdAverage.size(); i++) {
-            usedMemoryHostsWithStdAverage[i] = rankedHostsStdAverage.get(i).getUsedMemoryInMegaBytes();
+    /**
+     * Returns the indexes of the standard deviation candidates in the order that they are preferred
+     * when their simulations achieve the same result; it starts from the middle candidate (the
+     * average), then goes alternately towards the standard deviation of hosts memory usage and the
+     * standard deviation of VMs memory configuration.
+     */
+    protected List<Integer> getStandardDeviationCandidatesPreferenceOrder(int numberOfCandidates) {
+        List<Integer> preferenceOrder = new ArrayList<>();
+        int middle = (numberOfCandidates - 1) / 2;
+        if (numberOfCandidates % 2 == 0) {
+            preferenceOrder.add(middle + 1);
         }
-        double stdWithStdAverage = std.evaluate(usedMemoryHostsWithStdAverage);
-        logger.debug(String.format("The Std. achieved using the average between hosts resource and VMs resource standard deviation as parameter for the simulation was [%f]",
-                stdWithStdAverage));
-
-        if (stdWithStdAverage <= stdWithStdHosts && stdWithStdAverage <= stdWithStdVms) {
-            logger.debug("The simulation that won the competition was the one executed with alpha as the average of host resource and VMs resource standard deviation.");
-            logger.debug(String.format("The number of migrations that will be executed is[%d].", vmsToHostStdAverage.size()));
-            return vmsToHostStdAverage;
+        preferenceOrder.add(middle);
+        for (int distance = 1; preferenceOrder.size() < numberOfCandidates; distance++) {
+            if (numberOfCandidates % 2 == 0) {
+                preferenceOrder.add(middle + 1 + distance);
+                preferenceOrder.add(middle - distance);
+            } else {
+                preferenceOrder.add(middle + distance);
+                preferenceOrder.add(middle - distance);
+            }
         }
-        if (stdWithStdHosts <= stdWithStdVms) {
-            logger.debug("The simulation that won the competition was the one executed with alpha as the host resource standard deviation.");
-            logger.debug(String.format("The number of migrations that will be executed is[%d].", vmsToHostStdHosts.size()));
-            return vmsToHostStdHosts;
+        return preferenceOrder;
+    }
+
+    private Callable<Map<Long, Long>> createSimulationOfVmsMigrations(final PlanningOverlay plan, final double standardDeviation,
+            final StreamingStandardDeviation hostsUsedMemory, final ClusterPlanningContext context) {
+        return new Callable<Map<Long, Long>>() {
+            @Override
+            public Map<Long, Long> call() {
+                return simulateVmsMigrations(plan, standardDeviation, hostsUsedMemory, context);
+            }
+        };
+    }
+
+    /**
+     * Returns the result of the given simulation or null if the simulation failed.
+     */
+    private Map<Long, Long> getSimulationResult(Future<Map<Long, Long>> simulationResult) {
+        try {
+            return simulationResult.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for the VMs migrations simulation", e);
+        } catch (ExecutionException e) {
+            logger.error("Problems while simulating VMs migrations", e);
         }
-        logger.debug("The simulation that won the competition was the one executed with alpha as the VMs resource standard deviation.");
-        logger.debug(String.format("The number of migrations that will be executed is[%d].", vmsToHostStdVms.size()));
-        return vmsToHostStdVms;
+        return null;
     }
 
+    @Override
+    public int getNumberOfStandardDeviationCandidates() {
+        return numberOfStandardDeviationCandidates;
+    }
 
     /**
-     * For a given a list of {@link HostResources} and a value that represents the standard
-     * deviation it maps virtual machine migrations. The standar deviation is used as a
+     * Sets the number of standard deviations (alpha values) simulated by
+     * {@link #mapVMsToHost(List, ClusterPlanningContext)}; values lower than 1 are treated as 1.
      */
-    protected Map<Long, HostResources> simulateVmsMigrations(List<HostResources> rankedHosts, double standardDeviation) {
-        Map<Long, HostResources> vmsToHost = new HashMap<>();
+    @Override
+    public void setNumberOfStandardDeviationCandidates(int numberOfStandardDeviationCandidates) {
+        this.numberOfStandardDeviationCandidates = Math.max(1, numberOfStandardDeviationCandidates);
+    }
+
+    /**
+     * For a given plan (whose hosts are ranked) and a value that represents the standard
+     * deviation it maps virtual machine migrations; the migrations are recorded in the given
+     * {@link PlanningOverlay}, the hosts are not changed. The given
+     * {@link StreamingStandardDeviation} of the hosts memory usage is updated after each VM
+     * migration mapped. The cluster memory usage average is read from the given context.
+     *
+     * @return the VMs mapped ('id' of the VM) to the 'id' of the host they will be migrated to.
+     */
+    protected Map<Long, Long> simulateVmsMigrations(PlanningOverlay plan, double standardDeviation, StreamingStandardDeviation hostsUsedMemory,
+            ClusterPlanningContext context) {
+        Map<Long, Long> vmsToHost = new HashMap<>();
+        List<HostCapacity> rankedHosts = plan.getHosts();
+        double clusterMemoryUsageAverage = context.getClusterMemoryUsageAverage();
 
         double hostMemoryMinimumUsageAllowed = clusterMemoryUsageAverage - standardDeviation;
         for (int i = rankedHosts.size() - 1; i > 0; i--) {
-            HostResources hostToBeOffLoaded = rankedHosts.get(i);
-            if (hostToBeOffLoaded.getUsedMemoryInMegaBytes() > hostMemoryMinimumUsageAllowed) {
-
-                for (HostResources hostCandidateToReceiveVMs : rankedHosts) {
-                    if (hostCandidateToReceiveVMs.getUsedMemoryInMegaBytes() <= clusterMemoryUsageAverage) {
-
-                        List<VmResources> clonedListOfVms = cloneHostVmsList(hostToBeOffLoaded);
-                        for (VmResources vmResources : clonedListOfVms) {
-                            if (isMemoryUsageOfHostsAfterVmMigration(vmResources, hostToBeOffLoaded, hostCandidateToReceiveVMs, standardDeviation)
-                                    && canMigrateVmToHost(vmResources, hostCandidateToReceiveVMs)) {
-                                updateHostUsedResources(vmResources, hostToBeOffLoaded, hostCandidateToReceiveVMs);
-                                vmsToHost.put(vmResources.getVmId(), hostCandidateToReceiveVMs);
+            HostCapacity hostToBeOffLoaded = rankedHosts.get(i);
+            if (plan.getHostUsedMemoryInMegaBytes(hostToBeOffLoaded) > hostMemoryMinimumUsageAllowed) {
+
+                for (HostCapacity hostCandidateToReceiveVMs : rankedHosts) {
+                    if (plan.getHostUsedMemoryInMegaBytes(hostCandidateToReceiveVMs) <= clusterMemoryUsageAverage) {
+
+                        for (VmDemand vm : plan.getHostVms(hostToBeOffLoaded)) {
+                            if (isMemoryUsageOfHostsAfterVmMigration(plan, vm, hostToBeOffLoaded, hostCandidateToReceiveVMs, standardDeviation, clusterMemoryUsageAverage)
+                                    && plan.canAllocateVm(vm, hostCandidateToReceiveVMs)) {
+                                updateHostUsedResources(plan, vm, hostToBeOffLoaded, hostCandidateToReceiveVMs, hostsUsedMemory);
+                                vmsToHost.put(vm.getVmId(), hostCandidateToReceiveVMs.getHostId());
                             }
                         }
                     }
@@ -245,18 +404,19 @@ public class VmsDispersionAlgorithmForHomogeneousEnvironment extends Consolidati
         return vmsToHost;
     }
 
-
     /**
-     * It updates the resources counting (used cpu and memory) from the host that the VM resids on
-     * and the target host to be migrated.
+     * It migrates the VM to the target host in the given plan (which updates the resources counting
+     * of the host that the VM resids on and of the target host); it also updates the standard
+     * deviation of the hosts memory usage.
      */
-    private void updateHostUsedResources(VmResources vm, HostResources hostVmResidOn, HostResources targetHost) {
-        super.updateHostUsedResources(vm, targetHost);
-        targetHost.getVmsResources().add(vm);
-
-        hostVmResidOn.getVmsResources().remove(vm);
-        hostVmResidOn.setUsedCpu(hostVmResidOn.getUsedCpu() - (vm.getCpuSpeed() * vm.getNumberOfCpus()));
-        hostVmResidOn.setUsedMemoryInMegaBytes(hostVmResidOn.getUsedMemoryInMegaBytes() - vm.getMemoryInMegaBytes());
+    private void updateHostUsedResources(PlanningOverlay plan, VmDemand vm, HostCapacity hostVmResidOn, HostCapacity targetHost, StreamingStandardDeviation hostsUsedMemory) {
+        long vmMemoryInMegaBytes = vm.getMemoryInMegaBytes();
+        long hostVmResidOnUsedMemory = plan.getHostUsedMemoryInMegaBytes(hostVmResidOn);
+        long targetHostUsedMemory = plan.getHostUsedMemoryInMegaBytes(targetHost);
+        hostsUsedMemory.replace(hostVmResidOnUsedMemory, hostVmResidOnUsedMemory - vmMemoryInMegaBytes);
+        hostsUsedMemory.replace(targetHostUsedMemory, targetHostUsedMemory + vmMemoryInMegaBytes);
+
+        plan.migrateVm(vm, targetHost);
     }
 
     /**
@@ -264,17 +424,20 @@ public class VmsDispersionAlgorithmForHomogeneousEnvironment extends Consolidati
      * {@link #hostMemoryMinimumUsageAllowedStdVms}; and if the target host usage will stay below
      * the {@link #hostMemoryMaximumUsageAllowedStdVms} after the migration.
      */
-    private boolean isMemoryUsageOfHostsAfterVmMigration(VmResources vmResources, HostResources hostVmResidOn, HostResources targetHost, double standarDeviation) {
-        if (hostVmResidOn.getUsedMemoryInMegaBytes() == targetHost.getUsedMemoryInMegaBytes()) {
+    private boolean isMemoryUsageOfHostsAfterVmMigration(PlanningOverlay plan, VmDemand vm, HostCapacity hostVmResidOn, HostCapacity targetHost, double standarDeviation,
+            double clusterMemoryUsageAverage) {
+        long hostVmResidOnUsedMemory = plan.getHostUsedMemoryInMegaBytes(hostVmResidOn);
+        long targetHostUsedMemory = plan.getHostUsedMemoryInMegaBytes(targetHost);
+        if (hostVmResidOnUsedMemory == targetHostUsedMemory) {
             return false;
         }
-        long vmMemoryInMegaBytes = vmResources.getMemoryInMegaBytes();
-        long hostMemoryAfterMigrateVm = hostVmResidOn.getUsedMemoryInMegaBytes() - vmMemoryInMegaBytes;
-        long targetHostMemoryUsageAfterReceiveVM = targetHost.getUsedMemoryInMegaBytes() + vmMemoryInMegaBytes;
+        long vmMemoryInMegaBytes = vm.getMemoryInMegaBytes();
+        long hostMemoryAfterMigrateVm = hostVmResidOnUsedMemory - vmMemoryInMegaBytes;
+        long targetHostMemoryUsageAfterReceiveVM = targetHostUsedMemory + vmMemoryInMegaBytes;
 
         double hostMemoryMinimumUsageAllowed = clusterMemoryUsageAverage - standarDeviation;
         double hostMemoryMaximumUsageAllowed = clusterMemoryUsageAverage + standarDeviation;
 
         return hostMemoryMinimumUsageAllowed <= hostMemoryAfterMigrateVm && targetHostMemoryUsageAfterReceiveVM < hostMemoryMaximumUsageAllowed;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,140 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.planners;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
+
+/**
+ * Selects alternative target hosts for migrations that failed. To never overcommit a host, the
+ * selection considers the peak usage of each host while the {@link MigrationGraph} is executed:
+ * its current usage plus the resources of every VM migrating to it (VMs leaving the host are not
+ * subtracted, since they may not have left it yet). Hosts that are the source of migrations are
+ * never selected, since they are being evacuated.
+ *
+ * The resources of the VMs sent to alternative hosts are added to the peak usage of those hosts.
+ */
+public class AlternativeTargetHostSelector {
+
+    private final ClusterSnapshot snapshot;
+    private final Map<Long, Long> hostsClusters;
+    private final Map<Long, Integer> vmsIndexes = new HashMap<>();
+    private final Set<Long> sourceHostsIds = new HashSet<>();
+    private final long[] hostsPeakUsedCpu;
+    private final long[] hostsPeakUsedMemoryInMegaBytes;
+
+    /**
+     * @param clusterSnapshot
+     *            snapshot with the current allocation of the VMs
+     * @param hostsClusters
+     *            cluster 'id' of each host ('id') of the snapshot
+     */
+    public AlternativeTargetHostSelector(ClusterSnapshot clusterSnapshot, MigrationGraph migrationGraph, Map<Long, Long> hostsClusters) {
+        this.snapshot = clusterSnapshot;
+        this.hostsClusters = hostsClusters;
+        int numberOfHosts = snapshot.getNumberOfHosts();
+        hostsPeakUsedCpu = new long[numberOfHosts];
+        hostsPeakUsedMemoryInMegaBytes = new long[numberOfHosts];
+        for (int host = 0; host < numberOfHosts; host++) {
+            hostsPeakUsedCpu[host] = snapshot.getHostUsedCpu(host);
+            hostsPeakUsedMemoryInMegaBytes[host] = snapshot.getHostUsedMemoryInMegaBytes(host);
+        }
+        for (int vm = 0; vm < snapshot.getNumberOfVms(); vm++) {
+            vmsIndexes.put(snapshot.getVmId(vm), vm);
+        }
+        for (VmMigration migration : migrationGraph.getMigrations()) {
+            sourceHostsIds.add(migration.getSourceHostId());
+            Integer vm = vmsIndexes.get(migration.getVmId());
+            int targetHost = snapshot.getHostIndex(migration.getTargetHostId());
+            if (vm != null && targetHost >= 0) {
+                addVmToHostPeakUsage(vm, targetHost);
+            }
+        }
+    }
+
+    /**
+     * It returns the 'id' of the host, in the cluster of the target host of the given migration,
+     * that can allocate the VM at its peak usage and that would have the least memory available
+     * after receiving it (best fit); the resources of the VM are added to the peak usage of the
+     * selected host. The source host of the migration and the given excluded hosts are not
+     * selected. If no host can allocate the VM, it returns null.
+     */
+    public Long selectAlternativeTargetHost(VmMigration migration, Set<Long> excludedHostsIds) {
+        Integer vm = vmsIndexes.get(migration.getVmId());
+        if (vm == null) {
+            return null;
+        }
+        int selectedHost = -1;
+        long selectedHostRemainingMemory = Long.MAX_VALUE;
+        for (int host = 0; host < snapshot.getNumberOfHosts(); host++) {
+            long hostId = snapshot.getHostId(host);
+            if (hostId == migration.getSourceHostId() || excludedHostsIds.contains(hostId) || sourceHostsIds.contains(hostId)) {
+                continue;
+            }
+            Long hostClusterId = hostsClusters.get(hostId);
+            if (hostClusterId == null || hostClusterId != migration.getTargetClusterId() || !canAllocateVmAtPeakUsage(vm, host)) {
+                continue;
+            }
+            long remainingMemory = getHostPeakAvailableMemoryInMegaBytes(host) - snapshot.getVmMemoryInMegaBytes(vm);
+            if (remainingMemory < selectedHostRemainingMemory) {
+                selectedHost = host;
+                selectedHostRemainingMemory = remainingMemory;
+            }
+        }
+        if (selectedHost < 0) {
+            return null;
+        }
+        addVmToHostPeakUsage(vm, selectedHost);
+        return snapshot.getHostId(selectedHost);
+    }
+
+    /**
+     * Checks if the host can allocate the VM, with the rules of
+     * {@link ClusterSnapshot#canAllocateVm(int, int)}, considering the peak usage of the host.
+     */
+    protected boolean canAllocateVmAtPeakUsage(int vm, int host) {
+        if (snapshot.getHostCpus(host) < snapshot.getVmCpus(vm)) {
+            return false;
+        }
+        float hostPeakAvailableCpu = (snapshot.getHostCpuOverprovisioning(host) * snapshot.getHostCpuSpeed(host) * snapshot.getHostCpus(host)) - hostsPeakUsedCpu[host];
+        if (hostPeakAvailableCpu < snapshot.getVmCpuDemand(vm)) {
+            return false;
+        }
+        return getHostPeakAvailableMemoryInMegaBytes(host) >= snapshot.getVmMemoryInMegaBytes(vm);
+    }
+
+    private long getHostPeakAvailableMemoryInMegaBytes(int host) {
+        return (long) (snapshot.getHostMemoryOverprovisioning(host) * snapshot.getHostTotalMemoryInMegaBytes(host)) - hostsPeakUsedMemoryInMegaBytes[host];
+    }
+
+    private void addVmToHostPeakUsage(int vm, int host) {
+        hostsPeakUsedCpu[host] += snapshot.getVmCpuDemand(vm);
+        hostsPeakUsedMemoryInMegaBytes[host] += snapshot.getVmMemoryInMegaBytes(vm);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.planners;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.CrossClusterConsolidationPlan;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationPlan;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterResourcesUp;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+/**
+ * Plans the consolidation of a set of clusters at once (clusters whose VMs can be migrated from one
+ * to another, e.g. clusters of the same zone with the same hypervisor type and zone wide storage).
+ * The hosts of all clusters are ranked and mapped by the given
+ * {@link ClusterAdministrationHeuristicAlgorithm} as if they were a single cluster; therefore,
+ * fragmented capacity spread among the clusters can be reclaimed.
+ */
+public class CrossClusterConsolidationPlanner {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * It creates the {@link CrossClusterConsolidationPlan} of the given clusters. The VMs mapping
+     * of the algorithm
+     * ({@link ClusterAdministrationHeuristicAlgorithm#mapVMsToHost(List, ClusterPlanningContext)},
+     * with a context created for this plan) is applied over a {@link ClusterSnapshot} of the clusters, discarding migrations of pinned VMs to
+     * other clusters ({@link #applyVmsMigrations(ClusterSnapshot, Map, Map, Set)}) and migrations
+     * that overload their target hosts ({@link #revertMigrationsToOverloadedHosts(ClusterSnapshot)}).
+     *
+     * @param vmsPinnedToTheirCluster
+     *            ids of the VMs that can only be migrated inside their cluster (e.g. VMs with volumes
+     *            in cluster wide storage)
+     */
+    public CrossClusterConsolidationPlan createConsolidationPlan(List<ClusterResourcesUp> clusters, Set<Long> vmsPinnedToTheirCluster,
+            ClusterAdministrationHeuristicAlgorithm algorithm) {
+        List<HostResources> hosts = new ArrayList<>();
+        Map<Long, Long> hostsClusters = new HashMap<>();
+        for (ClusterResourcesUp cluster : clusters) {
+            for (HostResources host : cluster.getHostsResources()) {
+                hosts.add(host);
+                hostsClusters.put(host.getHostId(), cluster.getClusterId());
+            }
+        }
+        ClusterSnapshot snapshot = new ClusterSnapshot(hosts);
+        ClusterPlanningContext planningContext = new ClusterPlanningContext();
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(algorithm.rankHosts(hosts, planningContext), planningContext);
+        applyVmsMigrations(snapshot, vmsToHost, hostsClusters, vmsPinnedToTheirCluster);
+        revertMigrationsToOverloadedHosts(snapshot);
+
+        CrossClusterConsolidationPlan consolidationPlan = createConsolidationPlan(snapshot, hosts, algorithm, planningContext);
+        logger.debug(String.format("Cross cluster consolidation plan created for [%d] clusters [%s].", clusters.size(), consolidationPlan));
+        return consolidationPlan;
+    }
+
+    /**
+     * Applies the VMs migrations into the snapshot. Migrations of VMs pinned to their cluster to
+     * hosts of other clusters are discarded.
+     */
+    protected void applyVmsMigrations(ClusterSnapshot snapshot, Map<Long, HostResources> vmsToHost, Map<Long, Long> hostsClusters, Set<Long> vmsPinnedToTheirCluster) {
+        Map<Long, Integer> vmsIndexes = new HashMap<>();
+        for (int vm = 0; vm < snapshot.getNumberOfVms(); vm++) {
+            vmsIndexes.put(snapshot.getVmId(vm), vm);
+        }
+        for (Entry<Long, HostResources> vmToHost : vmsToHost.entrySet()) {
+            Integer vm = vmsIndexes.get(vmToHost.getKey());
+            int targetHost = snapshot.getHostIndex(vmToHost.getValue().getHostId());
+            if (vm == null || targetHost == -1) {
+                continue;
+            }
+            Long sourceCluster = hostsClusters.get(snapshot.getHostId(snapshot.getVmOriginalHost(vm)));
+            Long targetCluster = hostsClusters.get(snapshot.getHostId(targetHost));
+            if (vmsPinnedToTheirCluster.contains(vmToHost.getKey()) && !sourceCluster.equals(targetCluster)) {
+                logger.debug(String.format("Discarding migration of VM [id=%d] to cluster [id=%d]; the VM is pinned to cluster [id=%d].", vmToHost.getKey(), targetCluster,
+                        sourceCluster));
+                continue;
+            }
+            snapshot.migrateVm(vm, targetHost);
+        }
+    }
+
+    /**
+     * It moves back to their original host the VMs migrated to hosts that have not enough CPU or
+     * memory to run them. It is repeated until no host receiving VMs is overloaded; at worst, all
+     * migrations are reverted.
+     */
+    protected void revertMigrationsToOverloadedHosts(ClusterSnapshot snapshot) {
+        boolean reverted = true;
+        while (reverted) {
+            reverted = false;
+            for (int vm : snapshot.getMigratedVms()) {
+                if (isHostOverloaded(snapshot, snapshot.getVmHost(vm))) {
+                    snapshot.migrateVm(vm, snapshot.getVmOriginalHost(vm));
+                    reverted = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the host is using more CPU or memory than its capacity.
+     */
+    protected boolean isHostOverloaded(ClusterSnapshot snapshot, int host) {
+        return snapshot.getHostAvailableCpu(host) < 0 || snapshot.getHostAvailableMemoryInMegaBytes(host) < 0;
+    }
+
+    /**
+     * Creates the {@link CrossClusterConsolidationPlan} with the VMs migrated in the snapshot. Hosts
+     * that had VMs and have none after the migrations are the evacuated hosts of the
+     * {@link MigrationPlan}; all hosts without VMs are ranked to be shut down with
+     * {@link ClusterAdministrationHeuristicAlgorithm#rankHostToPowerOff(List, ClusterPlanningContext)}.
+     *
+     * @note hosts indexes in the snapshot are the positions of the given hosts.
+     */
+    protected CrossClusterConsolidationPlan createConsolidationPlan(ClusterSnapshot snapshot, List<HostResources> hosts, ClusterAdministrationHeuristicAlgorithm algorithm,
+            ClusterPlanningContext planningContext) {
+        List<VmResources> vms = new ArrayList<>();
+        for (HostResources host : hosts) {
+            vms.addAll(host.getVmsResources());
+        }
+        MigrationPlan migrationPlan = new MigrationPlan();
+        for (int vm : snapshot.getMigratedVms()) {
+            migrationPlan.addVmMigration(vms.get(vm), hosts.get(snapshot.getVmHost(vm)));
+        }
+        int[] hostsNumberOfVms = new int[hosts.size()];
+        for (int vm = 0; vm < snapshot.getNumberOfVms(); vm++) {
+            hostsNumberOfVms[snapshot.getVmHost(vm)]++;
+        }
+        List<HostResources> idleHosts = new ArrayList<>();
+        for (int host = 0; host < hosts.size(); host++) {
+            if (hostsNumberOfVms[host] > 0) {
+                continue;
+            }
+            HostResources idleHost = hosts.get(host);
+            if (!idleHost.getVmsResources().isEmpty()) {
+                migrationPlan.addEvacuatedHost(idleHost);
+            }
+            idleHosts.add(idleHost);
+        }
+        return new CrossClusterConsolidationPlan(migrationPlan, algorithm.rankHostToPowerOff(idleHosts, planningContext));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.planners;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
+
+/**
+ * Orders VMs migrations by their capacity dependencies, creating a {@link MigrationGraph}. While a
+ * VM is migrating, its resources are allocated on both the source and the target hosts; thus, a
+ * migration can only start when its target host has room for the VM, which may happen only after
+ * other VMs have left that host.
+ */
+public class MigrationDependencyPlanner {
+
+    /**
+     * It creates the {@link MigrationGraph} of the given migrations over a fork of the given
+     * {@link ClusterSnapshot} (the snapshot must have the current allocation of the VMs). The
+     * migrations are simulated in rounds: in each round, every pending migration whose target
+     * host can allocate the VM (considering the VMs migrating to the host in the same round) is
+     * started; at the end of the round, all started migrations are finished, freeing their source
+     * hosts. A migration started in a round depends on the migrations from its target host that
+     * were started in the previous rounds. Migrations that cannot be started in any round (and
+     * migrations of VMs or hosts that are not in the snapshot) are unschedulable.
+     */
+    public MigrationGraph createMigrationGraph(ClusterSnapshot clusterSnapshot, List<VmMigration> migrations) {
+        ClusterSnapshot snapshot = clusterSnapshot.fork();
+        MigrationGraph migrationGraph = new MigrationGraph();
+        Map<Long, Integer> vmsIndexes = getVmsIndexes(snapshot);
+        List<VmMigration> pendingMigrations = new ArrayList<>();
+        for (VmMigration migration : migrations) {
+            if (isMigrationInSnapshot(migration, snapshot, vmsIndexes)) {
+                pendingMigrations.add(migration);
+            } else {
+                migrationGraph.addUnschedulableMigration(migration);
+            }
+        }
+        Map<Integer, List<VmMigration>> startedMigrationsFromHost = new HashMap<>();
+        while (!pendingMigrations.isEmpty()) {
+            long[] hostsIncomingCpu = new long[snapshot.getNumberOfHosts()];
+            long[] hostsIncomingMemory = new long[snapshot.getNumberOfHosts()];
+            List<VmMigration> roundMigrations = new ArrayList<>();
+            List<VmMigration> nextRoundsMigrations = new ArrayList<>();
+            for (VmMigration migration : pendingMigrations) {
+                int vm = vmsIndexes.get(migration.getVmId());
+                int targetHost = snapshot.getHostIndex(migration.getTargetHostId());
+                if (canStartMigration(snapshot, vm, targetHost, hostsIncomingCpu, hostsIncomingMemory)) {
+                    hostsIncomingCpu[targetHost] += snapshot.getVmCpuDemand(vm);
+                    hostsIncomingMemory[targetHost] += snapshot.getVmMemoryInMegaBytes(vm);
+                    migrationGraph.addMigration(migration, getStartedMigrationsFromHost(startedMigrationsFromHost, targetHost));
+                    roundMigrations.add(migration);
+                } else {
+                    nextRoundsMigrations.add(migration);
+                }
+            }
+            if (roundMigrations.isEmpty()) {
+                for (VmMigration migration : nextRoundsMigrations) {
+                    migrationGraph.addUnschedulableMigration(migration);
+                }
+                break;
+            }
+            for (VmMigration migration : roundMigrations) {
+                int vm = vmsIndexes.get(migration.getVmId());
+                int sourceHost = snapshot.getVmHost(vm);
+                snapshot.migrateVm(vm, snapshot.getHostIndex(migration.getTargetHostId()));
+                List<VmMigration> migrationsFromSourceHost = startedMigrationsFromHost.get(sourceHost);
+                if (migrationsFromSourceHost == null) {
+                    migrationsFromSourceHost = new ArrayList<>();
+                    startedMigrationsFromHost.put(sourceHost, migrationsFromSourceHost);
+                }
+                migrationsFromSourceHost.add(migration);
+            }
+            pendingMigrations = nextRoundsMigrations;
+        }
+        return migrationGraph;
+    }
+
+    /**
+     * Returns true if the VM and the target host of the migration are in the snapshot and the VM
+     * is allocated in the source host of the migration.
+     */
+    protected boolean isMigrationInSnapshot(VmMigration migration, ClusterSnapshot snapshot, Map<Long, Integer> vmsIndexes) {
+        Integer vm = vmsIndexes.get(migration.getVmId());
+        if (vm == null || snapshot.getHostIndex(migration.getTargetHostId()) < 0) {
+            return false;
+        }
+        return snapshot.getHostId(snapshot.getVmHost(vm)) == migration.getSourceHostId();
+    }
+
+    /**
+     * Checks if the target host can allocate the VM (see
+     * {@link ClusterSnapshot#canAllocateVm(int, int)}) with the resources of the VMs that are
+     * migrating to it (the given incoming CPU and memory) already allocated.
+     */
+    protected boolean canStartMigration(ClusterSnapshot snapshot, int vm, int targetHost, long[] hostsIncomingCpu, long[] hostsIncomingMemory) {
+        if (snapshot.getHostCpus(targetHost) < snapshot.getVmCpus(vm)) {
+            return false;
+        }
+        if (snapshot.getHostAvailableCpu(targetHost) - hostsIncomingCpu[targetHost] < snapshot.getVmCpuDemand(vm)) {
+            return false;
+        }
+        return snapshot.getHostAvailableMemoryInMegaBytes(targetHost) - hostsIncomingMemory[targetHost] >= snapshot.getVmMemoryInMegaBytes(vm);
+    }
+
+    private List<VmMigration> getStartedMigrationsFromHost(Map<Integer, List<VmMigration>> startedMigrationsFromHost, int host) {
+        List<VmMigration> migrationsFromHost = startedMigrationsFromHost.get(host);
+        if (migrationsFromHost == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(migrationsFromHost);
+    }
+
+    private Map<Long, Integer> getVmsIndexes(ClusterSnapshot snapshot) {
+        Map<Long, Integer> vmsIndexes = new HashMap<>();
+        for (int vm = 0; vm < snapshot.getNumberOfVms(); vm++) {
+            vmsIndexes.put(snapshot.getVmId(vm), vm);
+        }
+        return vmsIndexes;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.planners;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+
+/**
+ * Decides which migrations of a {@link MigrationGraph} can be started while the graph is being
+ * executed. A migration is started when all of its dependencies have finished successfully and it
+ * does not exceed the maximum number of concurrent migrations from its source host, to its target
+ * host and in its clusters (a migration between two clusters counts for both of them). If a
+ * migration fails, the migrations that depend on it (directly or not) are canceled, since the
+ * capacity they need was not freed.
+ *
+ * A failed migration can be retried with another target host (see
+ * {@link #retryMigration(VmMigration, VmMigration)}); the outcome of the retry is the outcome of the
+ * migration of the graph. The execution can also be aborted ({@link #abort()}), canceling every
+ * pending migration.
+ *
+ * An instance keeps the state of one execution of the graph; it is not thread safe.
+ */
+public class MigrationGraphScheduler {
+
+    private final MigrationGraph migrationGraph;
+    private final int maximumMigrationsPerSourceHost;
+    private final int maximumMigrationsPerTargetHost;
+    private final int maximumMigrationsPerCluster;
+
+    private final List<VmMigration> pendingMigrations;
+    private final Set<VmMigration> runningMigrations = new HashSet<>();
+    private final Set<VmMigration> succeededMigrations = new HashSet<>();
+    private final List<VmMigration> failedMigrations = new ArrayList<>();
+    private final List<VmMigration> canceledMigrations = new ArrayList<>();
+    private final Set<VmMigration> notExecutedMigrations = new HashSet<>();
+    private final Map<VmMigration, VmMigration> retriesOriginalMigrations = new HashMap<>();
+    private final Map<VmMigration, Set<Long>> migrationsTriedTargetHosts = new HashMap<>();
+    private boolean aborted = false;
+
+    private final Map<Long, Integer> migrationsPerSourceHost = new HashMap<>();
+    private final Map<Long, Integer> migrationsPerTargetHost = new HashMap<>();
+    private final Map<Long, Integer> migrationsPerCluster = new HashMap<>();
+
+    /**
+     * @throws IllegalArgumentException
+     *             if some of the limits is lower than 1
+     */
+    public MigrationGraphScheduler(MigrationGraph migrationGraph, int maximumMigrationsPerSourceHost, int maximumMigrationsPerTargetHost, int maximumMigrationsPerCluster) {
+        if (maximumMigrationsPerSourceHost < 1 || maximumMigrationsPerTargetHost < 1 || maximumMigrationsPerCluster < 1) {
+            throw new IllegalArgumentException(String.format("The limits of concurrent migrations must be at least 1 [perSourceHost=%d, perTargetHost=%d, perCluster=%d].",
+                    maximumMigrationsPerSourceHost, maximumMigrationsPerTargetHost, maximumMigrationsPerCluster));
+        }
+        this.migrationGraph = migrationGraph;
+        this.maximumMigrationsPerSourceHost = maximumMigrationsPerSourceHost;
+        this.maximumMigrationsPerTargetHost = maximumMigrationsPerTargetHost;
+        this.maximumMigrationsPerCluster = maximumMigrationsPerCluster;
+        this.pendingMigrations = new ArrayList<>(migrationGraph.getMigrations());
+    }
+
+    /**
+     * It returns the pending migrations that can be started now, in the order of the graph, and
+     * sets them as running. Pending migrations with a dependency that failed or was canceled are
+     * canceled.
+     */
+    public List<VmMigration> nextMigrationsToStart() {
+        List<VmMigration> migrationsToStart = new ArrayList<>();
+        Iterator<VmMigration> pendingMigrationsIterator = pendingMigrations.iterator();
+        while (pendingMigrationsIterator.hasNext()) {
+            VmMigration migration = pendingMigrationsIterator.next();
+            if (hasDependencyNotExecuted(migration)) {
+                pendingMigrationsIterator.remove();
+                canceledMigrations.add(migration);
+                notExecutedMigrations.add(migration);
+                continue;
+            }
+            if (areDependenciesSucceeded(migration) && canStartMigration(migration)) {
+                pendingMigrationsIterator.remove();
+                startMigration(migration);
+                migrationsToStart.add(migration);
+            }
+        }
+        return migrationsToStart;
+    }
+
+    /**
+     * It sets the given running migration as finished, releasing its slots of concurrent
+     * migrations. If the migration is a retry, the outcome is set to the migration of the graph it
+     * retries.
+     */
+    public void migrationFinished(VmMigration migration, boolean succeeded) {
+        releaseMigration(migration);
+        VmMigration originalMigration = getOriginalMigration(migration);
+        if (succeeded) {
+            succeededMigrations.add(originalMigration);
+        } else {
+            failedMigrations.add(originalMigration);
+            notExecutedMigrations.add(originalMigration);
+        }
+    }
+
+    /**
+     * It sets the given running migration as failed, releasing its slots of concurrent migrations,
+     * and adds the retry migration as the first pending migration. The retry does not have
+     * dependencies; the migrations that depend on the failed migration wait for the outcome of the
+     * retry.
+     */
+    public void retryMigration(VmMigration failedMigration, VmMigration retryMigration) {
+        releaseMigration(failedMigration);
+        VmMigration originalMigration = getOriginalMigration(failedMigration);
+        retriesOriginalMigrations.put(retryMigration, originalMigration);
+        pendingMigrations.add(0, retryMigration);
+    }
+
+    /**
+     * It cancels all pending migrations; running migrations are not affected.
+     */
+    public void abort() {
+        aborted = true;
+        canceledMigrations.addAll(pendingMigrations);
+        notExecutedMigrations.addAll(pendingMigrations);
+        pendingMigrations.clear();
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * It returns the number of times the migration of the graph (that the given migration is or
+     * retries) was started.
+     */
+    public int getNumberOfAttempts(VmMigration migration) {
+        Set<Long> triedTargetHosts = migrationsTriedTargetHosts.get(getOriginalMigration(migration));
+        return triedTargetHosts == null ? 0 : triedTargetHosts.size();
+    }
+
+    /**
+     * It returns the 'id' of the target hosts the migration of the graph (that the given migration
+     * is or retries) was started to.
+     */
+    public Set<Long> getTriedTargetHosts(VmMigration migration) {
+        Set<Long> triedTargetHosts = migrationsTriedTargetHosts.get(getOriginalMigration(migration));
+        return triedTargetHosts == null ? new HashSet<Long>() : triedTargetHosts;
+    }
+
+    /**
+     * @return the number of migrations of the graph that have finished, successfully or not.
+     */
+    public int getNumberOfFinishedMigrations() {
+        return succeededMigrations.size() + failedMigrations.size();
+    }
+
+    /**
+     * @return the ratio of finished migrations that failed; 0 if no migration has finished.
+     */
+    public double getFailureRate() {
+        int numberOfFinishedMigrations = getNumberOfFinishedMigrations();
+        if (numberOfFinishedMigrations == 0) {
+            return 0;
+        }
+        return (double) failedMigrations.size() / numberOfFinishedMigrations;
+    }
+
+    private VmMigration getOriginalMigration(VmMigration migration) {
+        VmMigration originalMigration = retriesOriginalMigrations.get(migration);
+        return originalMigration == null ? migration : originalMigration;
+    }
+
+    private void releaseMigration(VmMigration migration) {
+        if (!runningMigrations.remove(migration)) {
+            throw new IllegalStateException(String.format("Migration of %s is not running.", migration));
+        }
+        decrement(migrationsPerSourceHost, migration.getSourceHostId());
+        decrement(migrationsPerTargetHost, migration.getTargetHostId());
+        decrement(migrationsPerCluster, migration.getSourceClusterId());
+        if (migration.getTargetClusterId() != migration.getSourceClusterId()) {
+            decrement(migrationsPerCluster, migration.getTargetClusterId());
+        }
+    }
+
+    /**
+     * @return true if there are migrations running or waiting to be started.
+     */
+    public boolean hasMigrationsToExecute() {
+        return !runningMigrations.isEmpty() || !pendingMigrations.isEmpty();
+    }
+
+    public int getNumberOfRunningMigrations() {
+        return runningMigrations.size();
+    }
+
+    public Set<VmMigration> getSucceededMigrations() {
+        return succeededMigrations;
+    }
+
+    public List<VmMigration> getFailedMigrations() {
+        return failedMigrations;
+    }
+
+    public List<VmMigration> getCanceledMigrations() {
+        return canceledMigrations;
+    }
+
+    /**
+     * Returns true if some dependency of the migration has failed or was canceled.
+     */
+    protected boolean hasDependencyNotExecuted(VmMigration migration) {
+        for (VmMigration dependency : migrationGraph.getDependencies(migration)) {
+            if (notExecutedMigrations.contains(dependency)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean areDependenciesSucceeded(VmMigration migration) {
+        return succeededMigrations.containsAll(migrationGraph.getDependencies(migration));
+    }
+
+    /**
+     * Returns true if the migration can be started without exceeding the limits of its source
+     * host, target host and clusters.
+     */
+    protected boolean canStartMigration(VmMigration migration) {
+        if (getCount(migrationsPerSourceHost, migration.getSourceHostId()) >= maximumMigrationsPerSourceHost) {
+            return false;
+        }
+        if (getCount(migrationsPerTargetHost, migration.getTargetHostId()) >= maximumMigrationsPerTargetHost) {
+            return false;
+        }
+        if (getCount(migrationsPerCluster, migration.getSourceClusterId()) >= maximumMigrationsPerCluster) {
+            return false;
+        }
+        return getCount(migrationsPerCluster, migration.getTargetClusterId()) < maximumMigrationsPerCluster;
+    }
+
+    private void startMigration(VmMigration migration) {
+        runningMigrations.add(migration);
+        VmMigration originalMigration = getOriginalMigration(migration);
+        if (!migrationsTriedTargetHosts.containsKey(originalMigration)) {
+            migrationsTriedTargetHosts.put(originalMigration, new HashSet<Long>());
+        }
+        migrationsTriedTargetHosts.get(originalMigration).add(migration.getTargetHostId());
+        increment(migrationsPerSourceHost, migration.getSourceHostId());
+        increment(migrationsPerTargetHost, migration.getTargetHostId());
+        increment(migrationsPerCluster, migration.getSourceClusterId());
+        if (migration.getTargetClusterId() != migration.getSourceClusterId()) {
+            increment(migrationsPerCluster, migration.getTargetClusterId());
+        }
+    }
+
+    private int getCount(Map<Long, Integer> counters, long id) {
+        Integer count = counters.get(id);
+        return count == null ? 0 : count;
+    }
+
+    private void increment(Map<Long, Integer> counters, long id) {
+        counters.put(id, getCount(counters, id) + 1);
+    }
+
+    private void decrement(Map<Long, Integer> counters, long id) {
+        counters.put(id, getCount(counters, id) - 1);
+    }
+
+    public int getMaximumMigrationsPerSourceHost() {
+        return maximumMigrationsPerSourceHost;
+    }
+
+    public int getMaximumMigrationsPerTargetHost() {
+        return maximumMigrationsPerTargetHost;
+    }
+
+    public int getMaximumMigrationsPerCluster() {
+        return maximumMigrationsPerCluster;
+    }
+}
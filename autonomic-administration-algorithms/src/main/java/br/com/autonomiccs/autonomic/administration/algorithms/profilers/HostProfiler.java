@@ -33,11 +33,15 @@ import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
  * This class calculates Hosts and VMs profiles from a cluster, those profiles are used by
  * algorithms from LRG; thus, this class is not necessary for every algorithm. It creates host
  * {@link HostProfile} and cluster profiles {@link ClusterVmProfile}.
+ *
+ * @note the cluster VMs profile is calculated once (the first time it is needed) and then reused
+ *       for every host; migrations among the profiled hosts do not change the cluster VMs profile.
  */
 public class HostProfiler {
 
     protected final static int BYTES_TO_MEGA_BYTES = 1000000;
     private List<HostResources> hosts;
+    private ClusterVmProfile clusterVmsProfile;
 
     public HostProfiler(List<HostResources> hosts) {
         this.hosts = hosts;
@@ -48,11 +52,10 @@ public class HostProfiler {
      * profile for the same resource. Gives a proportion of VMs this host can support.
      *
      * @param host
-     * @param vmsProfile
      * @return {@link HostProfile}
      */
     public HostProfile hostVMsResourceProportion(HostResources host) {
-        ClusterVmProfile clusterVmsProfile = createClusterVmsProfile(getHostsVmsResources());
+        ClusterVmProfile clusterVmsProfile = getClusterVmsProfile();
         HostProfile hostProfile = new HostProfile();
 
         hostProfile.setCpusProfile(host.getCpus() / clusterVmsProfile.getCpusProfile());
@@ -62,6 +65,20 @@ public class HostProfiler {
         return hostProfile;
     }
 
+    /**
+     * It returns the cluster VMs profile. The first time this method is executed it calculates the
+     * profile with {@link #getHostsVmsResources()} and {@link #createClusterVmsProfile(ClusterVmProfile)};
+     * after that, the same profile is returned.
+     *
+     * @return {@link ClusterVmProfile}
+     */
+    public ClusterVmProfile getClusterVmsProfile() {
+        if (clusterVmsProfile == null) {
+            clusterVmsProfile = createClusterVmsProfile(getHostsVmsResources());
+        }
+        return clusterVmsProfile;
+    }
+
     /**
      * It calculates the average CPU and memory usage of VMs.
      *
@@ -0,0 +1,135 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.statistics;
+
+/**
+ * Computes the mean and the (population) standard deviation of a set of values in a single pass,
+ * using the Welford's method. Values can also be removed or replaced, which allows to keep the
+ * standard deviation of a set of values (e.g. hosts memory usage) updated in O(1) when one of them
+ * changes, instead of evaluating the whole set again.
+ *
+ * @note it produces the same results of
+ *       {@link org.apache.commons.math3.stat.descriptive.moment.StandardDeviation} created without
+ *       bias correction (except for floating point rounding); the standard deviation of an empty
+ *       set is {@link Double#NaN} and of a single value is 0.
+ */
+public class StreamingStandardDeviation {
+
+    private long n;
+    private double mean;
+
+    /**
+     * Sum of the squares of the differences from the current mean.
+     */
+    private double m2;
+
+    public StreamingStandardDeviation() {
+    }
+
+    /**
+     * Creates a copy of the given {@link StreamingStandardDeviation}.
+     */
+    public StreamingStandardDeviation(StreamingStandardDeviation streamingStandardDeviation) {
+        this.n = streamingStandardDeviation.n;
+        this.mean = streamingStandardDeviation.mean;
+        this.m2 = streamingStandardDeviation.m2;
+    }
+
+    public void add(double value) {
+        n++;
+        double delta = value - mean;
+        mean += delta / n;
+        m2 += delta * (value - mean);
+    }
+
+    /**
+     * Removes a value that was previously added.
+     */
+    public void remove(double value) {
+        if (n <= 1) {
+            clear();
+            return;
+        }
+        double delta = value - mean;
+        mean -= delta / (n - 1);
+        m2 -= delta * (value - mean);
+        n--;
+        if (m2 < 0) {
+            m2 = 0;
+        }
+    }
+
+    /**
+     * Replaces a value that was previously added by a new value.
+     */
+    public void replace(double oldValue, double newValue) {
+        if (n == 0) {
+            return;
+        }
+        double delta = newValue - oldValue;
+        double newMean = mean + delta / n;
+        m2 += delta * (newValue - newMean + oldValue - mean);
+        mean = newMean;
+        if (m2 < 0) {
+            m2 = 0;
+        }
+    }
+
+    public void clear() {
+        n = 0;
+        mean = 0;
+        m2 = 0;
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * @return the mean of the values, or {@link Double#NaN} if there is no values.
+     */
+    public double getMean() {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return mean;
+    }
+
+    /**
+     * @return the population variance of the values, or {@link Double#NaN} if there is no values.
+     */
+    public double getVariance() {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return m2 / n;
+    }
+
+    /**
+     * @return the population standard deviation of the values, or {@link Double#NaN} if there is
+     *         no values.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+}
@@ -30,9 +30,11 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
@@ -57,9 +59,23 @@ public class ClusterManagementDummyAlgorithmTest {
     public void rankHostsTest() {
         List<HostResources> hosts = new ArrayList<HostResources>();
         spyAlgorithm.rankHosts(hosts);
+        Mockito.verify(spyAlgorithm).rankHosts(Mockito.eq(hosts), Mockito.any(ClusterPlanningContext.class));
         Mockito.verify(spyAlgorithm).cloneListOfHosts(hosts);
     }
 
+    @Test
+    public void mapVMsToHostTestUsingContextOfRankHosts() {
+        List<HostResources> hosts = new ArrayList<HostResources>();
+        spyAlgorithm.rankHosts(hosts);
+        spyAlgorithm.mapVMsToHost(hosts);
+        spyAlgorithm.rankHostToPowerOff(hosts);
+
+        ArgumentCaptor<ClusterPlanningContext> rankHostsContext = ArgumentCaptor.forClass(ClusterPlanningContext.class);
+        Mockito.verify(spyAlgorithm).rankHosts(Mockito.eq(hosts), rankHostsContext.capture());
+        Mockito.verify(spyAlgorithm).mapVMsToHost(hosts, rankHostsContext.getValue());
+        Mockito.verify(spyAlgorithm).rankHostToPowerOff(hosts, rankHostsContext.getValue());
+    }
+
     @Test
     public void mapVMsToHost() {
         List<HostResources> hosts = new ArrayList<HostResources>();
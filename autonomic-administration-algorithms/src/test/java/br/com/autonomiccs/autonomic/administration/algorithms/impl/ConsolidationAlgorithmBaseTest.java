@@ -57,6 +57,17 @@ public class ConsolidationAlgorithmBaseTest extends ConsolidationAlgorithmsTest
         Assert.assertEquals(600, spyAlgorithm.getClusterIntervalBetweenConsolidation());
     }
 
+    @Test
+    public void setClusterIntervalBetweenConsolidationTest() {
+        spyAlgorithm.setClusterIntervalBetweenConsolidation(1800);
+        Assert.assertEquals(1800, spyAlgorithm.getClusterIntervalBetweenConsolidation());
+    }
+
+    @Test
+    public void getMaximumUsageToPowerOffHostsTest() {
+        Assert.assertEquals(0.7, spyAlgorithm.getMaximumUsageToPowerOffHosts(), 0);
+    }
+
     @Test
     public void mapVMsToHost() {
         List<HostResources> hosts = createHosts();
@@ -0,0 +1,158 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationPlan;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+public class ConsolidationMigrationCostAwareBestFitDecreasingTest extends ConsolidationAlgorithmsTest {
+
+    private ConsolidationMigrationCostAwareBestFitDecreasing algorithm;
+
+    @Before
+    public void setup() {
+        algorithm = new ConsolidationMigrationCostAwareBestFitDecreasing();
+    }
+
+    @Test
+    public void getHostMigrationVolumeInMegaBytesTest() {
+        HostResources host = createHostWithVms(1l, 4096l, createVm(1024l), createVm(512l));
+
+        Assert.assertEquals(1536l, algorithm.getHostMigrationVolumeInMegaBytes(host));
+        Assert.assertEquals(0l, algorithm.getHostMigrationVolumeInMegaBytes(createHostWithVms(2l, 4096l)));
+    }
+
+    @Test
+    public void getHostsEvacuationOrderByMigrationVolumeTest() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 8192l, createVm(512l)));
+        rankedHosts.add(createHostWithVms(2l, 4096l, createVm(2048l)));
+        rankedHosts.add(createHostWithVms(3l, 4096l, createVm(512l), createVm(512l)));
+        rankedHosts.add(createHostWithVms(4l, 4096l, createVm(1024l), createVm(1024l)));
+
+        List<Integer> hostsEvacuationOrder = algorithm.getHostsEvacuationOrderByMigrationVolume(rankedHosts);
+
+        Assert.assertEquals(3, hostsEvacuationOrder.size());
+        Assert.assertEquals(2, hostsEvacuationOrder.get(0).intValue());
+        Assert.assertEquals(3, hostsEvacuationOrder.get(1).intValue());
+        Assert.assertEquals(1, hostsEvacuationOrder.get(2).intValue());
+    }
+
+    @Test
+    public void createMigrationPlanTestCheapestHostsFirst() {
+        List<HostResources> rankedHosts = createRankedHosts();
+
+        MigrationPlan migrationPlan = algorithm.createMigrationPlan(rankedHosts);
+
+        Assert.assertEquals(2, migrationPlan.getEvacuatedHosts().size());
+        Assert.assertEquals(2l, migrationPlan.getEvacuatedHosts().get(0).getHostId());
+        Assert.assertEquals(3l, migrationPlan.getEvacuatedHosts().get(1).getHostId());
+        Assert.assertEquals(2560l, migrationPlan.getMigrationVolumeInMegaBytes());
+        Assert.assertEquals(4096l, rankedHosts.get(0).getUsedMemoryInMegaBytes());
+    }
+
+    @Test
+    public void createMigrationPlanTestMaximumNumberOfHostsToEvacuate() {
+        List<HostResources> rankedHosts = createRankedHosts();
+        algorithm.setMaximumNumberOfHostsToEvacuate(1);
+
+        MigrationPlan migrationPlan = algorithm.createMigrationPlan(rankedHosts);
+
+        Assert.assertEquals(1, migrationPlan.getEvacuatedHosts().size());
+        Assert.assertEquals(2l, migrationPlan.getEvacuatedHosts().get(0).getHostId());
+        Assert.assertEquals(512l, migrationPlan.getMigrationVolumeInMegaBytes());
+        Assert.assertEquals(1l, migrationPlan.getVmsToHost().get(rankedHosts.get(1).getVmsResources().get(0).getVmId()).getHostId());
+    }
+
+    @Test
+    public void mapVMsToHostTest() {
+        List<HostResources> rankedHosts = createRankedHosts();
+        algorithm.setMaximumNumberOfHostsToEvacuate(1);
+
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts);
+
+        Assert.assertEquals(1, vmsToHost.size());
+        Assert.assertEquals(1l, vmsToHost.get(rankedHosts.get(1).getVmsResources().get(0).getVmId()).getHostId());
+    }
+
+    @Test
+    public void getBestMigrationPlanTestMoreHostsEvacuated() {
+        MigrationPlan migrationPlan1 = createMigrationPlan(1, 512l);
+        MigrationPlan migrationPlan2 = createMigrationPlan(2, 4096l);
+
+        Assert.assertSame(migrationPlan2, algorithm.getBestMigrationPlan(migrationPlan1, migrationPlan2));
+        Assert.assertSame(migrationPlan2, algorithm.getBestMigrationPlan(migrationPlan2, migrationPlan1));
+    }
+
+    @Test
+    public void getBestMigrationPlanTestLessMigrationVolume() {
+        MigrationPlan migrationPlan1 = createMigrationPlan(2, 2048l);
+        MigrationPlan migrationPlan2 = createMigrationPlan(2, 1024l);
+        MigrationPlan migrationPlan3 = createMigrationPlan(2, 1024l);
+
+        Assert.assertSame(migrationPlan2, algorithm.getBestMigrationPlan(migrationPlan1, migrationPlan2));
+        Assert.assertSame(migrationPlan2, algorithm.getBestMigrationPlan(migrationPlan2, migrationPlan3));
+    }
+
+    private List<HostResources> createRankedHosts() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 8192l, createVm(4096l)));
+        rankedHosts.add(createHostWithVms(2l, 4096l, createVm(512l)));
+        rankedHosts.add(createHostWithVms(3l, 4096l, createVm(2048l)));
+        return rankedHosts;
+    }
+
+    private MigrationPlan createMigrationPlan(int evacuatedHosts, long vmMemoryInMegaBytes) {
+        MigrationPlan migrationPlan = new MigrationPlan();
+        for (int i = 0; i < evacuatedHosts; i++) {
+            HostResources host = createHostWithVms(i, 4096l);
+            migrationPlan.addEvacuatedHost(host);
+        }
+        migrationPlan.addVmMigration(createVm(vmMemoryInMegaBytes), createHostWithVms(evacuatedHosts, 4096l));
+        return migrationPlan;
+    }
+
+    private VmResources createVm(long memoryInMegaBytes) {
+        return new VmResources(random.nextLong(), 1, 500l, memoryInMegaBytes);
+    }
+
+    private HostResources createHostWithVms(long hostId, long totalMemoryInMegaBytes, VmResources... vms) {
+        HostResources host = createHost(8, 1000l, 0l, totalMemoryInMegaBytes, 0l);
+        host.setHostId(hostId);
+        for (VmResources vm : vms) {
+            host.getVmsResources().add(vm);
+            host.setUsedCpu(host.getUsedCpu() + vm.getNumberOfCpus() * vm.getCpuSpeed());
+            host.setUsedMemoryInMegaBytes(host.getUsedMemoryInMegaBytes() + vm.getMemoryInMegaBytes());
+        }
+        return host;
+    }
+}
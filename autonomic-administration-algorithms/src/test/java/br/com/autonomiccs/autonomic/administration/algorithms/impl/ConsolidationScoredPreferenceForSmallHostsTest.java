@@ -31,6 +31,7 @@ import org.junit.Test;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
 import br.com.autonomiccs.autonomic.administration.algorithms.beans.HostProfile;
 import br.com.autonomiccs.autonomic.administration.algorithms.profilers.HostProfiler;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
@@ -47,11 +48,22 @@ public class ConsolidationScoredPreferenceForSmallHostsTest extends Consolidatio
 
     @Test
     public void rankHostsTest() {
-        spyAlgorithm.rankHosts(createHosts());
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        spyAlgorithm.rankHosts(createHosts(), context);
         InOrder inOrder = Mockito.inOrder(spyAlgorithm);
         inOrder.verify(spyAlgorithm).cloneListOfHosts(Mockito.anyListOf(HostResources.class));
-        inOrder.verify(spyAlgorithm).setEachHostScore(Mockito.anyListOf(HostResources.class));
+        inOrder.verify(spyAlgorithm).setEachHostScore(Mockito.anyListOf(HostResources.class), Mockito.eq(context));
         inOrder.verify(spyAlgorithm).sortHosts(Mockito.anyListOf(HostResources.class));
+        Assert.assertNotNull(context.getHostProfiler());
+    }
+
+    @Test
+    public void rankHostsTestWithoutContext() {
+        List<HostResources> hosts = createHosts();
+        spyAlgorithm.rankHosts(hosts);
+        spyAlgorithm.rankHostToPowerOff(hosts);
+        Mockito.verify(spyAlgorithm).rankHosts(Mockito.eq(hosts), Mockito.any(ClusterPlanningContext.class));
+        Mockito.verify(spyAlgorithm).rankHostToPowerOff(Mockito.eq(hosts), Mockito.any(ClusterPlanningContext.class));
     }
 
     @Test
@@ -132,6 +144,13 @@ public class ConsolidationScoredPreferenceForSmallHostsTest extends Consolidatio
         verifyMethodsCalledFromInternalCanPowerOffAnotherHostInCloud(cloud, 1, 1, 1);
     }
 
+    @Test
+    public void internalCanPowerOffAnotherHostInCloudTestTrueWithHigherMaximumUsage() {
+        CloudResources cloud = new CloudResources(null, 7000l * BYTES_TO_MEGA_BYTES, 10000l * BYTES_TO_MEGA_BYTES, 7001l, 2000l, 5);
+        spyAlgorithm.setMaximumUsageToPowerOffHosts(0.8);
+        Assert.assertTrue(spyAlgorithm.internalCanPowerOffAnotherHostInCloud(cloud));
+    }
+
     @Test
     public void cloudMemoryUsagePercentageTest() {
         CloudResources cloud = new CloudResources(null, 5000l * BYTES_TO_MEGA_BYTES, 10000l * BYTES_TO_MEGA_BYTES, 5000, 2000l, 5);
@@ -147,10 +166,10 @@ public class ConsolidationScoredPreferenceForSmallHostsTest extends Consolidatio
 
     @Test
     public void setEachHostScoreTest() {
-        Mockito.doReturn(1.0).when(spyAlgorithm).calculateHostScore(Mockito.any(HostResources.class));
+        Mockito.doReturn(1.0).when(spyAlgorithm).calculateHostScore(Mockito.any(HostResources.class), Mockito.any(ClusterPlanningContext.class));
         List<HostResources> hosts = createHosts();
-        spyAlgorithm.setEachHostScore(hosts);
-        Mockito.verify(spyAlgorithm, Mockito.times(2)).calculateHostScore(Mockito.any(HostResources.class));
+        spyAlgorithm.setEachHostScore(hosts, new ClusterPlanningContext());
+        Mockito.verify(spyAlgorithm, Mockito.times(2)).calculateHostScore(Mockito.any(HostResources.class), Mockito.any(ClusterPlanningContext.class));
         for (HostResources host : hosts) {
             Assert.assertEquals(1.0, host.getScore(), 0.0);
         }
@@ -165,9 +184,10 @@ public class ConsolidationScoredPreferenceForSmallHostsTest extends Consolidatio
         Mockito.when(hostProfile.getMemoryProfile()).thenReturn(1.0);
 
         HostProfiler spyProfiler = Mockito.spy(new HostProfiler(hosts));
-        spyAlgorithm.profiler = spyProfiler;
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        context.setHostProfiler(spyProfiler);
         Mockito.doReturn(hostProfile).when(spyProfiler).hostVMsResourceProportion(Mockito.any(HostResources.class));
-        double result = spyAlgorithm.calculateHostScore(hosts.get(0));
+        double result = spyAlgorithm.calculateHostScore(hosts.get(0), context);
 
         Assert.assertEquals(10.0, result, 0.0);
         Mockito.verify(spyProfiler).hostVMsResourceProportion(Mockito.any(HostResources.class));
@@ -180,14 +200,15 @@ public class ConsolidationScoredPreferenceForSmallHostsTest extends Consolidatio
     public void rankHostToPowerOffTest() {
         List<HostResources> hosts = createHosts();
 
-        Mockito.doReturn(hosts).when(spyAlgorithm).setEachHostScore(Mockito.anyListOf(HostResources.class));
+        Mockito.doReturn(hosts).when(spyAlgorithm).setEachHostScore(Mockito.anyListOf(HostResources.class), Mockito.any(ClusterPlanningContext.class));
         Mockito.doNothing().when(spyAlgorithm).sortHostsDownwardScore(hosts);
 
-        spyAlgorithm.rankHostToPowerOff(hosts);
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        spyAlgorithm.rankHostToPowerOff(hosts, context);
 
         InOrder inOrder = Mockito.inOrder(spyAlgorithm);
         inOrder.verify(spyAlgorithm).cloneListOfHosts(Mockito.anyListOf(HostResources.class));
-        inOrder.verify(spyAlgorithm).setEachHostScore(Mockito.anyListOf(HostResources.class));
+        inOrder.verify(spyAlgorithm).setEachHostScore(Mockito.anyListOf(HostResources.class), Mockito.eq(context));
         inOrder.verify(spyAlgorithm).sortHostsDownwardScore(Mockito.anyListOf(HostResources.class));
     }
 
@@ -215,6 +236,14 @@ public class ConsolidationScoredPreferenceForSmallHostsTest extends Consolidatio
         verifyInternalCannPowerOffCalledMethods(1, 1);
     }
 
+    @Test
+    public void internalCanPowerOffHostTestFalseWithLowerMaximumUsage() {
+        HostResources host = createHost(2, 1000l, 0l, 2000l, 0l);
+        CloudResources cloud = new CloudResources(null, 5000l * BYTES_TO_MEGA_BYTES, 10000l * BYTES_TO_MEGA_BYTES, 5000, 2000l, 5);
+        spyAlgorithm.setMaximumUsageToPowerOffHosts(0.6);
+        Assert.assertFalse(spyAlgorithm.internalCanPowerOffHost(host, cloud));
+    }
+
     private List<HostResources> setupOfSortHostTests() {
         List<HostResources> hostsToSort = new ArrayList<HostResources>();
         hostsToSort.add(createHostResourcesWithScore(0));
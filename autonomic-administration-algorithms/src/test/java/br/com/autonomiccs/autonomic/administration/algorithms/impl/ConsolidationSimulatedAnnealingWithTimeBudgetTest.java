@@ -0,0 +1,186 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+public class ConsolidationSimulatedAnnealingWithTimeBudgetTest extends ConsolidationAlgorithmsTest {
+
+    private ConsolidationSimulatedAnnealingWithTimeBudget algorithm;
+
+    @Before
+    public void setup() {
+        algorithm = new ConsolidationSimulatedAnnealingWithTimeBudget();
+        algorithm.random = new Random(1);
+    }
+
+    @Test
+    public void mapVMsToHostTestWithoutTimeBudgetReturnsGreedyMapping() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 4096l, createVm(1024l)));
+        VmResources vm = createVm(1024l);
+        rankedHosts.add(createHostWithVms(2l, 4096l, vm));
+        algorithm.setPlanningTimeBudgetInMilliseconds(0);
+
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts);
+
+        Assert.assertEquals(1, vmsToHost.size());
+        Assert.assertEquals(1l, vmsToHost.get(vm.getVmId()).getHostId());
+    }
+
+    @Test
+    public void mapVMsToHostTestPlanningTimeBudget() {
+        List<HostResources> rankedHosts = createClusterHomogeneousHosts(100);
+        int activeHostsBeforePlanning = algorithm.countActiveHosts(new ClusterSnapshot(rankedHosts));
+        algorithm.setPlanningTimeBudgetInMilliseconds(100);
+
+        long start = System.nanoTime();
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts);
+        long planningTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertTrue(planningTime >= 100);
+        Assert.assertTrue(planningTime < 1000);
+        Assert.assertFalse(vmsToHost.isEmpty());
+        ClusterSnapshot snapshot = new ClusterSnapshot(rankedHosts);
+        algorithm.applyVmsMigrations(snapshot, vmsToHost);
+        Assert.assertTrue(algorithm.countActiveHosts(snapshot) < activeHostsBeforePlanning);
+    }
+
+    @Test
+    public void annealTestEmptiesHostThatGreedyMappingCouldNot() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l, createVm(2048l)));
+        hosts.add(createHostWithVms(2l, 4096l, createVm(1024l), createVm(1024l)));
+        hosts.add(createHostWithVms(3l, 4096l, createVm(1024l)));
+        ClusterSnapshot snapshot = new ClusterSnapshot(hosts);
+
+        ClusterSnapshot bestSnapshot = algorithm.anneal(snapshot, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100));
+
+        Assert.assertEquals(2, algorithm.countActiveHosts(bestSnapshot));
+        for (int host = 0; host < bestSnapshot.getNumberOfHosts(); host++) {
+            Assert.assertTrue(bestSnapshot.getHostAvailableMemoryInMegaBytes(host) >= 0);
+        }
+        Assert.assertEquals(3, algorithm.countActiveHosts(new ClusterSnapshot(hosts)));
+    }
+
+    @Test
+    public void annealTestSingleHost() {
+        ClusterSnapshot snapshot = new ClusterSnapshot(createClusterHomogeneousHosts(1));
+
+        ClusterSnapshot bestSnapshot = algorithm.anneal(snapshot, System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+        Assert.assertTrue(bestSnapshot.getMigratedVms().isEmpty());
+    }
+
+    @Test
+    public void getLoadConcentrationGainTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l, createVm(2048l)));
+        hosts.add(createHostWithVms(2l, 4096l, createVm(1024l), createVm(1024l)));
+        hosts.add(createHostWithVms(3l, 4096l, createVm(512l)));
+        ClusterSnapshot snapshot = new ClusterSnapshot(hosts);
+
+        Assert.assertTrue(algorithm.getLoadConcentrationGain(snapshot, 1, 1, 0) > 0);
+        Assert.assertTrue(algorithm.getLoadConcentrationGain(snapshot, 1, 1, 2) < 0);
+        Assert.assertTrue(algorithm.getLoadConcentrationGain(snapshot, 3, 2, 1) > 0);
+    }
+
+    @Test
+    public void applyVmsMigrationsTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l));
+        VmResources vm = createVm(1024l);
+        hosts.add(createHostWithVms(2l, 4096l, vm));
+        ClusterSnapshot snapshot = new ClusterSnapshot(hosts);
+        Map<Long, HostResources> vmsToHost = new HashMap<>();
+        vmsToHost.put(vm.getVmId(), hosts.get(0));
+        vmsToHost.put(random.nextLong(), hosts.get(0));
+
+        algorithm.applyVmsMigrations(snapshot, vmsToHost);
+
+        Assert.assertEquals(0, snapshot.getVmHost(0));
+        Assert.assertEquals(1024l, snapshot.getHostUsedMemoryInMegaBytes(0));
+    }
+
+    @Test
+    public void countActiveHostsTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l, createVm(1024l), createVm(1024l)));
+        hosts.add(createHostWithVms(2l, 4096l));
+        hosts.add(createHostWithVms(3l, 4096l, createVm(1024l)));
+
+        Assert.assertEquals(2, algorithm.countActiveHosts(new ClusterSnapshot(hosts)));
+    }
+
+    @Test
+    public void createVmsToHostTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l, createVm(1024l)));
+        VmResources vm = createVm(1024l);
+        hosts.add(createHostWithVms(2l, 4096l, vm));
+        ClusterSnapshot snapshot = new ClusterSnapshot(hosts);
+        snapshot.migrateVm(1, 0);
+
+        Map<Long, HostResources> vmsToHost = algorithm.createVmsToHost(snapshot, hosts);
+
+        Assert.assertEquals(1, vmsToHost.size());
+        Assert.assertEquals(hosts.get(0), vmsToHost.get(vm.getVmId()));
+    }
+
+    @Test
+    public void setPlanningTimeBudgetInMillisecondsTest() {
+        Assert.assertEquals(ConsolidationSimulatedAnnealingWithTimeBudget.DEFAULT_PLANNING_TIME_BUDGET_IN_MILLISECONDS, algorithm.getPlanningTimeBudgetInMilliseconds());
+        algorithm.setPlanningTimeBudgetInMilliseconds(-1);
+        Assert.assertEquals(0, algorithm.getPlanningTimeBudgetInMilliseconds());
+        algorithm.setPlanningTimeBudgetInMilliseconds(500);
+        Assert.assertEquals(500, algorithm.getPlanningTimeBudgetInMilliseconds());
+    }
+
+    private VmResources createVm(long memoryInMegaBytes) {
+        return new VmResources(random.nextLong(), 1, 500l, memoryInMegaBytes);
+    }
+
+    private HostResources createHostWithVms(long hostId, long totalMemoryInMegaBytes, VmResources... vms) {
+        HostResources host = createHost(8, 1000l, 0l, totalMemoryInMegaBytes, 0l);
+        host.setHostId(hostId);
+        for (VmResources vm : vms) {
+            host.getVmsResources().add(vm);
+            host.setUsedCpu(host.getUsedCpu() + vm.getNumberOfCpus() * vm.getCpuSpeed());
+            host.setUsedMemoryInMegaBytes(host.getUsedMemoryInMegaBytes() + vm.getMemoryInMegaBytes());
+        }
+        return host;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationPlan;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+public class ConsolidationVectorBinPackingBestFitDecreasingTest extends ConsolidationAlgorithmsTest {
+
+    private ConsolidationVectorBinPackingBestFitDecreasing algorithm;
+
+    @Before
+    public void setup() {
+        algorithm = new ConsolidationVectorBinPackingBestFitDecreasing();
+    }
+
+    @Test
+    public void rankHostsTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l, createVm(512l)));
+        hosts.add(createHostWithVms(2l, 4096l, createVm(2048l), createVm(1024l)));
+        hosts.add(createHostWithVms(3l, 4096l));
+        hosts.add(createHostWithVms(4l, 8192l));
+
+        List<HostResources> rankedHosts = algorithm.rankHosts(hosts);
+
+        Assert.assertEquals(4, rankedHosts.size());
+        Assert.assertEquals(4l, rankedHosts.get(0).getHostId());
+        Assert.assertEquals(2l, rankedHosts.get(1).getHostId());
+        Assert.assertEquals(1l, rankedHosts.get(2).getHostId());
+        Assert.assertEquals(3l, rankedHosts.get(3).getHostId());
+        Assert.assertNotSame(hosts.get(3), rankedHosts.get(0));
+    }
+
+    @Test
+    public void mapVMsToHostTestBiggestVmsFirstInTheBestFitHost() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 4096l, createVm(2048l)));
+        rankedHosts.add(createHostWithVms(2l, 4096l, createVm(2048l), createVm(1024l)));
+        VmResources smallVm = createVm(1024l);
+        VmResources bigVm = createVm(2048l);
+        rankedHosts.add(createHostWithVms(3l, 4096l, smallVm, bigVm));
+
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts);
+
+        Assert.assertEquals(2, vmsToHost.size());
+        Assert.assertEquals(1l, vmsToHost.get(bigVm.getVmId()).getHostId());
+        Assert.assertEquals(2l, vmsToHost.get(smallVm.getVmId()).getHostId());
+        Assert.assertEquals(4096l, rankedHosts.get(0).getUsedMemoryInMegaBytes());
+        Assert.assertEquals(4096l, rankedHosts.get(1).getUsedMemoryInMegaBytes());
+    }
+
+    @Test
+    public void mapVMsToHostTestHostCannotBeEvacuated() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 4096l, createVm(3072l)));
+        rankedHosts.add(createHostWithVms(2l, 4096l, createVm(1024l), createVm(1024l)));
+
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts);
+
+        Assert.assertTrue(vmsToHost.isEmpty());
+        Assert.assertEquals(3072l, rankedHosts.get(0).getUsedMemoryInMegaBytes());
+        Assert.assertEquals(500l, rankedHosts.get(0).getUsedCpu());
+    }
+
+    @Test
+    public void mapVMsToHostTestHostsWithoutVmsDoNotReceiveVms() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 4096l, createVm(4096l)));
+        rankedHosts.add(createHostWithVms(2l, 4096l));
+        rankedHosts.add(createHostWithVms(3l, 4096l, createVm(1024l)));
+
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts);
+
+        Assert.assertTrue(vmsToHost.isEmpty());
+        Assert.assertEquals(0l, rankedHosts.get(1).getUsedMemoryInMegaBytes());
+    }
+
+    @Test
+    public void mapVMsToHostTestEvacuatedHostDoNotReceiveVms() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 4096l, createVm(3072l)));
+        rankedHosts.add(createHostWithVms(2l, 4096l, createVm(1024l)));
+        VmResources vm = createVm(1024l);
+        rankedHosts.add(createHostWithVms(3l, 4096l, vm));
+
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts);
+
+        Assert.assertEquals(1, vmsToHost.size());
+        Assert.assertEquals(1l, vmsToHost.get(vm.getVmId()).getHostId());
+    }
+
+    @Test
+    public void mapVMsToHostTestHostThatReceivedVmsIsNotEvacuated() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 4096l, createVm(3072l)));
+        rankedHosts.add(createHostWithVms(2l, 4096l, createVm(1024l)));
+        VmResources vm = createVm(2048l);
+        rankedHosts.add(createHostWithVms(3l, 4096l, vm));
+
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts);
+
+        Assert.assertEquals(1, vmsToHost.size());
+        Assert.assertEquals(2l, vmsToHost.get(vm.getVmId()).getHostId());
+    }
+
+    @Test
+    public void mapVMsToHostTestMigrationPlanKeptInContext() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 4096l, createVm(2048l)));
+        VmResources vm = createVm(1024l);
+        rankedHosts.add(createHostWithVms(2l, 4096l, vm));
+        ClusterPlanningContext context = new ClusterPlanningContext();
+
+        Map<Long, HostResources> vmsToHost = algorithm.mapVMsToHost(rankedHosts, context);
+
+        Assert.assertSame(vmsToHost, context.getMigrationPlan().getVmsToHost());
+        Assert.assertEquals(1024l, context.getMigrationPlan().getMigrationVolumeInMegaBytes());
+        Assert.assertEquals(1, context.getMigrationPlan().getEvacuatedHosts().size());
+    }
+
+    @Test
+    public void canEvacuateAnotherHostTest() {
+        MigrationPlan migrationPlan = new MigrationPlan();
+        migrationPlan.addEvacuatedHost(createHostWithVms(1l, 4096l));
+
+        Assert.assertTrue(algorithm.canEvacuateAnotherHost(migrationPlan));
+        algorithm.setMaximumNumberOfHostsToEvacuate(2);
+        Assert.assertTrue(algorithm.canEvacuateAnotherHost(migrationPlan));
+        algorithm.setMaximumNumberOfHostsToEvacuate(1);
+        Assert.assertFalse(algorithm.canEvacuateAnotherHost(migrationPlan));
+    }
+
+    @Test
+    public void createMigrationPlanTest() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 8192l, createVm(2048l)));
+        rankedHosts.add(createHostWithVms(2l, 4096l, createVm(2048l)));
+        rankedHosts.add(createHostWithVms(3l, 4096l, createVm(1024l), createVm(512l)));
+
+        MigrationPlan migrationPlan = algorithm.createMigrationPlan(rankedHosts);
+
+        Assert.assertEquals(3, migrationPlan.getVmsToHost().size());
+        Assert.assertEquals(2, migrationPlan.getEvacuatedHosts().size());
+        Assert.assertEquals(3l, migrationPlan.getEvacuatedHosts().get(0).getHostId());
+        Assert.assertEquals(2l, migrationPlan.getEvacuatedHosts().get(1).getHostId());
+        Assert.assertEquals(3584l, migrationPlan.getMigrationVolumeInMegaBytes());
+    }
+
+    @Test
+    public void findBestFitHostTestNoHostCanAllocateVm() {
+        List<HostResources> rankedHosts = new ArrayList<>();
+        rankedHosts.add(createHostWithVms(1l, 4096l, createVm(4096l)));
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        algorithm.updateClusterCapacity(rankedHosts, context);
+
+        ConsolidationVectorBinPackingBestFitDecreasing.HostState[] hostsStates = {ConsolidationVectorBinPackingBestFitDecreasing.HostState.KEPT_RUNNING};
+        Assert.assertEquals(-1, algorithm.findBestFitHost(createVm(512l), rankedHosts, hostsStates, context));
+    }
+
+    @Test
+    public void releaseHostUsedResourcesTest() {
+        VmResources vm = new VmResources(0, 2, 1000l, 512l);
+        HostResources host = createHostWithVms(1l, 4096l, createVm(1024l));
+        algorithm.updateHostUsedResources(vm, host);
+
+        algorithm.releaseHostUsedResources(vm, host);
+
+        Assert.assertEquals(500l, host.getUsedCpu());
+        Assert.assertEquals(1024l, host.getUsedMemoryInMegaBytes());
+    }
+
+    @Test
+    public void getVmNormalizedSizeTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l));
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        algorithm.updateClusterCapacity(hosts, context);
+
+        Assert.assertEquals(0.5 / 8 + 0.25, algorithm.getVmNormalizedSize(createVm(1024l), context), 0.000001);
+    }
+
+    private VmResources createVm(long memoryInMegaBytes) {
+        return new VmResources(random.nextLong(), 1, 500l, memoryInMegaBytes);
+    }
+
+    private HostResources createHostWithVms(long hostId, long totalMemoryInMegaBytes, VmResources... vms) {
+        HostResources host = createHost(8, 1000l, 0l, totalMemoryInMegaBytes, 0l);
+        host.setHostId(hostId);
+        for (VmResources vm : vms) {
+            host.getVmsResources().add(vm);
+            host.setUsedCpu(host.getUsedCpu() + vm.getNumberOfCpus() * vm.getCpuSpeed());
+            host.setUsedMemoryInMegaBytes(host.getUsedMemoryInMegaBytes() + vm.getMemoryInMegaBytes());
+        }
+        return host;
+    }
+}
@@ -31,6 +31,7 @@ import org.junit.Test;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 
@@ -60,8 +61,8 @@ public class ConsolidationXenHaPreferenceForBigHostsHomogeneousEnvironmentTest e
         Assert.assertEquals(0, migrations.size());
 
         InOrder inOrder = Mockito.inOrder(consolidationAlgorithm.vmsDispersionHomogeneousHosts);
-        inOrder.verify(consolidationAlgorithm.vmsDispersionHomogeneousHosts).rankHosts(hosts);
-        inOrder.verify(consolidationAlgorithm.vmsDispersionHomogeneousHosts).mapVMsToHost(hosts);
+        inOrder.verify(consolidationAlgorithm.vmsDispersionHomogeneousHosts).rankHosts(Mockito.eq(hosts), Mockito.any(ClusterPlanningContext.class));
+        inOrder.verify(consolidationAlgorithm.vmsDispersionHomogeneousHosts).mapVMsToHost(Mockito.eq(hosts), Mockito.any(ClusterPlanningContext.class));
     }
 
     @Test
@@ -133,9 +134,10 @@ public class ConsolidationXenHaPreferenceForBigHostsHomogeneousEnvironmentTest e
     @Test
     public void rankHostToPowerOffTenHostsIdleOurOfTwelveTest() {
         List<HostResources> clusterHomogeneousWithOneHost = createClusterHomogeneousHosts(10);
-        consolidationAlgorithm.rankHosts(clusterHomogeneousWithOneHost);
-        consolidationAlgorithm.totalNumbersOfHostsInCluster = 12;
-        List<HostResources> rankedHostToPowerOff = consolidationAlgorithm.rankHostToPowerOff(clusterHomogeneousWithOneHost);
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        consolidationAlgorithm.rankHosts(clusterHomogeneousWithOneHost, context);
+        context.setNumberOfHostsInCluster(12);
+        List<HostResources> rankedHostToPowerOff = consolidationAlgorithm.rankHostToPowerOff(clusterHomogeneousWithOneHost, context);
 
         Assert.assertEquals(9, rankedHostToPowerOff.size());
     }
@@ -0,0 +1,117 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+public class HostsAvailableResourcesIndexTest extends ConsolidationAlgorithmsTest {
+
+    private ConsolidationAlgorithmBase algorithm = new ConsolidationAlgorithmBase();
+
+    @Test
+    public void findFirstHostThatCanAllocateVmTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHost(1, 1000l, 1000l, 1000l, 0l));
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 1000l));
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 0l));
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 0l));
+        HostsAvailableResourcesIndex index = new HostsAvailableResourcesIndex(hosts, algorithm);
+
+        Assert.assertEquals(2, index.findFirstHostThatCanAllocateVm(new VmResources(0, 1, 500l, 500l)));
+    }
+
+    @Test
+    public void findFirstHostThatCanAllocateVmTestNoHostWithResources() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 0l));
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 0l));
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 0l));
+        HostsAvailableResourcesIndex index = new HostsAvailableResourcesIndex(hosts, algorithm);
+
+        Assert.assertEquals(-1, index.findFirstHostThatCanAllocateVm(new VmResources(0, 1, 1000l, 2000l)));
+        Assert.assertEquals(-1, index.findFirstHostThatCanAllocateVm(new VmResources(0, 1, 2000l, 500l)));
+    }
+
+    @Test
+    public void findFirstHostThatCanAllocateVmTestHostWithLessCpusThanVm() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHost(1, 4000l, 0l, 1000l, 0l));
+        hosts.add(createHost(2, 1000l, 0l, 1000l, 0l));
+        HostsAvailableResourcesIndex index = new HostsAvailableResourcesIndex(hosts, algorithm);
+
+        Assert.assertEquals(1, index.findFirstHostThatCanAllocateVm(new VmResources(0, 2, 500l, 500l)));
+    }
+
+    @Test
+    public void findFirstHostThatCanAllocateVmTestEmptyList() {
+        HostsAvailableResourcesIndex index = new HostsAvailableResourcesIndex(new ArrayList<HostResources>(), algorithm);
+        Assert.assertEquals(-1, index.findFirstHostThatCanAllocateVm(new VmResources(0, 1, 500l, 500l)));
+    }
+
+    @Test
+    public void updateHostTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 0l));
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 0l));
+        hosts.add(createHost(1, 1000l, 0l, 1000l, 0l));
+        HostsAvailableResourcesIndex index = new HostsAvailableResourcesIndex(hosts, algorithm);
+        VmResources vm = new VmResources(0, 1, 600l, 600l);
+
+        Assert.assertEquals(0, index.findFirstHostThatCanAllocateVm(vm));
+        algorithm.updateHostUsedResources(vm, hosts.get(0));
+        index.updateHost(0);
+        Assert.assertEquals(1, index.findFirstHostThatCanAllocateVm(vm));
+    }
+
+    @Test
+    public void findFirstHostThatCanAllocateVmTestSameResultOfLinearSearch() {
+        List<HostResources> hosts = new ArrayList<>();
+        for (int i = 0; i < 37; i++) {
+            hosts.add(createHost(1 + random.nextInt(4), 2000l, random.nextInt(4000), 8192l, random.nextInt(8192)));
+        }
+        HostsAvailableResourcesIndex index = new HostsAvailableResourcesIndex(hosts, algorithm);
+        for (int i = 0; i < 200; i++) {
+            VmResources vm = new VmResources(i, 1 + random.nextInt(4), 500l, 256l * (1 + random.nextInt(8)));
+            int expectedHostPosition = -1;
+            for (int j = 0; j < hosts.size(); j++) {
+                if (algorithm.canMigrateVmToHost(vm, hosts.get(j))) {
+                    expectedHostPosition = j;
+                    break;
+                }
+            }
+            int hostPosition = index.findFirstHostThatCanAllocateVm(vm);
+            Assert.assertEquals(expectedHostPosition, hostPosition);
+            if (hostPosition != -1) {
+                algorithm.updateHostUsedResources(vm, hosts.get(hostPosition));
+                index.updateHost(hostPosition);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@
 package br.com.autonomiccs.autonomic.administration.algorithms.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -32,7 +33,10 @@ import org.junit.Test;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
+import br.com.autonomiccs.autonomic.administration.algorithms.statistics.StreamingStandardDeviation;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.PlanningOverlay;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 
 public class VmsDispersionAlgorithmForHomogeneousEnvironmentTest extends ConsolidationAlgorithmsTest {
@@ -109,6 +113,25 @@ public class VmsDispersionAlgorithmForHomogeneousEnvironmentTest extends Consoli
         verifyMapVmsToHostCalledMethods(rankedHosts, 3);
     }
 
+    @Test
+    public void mapVMsToHostTestPlanningTwoClustersAtTheSameTime() {
+        List<HostResources> unbalancedHosts = new ArrayList<HostResources>();
+        unbalancedHosts.add(createHostWithSmallVms(2));
+        unbalancedHosts.add(createHostWithSmallVms(1));
+        unbalancedHosts.add(createHostWithMediumVms(2));
+        List<HostResources> balancedHosts = new ArrayList<HostResources>();
+        balancedHosts.add(createHostWithSmallVms(2));
+        balancedHosts.add(createHostWithSmallVms(2));
+
+        ClusterPlanningContext unbalancedClusterContext = new ClusterPlanningContext();
+        ClusterPlanningContext balancedClusterContext = new ClusterPlanningContext();
+        List<HostResources> unbalancedRankedHosts = vmsDistributionAlgorithm.rankHosts(unbalancedHosts, unbalancedClusterContext);
+        List<HostResources> balancedRankedHosts = vmsDistributionAlgorithm.rankHosts(balancedHosts, balancedClusterContext);
+
+        Assert.assertEquals(1, vmsDistributionAlgorithm.mapVMsToHost(unbalancedRankedHosts, unbalancedClusterContext).size());
+        Assert.assertEquals(0, vmsDistributionAlgorithm.mapVMsToHost(balancedRankedHosts, balancedClusterContext).size());
+    }
+
     @Test
     public void mapVMsToHostTestWith2HostsHightVmStd() {
         List<VmResources> vms0 = createSmallVms(2);
@@ -209,18 +232,79 @@ public class VmsDispersionAlgorithmForHomogeneousEnvironmentTest extends Consoli
         verifyMapVmsToHostCalledMethods(rankedHosts, 0);
     }
 
+    @Test
+    public void mapVMsToHostTestWithFiveStandardDeviationCandidates() {
+        HostResources h0 = createHostWithSmallVms(2);
+        HostResources h1 = createHostWithSmallVms(1);
+        HostResources h2 = createHostWithMediumVms(2);
+
+        List<HostResources> hostsList = new ArrayList<HostResources>();
+        hostsList.add(h0);
+        hostsList.add(h1);
+        hostsList.add(h2);
+
+        vmsDistributionAlgorithm.setNumberOfStandardDeviationCandidates(5);
+        List<HostResources> rankedHosts = vmsDistributionAlgorithm.rankHosts(hostsList);
+        Map<Long, HostResources> mapTest = vmsDistributionAlgorithm.mapVMsToHost(rankedHosts);
+
+        Assert.assertEquals(1, mapTest.size());
+        verifyMapVmsToHostCalledMethods(rankedHosts, 5);
+    }
+
+    @Test
+    public void getStandardDeviationCandidatesTest() {
+        List<HostResources> hostsList = new ArrayList<HostResources>();
+        hostsList.add(createHostWithSmallVms(2));
+        hostsList.add(createHostWithMediumVms(2));
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        vmsDistributionAlgorithm.rankHosts(hostsList, context);
+
+        double[] candidates = vmsDistributionAlgorithm.getStandardDeviationCandidates(context);
+
+        Assert.assertEquals(3, candidates.length);
+        Assert.assertEquals((candidates[0] + candidates[2]) / 2, candidates[1], 0);
+        Assert.assertTrue(candidates[0] != candidates[2]);
+    }
+
+    @Test
+    public void getStandardDeviationCandidatesTestOneCandidate() {
+        List<HostResources> hostsList = new ArrayList<HostResources>();
+        hostsList.add(createHostWithSmallVms(2));
+        hostsList.add(createHostWithMediumVms(2));
+        ClusterPlanningContext context = new ClusterPlanningContext();
+        vmsDistributionAlgorithm.rankHosts(hostsList, context);
+        double[] defaultCandidates = vmsDistributionAlgorithm.getStandardDeviationCandidates(context);
+
+        vmsDistributionAlgorithm.setNumberOfStandardDeviationCandidates(0);
+        double[] candidates = vmsDistributionAlgorithm.getStandardDeviationCandidates(context);
+
+        Assert.assertEquals(1, vmsDistributionAlgorithm.getNumberOfStandardDeviationCandidates());
+        Assert.assertEquals(1, candidates.length);
+        Assert.assertEquals(defaultCandidates[1], candidates[0], 0);
+    }
+
+    @Test
+    public void getStandardDeviationCandidatesPreferenceOrderTest() {
+        Assert.assertEquals(Arrays.asList(0), vmsDistributionAlgorithm.getStandardDeviationCandidatesPreferenceOrder(1));
+        Assert.assertEquals(Arrays.asList(1, 0), vmsDistributionAlgorithm.getStandardDeviationCandidatesPreferenceOrder(2));
+        Assert.assertEquals(Arrays.asList(1, 2, 0), vmsDistributionAlgorithm.getStandardDeviationCandidatesPreferenceOrder(3));
+        Assert.assertEquals(Arrays.asList(2, 1, 3, 0), vmsDistributionAlgorithm.getStandardDeviationCandidatesPreferenceOrder(4));
+        Assert.assertEquals(Arrays.asList(2, 3, 1, 4, 0), vmsDistributionAlgorithm.getStandardDeviationCandidatesPreferenceOrder(5));
+    }
+
     private void verifyRankHostCalledMethods(List<HostResources> hostsList, List<HostResources> rankedHostsList) {
         InOrder inOrder = Mockito.inOrder(vmsDistributionAlgorithm);
-        inOrder.verify(vmsDistributionAlgorithm).clusterMemoryUsagePercentage(hostsList);
+        inOrder.verify(vmsDistributionAlgorithm).clusterMemoryUsagePercentage(Mockito.eq(hostsList), Mockito.any(ClusterPlanningContext.class));
         inOrder.verify(vmsDistributionAlgorithm).cloneListOfHosts(hostsList);
-        inOrder.verify(vmsDistributionAlgorithm).setEachHostScore(rankedHostsList);
+        inOrder.verify(vmsDistributionAlgorithm).setEachHostScore(Mockito.eq(rankedHostsList), Mockito.any(ClusterPlanningContext.class));
         inOrder.verify(vmsDistributionAlgorithm).sortHosts(rankedHostsList);
     }
 
     private void verifyMapVmsToHostCalledMethods(List<HostResources> rankedHosts, int times) {
         InOrder inOrder = Mockito.inOrder(vmsDistributionAlgorithm);
-        inOrder.verify(vmsDistributionAlgorithm, Mockito.times(times)).cloneListOfHosts(rankedHosts);
-        inOrder.verify(vmsDistributionAlgorithm, Mockito.times(times)).simulateVmsMigrations(Mockito.anyListOf(HostResources.class), Mockito.anyDouble());
+        inOrder.verify(vmsDistributionAlgorithm, Mockito.times(times == 0 ? 0 : 1)).createHostsCapacities(rankedHosts);
+        inOrder.verify(vmsDistributionAlgorithm, Mockito.times(times)).simulateVmsMigrations(Mockito.any(PlanningOverlay.class), Mockito.anyDouble(),
+                Mockito.any(StreamingStandardDeviation.class), Mockito.any(ClusterPlanningContext.class));
     }
 
 }
@@ -0,0 +1,138 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.planners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.ConsolidationAlgorithmsTest;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+public class AlternativeTargetHostSelectorTest extends ConsolidationAlgorithmsTest {
+
+    private List<HostResources> hosts = new ArrayList<>();
+    private Map<Long, Long> hostsClusters = new HashMap<>();
+    private MigrationGraph migrationGraph = new MigrationGraph();
+
+    @Test
+    public void selectAlternativeTargetHostTestBestFit() {
+        addHost(1l, 1l, 4096l, createVm(1l, 1024l), createVm(2l, 1024l));
+        addHost(2l, 1l, 2048l);
+        addHost(3l, 1l, 4096l);
+        addHost(4l, 1l, 3072l);
+        addHost(5l, 2l, 4096l);
+        VmMigration firstMigration = addMigration(1l, 1l, 2l);
+        VmMigration secondMigration = addMigration(2l, 1l, 2l);
+        AlternativeTargetHostSelector selector = createSelector();
+        HashSet<Long> excludedHostsIds = new HashSet<>(Arrays.asList(2l));
+
+        Assert.assertEquals(Long.valueOf(4l), selector.selectAlternativeTargetHost(firstMigration, excludedHostsIds));
+        Assert.assertEquals(Long.valueOf(4l), selector.selectAlternativeTargetHost(secondMigration, excludedHostsIds));
+        excludedHostsIds.add(4l);
+        Assert.assertEquals(Long.valueOf(3l), selector.selectAlternativeTargetHost(firstMigration, excludedHostsIds));
+    }
+
+    @Test
+    public void selectAlternativeTargetHostTestConsidersIncomingVms() {
+        addHost(1l, 1l, 4096l, createVm(1l, 1024l), createVm(2l, 1536l));
+        addHost(2l, 1l, 2048l);
+        addMigration(1l, 1l, 2l);
+        AlternativeTargetHostSelector selector = createSelector();
+
+        Assert.assertNull(selector.selectAlternativeTargetHost(createMigration(2l, 1l, 3l), Collections.<Long> emptySet()));
+    }
+
+    @Test
+    public void selectAlternativeTargetHostTestSourceHostsNotSelected() {
+        addHost(1l, 1l, 4096l, createVm(1l, 1024l));
+        addHost(2l, 1l, 4096l, createVm(2l, 1024l));
+        addHost(3l, 1l, 4096l);
+        VmMigration migration = addMigration(1l, 1l, 3l);
+        addMigration(2l, 2l, 3l);
+        AlternativeTargetHostSelector selector = createSelector();
+
+        Assert.assertNull(selector.selectAlternativeTargetHost(migration, Collections.singleton(3l)));
+    }
+
+    @Test
+    public void selectAlternativeTargetHostTestVmNotInSnapshot() {
+        addHost(1l, 1l, 4096l);
+        addHost(2l, 1l, 4096l);
+        AlternativeTargetHostSelector selector = createSelector();
+
+        Assert.assertNull(selector.selectAlternativeTargetHost(createMigration(1l, 1l, 3l), Collections.<Long> emptySet()));
+    }
+
+    @Test
+    public void canAllocateVmAtPeakUsageTest() {
+        addHost(1l, 1l, 4096l, createVm(1l, 1024l), createVm(2l, 2048l));
+        addHost(2l, 1l, 2048l);
+        addMigration(1l, 1l, 2l);
+        AlternativeTargetHostSelector selector = createSelector();
+
+        Assert.assertFalse(selector.canAllocateVmAtPeakUsage(1, 1));
+        Assert.assertTrue(selector.canAllocateVmAtPeakUsage(0, 1));
+    }
+
+    private AlternativeTargetHostSelector createSelector() {
+        return new AlternativeTargetHostSelector(new ClusterSnapshot(hosts), migrationGraph, hostsClusters);
+    }
+
+    private VmMigration addMigration(long vmId, long sourceHostId, long targetHostId) {
+        VmMigration migration = createMigration(vmId, sourceHostId, targetHostId);
+        migrationGraph.addMigration(migration, new ArrayList<VmMigration>());
+        return migration;
+    }
+
+    private VmMigration createMigration(long vmId, long sourceHostId, long targetHostId) {
+        return new VmMigration(vmId, sourceHostId, 1l, targetHostId, 1l);
+    }
+
+    private VmResources createVm(long vmId, long memoryInMegaBytes) {
+        return new VmResources(vmId, 1, 500l, memoryInMegaBytes);
+    }
+
+    private void addHost(long hostId, long clusterId, long totalMemoryInMegaBytes, VmResources... vms) {
+        HostResources host = createHost(8, 1000l, 0l, totalMemoryInMegaBytes, 0l);
+        host.setHostId(hostId);
+        for (VmResources vm : vms) {
+            host.getVmsResources().add(vm);
+            host.setUsedCpu(host.getUsedCpu() + vm.getNumberOfCpus() * vm.getCpuSpeed());
+            host.setUsedMemoryInMegaBytes(host.getUsedMemoryInMegaBytes() + vm.getMemoryInMegaBytes());
+        }
+        hosts.add(host);
+        hostsClusters.put(hostId, clusterId);
+    }
+}
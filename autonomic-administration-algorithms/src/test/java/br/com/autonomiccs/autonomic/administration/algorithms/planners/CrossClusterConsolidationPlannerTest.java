@@ -0,0 +1,136 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.planners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.CrossClusterConsolidationPlan;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.ClusterManagementDummyAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.ConsolidationAlgorithmBase;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.ConsolidationAlgorithmsTest;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterResourcesUp;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+public class CrossClusterConsolidationPlannerTest extends ConsolidationAlgorithmsTest {
+
+    private CrossClusterConsolidationPlanner planner;
+    private VmResources vm;
+    private List<ClusterResourcesUp> clusters;
+
+    @Before
+    public void setup() {
+        planner = new CrossClusterConsolidationPlanner();
+        vm = createVm(1024l);
+        clusters = new ArrayList<>();
+        clusters.add(createCluster(1l, createHostWithVms(1l, 4096l, createVm(1024l))));
+        clusters.add(createCluster(2l, createHostWithVms(2l, 4096l, vm), createHostWithVms(3l, 4096l)));
+    }
+
+    @Test
+    public void createConsolidationPlanTestMigratesVmsBetweenClusters() {
+        CrossClusterConsolidationPlan consolidationPlan = planner.createConsolidationPlan(clusters, new HashSet<Long>(), new ConsolidationAlgorithmBase());
+
+        Assert.assertEquals(1, consolidationPlan.getMigrationPlan().getVmsToHost().size());
+        Assert.assertEquals(1l, consolidationPlan.getMigrationPlan().getVmsToHost().get(vm.getVmId()).getHostId());
+        Assert.assertEquals(1, consolidationPlan.getMigrationPlan().getEvacuatedHosts().size());
+        Assert.assertEquals(2l, consolidationPlan.getMigrationPlan().getEvacuatedHosts().get(0).getHostId());
+        Assert.assertEquals(1024l, consolidationPlan.getMigrationPlan().getMigrationVolumeInMegaBytes());
+        Assert.assertEquals(2, consolidationPlan.getHostsToShutdown().size());
+        Assert.assertEquals(1024l, clusters.get(0).getHostsResources().get(0).getUsedMemoryInMegaBytes());
+    }
+
+    @Test
+    public void createConsolidationPlanTestVmPinnedToItsCluster() {
+        CrossClusterConsolidationPlan consolidationPlan = planner.createConsolidationPlan(clusters, new HashSet<>(Arrays.asList(vm.getVmId())), new ConsolidationAlgorithmBase());
+
+        Assert.assertTrue(consolidationPlan.getMigrationPlan().getVmsToHost().isEmpty());
+        Assert.assertTrue(consolidationPlan.getMigrationPlan().getEvacuatedHosts().isEmpty());
+        Assert.assertEquals(1, consolidationPlan.getHostsToShutdown().size());
+        Assert.assertEquals(3l, consolidationPlan.getHostsToShutdown().get(0).getHostId());
+    }
+
+    @Test
+    public void createConsolidationPlanTestAlgorithmWithoutMigrations() {
+        CrossClusterConsolidationPlan consolidationPlan = planner.createConsolidationPlan(clusters, new HashSet<Long>(), new ClusterManagementDummyAlgorithm());
+
+        Assert.assertTrue(consolidationPlan.getMigrationPlan().getVmsToHost().isEmpty());
+        Assert.assertEquals(1, consolidationPlan.getHostsToShutdown().size());
+    }
+
+    @Test
+    public void revertMigrationsToOverloadedHostsTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l, createVm(3072l)));
+        hosts.add(createHostWithVms(2l, 4096l, createVm(2048l)));
+        hosts.add(createHostWithVms(3l, 4096l, createVm(512l)));
+        ClusterSnapshot snapshot = new ClusterSnapshot(hosts);
+        snapshot.migrateVm(1, 0);
+        snapshot.migrateVm(2, 1);
+
+        planner.revertMigrationsToOverloadedHosts(snapshot);
+
+        Assert.assertEquals(1, snapshot.getMigratedVms().size());
+        Assert.assertEquals(1, snapshot.getVmHost(1));
+        Assert.assertEquals(1, snapshot.getVmHost(2));
+    }
+
+    @Test
+    public void isHostOverloadedTest() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHostWithVms(1l, 4096l, createVm(4096l)));
+        hosts.add(createHostWithVms(2l, 2048l, createVm(4096l)));
+
+        ClusterSnapshot snapshot = new ClusterSnapshot(hosts);
+
+        Assert.assertFalse(planner.isHostOverloaded(snapshot, 0));
+        Assert.assertTrue(planner.isHostOverloaded(snapshot, 1));
+    }
+
+    private ClusterResourcesUp createCluster(long clusterId, HostResources... hosts) {
+        return new ClusterResourcesUp(clusterId, "cluster", 0l, 0l, 0, 0l, 0l, new ArrayList<>(Arrays.asList(hosts)));
+    }
+
+    private VmResources createVm(long memoryInMegaBytes) {
+        return new VmResources(random.nextLong(), 1, 500l, memoryInMegaBytes);
+    }
+
+    private HostResources createHostWithVms(long hostId, long totalMemoryInMegaBytes, VmResources... vms) {
+        HostResources host = createHost(8, 1000l, 0l, totalMemoryInMegaBytes, 0l);
+        host.setHostId(hostId);
+        for (VmResources vm : vms) {
+            host.getVmsResources().add(vm);
+            host.setUsedCpu(host.getUsedCpu() + vm.getNumberOfCpus() * vm.getCpuSpeed());
+            host.setUsedMemoryInMegaBytes(host.getUsedMemoryInMegaBytes() + vm.getMemoryInMegaBytes());
+        }
+        return host;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.planners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.ConsolidationAlgorithmsTest;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+public class MigrationDependencyPlannerTest extends ConsolidationAlgorithmsTest {
+
+    private MigrationDependencyPlanner planner;
+
+    @Before
+    public void setup() {
+        planner = new MigrationDependencyPlanner();
+    }
+
+    @Test
+    public void createMigrationGraphTestIndependentMigrations() {
+        ClusterSnapshot snapshot = createSnapshot(createHostWithVms(1l, 4096l, createVm(1l, 1024l), createVm(2l, 1024l)), createHostWithVms(2l, 4096l));
+        List<VmMigration> migrations = Arrays.asList(createMigration(1l, 1l, 2l), createMigration(2l, 1l, 2l));
+
+        MigrationGraph migrationGraph = planner.createMigrationGraph(snapshot, migrations);
+
+        Assert.assertEquals(migrations, migrationGraph.getMigrations());
+        Assert.assertTrue(migrationGraph.getDependencies(migrations.get(0)).isEmpty());
+        Assert.assertTrue(migrationGraph.getDependencies(migrations.get(1)).isEmpty());
+        Assert.assertTrue(migrationGraph.getUnschedulableMigrations().isEmpty());
+    }
+
+    @Test
+    public void createMigrationGraphTestMigrationDependsOnCapacityFreedByAnotherMigration() {
+        ClusterSnapshot snapshot = createSnapshot(createHostWithVms(1l, 4096l, createVm(1l, 3072l)), createHostWithVms(2l, 4096l, createVm(2l, 2048l)), createHostWithVms(3l, 4096l));
+        VmMigration firstMigration = createMigration(1l, 1l, 2l);
+        VmMigration secondMigration = createMigration(2l, 2l, 3l);
+
+        MigrationGraph migrationGraph = planner.createMigrationGraph(snapshot, Arrays.asList(firstMigration, secondMigration));
+
+        Assert.assertEquals(Arrays.asList(secondMigration, firstMigration), migrationGraph.getMigrations());
+        Assert.assertEquals(Arrays.asList(secondMigration), migrationGraph.getDependencies(firstMigration));
+        Assert.assertTrue(migrationGraph.getDependencies(secondMigration).isEmpty());
+        Assert.assertTrue(migrationGraph.getUnschedulableMigrations().isEmpty());
+    }
+
+    @Test
+    public void createMigrationGraphTestMigrationsToTheSameHostDoNotOvercommitIt() {
+        ClusterSnapshot snapshot = createSnapshot(createHostWithVms(1l, 4096l), createHostWithVms(2l, 4096l, createVm(1l, 2048l)), createHostWithVms(3l, 4096l, createVm(2l, 3072l)));
+        VmMigration firstMigration = createMigration(1l, 2l, 1l);
+        VmMigration secondMigration = createMigration(2l, 3l, 1l);
+
+        MigrationGraph migrationGraph = planner.createMigrationGraph(snapshot, Arrays.asList(firstMigration, secondMigration));
+
+        Assert.assertEquals(Arrays.asList(firstMigration), migrationGraph.getMigrations());
+        Assert.assertEquals(Arrays.asList(secondMigration), migrationGraph.getUnschedulableMigrations());
+    }
+
+    @Test
+    public void createMigrationGraphTestVmsSwappingFullHosts() {
+        ClusterSnapshot snapshot = createSnapshot(createHostWithVms(1l, 4096l, createVm(1l, 3072l)), createHostWithVms(2l, 4096l, createVm(2l, 3072l)));
+        List<VmMigration> migrations = Arrays.asList(createMigration(1l, 1l, 2l), createMigration(2l, 2l, 1l));
+
+        MigrationGraph migrationGraph = planner.createMigrationGraph(snapshot, migrations);
+
+        Assert.assertTrue(migrationGraph.getMigrations().isEmpty());
+        Assert.assertEquals(migrations, migrationGraph.getUnschedulableMigrations());
+    }
+
+    @Test
+    public void createMigrationGraphTestMigrationsNotInSnapshot() {
+        ClusterSnapshot snapshot = createSnapshot(createHostWithVms(1l, 4096l, createVm(1l, 1024l)), createHostWithVms(2l, 4096l));
+        List<VmMigration> migrations = Arrays.asList(createMigration(3l, 1l, 2l), createMigration(1l, 1l, 3l), createMigration(1l, 2l, 1l));
+
+        MigrationGraph migrationGraph = planner.createMigrationGraph(snapshot, migrations);
+
+        Assert.assertTrue(migrationGraph.getMigrations().isEmpty());
+        Assert.assertEquals(migrations, migrationGraph.getUnschedulableMigrations());
+    }
+
+    @Test
+    public void createMigrationGraphTestSnapshotNotChanged() {
+        ClusterSnapshot snapshot = createSnapshot(createHostWithVms(1l, 4096l, createVm(1l, 1024l)), createHostWithVms(2l, 4096l));
+
+        planner.createMigrationGraph(snapshot, Arrays.asList(createMigration(1l, 1l, 2l)));
+
+        Assert.assertEquals(0, snapshot.getVmHost(0));
+        Assert.assertTrue(snapshot.getMigratedVms().isEmpty());
+    }
+
+    @Test
+    public void canStartMigrationTest() {
+        ClusterSnapshot snapshot = createSnapshot(createHostWithVms(1l, 4096l, createVm(1l, 1024l)), createHostWithVms(2l, 4096l, createVm(2l, 2048l)));
+        long[] hostsIncomingCpu = new long[2];
+        long[] hostsIncomingMemory = new long[2];
+
+        Assert.assertTrue(planner.canStartMigration(snapshot, 0, 1, hostsIncomingCpu, hostsIncomingMemory));
+        hostsIncomingMemory[1] = 1536l;
+        Assert.assertFalse(planner.canStartMigration(snapshot, 0, 1, hostsIncomingCpu, hostsIncomingMemory));
+        hostsIncomingMemory[1] = 0l;
+        hostsIncomingCpu[1] = 7100l;
+        Assert.assertFalse(planner.canStartMigration(snapshot, 0, 1, hostsIncomingCpu, hostsIncomingMemory));
+    }
+
+    private ClusterSnapshot createSnapshot(HostResources... hosts) {
+        return new ClusterSnapshot(new ArrayList<>(Arrays.asList(hosts)));
+    }
+
+    private VmMigration createMigration(long vmId, long sourceHostId, long targetHostId) {
+        return new VmMigration(vmId, sourceHostId, 1l, targetHostId, 1l);
+    }
+
+    private VmResources createVm(long vmId, long memoryInMegaBytes) {
+        return new VmResources(vmId, 1, 500l, memoryInMegaBytes);
+    }
+
+    private HostResources createHostWithVms(long hostId, long totalMemoryInMegaBytes, VmResources... vms) {
+        HostResources host = createHost(8, 1000l, 0l, totalMemoryInMegaBytes, 0l);
+        host.setHostId(hostId);
+        for (VmResources vm : vms) {
+            host.getVmsResources().add(vm);
+            host.setUsedCpu(host.getUsedCpu() + vm.getNumberOfCpus() * vm.getCpuSpeed());
+            host.setUsedMemoryInMegaBytes(host.getUsedMemoryInMegaBytes() + vm.getMemoryInMegaBytes());
+        }
+        return host;
+    }
+}
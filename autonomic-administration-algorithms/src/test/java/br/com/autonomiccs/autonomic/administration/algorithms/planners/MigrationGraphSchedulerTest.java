@@ -0,0 +1,233 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.planners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+
+public class MigrationGraphSchedulerTest {
+
+    private MigrationGraph migrationGraph = new MigrationGraph();
+
+    @Test
+    public void nextMigrationsToStartTestNoMigrations() {
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 1);
+
+        Assert.assertTrue(scheduler.nextMigrationsToStart().isEmpty());
+        Assert.assertFalse(scheduler.hasMigrationsToExecute());
+    }
+
+    @Test
+    public void nextMigrationsToStartTestIndependentMigrations() {
+        VmMigration firstMigration = addMigration(new VmMigration(1l, 1l, 1l, 4l, 1l));
+        VmMigration secondMigration = addMigration(new VmMigration(2l, 2l, 1l, 4l, 1l));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 2, 3);
+
+        Assert.assertEquals(Arrays.asList(firstMigration, secondMigration), scheduler.nextMigrationsToStart());
+        Assert.assertTrue(scheduler.nextMigrationsToStart().isEmpty());
+        Assert.assertEquals(2, scheduler.getNumberOfRunningMigrations());
+    }
+
+    @Test
+    public void nextMigrationsToStartTestLimitPerSourceHost() {
+        VmMigration firstMigration = addMigration(new VmMigration(1l, 1l, 1l, 4l, 1l));
+        VmMigration secondMigration = addMigration(new VmMigration(2l, 1l, 1l, 5l, 1l));
+        VmMigration thirdMigration = addMigration(new VmMigration(3l, 2l, 1l, 5l, 1l));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 2, 3);
+
+        Assert.assertEquals(Arrays.asList(firstMigration, thirdMigration), scheduler.nextMigrationsToStart());
+        scheduler.migrationFinished(firstMigration, true);
+        Assert.assertEquals(Arrays.asList(secondMigration), scheduler.nextMigrationsToStart());
+    }
+
+    @Test
+    public void nextMigrationsToStartTestLimitPerTargetHost() {
+        List<VmMigration> migrations = Arrays.asList(addMigration(new VmMigration(1l, 1l, 1l, 4l, 1l)), addMigration(new VmMigration(2l, 2l, 1l, 4l, 1l)),
+                addMigration(new VmMigration(3l, 3l, 1l, 4l, 1l)));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 2, 3);
+
+        Assert.assertEquals(migrations.subList(0, 2), scheduler.nextMigrationsToStart());
+        scheduler.migrationFinished(migrations.get(1), false);
+        Assert.assertEquals(migrations.subList(2, 3), scheduler.nextMigrationsToStart());
+    }
+
+    @Test
+    public void nextMigrationsToStartTestLimitPerCluster() {
+        List<VmMigration> migrations = Arrays.asList(addMigration(new VmMigration(1l, 1l, 1l, 5l, 1l)), addMigration(new VmMigration(2l, 2l, 1l, 6l, 1l)),
+                addMigration(new VmMigration(3l, 3l, 1l, 7l, 1l)), addMigration(new VmMigration(4l, 4l, 1l, 8l, 1l)), addMigration(new VmMigration(5l, 9l, 2l, 10l, 2l)));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 2, 3);
+
+        Assert.assertEquals(Arrays.asList(migrations.get(0), migrations.get(1), migrations.get(2), migrations.get(4)), scheduler.nextMigrationsToStart());
+    }
+
+    @Test
+    public void nextMigrationsToStartTestMigrationBetweenClustersCountsForBothClusters() {
+        List<VmMigration> migrations = Arrays.asList(addMigration(new VmMigration(1l, 1l, 1l, 5l, 2l)), addMigration(new VmMigration(2l, 2l, 1l, 6l, 1l)),
+                addMigration(new VmMigration(3l, 3l, 1l, 7l, 1l)), addMigration(new VmMigration(4l, 4l, 2l, 8l, 2l)), addMigration(new VmMigration(5l, 9l, 2l, 10l, 2l)),
+                addMigration(new VmMigration(6l, 11l, 2l, 12l, 2l)));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 2, 3);
+
+        Assert.assertEquals(migrations.subList(0, 5), scheduler.nextMigrationsToStart());
+        scheduler.migrationFinished(migrations.get(0), true);
+        Assert.assertEquals(migrations.subList(5, 6), scheduler.nextMigrationsToStart());
+    }
+
+    @Test
+    public void nextMigrationsToStartTestMigrationWaitsForItsDependencies() {
+        VmMigration firstMigration = addMigration(new VmMigration(1l, 2l, 1l, 3l, 1l));
+        VmMigration independentMigration = addMigration(new VmMigration(2l, 4l, 1l, 5l, 1l));
+        VmMigration dependentMigration = addMigration(new VmMigration(3l, 1l, 1l, 2l, 1l), firstMigration);
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 10);
+
+        Assert.assertEquals(Arrays.asList(firstMigration, independentMigration), scheduler.nextMigrationsToStart());
+        scheduler.migrationFinished(independentMigration, true);
+        Assert.assertTrue(scheduler.nextMigrationsToStart().isEmpty());
+        scheduler.migrationFinished(firstMigration, true);
+        Assert.assertEquals(Arrays.asList(dependentMigration), scheduler.nextMigrationsToStart());
+        scheduler.migrationFinished(dependentMigration, true);
+
+        Assert.assertFalse(scheduler.hasMigrationsToExecute());
+        Assert.assertEquals(3, scheduler.getSucceededMigrations().size());
+    }
+
+    @Test
+    public void nextMigrationsToStartTestDependencyFailed() {
+        VmMigration firstMigration = addMigration(new VmMigration(1l, 2l, 1l, 3l, 1l));
+        VmMigration dependentMigration = addMigration(new VmMigration(2l, 1l, 1l, 2l, 1l), firstMigration);
+        VmMigration transitivelyDependentMigration = addMigration(new VmMigration(3l, 4l, 1l, 1l, 1l), dependentMigration);
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 10);
+
+        Assert.assertEquals(Arrays.asList(firstMigration), scheduler.nextMigrationsToStart());
+        scheduler.migrationFinished(firstMigration, false);
+        Assert.assertTrue(scheduler.nextMigrationsToStart().isEmpty());
+
+        Assert.assertFalse(scheduler.hasMigrationsToExecute());
+        Assert.assertEquals(Arrays.asList(firstMigration), scheduler.getFailedMigrations());
+        Assert.assertEquals(Arrays.asList(dependentMigration, transitivelyDependentMigration), scheduler.getCanceledMigrations());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void migrationFinishedTestMigrationNotRunning() {
+        VmMigration migration = addMigration(new VmMigration(1l, 1l, 1l, 2l, 1l));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 1);
+
+        scheduler.migrationFinished(migration, true);
+    }
+
+    @Test
+    public void retryMigrationTestRetrySucceeded() {
+        VmMigration migration = addMigration(new VmMigration(1l, 1l, 1l, 2l, 1l));
+        VmMigration dependentMigration = addMigration(new VmMigration(2l, 3l, 1l, 1l, 1l), migration);
+        VmMigration retryMigration = new VmMigration(1l, 1l, 1l, 4l, 1l);
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 2);
+
+        Assert.assertEquals(Arrays.asList(migration), scheduler.nextMigrationsToStart());
+        scheduler.retryMigration(migration, retryMigration);
+        Assert.assertEquals(Arrays.asList(retryMigration), scheduler.nextMigrationsToStart());
+        Assert.assertEquals(2, scheduler.getNumberOfAttempts(retryMigration));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(2l, 4l)), scheduler.getTriedTargetHosts(migration));
+
+        scheduler.migrationFinished(retryMigration, true);
+        Assert.assertEquals(Collections.singleton(migration), scheduler.getSucceededMigrations());
+        Assert.assertEquals(Arrays.asList(dependentMigration), scheduler.nextMigrationsToStart());
+        Assert.assertTrue(scheduler.getFailedMigrations().isEmpty());
+    }
+
+    @Test
+    public void retryMigrationTestRetryFailed() {
+        VmMigration migration = addMigration(new VmMigration(1l, 1l, 1l, 2l, 1l));
+        VmMigration dependentMigration = addMigration(new VmMigration(2l, 3l, 1l, 1l, 1l), migration);
+        VmMigration retryMigration = new VmMigration(1l, 1l, 1l, 4l, 1l);
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 2);
+
+        scheduler.nextMigrationsToStart();
+        scheduler.retryMigration(migration, retryMigration);
+        scheduler.nextMigrationsToStart();
+        scheduler.migrationFinished(retryMigration, false);
+
+        Assert.assertTrue(scheduler.nextMigrationsToStart().isEmpty());
+        Assert.assertEquals(Arrays.asList(migration), scheduler.getFailedMigrations());
+        Assert.assertEquals(Arrays.asList(dependentMigration), scheduler.getCanceledMigrations());
+        Assert.assertFalse(scheduler.hasMigrationsToExecute());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void retryMigrationTestMigrationNotRunning() {
+        VmMigration migration = addMigration(new VmMigration(1l, 1l, 1l, 2l, 1l));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 1);
+
+        scheduler.retryMigration(migration, new VmMigration(1l, 1l, 1l, 3l, 1l));
+    }
+
+    @Test
+    public void abortTest() {
+        VmMigration runningMigration = addMigration(new VmMigration(1l, 1l, 1l, 4l, 1l));
+        VmMigration pendingMigration = addMigration(new VmMigration(2l, 1l, 1l, 5l, 1l));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 1);
+
+        scheduler.nextMigrationsToStart();
+        scheduler.abort();
+
+        Assert.assertTrue(scheduler.isAborted());
+        Assert.assertEquals(Arrays.asList(pendingMigration), scheduler.getCanceledMigrations());
+        Assert.assertTrue(scheduler.hasMigrationsToExecute());
+        scheduler.migrationFinished(runningMigration, true);
+        Assert.assertTrue(scheduler.nextMigrationsToStart().isEmpty());
+        Assert.assertFalse(scheduler.hasMigrationsToExecute());
+    }
+
+    @Test
+    public void getFailureRateTest() {
+        List<VmMigration> migrations = Arrays.asList(addMigration(new VmMigration(1l, 1l, 1l, 4l, 1l)), addMigration(new VmMigration(2l, 2l, 1l, 5l, 1l)),
+                addMigration(new VmMigration(3l, 3l, 1l, 6l, 1l)));
+        MigrationGraphScheduler scheduler = new MigrationGraphScheduler(migrationGraph, 1, 1, 3);
+
+        Assert.assertEquals(0, scheduler.getFailureRate(), 0);
+        scheduler.nextMigrationsToStart();
+        scheduler.migrationFinished(migrations.get(0), false);
+        scheduler.migrationFinished(migrations.get(1), true);
+        Assert.assertEquals(2, scheduler.getNumberOfFinishedMigrations());
+        Assert.assertEquals(0.5, scheduler.getFailureRate(), 0);
+        scheduler.migrationFinished(migrations.get(2), true);
+        Assert.assertEquals(1 / 3d, scheduler.getFailureRate(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void migrationGraphSchedulerTestInvalidLimit() {
+        new MigrationGraphScheduler(migrationGraph, 1, 0, 1);
+    }
+
+    private VmMigration addMigration(VmMigration migration, VmMigration... dependencies) {
+        migrationGraph.addMigration(migration, new ArrayList<>(Arrays.asList(dependencies)));
+        return migration;
+    }
+}
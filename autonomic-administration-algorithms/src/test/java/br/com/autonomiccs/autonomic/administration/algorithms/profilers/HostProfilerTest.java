@@ -76,4 +76,14 @@ public class HostProfilerTest extends ConsolidationAlgorithmsTest {
         Assert.assertEquals(1500, vmsProfile.getTotalMemory());
     }
 
+    @Test
+    public void hostVMsResourceProportionCalculatesClusterVmsProfileOnceTest() {
+        spyProfiler.hostVMsResourceProportion(createHost(4, 1000l, 0l, 5000l, 0l));
+        spyProfiler.hostVMsResourceProportion(createHost(2, 1000l, 0l, 2000l, 0l));
+        spyProfiler.hostVMsResourceProportion(createHost(1, 1000l, 0l, 1000l, 0l));
+
+        Mockito.verify(spyProfiler, Mockito.times(1)).getHostsVmsResources();
+        Mockito.verify(spyProfiler, Mockito.times(1)).createClusterVmsProfile(Mockito.any(ClusterVmProfile.class));
+    }
+
 }
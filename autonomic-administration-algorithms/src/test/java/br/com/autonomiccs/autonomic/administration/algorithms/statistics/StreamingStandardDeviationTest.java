@@ -0,0 +1,142 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.algorithms.statistics;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamingStandardDeviationTest {
+
+    private static final double DELTA = 0.000001;
+
+    private Random random = new Random();
+    private StandardDeviation std = new StandardDeviation(false);
+
+    @Test
+    public void getStandardDeviationTestEmpty() {
+        StreamingStandardDeviation streamingStandardDeviation = new StreamingStandardDeviation();
+        Assert.assertEquals(0, streamingStandardDeviation.getN());
+        Assert.assertTrue(Double.isNaN(streamingStandardDeviation.getMean()));
+        Assert.assertTrue(Double.isNaN(streamingStandardDeviation.getStandardDeviation()));
+    }
+
+    @Test
+    public void getStandardDeviationTestOneValue() {
+        StreamingStandardDeviation streamingStandardDeviation = new StreamingStandardDeviation();
+        streamingStandardDeviation.add(512);
+        Assert.assertEquals(512, streamingStandardDeviation.getMean(), DELTA);
+        Assert.assertEquals(0, streamingStandardDeviation.getStandardDeviation(), 0);
+    }
+
+    @Test
+    public void getStandardDeviationTestSameValues() {
+        StreamingStandardDeviation streamingStandardDeviation = new StreamingStandardDeviation();
+        for (int i = 0; i < 10; i++) {
+            streamingStandardDeviation.add(1024);
+        }
+        Assert.assertEquals(0, streamingStandardDeviation.getStandardDeviation(), 0);
+    }
+
+    @Test
+    public void addTest() {
+        double[] values = createValues(1000);
+        StreamingStandardDeviation streamingStandardDeviation = createStreamingStandardDeviation(values);
+
+        Assert.assertEquals(1000, streamingStandardDeviation.getN());
+        Assert.assertEquals(std.evaluate(values), streamingStandardDeviation.getStandardDeviation(), DELTA);
+        Assert.assertEquals(std.evaluate(values) * std.evaluate(values), streamingStandardDeviation.getVariance(), DELTA);
+    }
+
+    @Test
+    public void removeTest() {
+        double[] values = createValues(100);
+        StreamingStandardDeviation streamingStandardDeviation = createStreamingStandardDeviation(values);
+
+        streamingStandardDeviation.remove(values[99]);
+        streamingStandardDeviation.remove(values[0]);
+
+        double[] remainingValues = new double[98];
+        System.arraycopy(values, 1, remainingValues, 0, 98);
+        Assert.assertEquals(98, streamingStandardDeviation.getN());
+        Assert.assertEquals(std.evaluate(remainingValues), streamingStandardDeviation.getStandardDeviation(), DELTA);
+    }
+
+    @Test
+    public void removeTestLastValue() {
+        StreamingStandardDeviation streamingStandardDeviation = new StreamingStandardDeviation();
+        streamingStandardDeviation.add(512);
+        streamingStandardDeviation.remove(512);
+        Assert.assertEquals(0, streamingStandardDeviation.getN());
+        Assert.assertTrue(Double.isNaN(streamingStandardDeviation.getStandardDeviation()));
+    }
+
+    @Test
+    public void replaceTest() {
+        double[] values = createValues(100);
+        StreamingStandardDeviation streamingStandardDeviation = createStreamingStandardDeviation(values);
+
+        for (int i = 0; i < 1000; i++) {
+            int source = random.nextInt(values.length);
+            int target = random.nextInt(values.length);
+            double vmMemory = 256 * (1 + random.nextInt(8));
+            streamingStandardDeviation.replace(values[source], values[source] - vmMemory);
+            values[source] -= vmMemory;
+            streamingStandardDeviation.replace(values[target], values[target] + vmMemory);
+            values[target] += vmMemory;
+        }
+
+        Assert.assertEquals(100, streamingStandardDeviation.getN());
+        Assert.assertEquals(std.evaluate(values), streamingStandardDeviation.getStandardDeviation(), DELTA);
+    }
+
+    @Test
+    public void copyConstructorTest() {
+        StreamingStandardDeviation streamingStandardDeviation = createStreamingStandardDeviation(new double[] {512, 1024});
+        StreamingStandardDeviation copy = new StreamingStandardDeviation(streamingStandardDeviation);
+
+        copy.add(2048);
+
+        Assert.assertEquals(2, streamingStandardDeviation.getN());
+        Assert.assertEquals(256, streamingStandardDeviation.getStandardDeviation(), DELTA);
+        Assert.assertEquals(3, copy.getN());
+    }
+
+    private StreamingStandardDeviation createStreamingStandardDeviation(double[] values) {
+        StreamingStandardDeviation streamingStandardDeviation = new StreamingStandardDeviation();
+        for (double value : values) {
+            streamingStandardDeviation.add(value);
+        }
+        return streamingStandardDeviation;
+    }
+
+    private double[] createValues(int amount) {
+        double[] values = new double[amount];
+        for (int i = 0; i < amount; i++) {
+            values[i] = 512 * random.nextInt(64);
+        }
+        return values;
+    }
+}
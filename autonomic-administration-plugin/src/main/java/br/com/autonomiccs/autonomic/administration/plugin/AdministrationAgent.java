@@ -23,9 +23,13 @@
 package br.com.autonomiccs.autonomic.administration.plugin;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
@@ -35,34 +39,37 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.cloud.dc.ClusterVO;
-import com.cloud.dc.DataCenterVO;
 import com.cloud.host.HostVO;
-import com.cloud.resource.ResourceManager;
-import com.cloud.utils.exception.CloudRuntimeException;
-import com.cloud.vm.UserVmService;
 import com.cloud.vm.VMInstanceVO;
 
 import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.CrossClusterConsolidationPlan;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationPlan;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.AlternativeTargetHostSelector;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.CrossClusterConsolidationPlanner;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.MigrationDependencyPlanner;
 import br.com.autonomiccs.autonomic.administration.plugin.services.AutonomicClusterManagementService;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterResourcesUp;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.services.CloudResourcesService;
 import br.com.autonomiccs.autonomic.algorithms.commons.services.ClusterResourcesService;
-import br.com.autonomiccs.autonomic.algorithms.commons.services.HostResourcesService;
 import br.com.autonomiccs.autonomic.plugin.common.enums.ClusterAdministrationStatus;
 import br.com.autonomiccs.autonomic.plugin.common.services.AutonomicClusterManagementHeuristicService;
+import br.com.autonomiccs.autonomic.plugin.common.services.CloudResourceModelService;
 import br.com.autonomiccs.autonomic.plugin.common.services.ClusterService;
 import br.com.autonomiccs.autonomic.plugin.common.services.HostService;
 import br.com.autonomiccs.autonomic.plugin.common.services.VirtualMachineService;
-import br.com.autonomiccs.autonomic.plugin.common.services.ZoneService;
-import br.com.autonomiccs.autonomic.plugin.common.utils.ThreadUtils;
 
 /**
- * This class implements the administration agent. The agent keeps constantly searching for clusters
- * to act on; when it finds a cluster available to be managed, it executes all of
- * the administration task upon the cluster. Be aware that those tasks are controlled by heuristics
- * loaded into the agent.
+ * This class implements the administration agent. The agent receives the clusters that are due to
+ * be managed from the {@link ClusterAdministrationScheduler} and executes all of the administration
+ * task upon them. Be aware that those tasks are controlled by heuristics loaded into the agent.
  */
 @Component("administrationAgent")
 public class AdministrationAgent implements InitializingBean {
@@ -70,12 +77,6 @@ public class AdministrationAgent implements InitializingBean {
     @Autowired
     private ClusterService clusterService;
     @Autowired
-    private UserVmService userVmService;
-    @Autowired
-    private HypervisorManager hypervisorManager;
-    @Autowired
-    private ResourceManager resourceManager;
-    @Autowired
     private HostService hostService;
     @Autowired
     private AutonomicClusterManagementService autonomicClusterManagementService;
@@ -84,27 +85,30 @@ public class AdministrationAgent implements InitializingBean {
     @Autowired
     private CloudResourcesService cloudResourcesService;
     @Autowired
-    private ThreadUtils threadUtils;
-    @Autowired
-    private ZoneService zoneService;
-    @Autowired
-    private HostResourcesService hostResourcesService;
+    private CloudResourceModelService cloudResourceModelService;
     @Autowired
     private AutonomicClusterManagementHeuristicService autonomicManagementHeuristicService;
     @Autowired
     private VirtualMachineService virtualMachineService;
+    @Autowired
+    private VmMigrationExecutor vmMigrationExecutor;
+    @Autowired
+    private HostShutdownExecutor hostShutdownExecutor;
+
+    protected CrossClusterConsolidationPlanner crossClusterConsolidationPlanner = new CrossClusterConsolidationPlanner();
+    protected MigrationDependencyPlanner migrationDependencyPlanner = new MigrationDependencyPlanner();
 
     private Logger logger = LoggerFactory.getLogger(getClass());
 
     /**
-     * It receives the cluster id from channel "outputChannel" using spring
-     * integration. With the given cluster, it loads the
+     * It receives the id of a cluster that is due to be managed from the
+     * {@link ClusterAdministrationScheduler}; the cluster was already set as
+     * {@link ClusterAdministrationStatus#InProgress}. With the given cluster, it loads the
      * {@link ClusterAdministrationHeuristicAlgorithm} to be used and executes the
-     * {@link #workOnCluster(ClusterVO, ClusterAdministrationHeuristicAlgorithm)} method.
-     *
-     * @note spring integration configuration is in
-     *       '/autonomic-administration-plugin/resources/META-INF/cloudstack/
-     *       administration/spring-administration-context.xml' file.
+     * {@link #workOnCluster(ClusterVO, ClusterAdministrationHeuristicAlgorithm)} method. If the
+     * cluster is not found, its administration is canceled (
+     * {@link AutonomicClusterManagementService#cancelClusterWorkInProgress(long)}), releasing its
+     * lease.
      */
     public void receiveClusterToBeManaged(Long clusterId) {
         if (clusterId == null) {
@@ -115,68 +119,13 @@ public class AdministrationAgent implements InitializingBean {
 
         if (clusterToManage == null) {
             logger.debug(String.format("Received a cluster [id=%d] to be managed that was not found on database.", clusterId));
+            autonomicClusterManagementService.cancelClusterWorkInProgress(clusterId);
             return;
         }
-        ClusterAdministrationHeuristicAlgorithm administrationAlgorithm = autonomicManagementHeuristicService.getAdministrationAlgorithm();
+        ClusterAdministrationHeuristicAlgorithm administrationAlgorithm = autonomicManagementHeuristicService.getAdministrationAlgorithm(clusterId);
         workOnCluster(clusterToManage, administrationAlgorithm);
     }
 
-    /**
-     * It searches a cluster to be managed and sends it to {@link #receiveClusterToBeManaged(Long)}
-     * method using spring-integration work flow.
-     *
-     * @note This method is used by a spring integration channel configured in
-     *       '/autonomic-administration-plugin/resources/META-INF/cloudstack/
-     *       administration/spring-administration-context.xml' file.
-     * @return Cluster Id.
-     */
-    public Long searchClusterToBeManaged() {
-        ClusterAdministrationHeuristicAlgorithm administrationAlgorithm = autonomicManagementHeuristicService.getAdministrationAlgorithm();
-        ClusterVO clusterToManage = getClusterToManage(administrationAlgorithm);
-        if (clusterToManage != null) {
-            return clusterToManage.getId();
-        }
-        return null;
-    }
-
-    /**
-     * It return a cluster to be managed. If the last management of a cluster has not happened in a
-     * given threshold that is configured by the {@link ClusterAdministrationHeuristicAlgorithm}),
-     * it returns null.
-     */
-    protected ClusterVO getClusterToManage(ClusterAdministrationHeuristicAlgorithm algorithm) {
-        List<DataCenterVO> enabledZones = zoneService.listAllZonesEnabled();
-        for (DataCenterVO zone : enabledZones) {
-            Long zoneId = zone.getId();
-
-            ClusterVO c = getClusterToManageFromZone(algorithm, zoneId);
-            if (c != null) {
-                return c;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * It returns a cluster to be managed from a given zone.
-     */
-    protected ClusterVO getClusterToManageFromZone(ClusterAdministrationHeuristicAlgorithm algorithm, Long zoneId) {
-        List<ClusterVO> clusters = clusterService.listAllClustersOnZone(zoneId);
-        for (ClusterVO cluster : clusters) {
-            if (cluster.getRemoved() != null) {
-                continue;
-            }
-            if (autonomicClusterManagementService.isClusterBeingAdministrated(cluster.getId())) {
-                continue;
-            }
-            if (autonomicClusterManagementService.canProcessCluster(cluster.getId(), algorithm)) {
-                autonomicClusterManagementService.setClusterWorkInProgress(cluster.getId());
-                return cluster;
-            }
-        }
-        return null;
-    }
-
     /**
      * It applies a given administration algorithm onto a cluster. First it
      * executes the {@link #processCluster(ClusterVO, ClusterAdministrationHeuristicAlgorithm)}
@@ -201,10 +150,19 @@ public class AdministrationAgent implements InitializingBean {
     /**
      * If the cluster can be managed (condition determined by the
      * {@link #canProcessCluster(ClusterVO, ClusterAdministrationHeuristicAlgorithm)} method)
-     * it calls the
-     * {@link #mapAndExecuteVMsMigrations(ClusterVO, ClusterAdministrationHeuristicAlgorithm)}
+     * it reconciles the cluster in the cloud resource model with the database (
+     * {@link CloudResourceModelService#reconcileCluster(com.cloud.org.Cluster)}) and calls the
+     * {@link #mapAndExecuteVMsMigrations(ClusterVO, ClusterAdministrationHeuristicAlgorithm, ClusterPlanningContext)}
      * method; then it shutdown idle hosts with (if possible)
-     * {@link #shutdownIdleHosts(ClusterVO, ClusterAdministrationHeuristicAlgorithm)} method.
+     * {@link #shutdownIdleHosts(ClusterVO, ClusterAdministrationHeuristicAlgorithm, ClusterPlanningContext)}
+     * method. Both use the same {@link ClusterPlanningContext}, created for the given cluster;
+     * thus, the same heuristic instance can process many clusters at the same time. Hosts are not
+     * shut down if the cluster administration lease was lost during the migrations (
+     * {@link #areClustersLeasesHeld(List)}).
+     * If other clusters can be planned together with the given cluster (
+     * {@link #getClustersToPlanTogether(ClusterVO, ClusterAdministrationHeuristicAlgorithm)}), it
+     * calls {@link #processClustersTogether(ClusterVO, List, ClusterAdministrationHeuristicAlgorithm)}
+     * instead.
      */
     protected void processCluster(ClusterVO cluster, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
         long clusterId = cluster.getId();
@@ -212,14 +170,137 @@ public class AdministrationAgent implements InitializingBean {
             logger.debug(String.format("Method canProcessCluster returned false for cluster [id=%d]", clusterId));
             return;
         }
-        mapAndExecuteVMsMigrations(cluster, administrationAlgorithm);
+        List<ClusterVO> clustersToPlanTogether = getClustersToPlanTogether(cluster, administrationAlgorithm);
+        if (clustersToPlanTogether.size() > 1) {
+            processClustersTogether(cluster, clustersToPlanTogether, administrationAlgorithm);
+            return;
+        }
+        cloudResourceModelService.reconcileCluster(cluster);
+        ClusterPlanningContext planningContext = new ClusterPlanningContext();
+        mapAndExecuteVMsMigrations(cluster, administrationAlgorithm, planningContext);
 
         if (administrationAlgorithm.canHeuristicShutdownHosts()) {
+            if (!areClustersLeasesHeld(Arrays.asList(cluster))) {
+                return;
+            }
             logger.info(String.format("Shutting down idle hosts for cluster [id=%d] consolidation", clusterId));
-            shutdownIdleHosts(cluster, administrationAlgorithm);
+            shutdownIdleHosts(cluster, administrationAlgorithm, planningContext);
         }
     }
 
+    /**
+     * Returns the given cluster and, if the cross cluster planning is enabled (
+     * {@link AutonomicClusterManagementHeuristicService#isCrossClusterPlanningEnabled()}), the
+     * clusters that share zone wide storage with it (
+     * {@link ClusterService#listClustersSharingZoneWideStorage(ClusterVO)}) whose own heuristic has
+     * the same class and parameters as the given heuristic (
+     * {@link AutonomicClusterManagementHeuristicService#isSameAdministrationAlgorithmConfiguration(ClusterAdministrationHeuristicAlgorithm, ClusterAdministrationHeuristicAlgorithm)}
+     * ), that can be processed and whose administration lease could be acquired (
+     * {@link AutonomicClusterManagementService#setClusterWorkInProgress(long)}); those clusters are
+     * set as {@link ClusterAdministrationStatus#InProgress}. If an error happens while the clusters
+     * are being claimed, the leases already acquired are released (
+     * {@link AutonomicClusterManagementService#cancelClusterWorkInProgress(long)}) before the error
+     * is propagated.
+     */
+    protected List<ClusterVO> getClustersToPlanTogether(ClusterVO cluster, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+        List<ClusterVO> clustersToPlanTogether = new ArrayList<>();
+        clustersToPlanTogether.add(cluster);
+        if (!autonomicManagementHeuristicService.isCrossClusterPlanningEnabled()) {
+            return clustersToPlanTogether;
+        }
+        boolean clustersClaimed = false;
+        try {
+            for (ClusterVO clusterSharingStorage : clusterService.listClustersSharingZoneWideStorage(cluster)) {
+                long clusterId = clusterSharingStorage.getId();
+                if (clusterId == cluster.getId()) {
+                    continue;
+                }
+                ClusterAdministrationHeuristicAlgorithm clusterAdministrationAlgorithm = autonomicManagementHeuristicService.getAdministrationAlgorithm(clusterId);
+                if (!autonomicManagementHeuristicService.isSameAdministrationAlgorithmConfiguration(administrationAlgorithm, clusterAdministrationAlgorithm)) {
+                    logger.debug(String.format("Cluster [id=%d] is not planned together with cluster [id=%d]; their heuristics or heuristics parameters differ.", clusterId,
+                            cluster.getId()));
+                    continue;
+                }
+                if (autonomicClusterManagementService.canProcessCluster(clusterId, clusterAdministrationAlgorithm)
+                        && autonomicClusterManagementService.setClusterWorkInProgress(clusterId)) {
+                    clustersToPlanTogether.add(clusterSharingStorage);
+                }
+            }
+            clustersClaimed = true;
+        } finally {
+            if (!clustersClaimed) {
+                for (ClusterVO claimedCluster : clustersToPlanTogether.subList(1, clustersToPlanTogether.size())) {
+                    autonomicClusterManagementService.cancelClusterWorkInProgress(claimedCluster.getId());
+                }
+            }
+        }
+        return clustersToPlanTogether;
+    }
+
+    /**
+     * It reconciles each of the given clusters in the cloud resource model with the database (
+     * {@link CloudResourceModelService#reconcileCluster(com.cloud.org.Cluster)}) and plans them at
+     * once with the {@link CrossClusterConsolidationPlanner}; VMs that are not using only zone wide
+     * storage are pinned to their clusters. Then, it executes the
+     * VMs migrations of the plan and (if the heuristic can shut down hosts) shuts down the idle
+     * hosts of the plan, if the administration leases of all the clusters are still held (
+     * {@link #areClustersLeasesHeld(List)}). At the end, the clusters other than the given cluster are marked as
+     * {@link ClusterAdministrationStatus#Done}; the given cluster is marked by
+     * {@link #workOnCluster(ClusterVO, ClusterAdministrationHeuristicAlgorithm)}.
+     */
+    protected void processClustersTogether(ClusterVO cluster, List<ClusterVO> clusters, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+        try {
+            List<ClusterResourcesUp> clustersResourcesUp = new ArrayList<>();
+            List<HostResources> allHosts = new ArrayList<>();
+            Map<Long, Long> hostsClusters = new HashMap<>();
+            Set<Long> vmsPinnedToTheirCluster = new HashSet<>();
+            for (ClusterVO clusterToPlan : clusters) {
+                cloudResourceModelService.reconcileCluster(clusterToPlan);
+                List<HostResources> hosts = getClusterUpHosts(clusterToPlan);
+                allHosts.addAll(hosts);
+                hostsClusters.putAll(mapHostsToCluster(hosts, clusterToPlan.getId()));
+                clustersResourcesUp.add(clusterResourcesService.createClusterResourcesUp(clusterToPlan.getId(), clusterToPlan.getName(), hosts));
+                for (HostResources host : hosts) {
+                    for (VmResources vm : host.getVmsResources()) {
+                        if (!virtualMachineService.isVmUsingOnlyZoneWideStorage(vm.getVmId())) {
+                            vmsPinnedToTheirCluster.add(vm.getVmId());
+                        }
+                    }
+                }
+            }
+            logger.info(String.format("Planning [%d] clusters together with cluster[id=%d].", clusters.size(), cluster.getId()));
+            ClusterSnapshot clustersSnapshot = createClusterSnapshot(allHosts);
+            CrossClusterConsolidationPlan consolidationPlan = crossClusterConsolidationPlanner.createConsolidationPlan(clustersResourcesUp, vmsPinnedToTheirCluster,
+                    administrationAlgorithm);
+            logMigrationPlan(cluster.getId(), consolidationPlan.getMigrationPlan());
+            executeVMsMigrations(consolidationPlan.getMigrationPlan().getVmsToHost(), clustersSnapshot, hostsClusters);
+            if (administrationAlgorithm.canHeuristicShutdownHosts() && areClustersLeasesHeld(clusters)) {
+                shutdownHosts(consolidationPlan.getHostsToShutdown(), administrationAlgorithm);
+            }
+        } finally {
+            for (ClusterVO clusterToPlan : clusters) {
+                if (clusterToPlan.getId() != cluster.getId()) {
+                    autonomicClusterManagementService.markAdministrationStatusInClusterAsDone(clusterToPlan.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * It returns true if this management server still holds the administration lease of all the
+     * given clusters ({@link AutonomicClusterManagementService#isClusterLeaseHeld(long)}); otherwise,
+     * another management server may be managing some of them, and this administration must stop.
+     */
+    protected boolean areClustersLeasesHeld(List<ClusterVO> clusters) {
+        for (ClusterVO cluster : clusters) {
+            if (!autonomicClusterManagementService.isClusterLeaseHeld(cluster.getId())) {
+                logger.warn(String.format("The administration lease of cluster [id=%d] was lost; its administration is aborted.", cluster.getId()));
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * It shuts idle hosts down in the given cluster. It will check if a host can
      * be shutdown using
@@ -227,10 +308,10 @@ public class AdministrationAgent implements InitializingBean {
      * method. To check if another host in the cloud can be powered off, it
      * uses
      * {@link ClusterAdministrationHeuristicAlgorithm#canPowerOffAnotherHostInCloud(CloudResources)}
-     * . To shut down a host it calls the
-     * {@link #shutDownHost(long)} method.
+     * . The hosts are shut down with {@link #shutdownHosts(List, ClusterAdministrationHeuristicAlgorithm)}.
+     * The idle hosts are ranked with the given planning context.
      */
-    protected void shutdownIdleHosts(ClusterVO cluster, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+    protected void shutdownIdleHosts(ClusterVO cluster, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm, ClusterPlanningContext planningContext) {
         if (!administrationAlgorithm.canHeuristicShutdownHosts()) {
             return;
         }
@@ -242,46 +323,116 @@ public class AdministrationAgent implements InitializingBean {
         }
 
         logger.info(String.format("Ranking hosts to shutdown on cluster[%d]", clusterId));
-        List<HostResources> orderedHostsToPowerOff = administrationAlgorithm.rankHostToPowerOff(idleHosts);
+        shutdownHosts(administrationAlgorithm.rankHostToPowerOff(idleHosts, planningContext), administrationAlgorithm);
+    }
+
+    /**
+     * It selects the hosts to shut down with
+     * {@link #selectHostsToShutdown(List, ClusterAdministrationHeuristicAlgorithm)} and shuts them
+     * down in parallel with {@link HostShutdownExecutor#shutdownHosts(List)}.
+     */
+    protected void shutdownHosts(List<HostResources> orderedHostsToPowerOff, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+        if (CollectionUtils.isEmpty(orderedHostsToPowerOff)) {
+            return;
+        }
+        List<HostResources> hostsToShutdown = selectHostsToShutdown(orderedHostsToPowerOff, administrationAlgorithm);
+        if (hostsToShutdown.isEmpty()) {
+            return;
+        }
+        hostShutdownExecutor.shutdownHosts(hostsToShutdown);
+    }
+
+    /**
+     * It validates the capacity budget of the whole batch up front: the given hosts are selected,
+     * in the given order, while
+     * {@link ClusterAdministrationHeuristicAlgorithm#canPowerOffAnotherHostInCloud(CloudResources)}
+     * returns true; a host is selected only if
+     * {@link ClusterAdministrationHeuristicAlgorithm#canPowerOffHost(HostResources, CloudResources)}
+     * returns true. The {@link CloudResources} are created once; the resources of each selected
+     * host are removed from it with
+     * {@link CloudResourcesService#removeHostResources(CloudResources, HostResources)}, as if the
+     * host was already shut down. Hosts that fail to shut down only leave more capacity than
+     * budgeted.
+     */
+    protected List<HostResources> selectHostsToShutdown(List<HostResources> orderedHostsToPowerOff, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+        List<HostResources> hostsToShutdown = new ArrayList<>();
+        CloudResources cloudResources = cloudResourcesService.createCloudResources(createAllClustersResourcesUp());
         for (HostResources host : orderedHostsToPowerOff) {
-            CloudResources cloudResources = cloudResourcesService.createCloudResources(createAllClustersResourcesUp());
             if (!administrationAlgorithm.canPowerOffAnotherHostInCloud(cloudResources)) {
                 logger.info("The agent cannot shut down more hosts given the result of canPowerOffAnotherHostInCloud[false].");
                 break;
             }
             long hostId = host.getHostId();
             if (!administrationAlgorithm.canPowerOffHost(host, cloudResources)) {
-                logger.info(String.format("Could not shut down host[id=%d] for cluster[id=%d]. Result of canPowerOffHost[false]", hostId, clusterId));
+                logger.info(String.format("Could not shut down host[id=%d]. Result of canPowerOffHost[false]", hostId));
                 continue;
             }
-            logger.info(String.format("Shutting down host[id=%d] from cluster[id=%d]. Result of canPowerOffHost[true]", hostId, clusterId));
-            shutdownHost(hostId);
+            logger.info(String.format("Host[id=%d] will be shut down. Result of canPowerOffHost[true]", hostId));
+            hostsToShutdown.add(host);
+            cloudResourcesService.removeHostResources(cloudResources, host);
         }
+        return hostsToShutdown;
     }
 
     /**
-     * Returns a list of clusters resources for the whole environment.
+     * Returns a list of clusters resources for the whole environment. The hosts of each zone are
+     * loaded at once with {@link #getZoneUpHostsByCluster(long, Map)}.
      */
     public List<ClusterResourcesUp> createAllClustersResourcesUp() {
         List<ClusterResourcesUp> clusters = new ArrayList<>();
         List<ClusterVO> clustersVO = clusterService.listAllClusters();
+        Map<Long, Map<Long, List<HostResources>>> zonesUpHostsByCluster = new HashMap<>();
         for (ClusterVO clusterVO : clustersVO) {
             if (clusterVO.getRemoved() != null) {
                 continue;
             }
-            clusters.add(clusterResourcesService.createClusterResourcesUp(clusterVO.getId(), clusterVO.getName(), getClusterUpHosts(clusterVO)));
+            Map<Long, List<HostResources>> zoneUpHostsByCluster = getZoneUpHostsByCluster(clusterVO.getDataCenterId(), zonesUpHostsByCluster);
+            List<HostResources> clusterUpHosts = zoneUpHostsByCluster.get(clusterVO.getId());
+            if (clusterUpHosts == null) {
+                clusterUpHosts = new ArrayList<>();
+            }
+            clusters.add(clusterResourcesService.createClusterResourcesUp(clusterVO.getId(), clusterVO.getName(), clusterUpHosts));
         }
         return clusters;
     }
 
+    /**
+     * It returns the {@link HostResources} that are Up in the given zone, grouped by cluster 'id'.
+     * The hosts of a zone are loaded (with {@link HostService#listAllHostsInZone(long)} and
+     * {@link CloudResourceModelService#createHostsResources(List)}) only if they are not in the
+     * given map yet.
+     */
+    protected Map<Long, List<HostResources>> getZoneUpHostsByCluster(long zoneId, Map<Long, Map<Long, List<HostResources>>> zonesUpHostsByCluster) {
+        Map<Long, List<HostResources>> zoneUpHostsByCluster = zonesUpHostsByCluster.get(zoneId);
+        if (zoneUpHostsByCluster == null) {
+            zoneUpHostsByCluster = new HashMap<>();
+            List<HostVO> hostsVO = hostService.listAllHostsInZone(zoneId);
+            List<HostResources> hosts = cloudResourceModelService.createHostsResources(hostsVO);
+            for (int i = 0; i < hosts.size(); i++) {
+                Long clusterId = hostsVO.get(i).getClusterId();
+                List<HostResources> clusterHosts = zoneUpHostsByCluster.get(clusterId);
+                if (clusterHosts == null) {
+                    clusterHosts = new ArrayList<>();
+                    zoneUpHostsByCluster.put(clusterId, clusterHosts);
+                }
+                clusterHosts.add(hosts.get(i));
+            }
+            zonesUpHostsByCluster.put(zoneId, zoneUpHostsByCluster);
+        }
+        return zoneUpHostsByCluster;
+    }
+
     /**
      * Maps and executes VMs migrations. It starts by ranking hosts that are
-     * 'Up' with {@link ClusterAdministrationHeuristicAlgorithm#rankHosts(List)}; then it maps
-     * migrations with {@link ClusterAdministrationHeuristicAlgorithm#mapVMsToHost(List)} method,
-     * finally it tries every mapped migration with
-     * {@link #migrateVM(VMInstanceVO, HostVO)} method.
+     * 'Up' with {@link ClusterAdministrationHeuristicAlgorithm#rankHosts(List, ClusterPlanningContext)};
+     * then it maps migrations with
+     * {@link ClusterAdministrationHeuristicAlgorithm#mapVMsToHost(List, ClusterPlanningContext)}
+     * method (if the heuristic creates a {@link MigrationPlan}, it is logged with
+     * {@link #logMigrationPlan(long, MigrationPlan)}), finally it executes the mapped migrations with
+     * {@link #executeVMsMigrations(Map, ClusterSnapshot, Map)}, using a {@link ClusterSnapshot} of
+     * the hosts taken before the mapping.
      */
-    protected void mapAndExecuteVMsMigrations(ClusterVO cluster, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+    protected void mapAndExecuteVMsMigrations(ClusterVO cluster, ClusterAdministrationHeuristicAlgorithm administrationAlgorithm, ClusterPlanningContext planningContext) {
         List<HostResources> hosts = getClusterUpHosts(cluster);
         long clusterId = cluster.getId();
 
@@ -290,53 +441,113 @@ public class AdministrationAgent implements InitializingBean {
             return;
         }
 
+        ClusterSnapshot clusterSnapshot = createClusterSnapshot(hosts);
         logger.info(String.format("Starting ranking hosts for cluster[id=%d] administration.", clusterId));
-        List<HostResources> rankedHosts = administrationAlgorithm.rankHosts(hosts);
+        List<HostResources> rankedHosts = administrationAlgorithm.rankHosts(hosts, planningContext);
         logger.info(String.format("Starting mapping VMs for cluster[id=%d] administration.", clusterId));
-        Map<Long, HostResources> migrations = administrationAlgorithm.mapVMsToHost(rankedHosts);
+        Map<Long, HostResources> migrations = administrationAlgorithm.mapVMsToHost(rankedHosts, planningContext);
+        if (planningContext.getMigrationPlan() != null) {
+            logMigrationPlan(clusterId, planningContext.getMigrationPlan());
+        }
         logger.info(String.format("Starting migrating VMs for cluster[id=%d] administration.", clusterId));
+        executeVMsMigrations(migrations, clusterSnapshot, mapHostsToCluster(hosts, clusterId));
+        logger.info(String.format("Migration of VMs for cluster[id=%d] administration was finished.", clusterId));
+    }
+
+    /**
+     * It logs the number of migrations, the number of hosts evacuated and the migration volume (the
+     * memory of the VMs migrated) of the given {@link MigrationPlan}.
+     */
+    protected void logMigrationPlan(long clusterId, MigrationPlan migrationPlan) {
+        logger.info(String.format("Migration plan for cluster[id=%d] administration has [%d] migrations, evacuating [%d] hosts with a migration volume of [%d] MB.", clusterId,
+                migrationPlan.getVmsToHost().size(), migrationPlan.getEvacuatedHosts().size(), migrationPlan.getMigrationVolumeInMegaBytes()));
+    }
 
+    /**
+     * It creates a {@link ClusterSnapshot} of the given hosts, holding the current allocation of
+     * their VMs.
+     */
+    protected ClusterSnapshot createClusterSnapshot(List<HostResources> hosts) {
+        return new ClusterSnapshot(hosts);
+    }
+
+    private Map<Long, Long> mapHostsToCluster(List<HostResources> hosts, long clusterId) {
+        Map<Long, Long> hostsClusters = new HashMap<>();
+        for (HostResources host : hosts) {
+            hostsClusters.put(host.getHostId(), clusterId);
+        }
+        return hostsClusters;
+    }
+
+    /**
+     * It executes the given VMs migrations (VM 'id' to target {@link HostResources}) with
+     * {@link VmMigrationExecutor#executeMigrations(MigrationGraph, AlternativeTargetHostSelector)}.
+     * The migrations are created with {@link #createVmMigration(long, HostResources, Map)} (VMs
+     * mapped to the host they are running on are not migrated) and ordered by their capacity
+     * dependencies with {@link MigrationDependencyPlanner#createMigrationGraph(ClusterSnapshot, List)}
+     * ; the given snapshot must hold the current allocation of the VMs, and the given map the
+     * cluster 'id' of each host of the snapshot (used to select alternative target hosts for
+     * failed migrations).
+     */
+    protected void executeVMsMigrations(Map<Long, HostResources> migrations, ClusterSnapshot clusterSnapshot, Map<Long, Long> hostsClusters) {
+        List<VmMigration> vmsMigrations = new ArrayList<>();
+        Map<Long, HostVO> hostsById = new HashMap<>();
         for (Entry<Long, HostResources> mappedMig : migrations.entrySet()) {
-            Long vmId = mappedMig.getKey();
-            HostVO targetHost = hostService.findHostById(mappedMig.getValue().getHostId());
-            migrateVM(virtualMachineService.searchVmInstanceById(vmId), targetHost);
+            VmMigration vmMigration = createVmMigration(mappedMig.getKey(), mappedMig.getValue(), hostsById);
+            if (vmMigration != null) {
+                vmsMigrations.add(vmMigration);
+            }
         }
-        logger.info(String.format("Migration of VMs for cluster[id=%d] administration was finished.", clusterId));
+        MigrationGraph migrationGraph = migrationDependencyPlanner.createMigrationGraph(clusterSnapshot, vmsMigrations);
+        logger.info(String.format("Migration graph created: %s.", migrationGraph));
+        vmMigrationExecutor.executeMigrations(migrationGraph, createAlternativeTargetHostSelector(clusterSnapshot, migrationGraph, hostsClusters));
     }
 
     /**
-     * Tries to migrate the given virtual machine ({@link VMInstanceVO}) to a target host (
-     * {@link HostVO}). It calls the method
-     * {@link UserVmService#migrateVirtualMachine(Long, com.cloud.host.Host)}; in case of
-     * exception, it catches and logs the issue.
+     * It creates the {@link AlternativeTargetHostSelector} of the given migration graph.
      */
-    protected void migrateVM(VMInstanceVO vm, HostVO host) {
-        long vmId = vm.getId();
-        long targetHostId = host.getId();
+    protected AlternativeTargetHostSelector createAlternativeTargetHostSelector(ClusterSnapshot clusterSnapshot, MigrationGraph migrationGraph, Map<Long, Long> hostsClusters) {
+        return new AlternativeTargetHostSelector(clusterSnapshot, migrationGraph, hostsClusters);
+    }
+
+    /**
+     * It creates the {@link VmMigration} of the given VM to the target host, with the clusters of
+     * the VM host and of the target host. The hosts are loaded with
+     * {@link HostService#findHostById(long)} only if they are not in the given map yet. It returns
+     * null if the VM is not running on a host or if it is already running on the target host.
+     */
+    protected VmMigration createVmMigration(long vmId, HostResources targetHostResources, Map<Long, HostVO> hostsById) {
+        VMInstanceVO vm = virtualMachineService.searchVmInstanceById(vmId);
         Long sourceHostId = vm.getHostId();
+        long targetHostId = targetHostResources.getHostId();
+        if (sourceHostId == null) {
+            logger.debug(String.format("VM [id=%d] is not being migrated hence it is not running on a host.", vmId));
+            return null;
+        }
         if (sourceHostId == targetHostId) {
             logger.debug(String.format("VM [id=%d] is not being migrated hence it was mapped to the host it is running.", vmId));
-            return;
+            return null;
         }
-        try {
-            logger.info(String.format("VM [id=%d] is migrating from host[Id=%d] to host[Id=%d].", vmId, sourceHostId, targetHostId));
-            userVmService.migrateVirtualMachine(vmId, host);
-            logger.info(String.format("VM [id=%d] was migrated from host[Id=%d] to host[Id=%d].", vmId, sourceHostId, targetHostId));
-        } catch (Exception e) {
-            logger.debug(String.format("Could not migrate VM [id=%d] to host [id=%d, hostName=%s], from host [id=%d]", vmId, targetHostId, host.getName(), sourceHostId), e);
+        HostVO sourceHost = findHostById(sourceHostId, hostsById);
+        HostVO targetHost = findHostById(targetHostId, hostsById);
+        return new VmMigration(vmId, sourceHostId, sourceHost.getClusterId(), targetHostId, targetHost.getClusterId());
+    }
+
+    private HostVO findHostById(long hostId, Map<Long, HostVO> hostsById) {
+        HostVO host = hostsById.get(hostId);
+        if (host == null) {
+            host = hostService.findHostById(hostId);
+            hostsById.put(hostId, host);
         }
+        return host;
     }
 
     /**
-     * Returns a list of {@link HostResources} that are Up in the given cluster.
+     * Returns a list of {@link HostResources} that are Up in the given cluster; the resources
+     * allocated to VMs are taken from the {@link CloudResourceModelService}.
      */
     protected List<HostResources> getClusterUpHosts(ClusterVO cluster) {
-        List<HostVO> hostsVo = hostService.listAllHostsInCluster(cluster);
-        List<HostResources> hostsResources = new ArrayList<>();
-        for (HostVO host : hostsVo) {
-            hostsResources.add(hostResourcesService.createHostResources(host));
-        }
-        return hostsResources;
+        return cloudResourceModelService.createHostsResources(hostService.listAllHostsInCluster(cluster));
     }
 
     /**
@@ -362,58 +573,4 @@ public class AdministrationAgent implements InitializingBean {
         logger.debug("Administration Administration initialized");
     }
 
-    /**
-     * If the host is Up and enabled, it puts host in maintenance with
-     * {@link #putHostInMaintenance(long)} and requests a host shutdown with
-     * {@link HypervisorManager#shutdownHost(HostVO)}.
-     */
-    protected void shutdownHost(long hostId) {
-        try {
-            checkIfHostIsUpAndEnabled(hostId);
-
-            List<VMInstanceVO> vms = hostService.listAllVmsFromHost(hostId);
-            if (CollectionUtils.isNotEmpty(vms)) {
-                logger.debug(String.format("Could not shut dow host [id=%d], there are %d VMs running in this host.", hostId, vms.size()));
-                return;
-            }
-            putHostInMaintenance(hostId);
-
-            hypervisorManager.shutdownHost(hostService.findHostById(hostId));
-        } catch (Exception e) {
-            logger.info(String.format("Error while shutting down host [id=%d]", hostId), e);
-        }
-    }
-
-    /**
-     * Checks if the host is Up and Enabled; if not it throws a
-     * {@link CloudRuntimeException}.
-     */
-    protected void checkIfHostIsUpAndEnabled(long hostId) {
-        if (!hostService.isHostUpAndEnabled(hostId)) {
-            throw new CloudRuntimeException(String.format("Host [id=%d] is not Up and/or Enabled", hostId));
-        }
-    }
-
-    /**
-     * Sends the maintenance request with {@link ResourceManager#maintain(long)}
-     * to update the host state to {@link com.cloud.resource.ResourceState#Maintenance}. If the
-     * host state be {@link com.cloud.resource.ResourceState#ErrorInMaintenance} and not
-     * {@link com.cloud.resource.ResourceState#PrepareForMaintenance}, it throws a
-     * {@link CloudRuntimeException}.
-     */
-    protected void putHostInMaintenance(long hostId) {
-        try {
-            resourceManager.maintain(hostId);
-        } catch (Exception e) {
-            throw new CloudRuntimeException(String.format("Problems while putting host [id=%d] on maintenance", hostId), e);
-        }
-        do {
-            threadUtils.sleepThread(3);
-            if (hostService.isHostInMaintenanceError(hostId)) {
-                throw new CloudRuntimeException(String.format("Error while sending the maintenance command to host [id=%d]", hostId));
-            }
-
-        } while (hostService.isHostInPreparedForMaintenance(hostId));
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,325 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.plugin;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import com.cloud.dc.ClusterVO;
+import com.cloud.dc.DataCenterVO;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.plugin.services.AutonomicClusterManagementService;
+import br.com.autonomiccs.autonomic.plugin.common.services.AutonomicClusterManagementHeuristicService;
+import br.com.autonomiccs.autonomic.plugin.common.services.ClusterService;
+import br.com.autonomiccs.autonomic.plugin.common.services.ZoneService;
+
+/**
+ * This class schedules the administration of clusters. The clusters are kept in a priority queue (
+ * {@link DelayQueue}) ordered by the time their next administration is due: the cluster
+ * 'last_administration' plus the
+ * {@link ClusterAdministrationHeuristicAlgorithm#getClusterIntervalBetweenConsolidation()} of the
+ * cluster heuristic. A dispatcher thread waits for the next due cluster and sends it to the
+ * {@link AdministrationAgent} through the cluster administration executor (up to
+ * {@value #MAXIMUM_NUMBER_OF_CLUSTERS_MANAGED_CONCURRENTLY} clusters are managed at the same time);
+ * when the administration finishes, the cluster is scheduled again. Every management server
+ * schedules all clusters; a cluster is only managed by the server that acquires its administration
+ * lease ({@link AutonomicClusterManagementService#setClusterWorkInProgress(long)}), which spreads
+ * the clusters among the management servers. The clusters of the enabled zones are synchronized with
+ * the queue every {@value #NUMBER_OF_MINUTES_BETWEEN_CLUSTERS_SYNCHRONIZATION} minutes, to add new
+ * clusters and remove the ones that are gone.
+ */
+@Component("clusterAdministrationScheduler")
+public class ClusterAdministrationScheduler implements InitializingBean, DisposableBean {
+
+    private static final long ONE_MINUTE_IN_MILLISECONDS = 60000;
+    private static final int NUMBER_OF_MINUTES_BETWEEN_CLUSTERS_SYNCHRONIZATION = 10;
+    private static final int MAXIMUM_NUMBER_OF_CLUSTERS_MANAGED_CONCURRENTLY = 20;
+    private static final int CLUSTER_ADMINISTRATION_QUEUE_CAPACITY = 100;
+    private static final int CLUSTER_ADMINISTRATION_THREADS_KEEP_ALIVE_IN_SECONDS = 600;
+
+    /**
+     * Minimum time (milliseconds) before a cluster is dispatched again; it avoids dispatching a
+     * cluster over and over while it is being managed by another management server, and it lets
+     * the clusters of a stopped management server to be taken over shortly after their leases
+     * expire.
+     */
+    protected static final long MINIMUM_DELAY_BETWEEN_DISPATCHES_IN_MILLISECONDS = ONE_MINUTE_IN_MILLISECONDS;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private AdministrationAgent administrationAgent;
+    @Autowired
+    private ClusterService clusterService;
+    @Autowired
+    private ZoneService zoneService;
+    @Autowired
+    private AutonomicClusterManagementService autonomicClusterManagementService;
+    @Autowired
+    private AutonomicClusterManagementHeuristicService autonomicManagementHeuristicService;
+
+    protected ThreadPoolTaskExecutor clusterAdministrationExecutor = new ThreadPoolTaskExecutor();
+
+    /**
+     * Clusters waiting for their next administration, ordered by due time.
+     */
+    protected final DelayQueue<ScheduledCluster> scheduledClusters = new DelayQueue<>();
+
+    /**
+     * Schedule of each known cluster (cluster 'id' to its entry in {@link #scheduledClusters});
+     * clusters that are being dispatched or managed are kept here, even though they are not in the
+     * queue.
+     */
+    protected final Map<Long, ScheduledCluster> clustersSchedules = new ConcurrentHashMap<>();
+
+    private Thread dispatcherThread;
+
+    /**
+     * It starts the cluster administration executor and the dispatcher thread (
+     * {@link #dispatchDueClusters()}).
+     */
+    @Override
+    public void afterPropertiesSet() {
+        clusterAdministrationExecutor.setCorePoolSize(MAXIMUM_NUMBER_OF_CLUSTERS_MANAGED_CONCURRENTLY);
+        clusterAdministrationExecutor.setMaxPoolSize(MAXIMUM_NUMBER_OF_CLUSTERS_MANAGED_CONCURRENTLY);
+        clusterAdministrationExecutor.setAllowCoreThreadTimeOut(true);
+        clusterAdministrationExecutor.setKeepAliveSeconds(CLUSTER_ADMINISTRATION_THREADS_KEEP_ALIVE_IN_SECONDS);
+        clusterAdministrationExecutor.setQueueCapacity(CLUSTER_ADMINISTRATION_QUEUE_CAPACITY);
+        clusterAdministrationExecutor.setThreadNamePrefix("autonomiccs-cluster-administration-");
+        clusterAdministrationExecutor.initialize();
+
+        dispatcherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatchDueClusters();
+            }
+        }, "autonomiccs-cluster-administration-scheduler");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+        logger.debug("Cluster administration scheduler initialized");
+    }
+
+    /**
+     * It stops the dispatcher thread and the cluster administration executor.
+     */
+    @Override
+    public void destroy() {
+        if (dispatcherThread != null) {
+            dispatcherThread.interrupt();
+        }
+        clusterAdministrationExecutor.shutdown();
+    }
+
+    /**
+     * It waits for the next due cluster and dispatches it with {@link #dispatchCluster(long)},
+     * until the thread is interrupted. If the dispatch fails, the cluster is scheduled again after
+     * {@link #MINIMUM_DELAY_BETWEEN_DISPATCHES_IN_MILLISECONDS}.
+     */
+    protected void dispatchDueClusters() {
+        while (!Thread.currentThread().isInterrupted()) {
+            ScheduledCluster scheduledCluster;
+            try {
+                scheduledCluster = scheduledClusters.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long clusterId = scheduledCluster.getClusterId();
+            try {
+                dispatchCluster(clusterId);
+            } catch (Exception e) {
+                logger.error(String.format("Error while dispatching cluster [id=%d] to be managed.", clusterId), e);
+                scheduleCluster(clusterId, getCurrentTimeInMilliseconds() + MINIMUM_DELAY_BETWEEN_DISPATCHES_IN_MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * It sends the cluster to be managed by the {@link AdministrationAgent} (
+     * {@link #administerCluster(long)}) using the cluster administration executor. Clusters that
+     * were removed are not scheduled anymore; clusters that were managed recently are scheduled to
+     * their next administration; clusters whose lease is held by another management server are
+     * scheduled again after {@link #MINIMUM_DELAY_BETWEEN_DISPATCHES_IN_MILLISECONDS}.
+     */
+    protected void dispatchCluster(final long clusterId) {
+        ClusterVO cluster = clusterService.findById(clusterId);
+        if (cluster == null || cluster.getRemoved() != null) {
+            unscheduleCluster(clusterId);
+            return;
+        }
+        ClusterAdministrationHeuristicAlgorithm algorithm = autonomicManagementHeuristicService.getAdministrationAlgorithm(clusterId);
+        if (!autonomicClusterManagementService.canProcessCluster(clusterId, algorithm)) {
+            scheduleClusterNextAdministration(clusterId);
+            return;
+        }
+        if (!autonomicClusterManagementService.setClusterWorkInProgress(clusterId)) {
+            scheduleCluster(clusterId, getCurrentTimeInMilliseconds() + MINIMUM_DELAY_BETWEEN_DISPATCHES_IN_MILLISECONDS);
+            return;
+        }
+        try {
+            clusterAdministrationExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    administerCluster(clusterId);
+                }
+            });
+        } catch (RuntimeException e) {
+            autonomicClusterManagementService.cancelClusterWorkInProgress(clusterId);
+            throw e;
+        }
+    }
+
+    /**
+     * It manages the cluster with {@link AdministrationAgent#receiveClusterToBeManaged(Long)};
+     * then, it schedules the next administration of the cluster.
+     */
+    protected void administerCluster(long clusterId) {
+        try {
+            administrationAgent.receiveClusterToBeManaged(clusterId);
+        } finally {
+            scheduleClusterNextAdministration(clusterId);
+        }
+    }
+
+    /**
+     * It schedules the cluster to its next administration (
+     * {@link AutonomicClusterManagementService#getClusterNextAdministrationDate(long, ClusterAdministrationHeuristicAlgorithm)});
+     * clusters that have never been managed are scheduled to now.
+     */
+    protected void scheduleClusterNextAdministration(long clusterId) {
+        ClusterAdministrationHeuristicAlgorithm algorithm = autonomicManagementHeuristicService.getAdministrationAlgorithm(clusterId);
+        Date nextAdministration = autonomicClusterManagementService.getClusterNextAdministrationDate(clusterId, algorithm);
+        long currentTime = getCurrentTimeInMilliseconds();
+        if (nextAdministration == null) {
+            scheduleCluster(clusterId, currentTime);
+            return;
+        }
+        scheduleCluster(clusterId, Math.max(nextAdministration.getTime(), currentTime + MINIMUM_DELAY_BETWEEN_DISPATCHES_IN_MILLISECONDS));
+    }
+
+    /**
+     * It schedules the cluster to be dispatched at the given time (milliseconds), replacing its
+     * previous schedule.
+     */
+    protected synchronized void scheduleCluster(long clusterId, long dueTimeInMilliseconds) {
+        ScheduledCluster scheduledCluster = new ScheduledCluster(clusterId, dueTimeInMilliseconds);
+        ScheduledCluster previousSchedule = clustersSchedules.put(clusterId, scheduledCluster);
+        if (previousSchedule != null) {
+            scheduledClusters.remove(previousSchedule);
+        }
+        scheduledClusters.add(scheduledCluster);
+    }
+
+    /**
+     * It removes the cluster from the schedule.
+     */
+    protected synchronized void unscheduleCluster(long clusterId) {
+        ScheduledCluster previousSchedule = clustersSchedules.remove(clusterId);
+        if (previousSchedule != null) {
+            scheduledClusters.remove(previousSchedule);
+            logger.debug(String.format("Cluster [id=%d] is not scheduled to be managed anymore.", clusterId));
+        }
+    }
+
+    /**
+     * It schedules the clusters of the enabled zones that are not scheduled yet (with
+     * {@link #scheduleClusterNextAdministration(long)}) and removes from the schedule the clusters
+     * that are not in an enabled zone anymore.
+     */
+    @Scheduled(initialDelay = ONE_MINUTE_IN_MILLISECONDS, fixedDelay = ONE_MINUTE_IN_MILLISECONDS * NUMBER_OF_MINUTES_BETWEEN_CLUSTERS_SYNCHRONIZATION)
+    public void synchronizeClusters() {
+        Set<Long> clustersIds = new HashSet<>();
+        for (DataCenterVO zone : zoneService.listAllZonesEnabled()) {
+            for (ClusterVO cluster : clusterService.listAllClustersOnZone(zone.getId())) {
+                if (cluster.getRemoved() == null) {
+                    clustersIds.add(cluster.getId());
+                }
+            }
+        }
+        for (Long clusterId : clustersIds) {
+            if (!clustersSchedules.containsKey(clusterId)) {
+                scheduleClusterNextAdministration(clusterId);
+            }
+        }
+        for (Long clusterId : new ArrayList<>(clustersSchedules.keySet())) {
+            if (!clustersIds.contains(clusterId)) {
+                unscheduleCluster(clusterId);
+            }
+        }
+    }
+
+    /**
+     * @return the current time in milliseconds ({@link System#currentTimeMillis()}).
+     */
+    protected long getCurrentTimeInMilliseconds() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * A cluster in the {@link DelayQueue}, due at the given time (milliseconds).
+     */
+    protected static class ScheduledCluster implements Delayed {
+        private final long clusterId;
+        private final long dueTimeInMilliseconds;
+
+        protected ScheduledCluster(long clusterId, long dueTimeInMilliseconds) {
+            this.clusterId = clusterId;
+            this.dueTimeInMilliseconds = dueTimeInMilliseconds;
+        }
+
+        public long getClusterId() {
+            return clusterId;
+        }
+
+        public long getDueTimeInMilliseconds() {
+            return dueTimeInMilliseconds;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTimeInMilliseconds - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import com.cloud.host.HostVO;
+import com.cloud.resource.ResourceManager;
+import com.cloud.utils.exception.CloudRuntimeException;
+import com.cloud.vm.VMInstanceVO;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.plugin.common.services.AutonomiccsConfigurationService;
+import br.com.autonomiccs.autonomic.plugin.common.services.HostService;
+import br.com.autonomiccs.autonomic.plugin.common.utils.ThreadUtils;
+
+/**
+ * This class shuts down batches of idle hosts in parallel. Up to
+ * 'autonomiccs.clustermanager.hosts.shutdown.max.concurrent' hosts of a batch are put in
+ * maintenance and shut down at the same time. The hypervisor facades serialize only the steps that
+ * cannot run concurrently in the same pool (e.g. the change of the master of XenServer pools); the
+ * power off of the hosts and the wait for them to go down run in parallel.
+ *
+ * The capacity budget of the batch (whether the cloud can lose those hosts) must be validated
+ * before calling {@link #shutdownHosts(List)}.
+ */
+@Component("hostShutdownExecutor")
+public class HostShutdownExecutor implements InitializingBean, DisposableBean {
+
+    public final static String MAXIMUM_CONCURRENT_SHUTDOWNS_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.hosts.shutdown.max.concurrent";
+
+    protected final static int DEFAULT_MAXIMUM_CONCURRENT_SHUTDOWNS = 5;
+
+    private static final int MAXIMUM_NUMBER_OF_SHUTDOWN_THREADS = 20;
+    private static final int SHUTDOWN_THREADS_KEEP_ALIVE_IN_SECONDS = 600;
+    protected static final int MAXIMUM_NUMBER_OF_MAINTENANCE_CHECKS = 200;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private HostService hostService;
+    @Autowired
+    private HypervisorManager hypervisorManager;
+    @Autowired
+    private ResourceManager resourceManager;
+    @Autowired
+    private ThreadUtils threadUtils;
+    @Autowired
+    private AutonomiccsConfigurationService autonomiccsConfigurationService;
+
+    protected ThreadPoolTaskExecutor shutdownExecutor = new ThreadPoolTaskExecutor();
+
+    /**
+     * It starts the executor of the shutdowns; up to {@value #MAXIMUM_NUMBER_OF_SHUTDOWN_THREADS}
+     * hosts (of all clusters being managed) are shut down at the same time, the other ones wait in
+     * the executor queue.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        shutdownExecutor.setCorePoolSize(MAXIMUM_NUMBER_OF_SHUTDOWN_THREADS);
+        shutdownExecutor.setMaxPoolSize(MAXIMUM_NUMBER_OF_SHUTDOWN_THREADS);
+        shutdownExecutor.setAllowCoreThreadTimeOut(true);
+        shutdownExecutor.setKeepAliveSeconds(SHUTDOWN_THREADS_KEEP_ALIVE_IN_SECONDS);
+        shutdownExecutor.setThreadNamePrefix("autonomiccs-host-shutdown-");
+        shutdownExecutor.initialize();
+    }
+
+    /**
+     * It stops the executor of the shutdowns.
+     */
+    @Override
+    public void destroy() {
+        shutdownExecutor.shutdown();
+    }
+
+    /**
+     * It shuts down the given hosts with {@link #shutdownHost(long)}, keeping up to
+     * {@link #getMaximumConcurrentShutdowns()} shutdowns running at the same time; hosts are
+     * submitted in the given order. It returns the 'id' of the hosts that were shut down. If the
+     * thread is interrupted, it stops submitting shutdowns and returns the hosts shut down so far.
+     */
+    public List<Long> shutdownHosts(List<HostResources> hosts) {
+        List<Long> hostsShutDown = new ArrayList<>();
+        if (CollectionUtils.isEmpty(hosts)) {
+            return hostsShutDown;
+        }
+        int maximumConcurrentShutdowns = getMaximumConcurrentShutdowns();
+        logger.info(String.format("Shutting down [%d] hosts, up to [%d] at the same time.", hosts.size(), maximumConcurrentShutdowns));
+        CompletionService<Boolean> shutdownsCompletionService = new ExecutorCompletionService<>(shutdownExecutor);
+        Map<Future<Boolean>, Long> runningShutdowns = new HashMap<>();
+        Iterator<HostResources> hostsIterator = hosts.iterator();
+        while (true) {
+            while (runningShutdowns.size() < maximumConcurrentShutdowns && hostsIterator.hasNext()) {
+                long hostId = hostsIterator.next().getHostId();
+                runningShutdowns.put(shutdownsCompletionService.submit(createShutdownTask(hostId)), hostId);
+            }
+            if (runningShutdowns.isEmpty()) {
+                break;
+            }
+            Future<Boolean> shutdownFuture;
+            try {
+                shutdownFuture = shutdownsCompletionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.info(String.format("Interrupted while shutting down hosts; [%d] shutdowns are still running.", runningShutdowns.size()));
+                return hostsShutDown;
+            }
+            Long hostId = runningShutdowns.remove(shutdownFuture);
+            if (getShutdownResult(shutdownFuture)) {
+                hostsShutDown.add(hostId);
+            }
+        }
+        logger.info(String.format("[%d] of [%d] hosts were shut down.", hostsShutDown.size(), hosts.size()));
+        return hostsShutDown;
+    }
+
+    /**
+     * It creates the task that shuts down the given host with {@link #shutdownHost(long)}.
+     */
+    protected Callable<Boolean> createShutdownTask(final long hostId) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return shutdownHost(hostId);
+            }
+        };
+    }
+
+    /**
+     * It returns the result of the given finished shutdown task; if the task threw an exception,
+     * the host is considered not shut down.
+     */
+    protected boolean getShutdownResult(Future<Boolean> shutdownFuture) {
+        try {
+            return shutdownFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.info("Unexpected error while shutting down a host.", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * If the host is Up and enabled, it puts host in maintenance with
+     * {@link #putHostInMaintenance(long)} and requests a host shutdown with
+     * {@link HypervisorManager#shutdownHost(HostVO)}. It returns true if the host shutdown was
+     * requested.
+     */
+    protected boolean shutdownHost(long hostId) {
+        try {
+            checkIfHostIsUpAndEnabled(hostId);
+
+            List<VMInstanceVO> vms = hostService.listAllVmsFromHost(hostId);
+            if (CollectionUtils.isNotEmpty(vms)) {
+                logger.debug(String.format("Could not shut dow host [id=%d], there are %d VMs running in this host.", hostId, vms.size()));
+                return false;
+            }
+            putHostInMaintenance(hostId);
+
+            hypervisorManager.shutdownHost(hostService.findHostById(hostId));
+            return true;
+        } catch (Exception e) {
+            logger.info(String.format("Error while shutting down host [id=%d]", hostId), e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks if the host is Up and Enabled; if not it throws a
+     * {@link CloudRuntimeException}.
+     */
+    protected void checkIfHostIsUpAndEnabled(long hostId) {
+        if (!hostService.isHostUpAndEnabled(hostId)) {
+            throw new CloudRuntimeException(String.format("Host [id=%d] is not Up and/or Enabled", hostId));
+        }
+    }
+
+    /**
+     * Sends the maintenance request with {@link ResourceManager#maintain(long)}
+     * to update the host state to {@link com.cloud.resource.ResourceState#Maintenance}. If the
+     * host state be {@link com.cloud.resource.ResourceState#ErrorInMaintenance} and not
+     * {@link com.cloud.resource.ResourceState#PrepareForMaintenance}, it throws a
+     * {@link CloudRuntimeException}. The host state is checked every 3 seconds, given a total of
+     * {@value #MAXIMUM_NUMBER_OF_MAINTENANCE_CHECKS} checks; if the host is still
+     * {@link com.cloud.resource.ResourceState#PrepareForMaintenance} after that, it throws a
+     * {@link CloudRuntimeException}.
+     */
+    protected void putHostInMaintenance(long hostId) {
+        try {
+            resourceManager.maintain(hostId);
+        } catch (Exception e) {
+            throw new CloudRuntimeException(String.format("Problems while putting host [id=%d] on maintenance", hostId), e);
+        }
+        for (int count = 0; count < MAXIMUM_NUMBER_OF_MAINTENANCE_CHECKS; count++) {
+            threadUtils.sleepThread(3);
+            if (hostService.isHostInMaintenanceError(hostId)) {
+                throw new CloudRuntimeException(String.format("Error while sending the maintenance command to host [id=%d]", hostId));
+            }
+            if (!hostService.isHostInPreparedForMaintenance(hostId)) {
+                return;
+            }
+        }
+        throw new CloudRuntimeException(String.format("Host [id=%d] is still being prepared for maintenance after [%d] checks", hostId, MAXIMUM_NUMBER_OF_MAINTENANCE_CHECKS));
+    }
+
+    /**
+     * It returns the configured maximum number of hosts of a batch shut down at the same time; if
+     * it is not set or it is not a positive number, it returns
+     * {@value #DEFAULT_MAXIMUM_CONCURRENT_SHUTDOWNS}.
+     */
+    protected int getMaximumConcurrentShutdowns() {
+        return autonomiccsConfigurationService.getPositiveIntegerConfiguration(MAXIMUM_CONCURRENT_SHUTDOWNS_IN_CONFIGURATION_KEY, DEFAULT_MAXIMUM_CONCURRENT_SHUTDOWNS);
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import com.cloud.host.HostVO;
+import com.cloud.vm.UserVmService;
+import com.cloud.vm.VMInstanceVO;
+import com.cloud.vm.VirtualMachine;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.AlternativeTargetHostSelector;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.MigrationGraphScheduler;
+import br.com.autonomiccs.autonomic.administration.plugin.services.AutonomicClusterManagementService;
+import br.com.autonomiccs.autonomic.plugin.common.services.AutonomiccsConfigurationService;
+import br.com.autonomiccs.autonomic.plugin.common.services.HostService;
+import br.com.autonomiccs.autonomic.plugin.common.services.VirtualMachineService;
+
+/**
+ * This class executes the VMs migrations of a {@link MigrationGraph} in parallel. A migration is
+ * started as soon as the migrations it depends on have finished, respecting the maximum number of
+ * concurrent migrations per source host, per target host and per cluster (configured with the
+ * 'autonomiccs.clustermanager.migrations.max.per.source.host',
+ * 'autonomiccs.clustermanager.migrations.max.per.target.host' and
+ * 'autonomiccs.clustermanager.migrations.max.per.cluster' configurations); those decisions are
+ * taken by the {@link MigrationGraphScheduler}. Therefore, independent branches of the graph run
+ * concurrently and target hosts are never overcommitted by the migrations.
+ *
+ * Each migration has a timeout ('autonomiccs.clustermanager.migrations.timeout.seconds'); a
+ * migration that fails can be retried with an alternative target host, up to
+ * 'autonomiccs.clustermanager.migrations.max.attempts' attempts; and the remaining migrations are
+ * canceled if the ratio of failed migrations exceeds
+ * 'autonomiccs.clustermanager.migrations.max.failure.rate'. Therefore, stuck or failing migrations
+ * do not hold the administration of the clusters. The remaining migrations are also canceled if
+ * the administration lease of some cluster of the migrations is lost, as the cluster may be
+ * managed by another management server.
+ */
+@Component("vmMigrationExecutor")
+public class VmMigrationExecutor implements InitializingBean, DisposableBean {
+
+    public final static String MAXIMUM_MIGRATIONS_PER_SOURCE_HOST_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.migrations.max.per.source.host";
+    public final static String MAXIMUM_MIGRATIONS_PER_TARGET_HOST_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.migrations.max.per.target.host";
+    public final static String MAXIMUM_MIGRATIONS_PER_CLUSTER_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.migrations.max.per.cluster";
+
+    protected final static int DEFAULT_MAXIMUM_MIGRATIONS_PER_SOURCE_HOST = 2;
+    protected final static int DEFAULT_MAXIMUM_MIGRATIONS_PER_TARGET_HOST = 2;
+    protected final static int DEFAULT_MAXIMUM_MIGRATIONS_PER_CLUSTER = 10;
+
+    public final static String MIGRATION_TIMEOUT_IN_SECONDS_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.migrations.timeout.seconds";
+    public final static String MAXIMUM_MIGRATION_ATTEMPTS_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.migrations.max.attempts";
+    public final static String MAXIMUM_MIGRATIONS_FAILURE_RATE_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.migrations.max.failure.rate";
+
+    protected final static int DEFAULT_MIGRATION_TIMEOUT_IN_SECONDS = 1800;
+    protected final static int DEFAULT_MAXIMUM_MIGRATION_ATTEMPTS = 2;
+    protected final static double DEFAULT_MAXIMUM_MIGRATIONS_FAILURE_RATE = 0.5;
+
+    /**
+     * The failure rate is only evaluated after this number of migrations have finished, so that a
+     * single failure at the beginning of the execution does not abort it.
+     */
+    protected final static int MINIMUM_FINISHED_MIGRATIONS_TO_EVALUATE_FAILURE_RATE = 4;
+
+    /**
+     * Interval between two checks of the VMs of the timed out migrations, to find out whether they
+     * are still migrating.
+     */
+    protected final static long TIMED_OUT_MIGRATIONS_CHECK_INTERVAL_IN_MILLISECONDS = 30 * 1000;
+
+    private static final int MAXIMUM_NUMBER_OF_CONCURRENT_MIGRATIONS = 50;
+    private static final int MIGRATION_THREADS_KEEP_ALIVE_IN_SECONDS = 600;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private UserVmService userVmService;
+    @Autowired
+    private HostService hostService;
+    @Autowired
+    private AutonomiccsConfigurationService autonomiccsConfigurationService;
+    @Autowired
+    private VirtualMachineService virtualMachineService;
+    @Autowired
+    private AutonomicClusterManagementService autonomicClusterManagementService;
+
+    protected ThreadPoolTaskExecutor migrationExecutor = new ThreadPoolTaskExecutor();
+
+    /**
+     * It starts the executor of the migrations; up to
+     * {@value #MAXIMUM_NUMBER_OF_CONCURRENT_MIGRATIONS} migrations (of all clusters being managed)
+     * run at the same time, the other ones wait in the executor queue.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        migrationExecutor.setCorePoolSize(MAXIMUM_NUMBER_OF_CONCURRENT_MIGRATIONS);
+        migrationExecutor.setMaxPoolSize(MAXIMUM_NUMBER_OF_CONCURRENT_MIGRATIONS);
+        migrationExecutor.setAllowCoreThreadTimeOut(true);
+        migrationExecutor.setKeepAliveSeconds(MIGRATION_THREADS_KEEP_ALIVE_IN_SECONDS);
+        migrationExecutor.setThreadNamePrefix("autonomiccs-vm-migration-");
+        migrationExecutor.initialize();
+    }
+
+    /**
+     * It stops the executor of the migrations.
+     */
+    @Override
+    public void destroy() {
+        migrationExecutor.shutdown();
+    }
+
+    /**
+     * It executes the migrations of the given graph. The migrations that can be started (
+     * {@link MigrationGraphScheduler#nextMigrationsToStart()}, with the scheduler created by
+     * {@link #createMigrationGraphScheduler(MigrationGraph)}) are submitted to the migration
+     * executor ({@link #migrateVm(VmMigration)}); every time a migration finishes (
+     * {@link #processMigrationResult(VmMigration, boolean, MigrationGraphScheduler, AlternativeTargetHostSelector, int)})
+     * or its timed out VM stops migrating ({@link #timeOutExpiredMigrations(Map, Map, List)} and
+     * {@link #finishSettledTimedOutMigrations(List, MigrationGraphScheduler)}), new migrations are
+     * started; the execution is aborted if too many migrations fail (
+     * {@link #abortIfFailureRateIsExceeded(MigrationGraphScheduler, double)}) or if the lease of
+     * some cluster of the migrations is lost (
+     * {@link #abortIfClustersLeasesWereLost(MigrationGraphScheduler, Set)}). It returns when all
+     * migrations have been executed or canceled and the VMs of the timed out migrations are not
+     * migrating anymore; if the thread is interrupted, it stops starting migrations and returns.
+     */
+    public void executeMigrations(MigrationGraph migrationGraph, AlternativeTargetHostSelector alternativeTargetHostSelector) {
+        for (VmMigration migration : migrationGraph.getUnschedulableMigrations()) {
+            logger.info(String.format("Migration of %s was not executed; its target host does not have capacity for it.", migration));
+        }
+        if (migrationGraph.getMigrations().isEmpty()) {
+            return;
+        }
+        logger.info(String.format("Executing [%d] VMs migrations.", migrationGraph.getMigrations().size()));
+        MigrationGraphScheduler migrationGraphScheduler = createMigrationGraphScheduler(migrationGraph);
+        long migrationTimeoutInMilliseconds = getMigrationTimeoutInMilliseconds();
+        int maximumMigrationAttempts = autonomiccsConfigurationService.getPositiveIntegerConfiguration(MAXIMUM_MIGRATION_ATTEMPTS_IN_CONFIGURATION_KEY,
+                DEFAULT_MAXIMUM_MIGRATION_ATTEMPTS);
+        double maximumFailureRate = getMaximumFailureRate();
+        CompletionService<Boolean> migrationsCompletionService = new ExecutorCompletionService<>(migrationExecutor);
+        Map<Future<Boolean>, VmMigration> runningMigrations = new HashMap<>();
+        Map<Future<Boolean>, Long> migrationsDeadlines = new HashMap<>();
+        List<VmMigration> timedOutMigrations = new ArrayList<>();
+        Set<Long> clustersIds = getClustersOfMigrations(migrationGraph);
+        while (true) {
+            abortIfClustersLeasesWereLost(migrationGraphScheduler, clustersIds);
+            finishSettledTimedOutMigrations(timedOutMigrations, migrationGraphScheduler);
+            for (VmMigration migration : migrationGraphScheduler.nextMigrationsToStart()) {
+                Future<Boolean> migrationFuture = migrationsCompletionService.submit(createMigrationTask(migration));
+                runningMigrations.put(migrationFuture, migration);
+                migrationsDeadlines.put(migrationFuture, System.currentTimeMillis() + migrationTimeoutInMilliseconds);
+            }
+            if (runningMigrations.isEmpty() && timedOutMigrations.isEmpty()) {
+                break;
+            }
+            Future<Boolean> migrationFuture;
+            try {
+                migrationFuture = migrationsCompletionService.poll(getTimeToWaitForMigrations(migrationsDeadlines, timedOutMigrations), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.info(String.format("Interrupted while executing VMs migrations; [%d] migrations are still running.", runningMigrations.size()));
+                return;
+            }
+            if (migrationFuture == null) {
+                timeOutExpiredMigrations(runningMigrations, migrationsDeadlines, timedOutMigrations);
+            } else {
+                migrationsDeadlines.remove(migrationFuture);
+                VmMigration migration = runningMigrations.remove(migrationFuture);
+                if (migration != null) {
+                    processMigrationResult(migration, getMigrationResult(migrationFuture), migrationGraphScheduler, alternativeTargetHostSelector, maximumMigrationAttempts);
+                }
+            }
+            abortIfFailureRateIsExceeded(migrationGraphScheduler, maximumFailureRate);
+        }
+        logger.info(String.format("VMs migrations finished: [%d] succeeded, [%d] failed and [%d] canceled.", migrationGraphScheduler.getSucceededMigrations().size(),
+                migrationGraphScheduler.getFailedMigrations().size(), migrationGraphScheduler.getCanceledMigrations().size()));
+    }
+
+    /**
+     * It returns the time, in milliseconds, to wait for a migration to finish: the time until the
+     * earliest of the given deadlines ({@link #getTimeUntilNextDeadline(Map)}), limited to
+     * {@value #TIMED_OUT_MIGRATIONS_CHECK_INTERVAL_IN_MILLISECONDS} if there are timed out
+     * migrations whose VMs have to be checked.
+     */
+    protected long getTimeToWaitForMigrations(Map<Future<Boolean>, Long> migrationsDeadlines, List<VmMigration> timedOutMigrations) {
+        long timeToWait = getTimeUntilNextDeadline(migrationsDeadlines);
+        if (timedOutMigrations.isEmpty()) {
+            return timeToWait;
+        }
+        return Math.min(timeToWait, TIMED_OUT_MIGRATIONS_CHECK_INTERVAL_IN_MILLISECONDS);
+    }
+
+    /**
+     * It returns the time, in milliseconds, until the earliest of the given deadlines; 0 if it
+     * has already passed.
+     */
+    protected long getTimeUntilNextDeadline(Map<Future<Boolean>, Long> migrationsDeadlines) {
+        long nextDeadline = Long.MAX_VALUE;
+        for (Long deadline : migrationsDeadlines.values()) {
+            nextDeadline = Math.min(nextDeadline, deadline);
+        }
+        return Math.max(0, nextDeadline - System.currentTimeMillis());
+    }
+
+    /**
+     * It cancels (interrupting) the running migrations whose deadline has passed and adds them to
+     * the given timed out migrations. Canceling the task does not stop the migration job in the
+     * cloud; then, timed out migrations keep their slots of concurrent migrations until their VM
+     * is not migrating anymore ({@link #finishSettledTimedOutMigrations(List, MigrationGraphScheduler)}),
+     * and they are not retried.
+     */
+    protected void timeOutExpiredMigrations(Map<Future<Boolean>, VmMigration> runningMigrations, Map<Future<Boolean>, Long> migrationsDeadlines,
+            List<VmMigration> timedOutMigrations) {
+        long currentTime = System.currentTimeMillis();
+        Iterator<Entry<Future<Boolean>, Long>> migrationsDeadlinesIterator = migrationsDeadlines.entrySet().iterator();
+        while (migrationsDeadlinesIterator.hasNext()) {
+            Entry<Future<Boolean>, Long> migrationDeadline = migrationsDeadlinesIterator.next();
+            if (migrationDeadline.getValue() > currentTime) {
+                continue;
+            }
+            migrationsDeadlinesIterator.remove();
+            Future<Boolean> migrationFuture = migrationDeadline.getKey();
+            migrationFuture.cancel(true);
+            VmMigration migration = runningMigrations.remove(migrationFuture);
+            logger.warn(String.format("Migration of %s timed out; it is kept running until its VM is not migrating anymore.", migration));
+            timedOutMigrations.add(migration);
+        }
+    }
+
+    /**
+     * It sets the given timed out migrations whose VM is not migrating anymore (
+     * {@link #isVmMigrating(long)}) as finished, releasing their slots of concurrent migrations; a
+     * migration whose VM is running on its target host is considered succeeded, the other ones
+     * failed. If the execution was aborted, no migration is started anymore; then, timed out
+     * migrations are set as finished without waiting for their VMs.
+     */
+    protected void finishSettledTimedOutMigrations(List<VmMigration> timedOutMigrations, MigrationGraphScheduler migrationGraphScheduler) {
+        Iterator<VmMigration> timedOutMigrationsIterator = timedOutMigrations.iterator();
+        while (timedOutMigrationsIterator.hasNext()) {
+            VmMigration migration = timedOutMigrationsIterator.next();
+            if (!migrationGraphScheduler.isAborted() && isVmMigrating(migration.getVmId())) {
+                continue;
+            }
+            timedOutMigrationsIterator.remove();
+            Long vmHostId = getVmHostId(migration.getVmId());
+            if (vmHostId != null && vmHostId == migration.getTargetHostId()) {
+                logger.info(String.format("Migration of %s timed out, but the VM is running on the target host.", migration));
+                migrationGraphScheduler.migrationFinished(migration, true);
+            } else {
+                logger.warn(String.format("Migration of %s timed out and the VM is not running on the target host; its dependent migrations will be canceled.", migration));
+                migrationGraphScheduler.migrationFinished(migration, false);
+            }
+            logProgress(migrationGraphScheduler);
+        }
+    }
+
+    /**
+     * It returns true if the VM is in the {@link VirtualMachine.State#Migrating} state.
+     */
+    protected boolean isVmMigrating(long vmId) {
+        VMInstanceVO vm = virtualMachineService.searchVmInstanceById(vmId);
+        return vm != null && vm.getState() == VirtualMachine.State.Migrating;
+    }
+
+    /**
+     * It notifies the scheduler about the result of the given migration. If the migration failed,
+     * it checks where the VM is running: if it is running on the target host, the migration is
+     * considered succeeded; if it is still running on the source host, the execution was not
+     * aborted and the migration has attempts left, it is retried with an alternative target host (
+     * {@link AlternativeTargetHostSelector#selectAlternativeTargetHost(VmMigration, java.util.Set)}
+     * ), if there is one. Otherwise, the migration is set as failed.
+     */
+    protected void processMigrationResult(VmMigration migration, boolean succeeded, MigrationGraphScheduler migrationGraphScheduler,
+            AlternativeTargetHostSelector alternativeTargetHostSelector, int maximumMigrationAttempts) {
+        if (succeeded) {
+            migrationGraphScheduler.migrationFinished(migration, true);
+            logProgress(migrationGraphScheduler);
+            return;
+        }
+        Long vmHostId = getVmHostId(migration.getVmId());
+        if (vmHostId != null && vmHostId == migration.getTargetHostId()) {
+            logger.info(String.format("Migration of %s reported a failure, but the VM is running on the target host.", migration));
+            migrationGraphScheduler.migrationFinished(migration, true);
+            logProgress(migrationGraphScheduler);
+            return;
+        }
+        boolean canRetry = vmHostId != null && vmHostId == migration.getSourceHostId() && !migrationGraphScheduler.isAborted()
+                && migrationGraphScheduler.getNumberOfAttempts(migration) < maximumMigrationAttempts;
+        if (canRetry) {
+            Long alternativeTargetHostId = alternativeTargetHostSelector.selectAlternativeTargetHost(migration, migrationGraphScheduler.getTriedTargetHosts(migration));
+            if (alternativeTargetHostId != null) {
+                VmMigration retryMigration = new VmMigration(migration.getVmId(), migration.getSourceHostId(), migration.getSourceClusterId(), alternativeTargetHostId,
+                        migration.getTargetClusterId());
+                logger.info(String.format("Migration of %s failed; retrying with the migration of %s.", migration, retryMigration));
+                migrationGraphScheduler.retryMigration(migration, retryMigration);
+                return;
+            }
+        }
+        logger.warn(String.format("Migration of %s failed; its dependent migrations will be canceled.", migration));
+        migrationGraphScheduler.migrationFinished(migration, false);
+        logProgress(migrationGraphScheduler);
+    }
+
+    private void logProgress(MigrationGraphScheduler migrationGraphScheduler) {
+        logger.info(String.format("VMs migrations progress: [%d] succeeded, [%d] failed, [%d] canceled and [%d] running.", migrationGraphScheduler.getSucceededMigrations().size(),
+                migrationGraphScheduler.getFailedMigrations().size(), migrationGraphScheduler.getCanceledMigrations().size(),
+                migrationGraphScheduler.getNumberOfRunningMigrations()));
+    }
+
+    /**
+     * It returns the 'id' of the host the VM is running on; null if the VM is not running on a
+     * host.
+     */
+    protected Long getVmHostId(long vmId) {
+        VMInstanceVO vm = virtualMachineService.searchVmInstanceById(vmId);
+        return vm == null ? null : vm.getHostId();
+    }
+
+    /**
+     * It aborts the execution ({@link MigrationGraphScheduler#abort()}) if at least
+     * {@value #MINIMUM_FINISHED_MIGRATIONS_TO_EVALUATE_FAILURE_RATE} migrations have finished and
+     * the ratio of failed migrations is higher than the given maximum failure rate.
+     */
+    protected void abortIfFailureRateIsExceeded(MigrationGraphScheduler migrationGraphScheduler, double maximumFailureRate) {
+        if (migrationGraphScheduler.isAborted() || migrationGraphScheduler.getNumberOfFinishedMigrations() < MINIMUM_FINISHED_MIGRATIONS_TO_EVALUATE_FAILURE_RATE) {
+            return;
+        }
+        double failureRate = migrationGraphScheduler.getFailureRate();
+        if (failureRate > maximumFailureRate) {
+            logger.warn(String.format("Aborting the VMs migrations; [%.2f] of the migrations failed, the maximum failure rate is [%.2f].", failureRate, maximumFailureRate));
+            migrationGraphScheduler.abort();
+        }
+    }
+
+    /**
+     * It returns the 'id' of the source and target clusters of the migrations of the given graph.
+     */
+    protected Set<Long> getClustersOfMigrations(MigrationGraph migrationGraph) {
+        Set<Long> clustersIds = new HashSet<>();
+        for (VmMigration migration : migrationGraph.getMigrations()) {
+            clustersIds.add(migration.getSourceClusterId());
+            clustersIds.add(migration.getTargetClusterId());
+        }
+        return clustersIds;
+    }
+
+    /**
+     * It aborts the execution ({@link MigrationGraphScheduler#abort()}) if this management server
+     * does not hold the administration lease of some of the given clusters anymore (
+     * {@link AutonomicClusterManagementService#isClusterLeaseHeld(long)}); the running migrations
+     * are not interrupted, but no other migration is started.
+     */
+    protected void abortIfClustersLeasesWereLost(MigrationGraphScheduler migrationGraphScheduler, Set<Long> clustersIds) {
+        if (migrationGraphScheduler.isAborted()) {
+            return;
+        }
+        for (Long clusterId : clustersIds) {
+            if (!autonomicClusterManagementService.isClusterLeaseHeld(clusterId)) {
+                logger.warn(String.format("Aborting the VMs migrations; the administration lease of cluster [id=%d] was lost.", clusterId));
+                migrationGraphScheduler.abort();
+                return;
+            }
+        }
+    }
+
+    /**
+     * It creates the task that executes the given migration with {@link #migrateVm(VmMigration)}.
+     */
+    protected Callable<Boolean> createMigrationTask(final VmMigration migration) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return migrateVm(migration);
+            }
+        };
+    }
+
+    /**
+     * It returns the result of the given finished migration task; if the task threw an exception,
+     * the migration is considered failed.
+     */
+    protected boolean getMigrationResult(Future<Boolean> migrationFuture) {
+        try {
+            return migrationFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.info("Unexpected error while migrating a VM.", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Tries to migrate the VM to the target host of the given migration with
+     * {@link UserVmService#migrateVirtualMachine(Long, com.cloud.host.Host)}; in case of exception,
+     * it catches and logs the issue. It returns true if the VM was migrated.
+     */
+    protected boolean migrateVm(VmMigration migration) {
+        long vmId = migration.getVmId();
+        long sourceHostId = migration.getSourceHostId();
+        long targetHostId = migration.getTargetHostId();
+        HostVO targetHost = hostService.findHostById(targetHostId);
+        try {
+            logger.info(String.format("VM [id=%d] is migrating from host[Id=%d] to host[Id=%d].", vmId, sourceHostId, targetHostId));
+            userVmService.migrateVirtualMachine(vmId, targetHost);
+            logger.info(String.format("VM [id=%d] was migrated from host[Id=%d] to host[Id=%d].", vmId, sourceHostId, targetHostId));
+            return true;
+        } catch (Exception e) {
+            logger.warn(String.format("Could not migrate VM [id=%d] to host [id=%d, hostName=%s], from host [id=%d]: %s", vmId, targetHostId, targetHost.getName(), sourceHostId,
+                    e.getMessage()));
+            logger.debug(String.format("Error while migrating VM [id=%d].", vmId), e);
+            return false;
+        }
+    }
+
+    /**
+     * It creates the {@link MigrationGraphScheduler} of the given graph with the configured limits
+     * of concurrent migrations ({@link AutonomiccsConfigurationService#getPositiveIntegerConfiguration(String, int)}).
+     */
+    protected MigrationGraphScheduler createMigrationGraphScheduler(MigrationGraph migrationGraph) {
+        return new MigrationGraphScheduler(migrationGraph,
+                autonomiccsConfigurationService.getPositiveIntegerConfiguration(MAXIMUM_MIGRATIONS_PER_SOURCE_HOST_IN_CONFIGURATION_KEY, DEFAULT_MAXIMUM_MIGRATIONS_PER_SOURCE_HOST),
+                autonomiccsConfigurationService.getPositiveIntegerConfiguration(MAXIMUM_MIGRATIONS_PER_TARGET_HOST_IN_CONFIGURATION_KEY, DEFAULT_MAXIMUM_MIGRATIONS_PER_TARGET_HOST),
+                autonomiccsConfigurationService.getPositiveIntegerConfiguration(MAXIMUM_MIGRATIONS_PER_CLUSTER_IN_CONFIGURATION_KEY, DEFAULT_MAXIMUM_MIGRATIONS_PER_CLUSTER));
+    }
+
+    /**
+     * It returns the timeout of each migration, configured in seconds.
+     */
+    protected long getMigrationTimeoutInMilliseconds() {
+        return TimeUnit.SECONDS.toMillis(
+                autonomiccsConfigurationService.getPositiveIntegerConfiguration(MIGRATION_TIMEOUT_IN_SECONDS_IN_CONFIGURATION_KEY, DEFAULT_MIGRATION_TIMEOUT_IN_SECONDS));
+    }
+
+    /**
+     * It returns the configured maximum failure rate; if it is not set or it is not a number
+     * greater than 0 and lower or equal to 1, it returns
+     * {@value #DEFAULT_MAXIMUM_MIGRATIONS_FAILURE_RATE}.
+     */
+    protected double getMaximumFailureRate() {
+        return autonomiccsConfigurationService.getRatioConfiguration(MAXIMUM_MIGRATIONS_FAILURE_RATE_IN_CONFIGURATION_KEY, DEFAULT_MAXIMUM_MIGRATIONS_FAILURE_RATE);
+    }
+}
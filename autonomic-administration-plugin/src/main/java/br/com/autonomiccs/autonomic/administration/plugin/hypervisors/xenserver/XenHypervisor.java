@@ -22,10 +22,14 @@
  */
 package br.com.autonomiccs.autonomic.administration.plugin.hypervisors.xenserver;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -54,11 +58,23 @@ import br.com.autonomiccs.autonomic.plugin.common.utils.ThreadUtils;
 public class XenHypervisor implements HypervisorHost {
 
     protected static final String FIND_ARP_FOR_HOST_COMMAND = "arp -n %s";
+    protected static final int MAXIMUM_NUMBER_OF_TRIES_WAITING_HOST_TO_GO_DOWN = 200;
     protected static final String REGEX_GET_ARP_FROM_ARP_COMMAND_OUTPUT = ".+([A-Fa-f0-9]{2}:[A-Fa-f0-9]{2}:[A-Fa-f0-9]{2}:[A-Fa-f0-9]{2}:[A-Fa-f0-9]{2}:[A-Fa-f0-9]{2}).+";
     protected XenServerConnectionPool connPool = XenServerConnectionPool.getInstance();
 
     protected final Pattern compileRegexToGetArp = Pattern.compile(REGEX_GET_ARP_FROM_ARP_COMMAND_OUTPUT);
 
+    /**
+     * Locks of the pools (cluster 'id' to lock); the master change and the shutdown request of hosts
+     * of the same pool are serialized.
+     */
+    private final ConcurrentMap<Long, Object> poolsLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 'uuid' of the hosts being shut down; they are not designated as the new master of their pool.
+     */
+    protected final Set<String> hostsBeingShutDown = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     @Inject
     protected ThreadUtils threadUtils;
     @Inject
@@ -70,7 +86,12 @@ public class XenHypervisor implements HypervisorHost {
 
     /**
      * This method shuts down the given host. It checks if the host to be powered off is the
-     * master, if yes then changes the master to be another host in the cluster.
+     * master, if yes then changes the master to be another host in the cluster. Only the
+     * connection to the pool, the master change and the shutdown request are done holding the lock
+     * of the pool (
+     * {@link #getPoolLock(Long)}); the wait for the host to go down (
+     * {@link #waitHostToGoDown(String, String)}) is done concurrently with the shutdown of other
+     * hosts of the pool.
      *
      * @note this method can be executed only after the
      *       {@link HostService#loadHostDetails(HostVO)} method.
@@ -80,25 +101,44 @@ public class XenHypervisor implements HypervisorHost {
         String privateMacAddress = getHostPrivateMacAddress(hostVo);
         hostService.updateHostPrivaceMacAddress(hostVo, privateMacAddress);
 
-        Connection conn = getConnection(hostVo);
         String hostToDeactivatedUuid = hostVo.getGuid();
 
+        hostsBeingShutDown.add(hostToDeactivatedUuid);
         try {
-            Host master = getMasterHost(conn);
-            changeMasterIfNeeded(conn, master, hostToDeactivatedUuid);
+            String hostAddress;
+            synchronized (getPoolLock(hostVo.getClusterId())) {
+                Connection conn = getConnection(hostVo);
+                Host master = getMasterHost(conn);
+                changeMasterIfNeeded(conn, master, hostToDeactivatedUuid);
 
-            Host host = Host.getByUuid(conn, hostToDeactivatedUuid);
-            String hostAddress = host.getAddress(conn);
+                Host host = Host.getByUuid(conn, hostToDeactivatedUuid);
+                hostAddress = host.getAddress(conn);
 
-            disableAndShutdownHost(conn, host);
-
-            do {
-                threadUtils.sleepThread(3);
-            } while (hostUtils.isHostReachable(hostAddress));
+                disableAndShutdownHost(conn, host);
+            }
 
+            waitHostToGoDown(hostAddress, hostToDeactivatedUuid);
         } catch (Exception e) {
             throw new CloudRuntimeException(String.format("Could not shut down host [uuid=%s]", hostToDeactivatedUuid), e);
+        } finally {
+            hostsBeingShutDown.remove(hostToDeactivatedUuid);
+        }
+    }
+
+    /**
+     * It returns the lock of the pool of the cluster with the given 'id', creating it if needed.
+     */
+    protected Object getPoolLock(Long clusterId) {
+        Long lockKey = clusterId == null ? Long.valueOf(-1) : clusterId;
+        Object poolLock = poolsLocks.get(lockKey);
+        if (poolLock == null) {
+            Object newLock = new Object();
+            poolLock = poolsLocks.putIfAbsent(lockKey, newLock);
+            if (poolLock == null) {
+                poolLock = newLock;
+            }
         }
+        return poolLock;
     }
 
     protected String getHostPrivateMacAddress(HostVO hostVo) {
@@ -152,11 +192,13 @@ public class XenHypervisor implements HypervisorHost {
     }
 
     /**
-     * The new master will be selected with no specific criteria.
+     * The new master will be selected with no specific criteria, among the reachable hosts that are
+     * not being shut down ({@link #hostsBeingShutDown}).
      */
     protected void changePoolMasterHost(Connection conn, String hostUuid) throws BadServerResponse, XenAPIException, XmlRpcException {
         for (Host host : Host.getAll(conn)) {
-            if (hostUuid.equals(host.getUuid(conn))) {
+            String uuid = host.getUuid(conn);
+            if (hostUuid.equals(uuid) || hostsBeingShutDown.contains(uuid)) {
                 continue;
             }
             if (hostUtils.isHostReachable(host.getAddress(conn))) {
@@ -181,6 +223,20 @@ public class XenHypervisor implements HypervisorHost {
         }
     }
 
+    /**
+     * Waits until the host is not reachable anymore, given a total of
+     * {@value #MAXIMUM_NUMBER_OF_TRIES_WAITING_HOST_TO_GO_DOWN} tries, each taking 3 seconds of wait.
+     */
+    protected void waitHostToGoDown(String hostAddress, String hostUuid) {
+        for (int count = 0; count < MAXIMUM_NUMBER_OF_TRIES_WAITING_HOST_TO_GO_DOWN; count++) {
+            threadUtils.sleepThread(3);
+            if (!hostUtils.isHostReachable(hostAddress)) {
+                return;
+            }
+        }
+        throw new CloudRuntimeException(String.format("Host [uuid=%s] is still reachable after its shutdown was requested", hostUuid));
+    }
+
     /**
      * Get connection with the
      * {@link XenServerConnectionPool#getConnect(String, String, Queue)},
@@ -218,4 +274,4 @@ public class XenHypervisor implements HypervisorHost {
         return HypervisorType.XenServer.equals(hypervisorType);
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
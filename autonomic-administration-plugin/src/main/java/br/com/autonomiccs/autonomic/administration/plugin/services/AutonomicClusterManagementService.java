@@ -22,15 +22,23 @@
  */
 package br.com.autonomiccs.autonomic.administration.plugin.services;
 
+import java.lang.management.ManagementFactory;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -45,20 +53,86 @@ import br.com.autonomiccs.autonomic.plugin.common.enums.ClusterAdministrationSta
  * Provides methods to use the {@link ClusterJdbcDao} operations,
  * including any logic necessary into operations that use informations from or
  * modify the 'cluster' table.
+ * The administration of a cluster is protected by a lease in the 'cluster' table, owned by this
+ * management server; thus, when many management servers are deployed, each cluster is managed by
+ * only one of them at a time. The leases of the clusters being managed are renewed every
+ * {@value #LEASE_RENEWAL_INTERVAL_IN_MILLISECONDS} milliseconds by a dedicated scheduler, so that the
+ * renewal is not delayed by the other scheduled tasks of the platform (which share the
+ * 'taskScheduler' thread); if a management server stops,
+ * its leases expire after {@value #CLUSTER_ADMINISTRATION_LEASE_IN_SECONDS} seconds and its
+ * clusters can be managed by the other management servers. An administration can hold its lease for
+ * at most {@value #MAXIMUM_NUMBER_OF_MINUTES_OF_CLUSTER_ADMINISTRATION} minutes; after that, the
+ * lease is not renewed anymore and the administration is aborted, so that a hung administration
+ * does not keep its cluster {@link ClusterAdministrationStatus#InProgress} forever.
  */
 @Service
-public class AutonomicClusterManagementService {
+public class AutonomicClusterManagementService implements InitializingBean, DisposableBean {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private static final long ONE_MINUTE_IN_MILLISECONDS = 60000;
     private static final int NUMBER_OF_MINUTES_BETWEEN_CHECKS = 180;
 
+    protected static final int CLUSTER_ADMINISTRATION_LEASE_IN_SECONDS = 60;
+    protected static final long LEASE_RENEWAL_INTERVAL_IN_MILLISECONDS = 15000;
+    protected static final int MAXIMUM_NUMBER_OF_MINUTES_OF_CLUSTER_ADMINISTRATION = 360;
+
     @Autowired
     protected ClusterJdbcDao clusterDaoJdbc;
     @Autowired
     protected ClusterDao clusterDao;
 
+    /**
+     * Identifies this management server as the owner of the clusters leases; the random part
+     * distinguishes it from a previous execution on the same host.
+     */
+    protected String administrationLeaseOwner = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID();
+
+    protected ThreadPoolTaskScheduler leaseRenewalScheduler = new ThreadPoolTaskScheduler();
+
+    /**
+     * Clusters claimed by this management server, mapped to whether their administration lease is
+     * held (true) or is being acquired or was lost (false). A cluster stays here until its
+     * administration finishes, so that it is not claimed again while it is being managed.
+     */
+    protected final ConcurrentMap<Long, Boolean> clustersLeases = new ConcurrentHashMap<>();
+
+    /**
+     * Time (in milliseconds) when the administration lease of each cluster held by this management
+     * server was acquired.
+     */
+    protected final ConcurrentMap<Long, Long> clustersLeasesAcquisitionTimes = new ConcurrentHashMap<>();
+
+    /**
+     * It starts the scheduler of the leases renewal, which runs
+     * {@link #renewClustersAdministrationLeases()} every
+     * {@value #LEASE_RENEWAL_INTERVAL_IN_MILLISECONDS} milliseconds in its own thread.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        leaseRenewalScheduler.setPoolSize(1);
+        leaseRenewalScheduler.setThreadNamePrefix("autonomiccs-lease-renewal-");
+        leaseRenewalScheduler.initialize();
+        leaseRenewalScheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    renewClustersAdministrationLeases();
+                } catch (Exception e) {
+                    logger.error("Unexpected error while renewing the clusters administration leases.", e);
+                }
+            }
+        }, new Date(System.currentTimeMillis() + LEASE_RENEWAL_INTERVAL_IN_MILLISECONDS), LEASE_RENEWAL_INTERVAL_IN_MILLISECONDS);
+    }
+
+    /**
+     * It stops the scheduler of the leases renewal.
+     */
+    @Override
+    public void destroy() {
+        leaseRenewalScheduler.shutdown();
+    }
+
     /**
      * Returns true if the cluster is in {@link ClusterAdministrationStatus#InProgress} state.
      */
@@ -78,42 +152,158 @@ public class AutonomicClusterManagementService {
         if (lastAdministration == null) {
             return true;
         }
-        Calendar lastAdministrationCalendar = Calendar.getInstance();
-        lastAdministrationCalendar.setTime(lastAdministration);
-        lastAdministrationCalendar.add(Calendar.SECOND, algorithm.getClusterIntervalBetweenConsolidation());
+        Calendar lastAdministrationCalendar = getNextAdministrationCalendar(lastAdministration, algorithm);
         Calendar calendarNow = Calendar.getInstance();
         return lastAdministrationCalendar.before(calendarNow);
     }
 
     /**
-     * Sets the cluster administration status to {@link ClusterAdministrationStatus#InProgress}
-     * using {@link ClusterJdbcDao#setClusterAdministrationStatus(ClusterConsolidationStatus, long)}
-     * method.
+     * Returns the date when the cluster should be processed again: its last administration plus
+     * the administration algorithm management interval. If the cluster has never been processed
+     * ('last_administration' column is null), it returns null.
+     */
+    public Date getClusterNextAdministrationDate(long clusterId, ClusterAdministrationHeuristicAlgorithm algorithm) {
+        Date lastAdministration = clusterDaoJdbc.getClusterLastAdminstration(clusterId);
+        if (lastAdministration == null) {
+            return null;
+        }
+        return getNextAdministrationCalendar(lastAdministration, algorithm).getTime();
+    }
+
+    private Calendar getNextAdministrationCalendar(Date lastAdministration, ClusterAdministrationHeuristicAlgorithm algorithm) {
+        Calendar nextAdministrationCalendar = Calendar.getInstance();
+        nextAdministrationCalendar.setTime(lastAdministration);
+        nextAdministrationCalendar.add(Calendar.SECOND, algorithm.getClusterIntervalBetweenConsolidation());
+        return nextAdministrationCalendar;
+    }
+
+    /**
+     * Sets the cluster administration status to {@link ClusterAdministrationStatus#InProgress},
+     * acquiring its administration lease for this management server with
+     * {@link ClusterJdbcDao#acquireClusterAdministrationLease(long, String, int)}. The cluster is
+     * first claimed locally, so that it is not claimed twice by this management server; then, the
+     * status is checked and set in a single statement, so that two management servers cannot start
+     * managing the same cluster.
+     *
+     * @return true if the lease was acquired; false if the cluster is already being managed by
+     *         this or another management server
      */
     @Transactional(readOnly = false)
-    public void setClusterWorkInProgress(long clusterId) {
-        clusterDaoJdbc.setClusterAdministrationStatus(ClusterAdministrationStatus.InProgress, clusterId);
+    public boolean setClusterWorkInProgress(long clusterId) {
+        if (clustersLeases.putIfAbsent(clusterId, false) != null) {
+            logger.debug(String.format("Cluster [id=%d] is already being managed by this management server.", clusterId));
+            return false;
+        }
+        boolean leaseAcquired = false;
+        try {
+            leaseAcquired = clusterDaoJdbc.acquireClusterAdministrationLease(clusterId, administrationLeaseOwner, CLUSTER_ADMINISTRATION_LEASE_IN_SECONDS);
+        } finally {
+            if (!leaseAcquired) {
+                clustersLeases.remove(clusterId);
+            }
+        }
+        if (!leaseAcquired) {
+            logger.debug(String.format("Cluster [id=%d] is being managed by another management server.", clusterId));
+            return false;
+        }
+        clustersLeasesAcquisitionTimes.put(clusterId, System.currentTimeMillis());
+        clustersLeases.put(clusterId, true);
         logger.debug("Starting the process on cluster = " + clusterId);
+        return true;
+    }
+
+    /**
+     * Returns true if this management server holds the administration lease of the cluster; it
+     * returns false if the lease was lost ({@link #renewClustersAdministrationLeases()}), as the
+     * cluster may be managed by another management server.
+     */
+    public boolean isClusterLeaseHeld(long clusterId) {
+        return Boolean.TRUE.equals(clustersLeases.get(clusterId));
+    }
+
+    /**
+     * Sets the cluster administration status back to {@link ClusterAdministrationStatus#Done},
+     * without changing its last administration; it is used when the administration of a cluster
+     * set as {@link ClusterAdministrationStatus#InProgress} could not be started.
+     */
+    @Transactional(readOnly = false)
+    public void cancelClusterWorkInProgress(long clusterId) {
+        releaseClusterAdministrationLease(clusterId);
+        logger.debug("Canceling the process on cluster = " + clusterId);
     }
 
     /**
      * Mark the cluster (with the given id) as in
      * {@link ClusterAdministrationStatus#Done} state and sets the last
-     * administration to the current Date.
+     * administration to the current Date; the cluster administration lease is released. If the
+     * lease was lost, the last administration is not changed, as the cluster may be managed by
+     * another management server.
      */
     @Transactional(readOnly = false)
     public void markAdministrationStatusInClusterAsDone(long clusterId) {
-        clusterDaoJdbc.setClusterLastAdministration(new Date(), clusterId);
-        clusterDaoJdbc.setClusterAdministrationStatus(ClusterAdministrationStatus.Done, clusterId);
+        if (isClusterLeaseHeld(clusterId)) {
+            clusterDaoJdbc.setClusterLastAdministration(new Date(), clusterId);
+        }
+        releaseClusterAdministrationLease(clusterId);
+    }
+
+    private void releaseClusterAdministrationLease(long clusterId) {
+        clustersLeasesAcquisitionTimes.remove(clusterId);
+        clustersLeases.remove(clusterId);
+        if (!clusterDaoJdbc.releaseClusterAdministrationLease(clusterId, administrationLeaseOwner)) {
+            logger.warn(String.format("The administration lease of cluster [id=%d] was not held by this management server anymore.", clusterId));
+        }
+    }
+
+    /**
+     * It renews the administration lease of the clusters being managed by this management server
+     * (using {@link ClusterJdbcDao#renewClusterAdministrationLease(long, String, int)}). Clusters
+     * whose lease could not be renewed are set as lost ({@link #isClusterLeaseHeld(long)} returns
+     * false) and are not renewed anymore, as their lease may already be held by another management
+     * server; their administration is expected to stop. The same happens to clusters whose
+     * administration is taking too long ({@link #isClusterAdministrationTakingTooLong(long)}); their
+     * lease expires and they can be managed again.
+     */
+    public void renewClustersAdministrationLeases() {
+        for (Entry<Long, Boolean> clusterLease : clustersLeases.entrySet()) {
+            if (!clusterLease.getValue()) {
+                continue;
+            }
+            long clusterId = clusterLease.getKey();
+            if (isClusterAdministrationTakingTooLong(clusterId)) {
+                logger.warn(String.format("The administration of cluster [id=%d] is running for more than [%d] minutes; its lease will not be renewed and its administration will be aborted.",
+                        clusterId, MAXIMUM_NUMBER_OF_MINUTES_OF_CLUSTER_ADMINISTRATION));
+                clustersLeases.replace(clusterId, true, false);
+                continue;
+            }
+            if (!clusterDaoJdbc.renewClusterAdministrationLease(clusterId, administrationLeaseOwner, CLUSTER_ADMINISTRATION_LEASE_IN_SECONDS)) {
+                logger.warn(String.format("The administration lease of cluster [id=%d] was lost; its administration will be aborted.", clusterId));
+                clustersLeases.replace(clusterId, true, false);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the administration lease of the cluster was acquired more than
+     * {@value #MAXIMUM_NUMBER_OF_MINUTES_OF_CLUSTER_ADMINISTRATION} minutes ago.
+     */
+    protected boolean isClusterAdministrationTakingTooLong(long clusterId) {
+        Long leaseAcquisitionTime = clustersLeasesAcquisitionTimes.get(clusterId);
+        if (leaseAcquisitionTime == null) {
+            return false;
+        }
+        return System.currentTimeMillis() - leaseAcquisitionTime > ONE_MINUTE_IN_MILLISECONDS * MAXIMUM_NUMBER_OF_MINUTES_OF_CLUSTER_ADMINISTRATION;
     }
 
     /**
      * Sometimes a cluster may be stuck as being processed; this happens when the database was
      * updated when the agent started to manage, but for some reason, the agent did not mark it as
-     * finished. An example is when an agent (at the end it is a machine prone to failures) stops
-     * for some reason while processing the cluster. To correct possible problems, this method
-     * "restarts" the status of clusters that are over six (6) hours being managed (a clear case
-     * that something wrong has happened, and we hope the next execution will have success).
+     * finished. Clusters managed with a lease are reclaimed as soon as their lease expires (
+     * {@link #setClusterWorkInProgress(long)}); however, clusters that were set as
+     * {@link ClusterAdministrationStatus#InProgress} without a lease (e.g. by previous versions of
+     * the agent) are never reclaimed. To correct possible problems, this method "restarts" the
+     * status of those clusters when they are over six (6) hours being managed (a clear case that
+     * something wrong has happened, and we hope the next execution will have success).
      */
     @Transactional(readOnly = false)
     @Scheduled(initialDelay = ONE_MINUTE_IN_MILLISECONDS, fixedDelay = ONE_MINUTE_IN_MILLISECONDS * NUMBER_OF_MINUTES_BETWEEN_CHECKS)
@@ -127,9 +317,12 @@ public class AutonomicClusterManagementService {
             if (!ClusterAdministrationStatus.isClusterBeingManaged(clusterDaoJdbc.getClusterAdministrationStatus(clusterId))) {
                 continue;
             }
+            if (clusterDaoJdbc.getClusterAdministrationLeaseExpiration(clusterId) != null) {
+                continue;
+            }
             Date lastAdministration = clusterDaoJdbc.getClusterLastAdminstration(clusterId);
             if (lastAdministration == null) {
-                markAdministrationStatusInClusterAsDone(clusterId);
+                resetStuckClusterAdministrationStatus(clusterId);
                 continue;
             }
             Calendar cal = Calendar.getInstance();
@@ -138,9 +331,18 @@ public class AutonomicClusterManagementService {
 
             Date now = new Date();
             if (cal.getTime().before(now)) {
-                markAdministrationStatusInClusterAsDone(clusterId);
+                resetStuckClusterAdministrationStatus(clusterId);
             }
         }
     }
 
+    /**
+     * Sets the last administration of a cluster stuck as {@link ClusterAdministrationStatus#InProgress}
+     * (without a lease) to the current Date and its status to {@link ClusterAdministrationStatus#Done}.
+     */
+    protected void resetStuckClusterAdministrationStatus(long clusterId) {
+        clusterDaoJdbc.setClusterLastAdministration(new Date(), clusterId);
+        clusterDaoJdbc.setClusterAdministrationStatus(ClusterAdministrationStatus.Done, clusterId);
+    }
+
 }
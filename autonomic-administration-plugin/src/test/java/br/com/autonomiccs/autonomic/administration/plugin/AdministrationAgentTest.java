@@ -23,10 +23,13 @@
 package br.com.autonomiccs.autonomic.administration.plugin;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.junit.Assert;
@@ -43,29 +46,31 @@ import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import com.cloud.dc.ClusterVO;
-import com.cloud.dc.DataCenter.NetworkType;
-import com.cloud.dc.DataCenterVO;
-import com.cloud.exception.AgentUnavailableException;
 import com.cloud.host.HostVO;
-import com.cloud.resource.ResourceManager;
 import com.cloud.utils.exception.CloudRuntimeException;
-import com.cloud.vm.UserVmService;
 import com.cloud.vm.VMInstanceVO;
 import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.ClusterPlanningContext;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.CrossClusterConsolidationPlan;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationPlan;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.AlternativeTargetHostSelector;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.CrossClusterConsolidationPlanner;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.MigrationDependencyPlanner;
 import br.com.autonomiccs.autonomic.administration.plugin.services.AutonomicClusterManagementService;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterResourcesUp;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterSnapshot;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.services.CloudResourcesService;
 import br.com.autonomiccs.autonomic.algorithms.commons.services.ClusterResourcesService;
-import br.com.autonomiccs.autonomic.algorithms.commons.services.HostResourcesService;
 import br.com.autonomiccs.autonomic.plugin.common.services.AutonomicClusterManagementHeuristicService;
+import br.com.autonomiccs.autonomic.plugin.common.services.CloudResourceModelService;
 import br.com.autonomiccs.autonomic.plugin.common.services.ClusterService;
 import br.com.autonomiccs.autonomic.plugin.common.services.HostService;
 import br.com.autonomiccs.autonomic.plugin.common.services.VirtualMachineService;
-import br.com.autonomiccs.autonomic.plugin.common.services.ZoneService;
-import br.com.autonomiccs.autonomic.plugin.common.utils.ThreadUtils;
 
 @RunWith(MockitoJUnitRunner.class)
 public class AdministrationAgentTest {
@@ -76,12 +81,14 @@ public class AdministrationAgentTest {
     @Mock
     private ClusterService clusterService;
     @Mock
+    private CrossClusterConsolidationPlanner crossClusterConsolidationPlanner;
+    @Mock
+    private MigrationDependencyPlanner migrationDependencyPlanner;
+    @Mock
     private AutonomicClusterManagementHeuristicService autonomicManagementHeuristicService;
     @Mock
     private ClusterAdministrationHeuristicAlgorithm clusterAdministrationHeuristicAlgorithm;
     @Mock
-    private ZoneService zoneService;
-    @Mock
     private AutonomicClusterManagementService autonomicClusterManagementService;
     @Mock
     private CloudResourcesService cloudResourcesService;
@@ -92,15 +99,11 @@ public class AdministrationAgentTest {
     @Mock
     private VirtualMachineService virtualMachineService;
     @Mock
-    private ThreadUtils threadUtils;
-    @Mock
-    private UserVmService userVmService;
+    private VmMigrationExecutor vmMigrationExecutor;
     @Mock
-    private HypervisorManager hypervisorManager;
+    private HostShutdownExecutor hostShutdownExecutor;
     @Mock
-    private HostResourcesService hostResourcesService;
-    @Mock
-    private ResourceManager resourceManager;
+    private CloudResourceModelService cloudResourceModelService;
 
     @Before
     public void setup() {
@@ -117,6 +120,7 @@ public class AdministrationAgentTest {
     public void receiveClusterToBeManagedTestClusterIdNotNullButClusterWasNotFound() {
         administrationAgent.receiveClusterToBeManaged(1l);
         verifyReceiveClusterToBeManaged(1, 0);
+        Mockito.verify(autonomicClusterManagementService).cancelClusterWorkInProgress(1l);
     }
 
     @Test
@@ -130,136 +134,273 @@ public class AdministrationAgentTest {
     }
 
     @Test
-    public void searchClusterToBeManagedTestReturnedClusterNull() {
-        ClusterVO cluster = Mockito.mock(ClusterVO.class);
-        Mockito.doReturn(null).when(administrationAgent).getClusterToManage(Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
-
-        Long result = administrationAgent.searchClusterToBeManaged();
+    public void workOnClusterTestWithoutExceptionToCatch() {
+        administrationAgent.workOnCluster(createCluster(null), clusterAdministrationHeuristicAlgorithm);
+        verifyWorkOnClusterCalledMethods();
+    }
 
-        Assert.assertNull(result);
-        verifySearchClusterToBeManagedCalledMethods(cluster, 0);
+    @Test
+    public void workOnClusterTestExceptionAtProcessCluster() {
+        Mockito.doThrow(Exception.class).when(administrationAgent).processCluster(Mockito.any(ClusterVO.class), Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
+        administrationAgent.workOnCluster(createCluster(null), clusterAdministrationHeuristicAlgorithm);
+        verifyWorkOnClusterCalledMethods();
     }
 
     @Test
-    public void searchClusterToBeManagedTestReturnedClusterNotNull() {
-        ClusterVO cluster = Mockito.mock(ClusterVO.class);
-        Mockito.doReturn(cluster).when(administrationAgent).getClusterToManage(Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
+    public void processClusterTestCannotProcessCluster() {
+        ClusterVO cluster = createCluster(null);
+        processClusterSetupConditionals(false, true);
 
-        Long result = administrationAgent.searchClusterToBeManaged();
+        administrationAgent.processCluster(cluster, clusterAdministrationHeuristicAlgorithm);
 
-        Assert.assertNotNull(result);
-        verifySearchClusterToBeManagedCalledMethods(cluster, 1);
+        verifyProcessClusterCalledMethods(1, 0, 0);
     }
 
     @Test
-    public void getClusterToManageTestEmptyEnabledZonesList() {
-        Mockito.doReturn(new ArrayList<>()).when(zoneService).listAllZonesEnabled();
+    public void processClusterTestCannotShutdownHosts() {
+        ClusterVO cluster = createCluster(null);
+        processClusterSetupConditionals(true, false);
 
-        ClusterVO result = administrationAgent.getClusterToManage(clusterAdministrationHeuristicAlgorithm);
-        Assert.assertNull(result);
-        Mockito.verify(zoneService).listAllZonesEnabled();
-        Mockito.verify(administrationAgent, Mockito.times(0)).getClusterToManageFromZone(Mockito.any(ClusterAdministrationHeuristicAlgorithm.class), Mockito.anyLong());
+        administrationAgent.processCluster(cluster, clusterAdministrationHeuristicAlgorithm);
+
+        verifyProcessClusterCalledMethods(1, 1, 0);
     }
 
     @Test
-    public void getClusterToManageTestNotEmptyEnabledZonesList() {
-        List<DataCenterVO> zones = new ArrayList<>();
-        zones.add(new DataCenterVO(0, "name", "description", "", "", "", "", "", "", 0l, NetworkType.Basic, "", ""));
-        ClusterVO mockedCluster = Mockito.mock(ClusterVO.class);
-
-        Mockito.doReturn(zones).when(zoneService).listAllZonesEnabled();
-        Mockito.doReturn(mockedCluster).when(administrationAgent).getClusterToManageFromZone(Mockito.any(ClusterAdministrationHeuristicAlgorithm.class), Mockito.anyLong());
+    public void processClusterTestFullExecution() {
+        ClusterVO cluster = createCluster(null);
+        processClusterSetupConditionals(true, true);
 
-        ClusterVO result = administrationAgent.getClusterToManage(clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.processCluster(cluster, clusterAdministrationHeuristicAlgorithm);
 
-        Assert.assertEquals(mockedCluster, result);
+        verifyProcessClusterCalledMethods(1, 1, 1);
+        InOrder inOrder = Mockito.inOrder(cloudResourceModelService, administrationAgent);
+        inOrder.verify(cloudResourceModelService).reconcileCluster(cluster);
+        inOrder.verify(administrationAgent).mapAndExecuteVMsMigrations(Mockito.eq(cluster), Mockito.eq(clusterAdministrationHeuristicAlgorithm),
+                Mockito.any(ClusterPlanningContext.class));
     }
 
     @Test
-    public void getClusterToManageFromZoneTestListOfClustersEmpty() {
-        List<ClusterVO> clusters = new ArrayList<>();
-        Mockito.doReturn(clusters).when(clusterService).listAllClustersOnZone(Mockito.anyLong());
+    public void processClusterTestClusterLeaseLost() {
+        ClusterVO cluster = createCluster(null);
+        processClusterSetupConditionals(true, true);
+        Mockito.doReturn(false).when(administrationAgent).areClustersLeasesHeld(Arrays.asList(cluster));
 
-        ClusterVO result = administrationAgent.getClusterToManageFromZone(clusterAdministrationHeuristicAlgorithm, null);
+        administrationAgent.processCluster(cluster, clusterAdministrationHeuristicAlgorithm);
 
-        Assert.assertNull(result);
-        verifyGetClusterToManageFromZoneCalledMethods(0, 0, 0);
+        verifyProcessClusterCalledMethods(1, 1, 0);
     }
 
     @Test
-    public void getClusterToManageFromZoneTestListOfClustersNotEmptyAndClusterIsNotAdministrated() {
-        List<ClusterVO> clusters = createClusters(null);
-        getClusterToManageFromZoneReturnedValuesSetup(clusters, false, true);
+    public void processClusterTestClustersPlannedTogether() {
+        ClusterVO cluster = createCluster(null);
+        List<ClusterVO> clustersToPlanTogether = Arrays.asList(cluster, createClusterWithId(1l));
+        processClusterSetupConditionals(true, true);
+        Mockito.doReturn(clustersToPlanTogether).when(administrationAgent).getClustersToPlanTogether(cluster, clusterAdministrationHeuristicAlgorithm);
+        Mockito.doNothing().when(administrationAgent).processClustersTogether(cluster, clustersToPlanTogether, clusterAdministrationHeuristicAlgorithm);
 
-        ClusterVO result = administrationAgent.getClusterToManageFromZone(clusterAdministrationHeuristicAlgorithm, null);
+        administrationAgent.processCluster(cluster, clusterAdministrationHeuristicAlgorithm);
 
-        Assert.assertNotNull(result);
-        verifyGetClusterToManageFromZoneCalledMethods(1, 1, 1);
+        Mockito.verify(administrationAgent).processClustersTogether(cluster, clustersToPlanTogether, clusterAdministrationHeuristicAlgorithm);
+        verifyProcessClusterCalledMethods(1, 0, 0);
     }
 
     @Test
-    public void getClusterToManageFromZoneTestListOfClustersNotEmptyAndCannotProcess() {
-        List<ClusterVO> clusters = createClusters(null);
-        getClusterToManageFromZoneReturnedValuesSetup(clusters, false, false);
+    public void getClustersToPlanTogetherTestCrossClusterPlanningDisabled() {
+        ClusterVO cluster = createCluster(null);
+        Mockito.doReturn(false).when(autonomicManagementHeuristicService).isCrossClusterPlanningEnabled();
 
-        ClusterVO result = administrationAgent.getClusterToManageFromZone(clusterAdministrationHeuristicAlgorithm, null);
+        List<ClusterVO> result = administrationAgent.getClustersToPlanTogether(cluster, clusterAdministrationHeuristicAlgorithm);
 
-        Assert.assertNull(result);
-        verifyGetClusterToManageFromZoneCalledMethods(1, 1, 0);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(cluster, result.get(0));
+        Mockito.verify(clusterService, Mockito.times(0)).listClustersSharingZoneWideStorage(Mockito.any(ClusterVO.class));
     }
 
     @Test
-    public void getClusterToManageFromZoneTestClusterIsRemoved() {
-        List<ClusterVO> clusters = createClusters(new Date());
-        getClusterToManageFromZoneReturnedValuesSetup(clusters, true, true);
-
-        ClusterVO result = administrationAgent.getClusterToManageFromZone(clusterAdministrationHeuristicAlgorithm, null);
-
-        Assert.assertNull(result);
-        verifyGetClusterToManageFromZoneCalledMethods(0, 0, 0);
+    public void getClustersToPlanTogetherTestCrossClusterPlanningEnabled() {
+        ClusterVO cluster = createCluster(null);
+        ClusterVO clusterBeingAdministrated = createClusterWithId(1l);
+        ClusterVO clusterThatCanBeProcessed = createClusterWithId(2l);
+        ClusterVO clusterThatCannotBeProcessed = createClusterWithId(3l);
+        ClusterVO clusterWithAnotherHeuristic = createClusterWithId(4l);
+        ClusterAdministrationHeuristicAlgorithm clusterHeuristic = Mockito.mock(ClusterAdministrationHeuristicAlgorithm.class);
+        ClusterAdministrationHeuristicAlgorithm anotherHeuristic = Mockito.mock(ClusterAdministrationHeuristicAlgorithm.class);
+        Mockito.doReturn(true).when(autonomicManagementHeuristicService).isCrossClusterPlanningEnabled();
+        Mockito.doReturn(Arrays.asList(cluster, clusterBeingAdministrated, clusterThatCanBeProcessed, clusterThatCannotBeProcessed, clusterWithAnotherHeuristic)).when(clusterService)
+                .listClustersSharingZoneWideStorage(cluster);
+        Mockito.doReturn(clusterHeuristic).when(autonomicManagementHeuristicService).getAdministrationAlgorithm(Mockito.anyLong());
+        Mockito.doReturn(anotherHeuristic).when(autonomicManagementHeuristicService).getAdministrationAlgorithm(4l);
+        Mockito.doReturn(true).when(autonomicManagementHeuristicService).isSameAdministrationAlgorithmConfiguration(clusterAdministrationHeuristicAlgorithm, clusterHeuristic);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).canProcessCluster(1l, clusterHeuristic);
+        Mockito.doReturn(false).when(autonomicClusterManagementService).setClusterWorkInProgress(1l);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).canProcessCluster(2l, clusterHeuristic);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).setClusterWorkInProgress(2l);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).canProcessCluster(4l, anotherHeuristic);
+
+        List<ClusterVO> result = administrationAgent.getClustersToPlanTogether(cluster, clusterAdministrationHeuristicAlgorithm);
+
+        Assert.assertEquals(Arrays.asList(cluster, clusterThatCanBeProcessed), result);
+        Mockito.verify(autonomicClusterManagementService).canProcessCluster(3l, clusterHeuristic);
+        Mockito.verify(autonomicClusterManagementService).setClusterWorkInProgress(1l);
+        Mockito.verify(autonomicClusterManagementService).setClusterWorkInProgress(2l);
+        Mockito.verify(autonomicClusterManagementService, Mockito.times(2)).setClusterWorkInProgress(Mockito.anyLong());
+        Mockito.verify(autonomicClusterManagementService, Mockito.times(0)).canProcessCluster(Mockito.eq(4l), Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
+        Mockito.verify(autonomicClusterManagementService, Mockito.times(0)).cancelClusterWorkInProgress(Mockito.anyLong());
+    }
+
+    @Test
+    public void getClustersToPlanTogetherTestErrorWhileClaimingClusters() {
+        ClusterVO cluster = createCluster(null);
+        ClusterVO claimedCluster = createClusterWithId(1l);
+        ClusterVO clusterWithError = createClusterWithId(2l);
+        ClusterAdministrationHeuristicAlgorithm clusterHeuristic = Mockito.mock(ClusterAdministrationHeuristicAlgorithm.class);
+        Mockito.doReturn(true).when(autonomicManagementHeuristicService).isCrossClusterPlanningEnabled();
+        Mockito.doReturn(Arrays.asList(cluster, claimedCluster, clusterWithError)).when(clusterService).listClustersSharingZoneWideStorage(cluster);
+        Mockito.doReturn(clusterHeuristic).when(autonomicManagementHeuristicService).getAdministrationAlgorithm(Mockito.anyLong());
+        Mockito.doReturn(true).when(autonomicManagementHeuristicService).isSameAdministrationAlgorithmConfiguration(clusterAdministrationHeuristicAlgorithm, clusterHeuristic);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).canProcessCluster(Mockito.anyLong(), Mockito.eq(clusterHeuristic));
+        Mockito.doReturn(true).when(autonomicClusterManagementService).setClusterWorkInProgress(1l);
+        Mockito.doThrow(new CloudRuntimeException("error")).when(autonomicClusterManagementService).setClusterWorkInProgress(2l);
+
+        try {
+            administrationAgent.getClustersToPlanTogether(cluster, clusterAdministrationHeuristicAlgorithm);
+            Assert.fail();
+        } catch (CloudRuntimeException e) {
+            Mockito.verify(autonomicClusterManagementService).cancelClusterWorkInProgress(1l);
+            Mockito.verify(autonomicClusterManagementService, Mockito.times(1)).cancelClusterWorkInProgress(Mockito.anyLong());
+        }
     }
 
     @Test
-    public void workOnClusterTestWithoutExceptionToCatch() {
-        administrationAgent.workOnCluster(createCluster(null), clusterAdministrationHeuristicAlgorithm);
-        verifyWorkOnClusterCalledMethods();
+    public void processClustersTogetherTest() {
+        ClusterVO cluster = createCluster(null);
+        ClusterVO otherCluster = createClusterWithId(1l);
+        List<HostResources> hosts = createHosts(1);
+        VmResources vm = new VmResources(5l, 1, 500l, 1024l);
+        hosts.get(0).getVmsResources().add(vm);
+        Mockito.doReturn(hosts).when(administrationAgent).getClusterUpHosts(Mockito.any(ClusterVO.class));
+        Mockito.doReturn(false).when(virtualMachineService).isVmUsingOnlyZoneWideStorage(5l);
+        Mockito.doReturn(true).when(clusterAdministrationHeuristicAlgorithm).canHeuristicShutdownHosts();
+        ClusterSnapshot clustersSnapshot = Mockito.mock(ClusterSnapshot.class);
+        Mockito.doReturn(clustersSnapshot).when(administrationAgent).createClusterSnapshot(Mockito.anyListOf(HostResources.class));
+        CrossClusterConsolidationPlan consolidationPlan = new CrossClusterConsolidationPlan(new MigrationPlan(), hosts);
+        Mockito.doReturn(consolidationPlan).when(crossClusterConsolidationPlanner).createConsolidationPlan(Mockito.anyListOf(ClusterResourcesUp.class),
+                Mockito.anySetOf(Long.class), Mockito.eq(clusterAdministrationHeuristicAlgorithm));
+        Mockito.doNothing().when(administrationAgent).executeVMsMigrations(Mockito.anyMapOf(Long.class, HostResources.class), Mockito.any(ClusterSnapshot.class),
+                Mockito.anyMapOf(Long.class, Long.class));
+        Mockito.doNothing().when(administrationAgent).shutdownHosts(Mockito.anyListOf(HostResources.class), Mockito.eq(clusterAdministrationHeuristicAlgorithm));
+        Mockito.doReturn(true).when(administrationAgent).areClustersLeasesHeld(Arrays.asList(cluster, otherCluster));
+
+        administrationAgent.processClustersTogether(cluster, Arrays.asList(cluster, otherCluster), clusterAdministrationHeuristicAlgorithm);
+
+        Set<Long> vmsPinnedToTheirCluster = new HashSet<>(Arrays.asList(5l));
+        Mockito.verify(cloudResourceModelService).reconcileCluster(cluster);
+        Mockito.verify(cloudResourceModelService).reconcileCluster(otherCluster);
+        Mockito.verify(clusterResourcesService, Mockito.times(2)).createClusterResourcesUp(Mockito.anyLong(), Mockito.anyString(), Mockito.eq(hosts));
+        Mockito.verify(crossClusterConsolidationPlanner).createConsolidationPlan(Mockito.anyListOf(ClusterResourcesUp.class), Mockito.eq(vmsPinnedToTheirCluster),
+                Mockito.eq(clusterAdministrationHeuristicAlgorithm));
+        Mockito.verify(administrationAgent).createClusterSnapshot(Arrays.asList(hosts.get(0), hosts.get(0)));
+        Map<Long, Long> hostsClusters = new HashMap<>();
+        hostsClusters.put(hosts.get(0).getHostId(), 1l);
+        Mockito.verify(administrationAgent).logMigrationPlan(0l, consolidationPlan.getMigrationPlan());
+        Mockito.verify(administrationAgent).executeVMsMigrations(consolidationPlan.getMigrationPlan().getVmsToHost(), clustersSnapshot, hostsClusters);
+        Mockito.verify(administrationAgent).shutdownHosts(hosts, clusterAdministrationHeuristicAlgorithm);
+        Mockito.verify(autonomicClusterManagementService).markAdministrationStatusInClusterAsDone(1l);
+        Mockito.verify(autonomicClusterManagementService, Mockito.times(0)).markAdministrationStatusInClusterAsDone(0l);
+    }
+
+    @Test
+    public void processClustersTogetherTestClusterLeaseLost() {
+        ClusterVO cluster = createCluster(null);
+        ClusterVO otherCluster = createClusterWithId(1l);
+        List<HostResources> hosts = createHosts(1);
+        Mockito.doReturn(hosts).when(administrationAgent).getClusterUpHosts(Mockito.any(ClusterVO.class));
+        Mockito.doReturn(true).when(clusterAdministrationHeuristicAlgorithm).canHeuristicShutdownHosts();
+        Mockito.doReturn(Mockito.mock(ClusterSnapshot.class)).when(administrationAgent).createClusterSnapshot(Mockito.anyListOf(HostResources.class));
+        CrossClusterConsolidationPlan consolidationPlan = new CrossClusterConsolidationPlan(new MigrationPlan(), hosts);
+        Mockito.doReturn(consolidationPlan).when(crossClusterConsolidationPlanner).createConsolidationPlan(Mockito.anyListOf(ClusterResourcesUp.class),
+                Mockito.anySetOf(Long.class), Mockito.eq(clusterAdministrationHeuristicAlgorithm));
+        Mockito.doNothing().when(administrationAgent).executeVMsMigrations(Mockito.anyMapOf(Long.class, HostResources.class), Mockito.any(ClusterSnapshot.class),
+                Mockito.anyMapOf(Long.class, Long.class));
+        Mockito.doReturn(false).when(administrationAgent).areClustersLeasesHeld(Arrays.asList(cluster, otherCluster));
+
+        administrationAgent.processClustersTogether(cluster, Arrays.asList(cluster, otherCluster), clusterAdministrationHeuristicAlgorithm);
+
+        Mockito.verify(administrationAgent, Mockito.times(0)).shutdownHosts(Mockito.anyListOf(HostResources.class), Mockito.eq(clusterAdministrationHeuristicAlgorithm));
+        Mockito.verify(autonomicClusterManagementService).markAdministrationStatusInClusterAsDone(1l);
     }
 
     @Test
-    public void workOnClusterTestExceptionAtProcessCluster() {
-        Mockito.doThrow(Exception.class).when(administrationAgent).processCluster(Mockito.any(ClusterVO.class), Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
-        administrationAgent.workOnCluster(createCluster(null), clusterAdministrationHeuristicAlgorithm);
-        verifyWorkOnClusterCalledMethods();
+    public void areClustersLeasesHeldTest() {
+        Mockito.doReturn(true).when(autonomicClusterManagementService).isClusterLeaseHeld(0l);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).isClusterLeaseHeld(1l);
+
+        boolean result = administrationAgent.areClustersLeasesHeld(Arrays.asList(createCluster(null), createClusterWithId(1l)));
+
+        Assert.assertTrue(result);
     }
 
     @Test
-    public void processClusterTestCannotProcessCluster() {
-        ClusterVO cluster = createCluster(null);
-        processClusterSetupConditionals(false, true);
+    public void areClustersLeasesHeldTestLeaseLost() {
+        Mockito.doReturn(true).when(autonomicClusterManagementService).isClusterLeaseHeld(0l);
+        Mockito.doReturn(false).when(autonomicClusterManagementService).isClusterLeaseHeld(1l);
 
-        administrationAgent.processCluster(cluster, clusterAdministrationHeuristicAlgorithm);
+        boolean result = administrationAgent.areClustersLeasesHeld(Arrays.asList(createCluster(null), createClusterWithId(1l)));
 
-        verifyProcessClusterCalledMethods(1, 0, 0);
+        Assert.assertFalse(result);
     }
 
     @Test
-    public void processClusterTestCannotShutdownHosts() {
+    public void processClustersTogetherTestExceptionMarksClustersAsDone() {
         ClusterVO cluster = createCluster(null);
-        processClusterSetupConditionals(true, false);
+        Mockito.doThrow(CloudRuntimeException.class).when(administrationAgent).getClusterUpHosts(Mockito.any(ClusterVO.class));
+
+        try {
+            administrationAgent.processClustersTogether(cluster, Arrays.asList(cluster, createClusterWithId(1l)), clusterAdministrationHeuristicAlgorithm);
+            Assert.fail();
+        } catch (CloudRuntimeException e) {
+            Mockito.verify(autonomicClusterManagementService).markAdministrationStatusInClusterAsDone(1l);
+            Mockito.verify(administrationAgent, Mockito.times(0)).executeVMsMigrations(Mockito.anyMapOf(Long.class, HostResources.class), Mockito.any(ClusterSnapshot.class),
+                Mockito.anyMapOf(Long.class, Long.class));
+        }
+    }
 
-        administrationAgent.processCluster(cluster, clusterAdministrationHeuristicAlgorithm);
+    @Test
+    public void executeVMsMigrationsTest() {
+        Map<Long, HostResources> migrations = new HashMap<>();
+        HostResources targetHost = createHosts(1).get(0);
+        migrations.put(1l, targetHost);
+        VmMigration vmMigration = new VmMigration(1l, 1l, 1l, 0l, 1l);
+        Mockito.doReturn(vmMigration).when(administrationAgent).createVmMigration(Mockito.eq(1l), Mockito.eq(targetHost), Mockito.anyMapOf(Long.class, HostVO.class));
+        ClusterSnapshot clusterSnapshot = Mockito.mock(ClusterSnapshot.class);
+        MigrationGraph migrationGraph = new MigrationGraph();
+        Mockito.doReturn(migrationGraph).when(migrationDependencyPlanner).createMigrationGraph(clusterSnapshot, Arrays.asList(vmMigration));
+        Map<Long, Long> hostsClusters = new HashMap<>();
+        AlternativeTargetHostSelector alternativeTargetHostSelector = Mockito.mock(AlternativeTargetHostSelector.class);
+        Mockito.doReturn(alternativeTargetHostSelector).when(administrationAgent).createAlternativeTargetHostSelector(clusterSnapshot, migrationGraph, hostsClusters);
 
-        verifyProcessClusterCalledMethods(1, 1, 0);
+        administrationAgent.executeVMsMigrations(migrations, clusterSnapshot, hostsClusters);
+
+        Mockito.verify(migrationDependencyPlanner).createMigrationGraph(clusterSnapshot, Arrays.asList(vmMigration));
+        Mockito.verify(vmMigrationExecutor).executeMigrations(migrationGraph, alternativeTargetHostSelector);
     }
 
     @Test
-    public void processClusterTestFullExecution() {
-        ClusterVO cluster = createCluster(null);
-        processClusterSetupConditionals(true, true);
+    public void executeVMsMigrationsTestVmNotMigrated() {
+        Map<Long, HostResources> migrations = new HashMap<>();
+        migrations.put(1l, createHosts(1).get(0));
+        Mockito.doReturn(null).when(administrationAgent).createVmMigration(Mockito.anyLong(), Mockito.any(HostResources.class), Mockito.anyMapOf(Long.class, HostVO.class));
+        ClusterSnapshot clusterSnapshot = Mockito.mock(ClusterSnapshot.class);
+        MigrationGraph migrationGraph = new MigrationGraph();
+        Mockito.doReturn(migrationGraph).when(migrationDependencyPlanner).createMigrationGraph(clusterSnapshot, new ArrayList<VmMigration>());
+        Map<Long, Long> hostsClusters = new HashMap<>();
+        AlternativeTargetHostSelector alternativeTargetHostSelector = Mockito.mock(AlternativeTargetHostSelector.class);
+        Mockito.doReturn(alternativeTargetHostSelector).when(administrationAgent).createAlternativeTargetHostSelector(clusterSnapshot, migrationGraph, hostsClusters);
 
-        administrationAgent.processCluster(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.executeVMsMigrations(migrations, clusterSnapshot, hostsClusters);
 
-        verifyProcessClusterCalledMethods(1, 1, 1);
+        Mockito.verify(vmMigrationExecutor).executeMigrations(migrationGraph, alternativeTargetHostSelector);
     }
 
     @Test
@@ -268,7 +409,7 @@ public class AdministrationAgentTest {
         List<HostResources> idleHosts = createHosts(1);
         shutdownIdleHostsTestSetupMethodsExecution(idleHosts, true, true, true);
 
-        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
         verifyShutdownIdleHostsCalledMethods(1, 1, 1, 1);
     }
@@ -279,7 +420,7 @@ public class AdministrationAgentTest {
         List<HostResources> idleHosts = createHosts(1);
         shutdownIdleHostsTestSetupMethodsExecution(idleHosts, false, true, true);
 
-        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
         verifyShutdownIdleHostsCalledMethods(0, 0, 0, 0);
     }
@@ -300,7 +441,7 @@ public class AdministrationAgentTest {
         List<HostResources> idleHosts = new ArrayList<>();
         shutdownIdleHostsTestSetupMethodsExecution(idleHosts, true, true, true);
 
-        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
         verifyShutdownIdleHostsCalledMethods(1, 0, 0, 0);
     }
@@ -311,7 +452,7 @@ public class AdministrationAgentTest {
         List<HostResources> idleHosts = createHosts(1);
         shutdownIdleHostsTestSetupMethodsExecution(idleHosts, true, false, true);
 
-        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
         verifyShutdownIdleHostsCalledMethods(1, 1, 0, 0);
     }
@@ -322,16 +463,74 @@ public class AdministrationAgentTest {
         List<HostResources> idleHosts = createHosts(1);
         shutdownIdleHostsTestSetupMethodsExecution(idleHosts, true, true, false);
 
-        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.shutdownIdleHosts(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
         verifyShutdownIdleHostsCalledMethods(1, 1, 1, 0);
     }
 
+    @Test
+    public void shutdownHostsTest() {
+        List<HostResources> hosts = createHosts(3);
+        List<HostResources> hostsToShutdown = hosts.subList(0, 2);
+        Mockito.doReturn(hostsToShutdown).when(administrationAgent).selectHostsToShutdown(hosts, clusterAdministrationHeuristicAlgorithm);
+
+        administrationAgent.shutdownHosts(hosts, clusterAdministrationHeuristicAlgorithm);
+
+        Mockito.verify(hostShutdownExecutor).shutdownHosts(hostsToShutdown);
+    }
+
+    @Test
+    public void shutdownHostsTestNoHostSelected() {
+        List<HostResources> hosts = createHosts(1);
+        Mockito.doReturn(new ArrayList<HostResources>()).when(administrationAgent).selectHostsToShutdown(hosts, clusterAdministrationHeuristicAlgorithm);
+
+        administrationAgent.shutdownHosts(hosts, clusterAdministrationHeuristicAlgorithm);
+
+        Mockito.verify(hostShutdownExecutor, Mockito.times(0)).shutdownHosts(Matchers.anyListOf(HostResources.class));
+    }
+
+    @Test
+    public void shutdownHostsTestEmptyHostsList() {
+        administrationAgent.shutdownHosts(new ArrayList<HostResources>(), clusterAdministrationHeuristicAlgorithm);
+
+        Mockito.verify(administrationAgent, Mockito.times(0)).createAllClustersResourcesUp();
+        Mockito.verify(hostShutdownExecutor, Mockito.times(0)).shutdownHosts(Matchers.anyListOf(HostResources.class));
+    }
+
+    @Test
+    public void selectHostsToShutdownTestCloudResourcesCreatedOnce() {
+        List<HostResources> hosts = createHosts(3);
+        shutdownIdleHostsTestSetupMethodsExecution(hosts, true, true, true);
+        hosts.get(1).setHostId(1l);
+        Mockito.doReturn(false).when(clusterAdministrationHeuristicAlgorithm).canPowerOffHost(Mockito.eq(hosts.get(1)), Mockito.any(CloudResources.class));
+
+        List<HostResources> result = administrationAgent.selectHostsToShutdown(hosts, clusterAdministrationHeuristicAlgorithm);
+
+        Assert.assertEquals(Arrays.asList(hosts.get(0), hosts.get(2)), result);
+        Mockito.verify(administrationAgent).createAllClustersResourcesUp();
+        Mockito.verify(cloudResourcesService).createCloudResources(Matchers.anyListOf(ClusterResourcesUp.class));
+        Mockito.verify(cloudResourcesService).removeHostResources(Mockito.any(CloudResources.class), Mockito.eq(hosts.get(0)));
+        Mockito.verify(cloudResourcesService, Mockito.times(0)).removeHostResources(Mockito.any(CloudResources.class), Mockito.eq(hosts.get(1)));
+        Mockito.verify(cloudResourcesService).removeHostResources(Mockito.any(CloudResources.class), Mockito.eq(hosts.get(2)));
+    }
+
+    @Test
+    public void selectHostsToShutdownTestCapacityBudgetExhausted() {
+        List<HostResources> hosts = createHosts(3);
+        shutdownIdleHostsTestSetupMethodsExecution(hosts, true, true, true);
+        Mockito.doReturn(true).doReturn(true).doReturn(false).when(clusterAdministrationHeuristicAlgorithm).canPowerOffAnotherHostInCloud(Mockito.any(CloudResources.class));
+
+        List<HostResources> result = administrationAgent.selectHostsToShutdown(hosts, clusterAdministrationHeuristicAlgorithm);
+
+        Assert.assertEquals(hosts.subList(0, 2), result);
+        Mockito.verify(cloudResourcesService, Mockito.times(2)).removeHostResources(Mockito.any(CloudResources.class), Mockito.any(HostResources.class));
+        Mockito.verify(hostShutdownExecutor, Mockito.times(0)).shutdownHosts(Matchers.anyListOf(HostResources.class));
+    }
+
     @Test
     public void createAllClustersResourcesUpTestFullExecution() {
         List<ClusterVO> clustersVO = createClusters(null);
         Mockito.doReturn(clustersVO).when(clusterService).listAllClusters();
-        Mockito.doReturn(new ArrayList<>()).when(administrationAgent).getClusterUpHosts(Mockito.any(ClusterVO.class));
         List<ClusterResourcesUp> result = administrationAgent.createAllClustersResourcesUp();
 
         verifyCreateAllClustersResourcesUpCalledMethods(1);
@@ -342,17 +541,34 @@ public class AdministrationAgentTest {
     public void createAllClustersResourcesUpTestRemovedCluster() {
         List<ClusterVO> clustersVO = createClusters(new Date());
         Mockito.doReturn(clustersVO).when(clusterService).listAllClusters();
-        Mockito.doReturn(new ArrayList<>()).when(administrationAgent).getClusterUpHosts(Mockito.any(ClusterVO.class));
         List<ClusterResourcesUp> result = administrationAgent.createAllClustersResourcesUp();
 
         verifyCreateAllClustersResourcesUpCalledMethods(0);
         Assert.assertEquals(0, result.size());
     }
 
+    @Test
+    public void createAllClustersResourcesUpTestClustersOfTheSameZone() {
+        ClusterVO cluster = createCluster(null);
+        ClusterVO clusterWithoutHostsUp = createClusterWithId(1l);
+        Mockito.doReturn(Arrays.asList(cluster, clusterWithoutHostsUp)).when(clusterService).listAllClusters();
+        List<HostResources> hosts = createHosts(1);
+        List<HostVO> hostsVO = Arrays.asList(createHostVOInCluster(0l));
+        Mockito.doReturn(hostsVO).when(hostService).listAllHostsInZone(Mockito.anyLong());
+        Mockito.doReturn(hosts).when(cloudResourceModelService).createHostsResources(hostsVO);
+
+        List<ClusterResourcesUp> result = administrationAgent.createAllClustersResourcesUp();
+
+        Assert.assertEquals(2, result.size());
+        Mockito.verify(hostService).listAllHostsInZone(Mockito.anyLong());
+        Mockito.verify(clusterResourcesService).createClusterResourcesUp(0l, "name", hosts);
+        Mockito.verify(clusterResourcesService).createClusterResourcesUp(1l, "name", new ArrayList<HostResources>());
+        Mockito.verify(administrationAgent, Mockito.times(0)).getClusterUpHosts(Mockito.any(ClusterVO.class));
+    }
+
     @Test
     public void createAllClustersResourcesUpTestEmptyClustersList() {
         Mockito.doReturn(new ArrayList<>()).when(clusterService).listAllClusters();
-        Mockito.doReturn(new ArrayList<>()).when(administrationAgent).getClusterUpHosts(Mockito.any(ClusterVO.class));
         List<ClusterResourcesUp> result = administrationAgent.createAllClustersResourcesUp();
 
         verifyCreateAllClustersResourcesUpCalledMethods(0);
@@ -365,7 +581,7 @@ public class AdministrationAgentTest {
         List<HostResources> hosts = new ArrayList<>();
         setupMapAndExecuteVMsMigrationsTest(hosts, true);
 
-        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
         verifyMapAndExecuteVMsMigrationsCalledMethods(0, 0);
     }
@@ -376,7 +592,7 @@ public class AdministrationAgentTest {
         List<HostResources> hosts = createHosts(1);
         setupMapAndExecuteVMsMigrationsTest(hosts, true);
 
-        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
         verifyMapAndExecuteVMsMigrationsCalledMethods(0, 0);
     }
@@ -387,126 +603,129 @@ public class AdministrationAgentTest {
         List<HostResources> hosts = createHosts(2);
         setupMapAndExecuteVMsMigrationsTest(hosts, true);
 
-        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
         verifyMapAndExecuteVMsMigrationsCalledMethods(1, 1);
+        Mockito.verify(administrationAgent, Mockito.times(0)).logMigrationPlan(Mockito.anyLong(), Mockito.any(MigrationPlan.class));
     }
 
     @Test
-    public void mapAndExecuteVMsMigrationsTestEmptyMigrationsMap() {
+    public void mapAndExecuteVMsMigrationsTestMigrationPlanLogged() {
         ClusterVO cluster = createCluster(null);
         List<HostResources> hosts = createHosts(2);
-        setupMapAndExecuteVMsMigrationsTest(hosts, false);
+        setupMapAndExecuteVMsMigrationsTest(hosts, true);
+        ClusterPlanningContext planningContext = new ClusterPlanningContext();
+        MigrationPlan migrationPlan = new MigrationPlan();
+        planningContext.setMigrationPlan(migrationPlan);
 
-        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm);
+        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm, planningContext);
 
-        verifyMapAndExecuteVMsMigrationsCalledMethods(1, 0);
+        verifyMapAndExecuteVMsMigrationsCalledMethods(1, 1);
+        Mockito.verify(administrationAgent).logMigrationPlan(0l, migrationPlan);
     }
 
     @Test
-    public void migrateVMTestTargetHostEqualsVmHost() throws Exception {
-        VMInstanceVO vmInstanceVo = migrateVMSetupVmInstanceVo(1l);
-        HostVO hostVo = migrateVMSetupHostVo(1l);
-        Mockito.doReturn(vmInstanceVo).when(userVmService).migrateVirtualMachine(Mockito.anyLong(), Mockito.any(HostVO.class));
-        Mockito.doReturn(new HostVO("")).when(hostService).findHostById(Mockito.anyLong());
+    public void mapAndExecuteVMsMigrationsTestEmptyMigrationsMap() {
+        ClusterVO cluster = createCluster(null);
+        List<HostResources> hosts = createHosts(2);
+        setupMapAndExecuteVMsMigrationsTest(hosts, false);
 
-        administrationAgent.migrateVM(vmInstanceVo, hostVo);
+        administrationAgent.mapAndExecuteVMsMigrations(cluster, clusterAdministrationHeuristicAlgorithm, new ClusterPlanningContext());
 
-        Mockito.verify(userVmService, Mockito.times(0)).migrateVirtualMachine(Mockito.anyLong(), Mockito.any(HostVO.class));
+        verifyMapAndExecuteVMsMigrationsCalledMethods(1, 1);
     }
 
     @Test
-    public void migrateVMTestWithException() throws Exception {
-        VMInstanceVO vmInstanceVo = migrateVMSetupVmInstanceVo(0l);
-        HostVO hostVo = migrateVMSetupHostVo(1l);
-        Mockito.doThrow(Exception.class).when(userVmService).migrateVirtualMachine(Mockito.anyLong(), Mockito.any(HostVO.class));
+    public void createVmMigrationTestTargetHostEqualsVmHost() {
+        createVmMigrationSetupVmInstanceVo(1l);
 
-        administrationAgent.migrateVM(vmInstanceVo, hostVo);
+        VmMigration result = administrationAgent.createVmMigration(0l, createHostResources(1l), new HashMap<Long, HostVO>());
 
-        Mockito.verify(userVmService, Mockito.times(1)).migrateVirtualMachine(Mockito.anyLong(), Mockito.any(HostVO.class));
+        Assert.assertNull(result);
+        Mockito.verify(hostService, Mockito.times(0)).findHostById(Mockito.anyLong());
     }
 
     @Test
-    public void migrateVMTestTargetHostDifferentFromVmHost() throws Exception {
-        VMInstanceVO vmInstanceVo = migrateVMSetupVmInstanceVo(0l);
-        HostVO hostVo = migrateVMSetupHostVo(1l);
-        Mockito.doReturn(vmInstanceVo).when(userVmService).migrateVirtualMachine(Mockito.anyLong(), Mockito.any(HostVO.class));
+    public void createVmMigrationTestVmNotRunningOnHost() {
+        createVmMigrationSetupVmInstanceVo(null);
 
-        administrationAgent.migrateVM(vmInstanceVo, hostVo);
+        VmMigration result = administrationAgent.createVmMigration(0l, createHostResources(1l), new HashMap<Long, HostVO>());
 
-        Mockito.verify(userVmService, Mockito.times(1)).migrateVirtualMachine(Mockito.anyLong(), Mockito.any(HostVO.class));
-    }
-
-    @Test
-    public void shutdownHostTestHostWithoutVms() {
-        setupShutdownHostTest(new ArrayList<VMInstanceVO>());
-        administrationAgent.shutdownHost(0l);
-        verifyShutdownHostCalledMethods(1, 1, 1);
+        Assert.assertNull(result);
+        Mockito.verify(hostService, Mockito.times(0)).findHostById(Mockito.anyLong());
     }
 
     @Test
-    public void shutdownHostTestExceptionThrownByShutdownHost() {
-        setupShutdownHostTest(new ArrayList<VMInstanceVO>());
-        Mockito.doThrow(CloudRuntimeException.class).when(hypervisorManager).shutdownHost(Mockito.any(HostVO.class));
-        administrationAgent.shutdownHost(0l);
-        verifyShutdownHostCalledMethods(1, 1, 1);
-    }
+    public void createVmMigrationTestTargetHostDifferentFromVmHost() {
+        createVmMigrationSetupVmInstanceVo(0l);
+        HostVO sourceHost = createVmMigrationSetupHostVo(0l, 10l);
+        HostVO targetHost = createVmMigrationSetupHostVo(1l, 20l);
+        Mockito.doReturn(sourceHost).when(hostService).findHostById(0l);
+        Mockito.doReturn(targetHost).when(hostService).findHostById(1l);
+        Map<Long, HostVO> hostsById = new HashMap<>();
 
-    @Test
-    public void shutdownHostTestExceptionThrownByPutHostInMaintenance() {
-        setupShutdownHostTest(new ArrayList<VMInstanceVO>());
-        Mockito.doThrow(CloudRuntimeException.class).when(administrationAgent).putHostInMaintenance(Mockito.anyLong());
-        administrationAgent.shutdownHost(0l);
-        verifyShutdownHostCalledMethods(1, 1, 0);
-    }
+        VmMigration result = administrationAgent.createVmMigration(0l, createHostResources(1l), hostsById);
 
-    @Test
-    public void shutdownHostTestExceptionThrownByCheckIfHostIsUpAndEnabled() {
-        setupShutdownHostTest(new ArrayList<VMInstanceVO>());
-        Mockito.doThrow(CloudRuntimeException.class).when(administrationAgent).checkIfHostIsUpAndEnabled(Mockito.anyLong());
-        administrationAgent.shutdownHost(0l);
-        verifyShutdownHostCalledMethods(0, 0, 0);
+        Assert.assertEquals(0l, result.getVmId());
+        Assert.assertEquals(0l, result.getSourceHostId());
+        Assert.assertEquals(10l, result.getSourceClusterId());
+        Assert.assertEquals(1l, result.getTargetHostId());
+        Assert.assertEquals(20l, result.getTargetClusterId());
+        Assert.assertEquals(2, hostsById.size());
     }
 
     @Test
-    public void shutdownHostTestHostWithVms() {
-        setupShutdownHostTest(createVms());
+    public void createVmMigrationTestHostsAlreadyLoaded() {
+        createVmMigrationSetupVmInstanceVo(0l);
+        Map<Long, HostVO> hostsById = new HashMap<>();
+        hostsById.put(0l, createVmMigrationSetupHostVo(0l, 10l));
+        hostsById.put(1l, createVmMigrationSetupHostVo(1l, 10l));
 
-        administrationAgent.shutdownHost(0l);
+        VmMigration result = administrationAgent.createVmMigration(0l, createHostResources(1l), hostsById);
 
-        verifyShutdownHostCalledMethods(1, 0, 0);
+        Assert.assertEquals(10l, result.getTargetClusterId());
+        Mockito.verify(hostService, Mockito.times(0)).findHostById(Mockito.anyLong());
     }
 
     @Test
-    public void shutdownHostTestHostWithVmsExceptionThrownByCheckIfHostIsUpAndEnabled() {
-        setupShutdownHostTest(createVms());
-        Mockito.doThrow(CloudRuntimeException.class).when(administrationAgent).checkIfHostIsUpAndEnabled(Mockito.anyLong());
+    public void getClusterUpHostsTest() {
+        ClusterVO cluster = createCluster(null);
+        List<HostResources> hosts = setupGetClusterUpHostsTest(cluster, 2);
 
-        administrationAgent.shutdownHost(0l);
+        List<HostResources> result = administrationAgent.getClusterUpHosts(cluster);
 
-        verifyShutdownHostCalledMethods(0, 0, 0);
+        Assert.assertEquals(hosts, result);
+        verifyGetClusterUpHostsCalledMethods(cluster);
     }
 
     @Test
-    public void getClusterUpHostsTest() {
+    public void getClusterUpHostsTestNoHostRunning() {
         ClusterVO cluster = createCluster(null);
-        List<HostVO> hosts = setupGetClusterUpHostsTest(2);
+        List<HostResources> hosts = setupGetClusterUpHostsTest(cluster, 0);
 
         List<HostResources> result = administrationAgent.getClusterUpHosts(cluster);
 
-        Assert.assertEquals(hosts.size(), result.size());
-        verifyGetClusterUpHostsCalledMethods(2);
+        Assert.assertEquals(hosts, result);
+        verifyGetClusterUpHostsCalledMethods(cluster);
     }
 
     @Test
-    public void getClusterUpHostsTestNoHostRunning() {
-        ClusterVO cluster = createCluster(null);
-        List<HostVO> hosts = setupGetClusterUpHostsTest(0);
+    public void getZoneUpHostsByClusterTest() {
+        Map<Long, Map<Long, List<HostResources>>> zonesUpHostsByCluster = new HashMap<>();
+        List<HostVO> hostsVO = Arrays.asList(createHostVOInCluster(1l), createHostVOInCluster(2l), createHostVOInCluster(1l));
+        List<HostResources> hosts = createHosts(3);
+        Mockito.doReturn(hostsVO).when(hostService).listAllHostsInZone(1l);
+        Mockito.doReturn(hosts).when(cloudResourceModelService).createHostsResources(hostsVO);
 
-        List<HostResources> result = administrationAgent.getClusterUpHosts(cluster);
+        Map<Long, List<HostResources>> result = administrationAgent.getZoneUpHostsByCluster(1l, zonesUpHostsByCluster);
+        Map<Long, List<HostResources>> secondResult = administrationAgent.getZoneUpHostsByCluster(1l, zonesUpHostsByCluster);
 
-        Assert.assertEquals(hosts.size(), result.size());
-        verifyGetClusterUpHostsCalledMethods(0);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(Arrays.asList(hosts.get(0), hosts.get(2)), result.get(1l));
+        Assert.assertEquals(Arrays.asList(hosts.get(1)), result.get(2l));
+        Assert.assertEquals(result, secondResult);
+        Mockito.verify(hostService).listAllHostsInZone(1l);
+        Mockito.verify(cloudResourceModelService).createHostsResources(hostsVO);
     }
 
     @Test
@@ -526,85 +745,13 @@ public class AdministrationAgentTest {
         Assert.assertEquals(hosts.get(1), result.get(0));
     }
 
-    @Test(expected = CloudRuntimeException.class)
-    public void checkIfHostIsUpAndEnabledTestExpectCloudRuntimeException() {
-        Mockito.doReturn(false).when(hostService).isHostUpAndEnabled(Mockito.anyLong());
-        administrationAgent.checkIfHostIsUpAndEnabled(Mockito.anyLong());
-        Mockito.verify(hostService).isHostUpAndEnabled(Mockito.anyLong());
-    }
-
-    @Test
-    public void checkIfHostIsUpAndEnabledTestDoesNotExpectCloudRuntimeException() {
-        Mockito.doReturn(true).when(hostService).isHostUpAndEnabled(Mockito.anyLong());
-        administrationAgent.checkIfHostIsUpAndEnabled(Mockito.anyLong());
-        Mockito.verify(hostService).isHostUpAndEnabled(Mockito.anyLong());
-    }
-
-    @Test
-    public void putHostInMaintenanceTestSmoothExecution() throws AgentUnavailableException {
-        setupPutHostInMaintenance(false);
-
-        administrationAgent.putHostInMaintenance(0l);
-
-        verifyPutHostInMaintenanceCalledMethods(1, 1);
-    }
-
-    @Test(expected = CloudRuntimeException.class)
-    public void putHostInMaintenanceTestExceptionThrownAtMaintain() throws AgentUnavailableException {
-        setupPutHostInMaintenance(false);
-        Mockito.doThrow(AgentUnavailableException.class).when(resourceManager).maintain(Mockito.anyLong());
-
-        administrationAgent.putHostInMaintenance(0l);
-
-        verifyPutHostInMaintenanceCalledMethods(0, 0);
-    }
-
-    @Test(expected = CloudRuntimeException.class)
-    public void putHostInMaintenanceTestHostInMaintenanceError() throws AgentUnavailableException {
-        setupPutHostInMaintenance(true);
-
-        administrationAgent.putHostInMaintenance(0l);
-
-        verifyPutHostInMaintenanceCalledMethods(1, 0);
-    }
-
-    private void verifyPutHostInMaintenanceCalledMethods(int times, int isHostInPreparedForMaintenanceTimes) throws AgentUnavailableException {
-        Mockito.verify(resourceManager).maintain(Mockito.anyLong());
-        Mockito.verify(threadUtils, Mockito.times(times)).sleepThread(Mockito.anyInt());
-        InOrder hostServiceInOrder = Mockito.inOrder(hostService);
-        hostServiceInOrder.verify(hostService, Mockito.times(times)).isHostInMaintenanceError(Mockito.anyLong());
-        hostServiceInOrder.verify(hostService, Mockito.times(isHostInPreparedForMaintenanceTimes)).isHostInPreparedForMaintenance(Mockito.anyLong());
-    }
-
-    private void setupPutHostInMaintenance(boolean isHostInMaintenanceError) throws AgentUnavailableException {
-        Mockito.doReturn(true).when(resourceManager).maintain(Mockito.anyLong());
-        Mockito.doNothing().when(threadUtils).sleepThread(Mockito.anyInt());
-        Mockito.doReturn(isHostInMaintenanceError).when(hostService).isHostInMaintenanceError(Mockito.anyLong());
-        Mockito.doReturn(false).when(hostService).isHostInPreparedForMaintenance(Mockito.anyLong());
-    }
-
     private void verifyReceiveClusterToBeManaged(int executionTimes, int executionTimesAfterClusterNullCheck) {
         Mockito.verify(clusterService, Mockito.times(executionTimes)).findById(Mockito.anyLong());
-        Mockito.verify(autonomicManagementHeuristicService, Mockito.times(executionTimesAfterClusterNullCheck)).getAdministrationAlgorithm();
+        Mockito.verify(autonomicManagementHeuristicService, Mockito.times(executionTimesAfterClusterNullCheck)).getAdministrationAlgorithm(Mockito.anyLong());
         Mockito.verify(administrationAgent, Mockito.times(executionTimesAfterClusterNullCheck)).workOnCluster(Mockito.any(ClusterVO.class),
                 Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
     }
 
-    private void verifySearchClusterToBeManagedCalledMethods(ClusterVO cluster, int times) {
-        Mockito.verify(autonomicManagementHeuristicService).getAdministrationAlgorithm();
-        Mockito.verify(administrationAgent).getClusterToManage(Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
-        Mockito.verify(cluster, Mockito.times(times)).getId();
-    }
-
-    private void verifyGetClusterToManageFromZoneCalledMethods(int timesIsClusterBeingAdministrated, int timesCanProcessCluster, int timesSetClusterWorkInProgress) {
-        Mockito.verify(clusterService).listAllClustersOnZone(Mockito.anyLong());
-        InOrder inOrder = Mockito.inOrder(autonomicClusterManagementService);
-        inOrder.verify(autonomicClusterManagementService, Mockito.times(timesIsClusterBeingAdministrated)).isClusterBeingAdministrated(Mockito.anyLong());
-        inOrder.verify(autonomicClusterManagementService, Mockito.times(timesCanProcessCluster)).canProcessCluster(Mockito.anyLong(),
-                Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
-        inOrder.verify(autonomicClusterManagementService, Mockito.times(timesSetClusterWorkInProgress)).setClusterWorkInProgress(Mockito.anyLong());
-    }
-
     private List<ClusterVO> createClusters(Date date) {
         List<ClusterVO> clusters = new ArrayList<>();
         ClusterVO cluster = createCluster(date);
@@ -612,6 +759,12 @@ public class AdministrationAgentTest {
         return clusters;
     }
 
+    private ClusterVO createClusterWithId(long clusterId) {
+        ClusterVO cluster = createCluster(null);
+        Mockito.doReturn(clusterId).when(cluster).getId();
+        return cluster;
+    }
+
     private ClusterVO createCluster(Date date) {
         ClusterVO cluster = Mockito.mock(ClusterVO.class);
         Mockito.doReturn(date).when(cluster).getRemoved();
@@ -620,29 +773,26 @@ public class AdministrationAgentTest {
         return cluster;
     }
 
-    private void getClusterToManageFromZoneReturnedValuesSetup(List<ClusterVO> clusters, boolean isClusterBeingAdministrated, boolean canProcessCluster) {
-        Mockito.doReturn(clusters).when(clusterService).listAllClustersOnZone(Mockito.anyLong());
-        Mockito.doReturn(isClusterBeingAdministrated).when(autonomicClusterManagementService).isClusterBeingAdministrated(Mockito.anyLong());
-        Mockito.doReturn(canProcessCluster).when(autonomicClusterManagementService).canProcessCluster(Mockito.anyLong(),
-                Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
-    }
-
     private void verifyProcessClusterCalledMethods(int canProcessClusterTimes, int canHeuristicShutdownHostsTimes, int shutdownIdleHostsTimes) {
         Mockito.verify(autonomicClusterManagementService, Mockito.times(canProcessClusterTimes)).canProcessCluster(Mockito.anyLong(),
                 Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
+        Mockito.verify(cloudResourceModelService, Mockito.times(canHeuristicShutdownHostsTimes)).reconcileCluster(Mockito.any(ClusterVO.class));
         Mockito.verify(administrationAgent, Mockito.times(canHeuristicShutdownHostsTimes)).mapAndExecuteVMsMigrations(Mockito.any(ClusterVO.class),
-                Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
+                Mockito.any(ClusterAdministrationHeuristicAlgorithm.class), Mockito.any(ClusterPlanningContext.class));
         Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(canHeuristicShutdownHostsTimes)).canHeuristicShutdownHosts();
         Mockito.verify(administrationAgent, Mockito.times(shutdownIdleHostsTimes)).shutdownIdleHosts(Mockito.any(ClusterVO.class),
-                Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
+                Mockito.any(ClusterAdministrationHeuristicAlgorithm.class), Mockito.any(ClusterPlanningContext.class));
     }
 
     private void processClusterSetupConditionals(boolean canProcessCluster, boolean canHeuristicShutdownHosts) {
         Mockito.doReturn(canProcessCluster).when(autonomicClusterManagementService).canProcessCluster(Mockito.anyLong(),
                 Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
         Mockito.doReturn(canHeuristicShutdownHosts).when(clusterAdministrationHeuristicAlgorithm).canHeuristicShutdownHosts();
-        Mockito.doNothing().when(administrationAgent).mapAndExecuteVMsMigrations(Mockito.any(ClusterVO.class), Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
-        Mockito.doNothing().when(administrationAgent).shutdownIdleHosts(Mockito.any(ClusterVO.class), Mockito.any(ClusterAdministrationHeuristicAlgorithm.class));
+        Mockito.doReturn(true).when(administrationAgent).areClustersLeasesHeld(Mockito.anyListOf(ClusterVO.class));
+        Mockito.doNothing().when(administrationAgent).mapAndExecuteVMsMigrations(Mockito.any(ClusterVO.class), Mockito.any(ClusterAdministrationHeuristicAlgorithm.class),
+                Mockito.any(ClusterPlanningContext.class));
+        Mockito.doNothing().when(administrationAgent).shutdownIdleHosts(Mockito.any(ClusterVO.class), Mockito.any(ClusterAdministrationHeuristicAlgorithm.class),
+                Mockito.any(ClusterPlanningContext.class));
     }
 
     private void shutdownIdleHostsTestSetupMethodsExecution(List<HostResources> idleHosts, boolean canHeuristicShutdownHosts, boolean canPowerOffAnotherHostInCloud,
@@ -654,23 +804,22 @@ public class AdministrationAgentTest {
 
         Mockito.doReturn(canHeuristicShutdownHosts).when(clusterAdministrationHeuristicAlgorithm).canHeuristicShutdownHosts();
         Mockito.doReturn(idleHosts).when(administrationAgent).getClusterIdleHosts(Mockito.any(ClusterVO.class));
-        Mockito.doReturn(idleHosts).when(clusterAdministrationHeuristicAlgorithm).rankHostToPowerOff(Matchers.anyListOf(HostResources.class));
+        Mockito.doReturn(idleHosts).when(clusterAdministrationHeuristicAlgorithm).rankHostToPowerOff(Matchers.anyListOf(HostResources.class), Mockito.any(ClusterPlanningContext.class));
         Mockito.doReturn(cloudResources).when(cloudResourcesService).createCloudResources(Matchers.anyListOf(ClusterResourcesUp.class));
         Mockito.doReturn(canPowerOffAnotherHostInCloud).when(clusterAdministrationHeuristicAlgorithm).canPowerOffAnotherHostInCloud(Mockito.any(CloudResources.class));
         Mockito.doReturn(canPowerOffHost).when(clusterAdministrationHeuristicAlgorithm).canPowerOffHost(Mockito.any(HostResources.class), Mockito.any(CloudResources.class));
-        Mockito.doNothing().when(administrationAgent).shutdownHost(Mockito.anyLong());
     }
 
     private void verifyShutdownIdleHostsCalledMethods(int getClusterIdleHostsTimes, int rankHostToPowerOffTimes, int canPowerOffHostTimes, int shutdownHostTimes) {
         Mockito.verify(clusterAdministrationHeuristicAlgorithm).canHeuristicShutdownHosts();
         Mockito.verify(administrationAgent, Mockito.times(getClusterIdleHostsTimes)).getClusterIdleHosts(Mockito.any(ClusterVO.class));
-        Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(rankHostToPowerOffTimes)).rankHostToPowerOff(Matchers.anyListOf(HostResources.class));
+        Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(rankHostToPowerOffTimes)).rankHostToPowerOff(Matchers.anyListOf(HostResources.class), Mockito.any(ClusterPlanningContext.class));
         Mockito.verify(administrationAgent, Mockito.times(rankHostToPowerOffTimes)).createAllClustersResourcesUp();
         Mockito.verify(cloudResourcesService, Mockito.times(rankHostToPowerOffTimes)).createCloudResources(Matchers.anyListOf(ClusterResourcesUp.class));
         Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(rankHostToPowerOffTimes)).canPowerOffAnotherHostInCloud(Mockito.any(CloudResources.class));
         Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(canPowerOffHostTimes)).canPowerOffHost(Mockito.any(HostResources.class),
                 Mockito.any(CloudResources.class));
-        Mockito.verify(administrationAgent, Mockito.times(shutdownHostTimes)).shutdownHost(Mockito.anyLong());
+        Mockito.verify(hostShutdownExecutor, Mockito.times(shutdownHostTimes)).shutdownHosts(Matchers.anyListOf(HostResources.class));
     }
 
     private void verifyCreateAllClustersResourcesUpCalledMethods(int createClusterResourcesUpTimes) {
@@ -681,73 +830,67 @@ public class AdministrationAgentTest {
 
     private void setupMapAndExecuteVMsMigrationsTest(List<HostResources> hosts, boolean hasMigration) {
         Mockito.doReturn(hosts).when(administrationAgent).getClusterUpHosts(Mockito.any(ClusterVO.class));
-        Mockito.doReturn(hosts).when(clusterAdministrationHeuristicAlgorithm).rankHosts(Matchers.anyListOf(HostResources.class));
+        Mockito.doReturn(hosts).when(clusterAdministrationHeuristicAlgorithm).rankHosts(Matchers.anyListOf(HostResources.class), Mockito.any(ClusterPlanningContext.class));
 
         if (!hasMigration || CollectionUtils.isEmpty(hosts)) {
-            Mockito.doReturn(new HashMap<>()).when(clusterAdministrationHeuristicAlgorithm).mapVMsToHost(Matchers.anyListOf(HostResources.class));
+            Mockito.doReturn(new HashMap<>()).when(clusterAdministrationHeuristicAlgorithm).mapVMsToHost(Matchers.anyListOf(HostResources.class), Mockito.any(ClusterPlanningContext.class));
         } else {
             Map<Long, HostResources> migrations = new HashMap<>();
             migrations.put(0l, hosts.get(0));
-            Mockito.doReturn(migrations).when(clusterAdministrationHeuristicAlgorithm).mapVMsToHost(Matchers.anyListOf(HostResources.class));
+            Mockito.doReturn(migrations).when(clusterAdministrationHeuristicAlgorithm).mapVMsToHost(Matchers.anyListOf(HostResources.class), Mockito.any(ClusterPlanningContext.class));
         }
 
-        Mockito.doReturn(new HostVO("")).when(hostService).findHostById(Mockito.anyLong());
-
-        VMInstanceVO vmInstanceVo = Mockito.mock(VMInstanceVO.class);
-        Mockito.doReturn(vmInstanceVo).when(virtualMachineService).searchVmInstanceById(Mockito.anyLong());
+        Mockito.doNothing().when(administrationAgent).executeVMsMigrations(Mockito.anyMapOf(Long.class, HostResources.class), Mockito.any(ClusterSnapshot.class),
+                Mockito.anyMapOf(Long.class, Long.class));
+        Mockito.doReturn(Mockito.mock(ClusterSnapshot.class)).when(administrationAgent).createClusterSnapshot(hosts);
     }
 
-    private void verifyMapAndExecuteVMsMigrationsCalledMethods(int rankHostsTimes, int findHostByIdTimes) {
+    private void verifyMapAndExecuteVMsMigrationsCalledMethods(int rankHostsTimes, int executeVMsMigrationsTimes) {
         Mockito.verify(administrationAgent).getClusterUpHosts(Mockito.any(ClusterVO.class));
-        Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(rankHostsTimes)).rankHosts(Matchers.anyListOf(HostResources.class));
-        Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(rankHostsTimes)).mapVMsToHost(Matchers.anyListOf(HostResources.class));
-        Mockito.verify(hostService, Mockito.times(findHostByIdTimes)).findHostById(Mockito.anyLong());
-        Mockito.verify(virtualMachineService, Mockito.times(findHostByIdTimes)).searchVmInstanceById(Mockito.anyLong());
-        Mockito.verify(administrationAgent, Mockito.times(findHostByIdTimes)).migrateVM(Mockito.any(VMInstanceVO.class), Mockito.any(HostVO.class));
+        Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(rankHostsTimes)).rankHosts(Matchers.anyListOf(HostResources.class), Mockito.any(ClusterPlanningContext.class));
+        Mockito.verify(clusterAdministrationHeuristicAlgorithm, Mockito.times(rankHostsTimes)).mapVMsToHost(Matchers.anyListOf(HostResources.class), Mockito.any(ClusterPlanningContext.class));
+        Mockito.verify(administrationAgent, Mockito.times(executeVMsMigrationsTimes)).executeVMsMigrations(Mockito.anyMapOf(Long.class, HostResources.class), Mockito.any(ClusterSnapshot.class),
+                Mockito.anyMapOf(Long.class, Long.class));
     }
 
-    private HostVO migrateVMSetupHostVo(long targetHostId) {
+    private HostVO createVmMigrationSetupHostVo(long hostId, long clusterId) {
         HostVO hostVo = Mockito.mock(HostVO.class);
-        Mockito.doReturn(targetHostId).when(hostVo).getId();
+        Mockito.doReturn(hostId).when(hostVo).getId();
+        Mockito.doReturn(clusterId).when(hostVo).getClusterId();
         return hostVo;
     }
 
-    private VMInstanceVO migrateVMSetupVmInstanceVo(long hostId) {
+    private VMInstanceVO createVmMigrationSetupVmInstanceVo(Long hostId) {
         VMInstanceVO vmInstanceVo = Mockito.mock(VMInstanceVO.class);
         Mockito.doReturn(0l).when(vmInstanceVo).getId();
         Mockito.doReturn(hostId).when(vmInstanceVo).getHostId();
+        Mockito.doReturn(vmInstanceVo).when(virtualMachineService).searchVmInstanceById(0l);
         return vmInstanceVo;
     }
 
-    private void setupShutdownHostTest(List<VMInstanceVO> vms) {
-        Mockito.doNothing().when(administrationAgent).checkIfHostIsUpAndEnabled(Mockito.anyLong());
-        Mockito.doReturn(vms).when(hostService).listAllVmsFromHost(Mockito.anyLong());
-        Mockito.doNothing().when(administrationAgent).putHostInMaintenance(Mockito.anyLong());
-        Mockito.doReturn(new HostVO("")).when(hostService).findHostById(Mockito.anyLong());
-        Mockito.doNothing().when(hypervisorManager).shutdownHost(Mockito.any(HostVO.class));
+    private HostResources createHostResources(long hostId) {
+        HostResources host = new HostResources();
+        host.setHostId(hostId);
+        return host;
     }
 
-    private void verifyShutdownHostCalledMethods(int listAllVmsFromHostTimes, int timesIfHostEmpty, int shutdownHostTimes) {
-        Mockito.verify(administrationAgent).checkIfHostIsUpAndEnabled(Mockito.anyLong());
-        Mockito.verify(hostService, Mockito.times(listAllVmsFromHostTimes)).listAllVmsFromHost(Mockito.anyLong());
-        Mockito.verify(administrationAgent, Mockito.times(timesIfHostEmpty)).putHostInMaintenance(Mockito.anyLong());
-        Mockito.verify(hostService, Mockito.times(shutdownHostTimes)).findHostById(Mockito.anyLong());
-        Mockito.verify(hypervisorManager, Mockito.times(shutdownHostTimes)).shutdownHost(Mockito.any(HostVO.class));
+    private List<HostResources> setupGetClusterUpHostsTest(ClusterVO cluster, int numberOfHosts) {
+        List<HostResources> hosts = createHosts(numberOfHosts);
+        List<HostVO> hostsVO = new ArrayList<>();
+        Mockito.doReturn(hostsVO).when(hostService).listAllHostsInCluster(cluster);
+        Mockito.doReturn(hosts).when(cloudResourceModelService).createHostsResources(hostsVO);
+        return hosts;
     }
 
-    private List<HostVO> setupGetClusterUpHostsTest(int numberOfHosts) {
-        List<HostVO> hosts = new ArrayList<>();
-        for (int i = 0; i < numberOfHosts; i++) {
-            hosts.add(new HostVO(""));
-        }
-        Mockito.doReturn(hosts).when(hostService).listAllHostsInCluster(Mockito.any(ClusterVO.class));
-        Mockito.doReturn(new HostResources()).when(hostResourcesService).createHostResources(Mockito.any(HostVO.class));
-        return hosts;
+    private void verifyGetClusterUpHostsCalledMethods(ClusterVO cluster) {
+        Mockito.verify(hostService).listAllHostsInCluster(cluster);
+        Mockito.verify(cloudResourceModelService).createHostsResources(Matchers.anyListOf(HostVO.class));
     }
 
-    private void verifyGetClusterUpHostsCalledMethods(int numberOfHosts) {
-        Mockito.verify(hostService).listAllHostsInCluster(Mockito.any(ClusterVO.class));
-        Mockito.verify(hostResourcesService, Mockito.times(numberOfHosts)).createHostResources(Mockito.any(HostVO.class));
+    private HostVO createHostVOInCluster(long clusterId) {
+        HostVO host = Mockito.mock(HostVO.class);
+        Mockito.when(host.getClusterId()).thenReturn(clusterId);
+        return host;
     }
 
     private void verifyWorkOnClusterCalledMethods() {
@@ -755,11 +898,4 @@ public class AdministrationAgentTest {
         Mockito.verify(autonomicClusterManagementService).markAdministrationStatusInClusterAsDone(Mockito.anyLong());
     }
 
-    private List<VMInstanceVO> createVms() {
-        List<VMInstanceVO> vms = new ArrayList<>();
-        VMInstanceVO vm = Mockito.mock(VMInstanceVO.class);
-        vms.add(vm);
-        return vms;
-    }
-
 }
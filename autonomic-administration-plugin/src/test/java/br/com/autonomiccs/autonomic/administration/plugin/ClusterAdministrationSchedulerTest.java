@@ -0,0 +1,332 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.cloud.dc.ClusterVO;
+import com.cloud.dc.DataCenterVO;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.plugin.ClusterAdministrationScheduler.ScheduledCluster;
+import br.com.autonomiccs.autonomic.administration.plugin.services.AutonomicClusterManagementService;
+import br.com.autonomiccs.autonomic.plugin.common.services.AutonomicClusterManagementHeuristicService;
+import br.com.autonomiccs.autonomic.plugin.common.services.ClusterService;
+import br.com.autonomiccs.autonomic.plugin.common.services.ZoneService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClusterAdministrationSchedulerTest {
+
+    private static final long CURRENT_TIME = 1000000l;
+    private static final long ONE_MINUTE_IN_MILLISECONDS = 60000l;
+
+    @Spy
+    @InjectMocks
+    private ClusterAdministrationScheduler spy;
+    @Mock
+    private AdministrationAgent administrationAgent;
+    @Mock
+    private ClusterService clusterService;
+    @Mock
+    private ZoneService zoneService;
+    @Mock
+    private AutonomicClusterManagementService autonomicClusterManagementService;
+    @Mock
+    private AutonomicClusterManagementHeuristicService autonomicManagementHeuristicService;
+    @Mock
+    private ClusterAdministrationHeuristicAlgorithm algorithm;
+    @Mock
+    private ThreadPoolTaskExecutor clusterAdministrationExecutor;
+
+    @Test
+    public void scheduleClusterTest() {
+        spy.scheduleCluster(1l, CURRENT_TIME + 2000);
+        spy.scheduleCluster(2l, CURRENT_TIME + 1000);
+
+        Assert.assertEquals(2, spy.scheduledClusters.size());
+        Assert.assertEquals(2l, spy.scheduledClusters.peek().getClusterId());
+        Assert.assertEquals(2, spy.clustersSchedules.size());
+    }
+
+    @Test
+    public void scheduleClusterTestReplacePreviousSchedule() {
+        spy.scheduleCluster(1l, CURRENT_TIME + 2000);
+        spy.scheduleCluster(2l, CURRENT_TIME + 1000);
+        spy.scheduleCluster(1l, CURRENT_TIME);
+
+        Assert.assertEquals(2, spy.scheduledClusters.size());
+        Assert.assertEquals(1l, spy.scheduledClusters.peek().getClusterId());
+        Assert.assertEquals(CURRENT_TIME, spy.clustersSchedules.get(1l).getDueTimeInMilliseconds());
+    }
+
+    @Test
+    public void unscheduleClusterTest() {
+        spy.scheduleCluster(1l, CURRENT_TIME);
+        spy.scheduleCluster(2l, CURRENT_TIME);
+
+        spy.unscheduleCluster(1l);
+
+        Assert.assertEquals(1, spy.scheduledClusters.size());
+        Assert.assertEquals(2l, spy.scheduledClusters.peek().getClusterId());
+        Assert.assertFalse(spy.clustersSchedules.containsKey(1l));
+    }
+
+    @Test
+    public void dispatchDueClustersTest() {
+        spy.scheduleCluster(1l, System.currentTimeMillis());
+        Mockito.doAnswer(new InterruptCurrentThreadAnswer(false)).when(spy).dispatchCluster(1l);
+
+        spy.dispatchDueClusters();
+
+        Assert.assertTrue(Thread.interrupted());
+        Mockito.verify(spy).dispatchCluster(1l);
+        Assert.assertTrue(spy.scheduledClusters.isEmpty());
+        Assert.assertTrue(spy.clustersSchedules.containsKey(1l));
+    }
+
+    @Test
+    public void dispatchDueClustersTestDispatchFailed() {
+        spy.scheduleCluster(1l, System.currentTimeMillis());
+        Mockito.doReturn(CURRENT_TIME).when(spy).getCurrentTimeInMilliseconds();
+        Mockito.doAnswer(new InterruptCurrentThreadAnswer(true)).when(spy).dispatchCluster(1l);
+
+        spy.dispatchDueClusters();
+
+        Assert.assertTrue(Thread.interrupted());
+        Mockito.verify(spy).scheduleCluster(1l, CURRENT_TIME + ONE_MINUTE_IN_MILLISECONDS);
+        Assert.assertEquals(1, spy.scheduledClusters.size());
+    }
+
+    @Test
+    public void dispatchClusterTest() {
+        setupDispatchCluster(createCluster(1l, null), true, true);
+
+        spy.dispatchCluster(1l);
+
+        Mockito.verify(autonomicClusterManagementService).setClusterWorkInProgress(1l);
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(clusterAdministrationExecutor).execute(runnableCaptor.capture());
+        Mockito.verify(spy, Mockito.times(0)).scheduleCluster(Mockito.anyLong(), Mockito.anyLong());
+    }
+
+    @Test
+    public void dispatchClusterTestClusterNotFound() {
+        setupDispatchCluster(null, true, true);
+        spy.scheduleCluster(1l, CURRENT_TIME);
+
+        spy.dispatchCluster(1l);
+
+        Mockito.verify(spy).unscheduleCluster(1l);
+        Assert.assertTrue(spy.clustersSchedules.isEmpty());
+        verifyClusterNotDispatched();
+    }
+
+    @Test
+    public void dispatchClusterTestClusterRemoved() {
+        setupDispatchCluster(createCluster(1l, new Date()), true, true);
+
+        spy.dispatchCluster(1l);
+
+        Mockito.verify(spy).unscheduleCluster(1l);
+        verifyClusterNotDispatched();
+    }
+
+    @Test
+    public void dispatchClusterTestLeaseHeldByAnotherManagementServer() {
+        setupDispatchCluster(createCluster(1l, null), false, true);
+
+        spy.dispatchCluster(1l);
+
+        Mockito.verify(autonomicClusterManagementService).setClusterWorkInProgress(1l);
+        Mockito.verify(spy).scheduleCluster(1l, CURRENT_TIME + ONE_MINUTE_IN_MILLISECONDS);
+        Mockito.verify(clusterAdministrationExecutor, Mockito.times(0)).execute(Mockito.any(Runnable.class));
+    }
+
+    @Test
+    public void dispatchClusterTestCannotProcessCluster() {
+        setupDispatchCluster(createCluster(1l, null), true, false);
+        Mockito.doNothing().when(spy).scheduleClusterNextAdministration(1l);
+
+        spy.dispatchCluster(1l);
+
+        Mockito.verify(spy).scheduleClusterNextAdministration(1l);
+        verifyClusterNotDispatched();
+    }
+
+    @Test
+    public void dispatchClusterTestExecutorRejectedCluster() {
+        setupDispatchCluster(createCluster(1l, null), true, true);
+        Mockito.doThrow(new TaskRejectedException("queue is full")).when(clusterAdministrationExecutor).execute(Mockito.any(Runnable.class));
+
+        try {
+            spy.dispatchCluster(1l);
+            Assert.fail();
+        } catch (TaskRejectedException e) {
+            Mockito.verify(autonomicClusterManagementService).setClusterWorkInProgress(1l);
+            Mockito.verify(autonomicClusterManagementService).cancelClusterWorkInProgress(1l);
+        }
+    }
+
+    @Test
+    public void administerClusterTest() {
+        Mockito.doNothing().when(spy).scheduleClusterNextAdministration(1l);
+
+        spy.administerCluster(1l);
+
+        Mockito.verify(administrationAgent).receiveClusterToBeManaged(1l);
+        Mockito.verify(spy).scheduleClusterNextAdministration(1l);
+    }
+
+    @Test
+    public void administerClusterTestAdministrationFailed() {
+        Mockito.doNothing().when(spy).scheduleClusterNextAdministration(1l);
+        Mockito.doThrow(new RuntimeException()).when(administrationAgent).receiveClusterToBeManaged(1l);
+
+        try {
+            spy.administerCluster(1l);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Mockito.verify(spy).scheduleClusterNextAdministration(1l);
+        }
+    }
+
+    @Test
+    public void scheduleClusterNextAdministrationTestClusterNeverManaged() {
+        setupScheduleClusterNextAdministration(null);
+
+        spy.scheduleClusterNextAdministration(1l);
+
+        Mockito.verify(spy).scheduleCluster(1l, CURRENT_TIME);
+    }
+
+    @Test
+    public void scheduleClusterNextAdministrationTest() {
+        setupScheduleClusterNextAdministration(new Date(CURRENT_TIME + 600000l));
+
+        spy.scheduleClusterNextAdministration(1l);
+
+        Mockito.verify(spy).scheduleCluster(1l, CURRENT_TIME + 600000l);
+    }
+
+    @Test
+    public void scheduleClusterNextAdministrationTestAdministrationAlreadyDue() {
+        setupScheduleClusterNextAdministration(new Date(CURRENT_TIME - 1000l));
+
+        spy.scheduleClusterNextAdministration(1l);
+
+        Mockito.verify(spy).scheduleCluster(1l, CURRENT_TIME + ONE_MINUTE_IN_MILLISECONDS);
+    }
+
+    @Test
+    public void synchronizeClustersTest() {
+        DataCenterVO zone = Mockito.mock(DataCenterVO.class);
+        Mockito.doReturn(10l).when(zone).getId();
+        Mockito.doReturn(Arrays.asList(zone)).when(zoneService).listAllZonesEnabled();
+        List<ClusterVO> clusters = Arrays.asList(createCluster(1l, null), createCluster(2l, null), createCluster(3l, new Date()));
+        Mockito.doReturn(clusters).when(clusterService).listAllClustersOnZone(10l);
+        Mockito.doNothing().when(spy).scheduleClusterNextAdministration(Mockito.anyLong());
+        spy.scheduleCluster(1l, CURRENT_TIME);
+        spy.scheduleCluster(4l, CURRENT_TIME);
+
+        spy.synchronizeClusters();
+
+        Mockito.verify(spy).scheduleClusterNextAdministration(2l);
+        Mockito.verify(spy, Mockito.times(1)).scheduleClusterNextAdministration(Mockito.anyLong());
+        Mockito.verify(spy).unscheduleCluster(4l);
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(1l)), new ArrayList<>(spy.clustersSchedules.keySet()));
+    }
+
+    @Test
+    public void scheduledClusterTest() {
+        ScheduledCluster scheduledCluster = new ScheduledCluster(1l, System.currentTimeMillis() + 600000l);
+        ScheduledCluster dueScheduledCluster = new ScheduledCluster(2l, System.currentTimeMillis() - 1000l);
+
+        Assert.assertTrue(scheduledCluster.getDelay(java.util.concurrent.TimeUnit.MILLISECONDS) > 0);
+        Assert.assertTrue(dueScheduledCluster.getDelay(java.util.concurrent.TimeUnit.MILLISECONDS) < 0);
+        Assert.assertTrue(dueScheduledCluster.compareTo(scheduledCluster) < 0);
+    }
+
+    private void setupDispatchCluster(ClusterVO cluster, boolean canAcquireClusterLease, boolean canProcessCluster) {
+        Mockito.doReturn(CURRENT_TIME).when(spy).getCurrentTimeInMilliseconds();
+        Mockito.doReturn(cluster).when(clusterService).findById(1l);
+        Mockito.doReturn(algorithm).when(autonomicManagementHeuristicService).getAdministrationAlgorithm(1l);
+        Mockito.doReturn(canAcquireClusterLease).when(autonomicClusterManagementService).setClusterWorkInProgress(1l);
+        Mockito.doReturn(canProcessCluster).when(autonomicClusterManagementService).canProcessCluster(1l, algorithm);
+    }
+
+    private void setupScheduleClusterNextAdministration(Date nextAdministration) {
+        Mockito.doReturn(CURRENT_TIME).when(spy).getCurrentTimeInMilliseconds();
+        Mockito.doReturn(algorithm).when(autonomicManagementHeuristicService).getAdministrationAlgorithm(1l);
+        Mockito.doReturn(nextAdministration).when(autonomicClusterManagementService).getClusterNextAdministrationDate(1l, algorithm);
+    }
+
+    private void verifyClusterNotDispatched() {
+        Mockito.verify(autonomicClusterManagementService, Mockito.times(0)).setClusterWorkInProgress(Mockito.anyLong());
+        Mockito.verify(clusterAdministrationExecutor, Mockito.times(0)).execute(Mockito.any(Runnable.class));
+    }
+
+    private ClusterVO createCluster(long id, Date removed) {
+        ClusterVO cluster = Mockito.mock(ClusterVO.class);
+        Mockito.doReturn(id).when(cluster).getId();
+        Mockito.doReturn(removed).when(cluster).getRemoved();
+        return cluster;
+    }
+
+    /**
+     * It interrupts the current thread, stopping the dispatcher loop; if required, it throws an
+     * exception after that.
+     */
+    private class InterruptCurrentThreadAnswer implements Answer<Void> {
+        private boolean throwException;
+
+        private InterruptCurrentThreadAnswer(boolean throwException) {
+            this.throwException = throwException;
+        }
+
+        @Override
+        public Void answer(InvocationOnMock invocation) {
+            Thread.currentThread().interrupt();
+            if (throwException) {
+                throw new RuntimeException();
+            }
+            return null;
+        }
+    }
+}
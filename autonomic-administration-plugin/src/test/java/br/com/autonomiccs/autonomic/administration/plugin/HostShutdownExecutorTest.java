@@ -0,0 +1,305 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.cloud.exception.AgentUnavailableException;
+import com.cloud.host.HostVO;
+import com.cloud.resource.ResourceManager;
+import com.cloud.utils.exception.CloudRuntimeException;
+import com.cloud.vm.VMInstanceVO;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.plugin.common.services.AutonomiccsConfigurationService;
+import br.com.autonomiccs.autonomic.plugin.common.services.HostService;
+import br.com.autonomiccs.autonomic.plugin.common.utils.ThreadUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HostShutdownExecutorTest {
+
+    @Spy
+    @InjectMocks
+    private HostShutdownExecutor spy;
+    @Mock
+    private HostService hostService;
+    @Mock
+    private HypervisorManager hypervisorManager;
+    @Mock
+    private ResourceManager resourceManager;
+    @Mock
+    private ThreadUtils threadUtils;
+    @Mock
+    private AutonomiccsConfigurationService autonomiccsConfigurationService;
+    @Mock
+    private ThreadPoolTaskExecutor shutdownExecutor;
+
+    @Test
+    public void shutdownHostsTest() {
+        List<HostResources> hosts = Arrays.asList(createHostResources(1l), createHostResources(2l), createHostResources(3l));
+        setupShutdownHosts(2);
+        Mockito.doReturn(true).when(spy).shutdownHost(Mockito.anyLong());
+        Mockito.doReturn(false).when(spy).shutdownHost(2l);
+
+        List<Long> result = spy.shutdownHosts(hosts);
+
+        Assert.assertEquals(Arrays.asList(1l, 3l), result);
+        InOrder inOrder = Mockito.inOrder(spy);
+        inOrder.verify(spy).shutdownHost(1l);
+        inOrder.verify(spy).shutdownHost(2l);
+        inOrder.verify(spy).shutdownHost(3l);
+    }
+
+    @Test
+    public void shutdownHostsTestMaximumConcurrentShutdowns() {
+        List<HostResources> hosts = Arrays.asList(createHostResources(1l), createHostResources(2l), createHostResources(3l));
+        Mockito.doReturn(2).when(spy).getMaximumConcurrentShutdowns();
+        Thread.currentThread().interrupt();
+
+        List<Long> result = spy.shutdownHosts(hosts);
+
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertTrue(result.isEmpty());
+        Mockito.verify(shutdownExecutor, Mockito.times(2)).execute(Mockito.any(Runnable.class));
+    }
+
+    @Test
+    public void shutdownHostsTestEmptyHostsList() {
+        List<Long> result = spy.shutdownHosts(new ArrayList<HostResources>());
+
+        Assert.assertTrue(result.isEmpty());
+        Mockito.verify(spy, Mockito.times(0)).getMaximumConcurrentShutdowns();
+        Mockito.verify(shutdownExecutor, Mockito.times(0)).execute(Mockito.any(Runnable.class));
+    }
+
+    @Test
+    public void createShutdownTaskTest() throws Exception {
+        Mockito.doReturn(true).when(spy).shutdownHost(1l);
+
+        Assert.assertTrue(spy.createShutdownTask(1l).call());
+    }
+
+    @Test
+    public void getShutdownResultTest() throws Exception {
+        Future<Boolean> shutdownFuture = Mockito.mock(Future.class);
+        Mockito.doReturn(true).when(shutdownFuture).get();
+
+        Assert.assertTrue(spy.getShutdownResult(shutdownFuture));
+    }
+
+    @Test
+    public void getShutdownResultTestExecutionException() throws Exception {
+        Future<Boolean> shutdownFuture = Mockito.mock(Future.class);
+        Mockito.doThrow(new ExecutionException(new RuntimeException())).when(shutdownFuture).get();
+
+        Assert.assertFalse(spy.getShutdownResult(shutdownFuture));
+    }
+
+    @Test
+    public void shutdownHostTestHostWithoutVms() {
+        setupShutdownHostTest(new ArrayList<VMInstanceVO>());
+        Assert.assertTrue(spy.shutdownHost(0l));
+        verifyShutdownHostCalledMethods(1, 1, 1);
+    }
+
+    @Test
+    public void shutdownHostTestExceptionThrownByShutdownHost() {
+        setupShutdownHostTest(new ArrayList<VMInstanceVO>());
+        Mockito.doThrow(CloudRuntimeException.class).when(hypervisorManager).shutdownHost(Mockito.any(HostVO.class));
+        Assert.assertFalse(spy.shutdownHost(0l));
+        verifyShutdownHostCalledMethods(1, 1, 1);
+    }
+
+    @Test
+    public void shutdownHostTestExceptionThrownByPutHostInMaintenance() {
+        setupShutdownHostTest(new ArrayList<VMInstanceVO>());
+        Mockito.doThrow(CloudRuntimeException.class).when(spy).putHostInMaintenance(Mockito.anyLong());
+        spy.shutdownHost(0l);
+        verifyShutdownHostCalledMethods(1, 1, 0);
+    }
+
+    @Test
+    public void shutdownHostTestExceptionThrownByCheckIfHostIsUpAndEnabled() {
+        setupShutdownHostTest(new ArrayList<VMInstanceVO>());
+        Mockito.doThrow(CloudRuntimeException.class).when(spy).checkIfHostIsUpAndEnabled(Mockito.anyLong());
+        spy.shutdownHost(0l);
+        verifyShutdownHostCalledMethods(0, 0, 0);
+    }
+
+    @Test
+    public void shutdownHostTestHostWithVms() {
+        setupShutdownHostTest(createVms());
+
+        Assert.assertFalse(spy.shutdownHost(0l));
+
+        verifyShutdownHostCalledMethods(1, 0, 0);
+    }
+
+    @Test
+    public void shutdownHostTestHostWithVmsExceptionThrownByCheckIfHostIsUpAndEnabled() {
+        setupShutdownHostTest(createVms());
+        Mockito.doThrow(CloudRuntimeException.class).when(spy).checkIfHostIsUpAndEnabled(Mockito.anyLong());
+
+        spy.shutdownHost(0l);
+
+        verifyShutdownHostCalledMethods(0, 0, 0);
+    }
+
+    @Test(expected = CloudRuntimeException.class)
+    public void checkIfHostIsUpAndEnabledTestExpectCloudRuntimeException() {
+        Mockito.doReturn(false).when(hostService).isHostUpAndEnabled(Mockito.anyLong());
+        spy.checkIfHostIsUpAndEnabled(Mockito.anyLong());
+        Mockito.verify(hostService).isHostUpAndEnabled(Mockito.anyLong());
+    }
+
+    @Test
+    public void checkIfHostIsUpAndEnabledTestDoesNotExpectCloudRuntimeException() {
+        Mockito.doReturn(true).when(hostService).isHostUpAndEnabled(Mockito.anyLong());
+        spy.checkIfHostIsUpAndEnabled(Mockito.anyLong());
+        Mockito.verify(hostService).isHostUpAndEnabled(Mockito.anyLong());
+    }
+
+    @Test
+    public void putHostInMaintenanceTestSmoothExecution() throws AgentUnavailableException {
+        setupPutHostInMaintenance(false);
+
+        spy.putHostInMaintenance(0l);
+
+        verifyPutHostInMaintenanceCalledMethods(1, 1);
+    }
+
+    @Test(expected = CloudRuntimeException.class)
+    public void putHostInMaintenanceTestExceptionThrownAtMaintain() throws AgentUnavailableException {
+        setupPutHostInMaintenance(false);
+        Mockito.doThrow(AgentUnavailableException.class).when(resourceManager).maintain(Mockito.anyLong());
+
+        spy.putHostInMaintenance(0l);
+
+        verifyPutHostInMaintenanceCalledMethods(0, 0);
+    }
+
+    @Test(expected = CloudRuntimeException.class)
+    public void putHostInMaintenanceTestHostInMaintenanceError() throws AgentUnavailableException {
+        setupPutHostInMaintenance(true);
+
+        spy.putHostInMaintenance(0l);
+
+        verifyPutHostInMaintenanceCalledMethods(1, 0);
+    }
+
+    @Test
+    public void putHostInMaintenanceTestHostStuckInPrepareForMaintenance() throws AgentUnavailableException {
+        setupPutHostInMaintenance(false);
+        Mockito.doReturn(true).when(hostService).isHostInPreparedForMaintenance(Mockito.anyLong());
+
+        try {
+            spy.putHostInMaintenance(0l);
+            Assert.fail();
+        } catch (CloudRuntimeException e) {
+            Mockito.verify(threadUtils, Mockito.times(HostShutdownExecutor.MAXIMUM_NUMBER_OF_MAINTENANCE_CHECKS)).sleepThread(Mockito.anyInt());
+            Mockito.verify(hostService, Mockito.times(HostShutdownExecutor.MAXIMUM_NUMBER_OF_MAINTENANCE_CHECKS)).isHostInPreparedForMaintenance(Mockito.anyLong());
+        }
+    }
+
+    @Test
+    public void getMaximumConcurrentShutdownsTest() {
+        Mockito.doReturn(8).when(autonomiccsConfigurationService).getPositiveIntegerConfiguration(HostShutdownExecutor.MAXIMUM_CONCURRENT_SHUTDOWNS_IN_CONFIGURATION_KEY,
+                HostShutdownExecutor.DEFAULT_MAXIMUM_CONCURRENT_SHUTDOWNS);
+        Assert.assertEquals(8, spy.getMaximumConcurrentShutdowns());
+    }
+
+    /**
+     * The shutdown executor runs the tasks in the calling thread.
+     */
+    private void setupShutdownHosts(int maximumConcurrentShutdowns) {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Runnable)invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(shutdownExecutor).execute(Mockito.any(Runnable.class));
+        Mockito.doReturn(maximumConcurrentShutdowns).when(spy).getMaximumConcurrentShutdowns();
+    }
+
+    private HostResources createHostResources(long hostId) {
+        HostResources host = new HostResources();
+        host.setHostId(hostId);
+        return host;
+    }
+
+    private void verifyPutHostInMaintenanceCalledMethods(int times, int isHostInPreparedForMaintenanceTimes) throws AgentUnavailableException {
+        Mockito.verify(resourceManager).maintain(Mockito.anyLong());
+        Mockito.verify(threadUtils, Mockito.times(times)).sleepThread(Mockito.anyInt());
+        InOrder hostServiceInOrder = Mockito.inOrder(hostService);
+        hostServiceInOrder.verify(hostService, Mockito.times(times)).isHostInMaintenanceError(Mockito.anyLong());
+        hostServiceInOrder.verify(hostService, Mockito.times(isHostInPreparedForMaintenanceTimes)).isHostInPreparedForMaintenance(Mockito.anyLong());
+    }
+
+    private void setupPutHostInMaintenance(boolean isHostInMaintenanceError) throws AgentUnavailableException {
+        Mockito.doReturn(true).when(resourceManager).maintain(Mockito.anyLong());
+        Mockito.doNothing().when(threadUtils).sleepThread(Mockito.anyInt());
+        Mockito.doReturn(isHostInMaintenanceError).when(hostService).isHostInMaintenanceError(Mockito.anyLong());
+        Mockito.doReturn(false).when(hostService).isHostInPreparedForMaintenance(Mockito.anyLong());
+    }
+
+    private void setupShutdownHostTest(List<VMInstanceVO> vms) {
+        Mockito.doNothing().when(spy).checkIfHostIsUpAndEnabled(Mockito.anyLong());
+        Mockito.doReturn(vms).when(hostService).listAllVmsFromHost(Mockito.anyLong());
+        Mockito.doNothing().when(spy).putHostInMaintenance(Mockito.anyLong());
+        Mockito.doReturn(new HostVO("")).when(hostService).findHostById(Mockito.anyLong());
+        Mockito.doNothing().when(hypervisorManager).shutdownHost(Mockito.any(HostVO.class));
+    }
+
+    private void verifyShutdownHostCalledMethods(int listAllVmsFromHostTimes, int timesIfHostEmpty, int shutdownHostTimes) {
+        Mockito.verify(spy).checkIfHostIsUpAndEnabled(Mockito.anyLong());
+        Mockito.verify(hostService, Mockito.times(listAllVmsFromHostTimes)).listAllVmsFromHost(Mockito.anyLong());
+        Mockito.verify(spy, Mockito.times(timesIfHostEmpty)).putHostInMaintenance(Mockito.anyLong());
+        Mockito.verify(hostService, Mockito.times(shutdownHostTimes)).findHostById(Mockito.anyLong());
+        Mockito.verify(hypervisorManager, Mockito.times(shutdownHostTimes)).shutdownHost(Mockito.any(HostVO.class));
+    }
+
+    private List<VMInstanceVO> createVms() {
+        List<VMInstanceVO> vms = new ArrayList<>();
+        VMInstanceVO vm = Mockito.mock(VMInstanceVO.class);
+        vms.add(vm);
+        return vms;
+    }
+}
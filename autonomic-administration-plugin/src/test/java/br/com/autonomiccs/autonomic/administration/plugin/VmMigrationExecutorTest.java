@@ -0,0 +1,679 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.administration.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.cloud.host.HostVO;
+import com.cloud.vm.UserVmService;
+import com.cloud.vm.VMInstanceVO;
+import com.cloud.vm.VirtualMachine;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.MigrationGraph;
+import br.com.autonomiccs.autonomic.administration.algorithms.beans.VmMigration;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.AlternativeTargetHostSelector;
+import br.com.autonomiccs.autonomic.administration.algorithms.planners.MigrationGraphScheduler;
+import br.com.autonomiccs.autonomic.administration.plugin.services.AutonomicClusterManagementService;
+import br.com.autonomiccs.autonomic.plugin.common.services.AutonomiccsConfigurationService;
+import br.com.autonomiccs.autonomic.plugin.common.services.HostService;
+import br.com.autonomiccs.autonomic.plugin.common.services.VirtualMachineService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class VmMigrationExecutorTest {
+
+    @Spy
+    @InjectMocks
+    private VmMigrationExecutor spy;
+    @Mock
+    private UserVmService userVmService;
+    @Mock
+    private HostService hostService;
+    @Mock
+    private AutonomiccsConfigurationService autonomiccsConfigurationService;
+    @Mock
+    private VirtualMachineService virtualMachineService;
+    @Mock
+    private ThreadPoolTaskExecutor migrationExecutor;
+    @Mock
+    private AlternativeTargetHostSelector alternativeTargetHostSelector;
+    @Mock
+    private AutonomicClusterManagementService autonomicClusterManagementService;
+
+    /**
+     * The configurations are not set; then, the default values are used.
+     */
+    @Before
+    public void setup() {
+        Answer<Object> defaultValueAnswer = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return invocation.getArguments()[1];
+            }
+        };
+        Mockito.doAnswer(defaultValueAnswer).when(autonomiccsConfigurationService).getPositiveIntegerConfiguration(Mockito.anyString(), Mockito.anyInt());
+        Mockito.doAnswer(defaultValueAnswer).when(autonomiccsConfigurationService).getRatioConfiguration(Mockito.anyString(), Mockito.anyDouble());
+    }
+
+    @Test
+    public void executeMigrationsTestNoMigrations() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        migrationGraph.addUnschedulableMigration(new VmMigration(1l, 1l, 1l, 2l, 1l));
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        Mockito.verify(spy, Mockito.times(0)).createMigrationGraphScheduler(Mockito.any(MigrationGraph.class));
+        Mockito.verify(spy, Mockito.times(0)).migrateVm(Mockito.any(VmMigration.class));
+    }
+
+    @Test
+    public void executeMigrationsTest() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        VmMigration firstMigration = new VmMigration(1l, 2l, 1l, 3l, 1l);
+        VmMigration independentMigration = new VmMigration(2l, 4l, 1l, 5l, 1l);
+        VmMigration dependentMigration = new VmMigration(3l, 1l, 1l, 2l, 1l);
+        migrationGraph.addMigration(firstMigration, new ArrayList<VmMigration>());
+        migrationGraph.addMigration(independentMigration, new ArrayList<VmMigration>());
+        migrationGraph.addMigration(dependentMigration, Arrays.asList(firstMigration));
+        setupExecuteMigrations(migrationGraph);
+        Mockito.doReturn(true).when(spy).migrateVm(Mockito.any(VmMigration.class));
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        InOrder inOrder = Mockito.inOrder(spy);
+        inOrder.verify(spy).migrateVm(firstMigration);
+        inOrder.verify(spy).migrateVm(independentMigration);
+        inOrder.verify(spy).migrateVm(dependentMigration);
+    }
+
+    @Test
+    public void executeMigrationsTestDependencyFailed() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        VmMigration firstMigration = new VmMigration(1l, 2l, 1l, 3l, 1l);
+        VmMigration dependentMigration = new VmMigration(2l, 1l, 1l, 2l, 1l);
+        migrationGraph.addMigration(firstMigration, new ArrayList<VmMigration>());
+        migrationGraph.addMigration(dependentMigration, Arrays.asList(firstMigration));
+        setupExecuteMigrations(migrationGraph);
+        Mockito.doReturn(false).when(spy).migrateVm(firstMigration);
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        Mockito.verify(spy).migrateVm(firstMigration);
+        Mockito.verify(spy, Mockito.times(0)).migrateVm(dependentMigration);
+    }
+
+    @Test
+    public void executeMigrationsTestRetryWithAlternativeTargetHost() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        VmMigration firstMigration = new VmMigration(1l, 2l, 1l, 3l, 1l);
+        VmMigration dependentMigration = new VmMigration(2l, 1l, 1l, 2l, 1l);
+        migrationGraph.addMigration(firstMigration, new ArrayList<VmMigration>());
+        migrationGraph.addMigration(dependentMigration, Arrays.asList(firstMigration));
+        setupExecuteMigrations(migrationGraph);
+        Mockito.doReturn(true).when(spy).migrateVm(Mockito.any(VmMigration.class));
+        Mockito.doReturn(false).when(spy).migrateVm(firstMigration);
+        Mockito.doReturn(2l).when(spy).getVmHostId(1l);
+        Mockito.doReturn(6l).when(alternativeTargetHostSelector).selectAlternativeTargetHost(Mockito.eq(firstMigration), Mockito.anySetOf(Long.class));
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        ArgumentCaptor<VmMigration> migrationCaptor = ArgumentCaptor.forClass(VmMigration.class);
+        Mockito.verify(spy, Mockito.times(3)).migrateVm(migrationCaptor.capture());
+        Assert.assertEquals(firstMigration, migrationCaptor.getAllValues().get(0));
+        Assert.assertEquals(1l, migrationCaptor.getAllValues().get(1).getVmId());
+        Assert.assertEquals(6l, migrationCaptor.getAllValues().get(1).getTargetHostId());
+        Assert.assertEquals(dependentMigration, migrationCaptor.getAllValues().get(2));
+    }
+
+    @Test
+    public void executeMigrationsTestTimeout() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        VmMigration firstMigration = new VmMigration(1l, 2l, 1l, 3l, 1l);
+        VmMigration dependentMigration = new VmMigration(2l, 1l, 1l, 2l, 1l);
+        migrationGraph.addMigration(firstMigration, new ArrayList<VmMigration>());
+        migrationGraph.addMigration(dependentMigration, Arrays.asList(firstMigration));
+        Mockito.doReturn(new MigrationGraphScheduler(migrationGraph, 1, 1, 10)).when(spy).createMigrationGraphScheduler(migrationGraph);
+        Mockito.doReturn(0l).when(spy).getMigrationTimeoutInMilliseconds();
+        Mockito.doReturn(true).when(autonomicClusterManagementService).isClusterLeaseHeld(Mockito.anyLong());
+        Mockito.doReturn(false).when(spy).isVmMigrating(1l);
+        Mockito.doReturn(2l).when(spy).getVmHostId(1l);
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        Mockito.verify(migrationExecutor).execute(Mockito.any(Runnable.class));
+        Mockito.verify(spy).timeOutExpiredMigrations(Mockito.anyMap(), Mockito.anyMap(), Mockito.anyListOf(VmMigration.class));
+        Mockito.verify(spy).isVmMigrating(1l);
+    }
+
+    @Test
+    public void executeMigrationsTestTimeoutWaitsVmToStopMigrating() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        VmMigration timedOutMigration = new VmMigration(1l, 2l, 1l, 3l, 1l);
+        VmMigration migrationFromSameHost = new VmMigration(2l, 2l, 1l, 4l, 1l);
+        migrationGraph.addMigration(timedOutMigration, new ArrayList<VmMigration>());
+        migrationGraph.addMigration(migrationFromSameHost, new ArrayList<VmMigration>());
+        setupExecuteMigrations(migrationGraph);
+        Mockito.doReturn(new MigrationGraphScheduler(migrationGraph, 1, 1, 1)).when(spy).createMigrationGraphScheduler(migrationGraph);
+        Mockito.doReturn(0l).when(spy).getMigrationTimeoutInMilliseconds();
+        Mockito.doReturn(true).when(spy).migrateVm(Mockito.any(VmMigration.class));
+        Mockito.doReturn(true).doReturn(false).when(spy).isVmMigrating(1l);
+        Mockito.doReturn(3l).when(spy).getVmHostId(1l);
+        final List<VmMigration> timedOutMigrations = new ArrayList<>();
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Map<?, ?>)invocation.getArguments()[0]).clear();
+                ((Map<?, ?>)invocation.getArguments()[1]).clear();
+                @SuppressWarnings("unchecked")
+                List<VmMigration> migrations = (List<VmMigration>)invocation.getArguments()[2];
+                if (timedOutMigrations.isEmpty()) {
+                    timedOutMigrations.add(timedOutMigration);
+                    migrations.add(timedOutMigration);
+                }
+                return null;
+            }
+        }).when(spy).timeOutExpiredMigrations(Mockito.anyMap(), Mockito.anyMap(), Mockito.anyListOf(VmMigration.class));
+        Mockito.doReturn(0l).when(spy).getTimeToWaitForMigrations(Mockito.anyMap(), Mockito.anyListOf(VmMigration.class));
+        Mockito.doNothing().when(migrationExecutor).execute(Mockito.any(Runnable.class));
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        Mockito.verify(spy, Mockito.times(2)).isVmMigrating(1l);
+        Mockito.verify(migrationExecutor, Mockito.times(2)).execute(Mockito.any(Runnable.class));
+    }
+
+    @Test
+    public void executeMigrationsTestAbortedByFailureRate() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        for (long vmId = 1; vmId <= 6; vmId++) {
+            migrationGraph.addMigration(new VmMigration(vmId, 1l, 1l, 2l, 1l), new ArrayList<VmMigration>());
+        }
+        setupExecuteMigrations(migrationGraph);
+        Mockito.doReturn(false).when(spy).migrateVm(Mockito.any(VmMigration.class));
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        Mockito.verify(spy, Mockito.times(VmMigrationExecutor.MINIMUM_FINISHED_MIGRATIONS_TO_EVALUATE_FAILURE_RATE)).migrateVm(Mockito.any(VmMigration.class));
+    }
+
+    @Test
+    public void executeMigrationsTestInterrupted() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        migrationGraph.addMigration(migration, new ArrayList<VmMigration>());
+        Mockito.doReturn(new MigrationGraphScheduler(migrationGraph, 1, 1, 1)).when(spy).createMigrationGraphScheduler(migrationGraph);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).isClusterLeaseHeld(Mockito.anyLong());
+        Thread.currentThread().interrupt();
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        Assert.assertTrue(Thread.interrupted());
+        Mockito.verify(migrationExecutor).execute(Mockito.any(Runnable.class));
+    }
+
+    @Test
+    public void getTimeToWaitForMigrationsTest() {
+        Map<Future<Boolean>, Long> migrationsDeadlines = new HashMap<>();
+        migrationsDeadlines.put(Mockito.mock(Future.class), System.currentTimeMillis() + 1200000);
+
+        long result = spy.getTimeToWaitForMigrations(migrationsDeadlines, new ArrayList<VmMigration>());
+
+        Assert.assertTrue(result > VmMigrationExecutor.TIMED_OUT_MIGRATIONS_CHECK_INTERVAL_IN_MILLISECONDS);
+    }
+
+    @Test
+    public void getTimeToWaitForMigrationsTestTimedOutMigrations() {
+        Map<Future<Boolean>, Long> migrationsDeadlines = new HashMap<>();
+        migrationsDeadlines.put(Mockito.mock(Future.class), System.currentTimeMillis() + 1200000);
+
+        long result = spy.getTimeToWaitForMigrations(migrationsDeadlines, Arrays.asList(new VmMigration(1l, 1l, 1l, 2l, 1l)));
+
+        Assert.assertEquals(VmMigrationExecutor.TIMED_OUT_MIGRATIONS_CHECK_INTERVAL_IN_MILLISECONDS, result);
+    }
+
+    @Test
+    public void getTimeUntilNextDeadlineTest() {
+        Map<Future<Boolean>, Long> migrationsDeadlines = new HashMap<>();
+        migrationsDeadlines.put(Mockito.mock(Future.class), System.currentTimeMillis() + 60000);
+        migrationsDeadlines.put(Mockito.mock(Future.class), System.currentTimeMillis() + 1200000);
+
+        long result = spy.getTimeUntilNextDeadline(migrationsDeadlines);
+
+        Assert.assertTrue(result > 0 && result <= 60000);
+    }
+
+    @Test
+    public void getTimeUntilNextDeadlineTestDeadlinePassed() {
+        Map<Future<Boolean>, Long> migrationsDeadlines = new HashMap<>();
+        migrationsDeadlines.put(Mockito.mock(Future.class), System.currentTimeMillis() - 1000);
+
+        Assert.assertEquals(0, spy.getTimeUntilNextDeadline(migrationsDeadlines));
+    }
+
+    @Test
+    public void timeOutExpiredMigrationsTest() {
+        VmMigration expiredMigration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        VmMigration runningMigration = new VmMigration(2l, 3l, 1l, 4l, 1l);
+        Future<Boolean> expiredMigrationFuture = Mockito.mock(Future.class);
+        Future<Boolean> runningMigrationFuture = Mockito.mock(Future.class);
+        Map<Future<Boolean>, VmMigration> runningMigrations = new HashMap<>();
+        runningMigrations.put(expiredMigrationFuture, expiredMigration);
+        runningMigrations.put(runningMigrationFuture, runningMigration);
+        Map<Future<Boolean>, Long> migrationsDeadlines = new HashMap<>();
+        migrationsDeadlines.put(expiredMigrationFuture, System.currentTimeMillis() - 1000);
+        migrationsDeadlines.put(runningMigrationFuture, System.currentTimeMillis() + 60000);
+        List<VmMigration> timedOutMigrations = new ArrayList<>();
+
+        spy.timeOutExpiredMigrations(runningMigrations, migrationsDeadlines, timedOutMigrations);
+
+        Mockito.verify(expiredMigrationFuture).cancel(true);
+        Mockito.verify(runningMigrationFuture, Mockito.times(0)).cancel(Mockito.anyBoolean());
+        Assert.assertEquals(Arrays.asList(expiredMigration), timedOutMigrations);
+        Assert.assertEquals(Collections.singleton(runningMigrationFuture), runningMigrations.keySet());
+        Assert.assertEquals(Collections.singleton(runningMigrationFuture), migrationsDeadlines.keySet());
+    }
+
+    @Test
+    public void finishSettledTimedOutMigrationsTest() {
+        VmMigration migrationOnTargetHost = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        VmMigration migrationOnSourceHost = new VmMigration(2l, 1l, 1l, 2l, 1l);
+        VmMigration migrationStillMigrating = new VmMigration(3l, 1l, 1l, 2l, 1l);
+        List<VmMigration> timedOutMigrations = new ArrayList<>(Arrays.asList(migrationOnTargetHost, migrationOnSourceHost, migrationStillMigrating));
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(false).when(spy).isVmMigrating(Mockito.anyLong());
+        Mockito.doReturn(true).when(spy).isVmMigrating(3l);
+        Mockito.doReturn(2l).when(spy).getVmHostId(1l);
+        Mockito.doReturn(1l).when(spy).getVmHostId(2l);
+
+        spy.finishSettledTimedOutMigrations(timedOutMigrations, migrationGraphScheduler);
+
+        Mockito.verify(migrationGraphScheduler).migrationFinished(migrationOnTargetHost, true);
+        Mockito.verify(migrationGraphScheduler).migrationFinished(migrationOnSourceHost, false);
+        Mockito.verify(migrationGraphScheduler, Mockito.times(0)).migrationFinished(Mockito.eq(migrationStillMigrating), Mockito.anyBoolean());
+        Assert.assertEquals(Arrays.asList(migrationStillMigrating), timedOutMigrations);
+    }
+
+    @Test
+    public void finishSettledTimedOutMigrationsTestAborted() {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        List<VmMigration> timedOutMigrations = new ArrayList<>(Arrays.asList(migration));
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(true).when(migrationGraphScheduler).isAborted();
+        Mockito.doReturn(1l).when(spy).getVmHostId(1l);
+
+        spy.finishSettledTimedOutMigrations(timedOutMigrations, migrationGraphScheduler);
+
+        Mockito.verify(spy, Mockito.times(0)).isVmMigrating(Mockito.anyLong());
+        Mockito.verify(migrationGraphScheduler).migrationFinished(migration, false);
+        Assert.assertTrue(timedOutMigrations.isEmpty());
+    }
+
+    @Test
+    public void isVmMigratingTest() {
+        VMInstanceVO vm = Mockito.mock(VMInstanceVO.class);
+        Mockito.doReturn(VirtualMachine.State.Migrating).when(vm).getState();
+        Mockito.doReturn(vm).when(virtualMachineService).searchVmInstanceById(1l);
+
+        Assert.assertTrue(spy.isVmMigrating(1l));
+    }
+
+    @Test
+    public void isVmMigratingTestVmRunning() {
+        VMInstanceVO vm = Mockito.mock(VMInstanceVO.class);
+        Mockito.doReturn(VirtualMachine.State.Running).when(vm).getState();
+        Mockito.doReturn(vm).when(virtualMachineService).searchVmInstanceById(1l);
+
+        Assert.assertFalse(spy.isVmMigrating(1l));
+    }
+
+    @Test
+    public void isVmMigratingTestVmNotFound() {
+        Assert.assertFalse(spy.isVmMigrating(1l));
+    }
+
+    @Test
+    public void processMigrationResultTestSucceeded() {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+
+        spy.processMigrationResult(migration, true, migrationGraphScheduler, alternativeTargetHostSelector, 2);
+
+        Mockito.verify(migrationGraphScheduler).migrationFinished(migration, true);
+        Mockito.verify(spy, Mockito.times(0)).getVmHostId(Mockito.anyLong());
+    }
+
+    @Test
+    public void processMigrationResultTestVmRunningOnTargetHost() {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(2l).when(spy).getVmHostId(1l);
+
+        spy.processMigrationResult(migration, false, migrationGraphScheduler, alternativeTargetHostSelector, 2);
+
+        Mockito.verify(migrationGraphScheduler).migrationFinished(migration, true);
+    }
+
+    @Test
+    public void processMigrationResultTestRetry() {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Set<Long> triedTargetHosts = new HashSet<>(Arrays.asList(2l));
+        Mockito.doReturn(1l).when(spy).getVmHostId(1l);
+        Mockito.doReturn(1).when(migrationGraphScheduler).getNumberOfAttempts(migration);
+        Mockito.doReturn(triedTargetHosts).when(migrationGraphScheduler).getTriedTargetHosts(migration);
+        Mockito.doReturn(3l).when(alternativeTargetHostSelector).selectAlternativeTargetHost(migration, triedTargetHosts);
+
+        spy.processMigrationResult(migration, false, migrationGraphScheduler, alternativeTargetHostSelector, 2);
+
+        ArgumentCaptor<VmMigration> retryMigrationCaptor = ArgumentCaptor.forClass(VmMigration.class);
+        Mockito.verify(migrationGraphScheduler).retryMigration(Mockito.eq(migration), retryMigrationCaptor.capture());
+        Assert.assertEquals(3l, retryMigrationCaptor.getValue().getTargetHostId());
+        Assert.assertEquals(1l, retryMigrationCaptor.getValue().getSourceHostId());
+        Mockito.verify(migrationGraphScheduler, Mockito.times(0)).migrationFinished(Mockito.any(VmMigration.class), Mockito.anyBoolean());
+    }
+
+    @Test
+    public void processMigrationResultTestNoAttemptsLeft() {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(1l).when(spy).getVmHostId(1l);
+        Mockito.doReturn(2).when(migrationGraphScheduler).getNumberOfAttempts(migration);
+
+        spy.processMigrationResult(migration, false, migrationGraphScheduler, alternativeTargetHostSelector, 2);
+
+        verifyMigrationFailedWithoutRetry(migration, migrationGraphScheduler);
+    }
+
+    @Test
+    public void processMigrationResultTestNoAlternativeTargetHost() {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(1l).when(spy).getVmHostId(1l);
+        Mockito.doReturn(1).when(migrationGraphScheduler).getNumberOfAttempts(migration);
+        Mockito.doReturn(null).when(alternativeTargetHostSelector).selectAlternativeTargetHost(Mockito.eq(migration), Mockito.anySetOf(Long.class));
+
+        spy.processMigrationResult(migration, false, migrationGraphScheduler, alternativeTargetHostSelector, 2);
+
+        verifyMigrationFailedWithoutRetry(migration, migrationGraphScheduler);
+    }
+
+    @Test
+    public void processMigrationResultTestAborted() {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(1l).when(spy).getVmHostId(1l);
+        Mockito.doReturn(true).when(migrationGraphScheduler).isAborted();
+
+        spy.processMigrationResult(migration, false, migrationGraphScheduler, alternativeTargetHostSelector, 2);
+
+        verifyMigrationFailedWithoutRetry(migration, migrationGraphScheduler);
+        Mockito.verify(alternativeTargetHostSelector, Mockito.times(0)).selectAlternativeTargetHost(Mockito.any(VmMigration.class), Mockito.anySetOf(Long.class));
+    }
+
+    @Test
+    public void processMigrationResultTestVmNotRunningOnSourceHost() {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(null).when(spy).getVmHostId(1l);
+
+        spy.processMigrationResult(migration, false, migrationGraphScheduler, alternativeTargetHostSelector, 2);
+
+        verifyMigrationFailedWithoutRetry(migration, migrationGraphScheduler);
+        Mockito.verify(alternativeTargetHostSelector, Mockito.times(0)).selectAlternativeTargetHost(Mockito.any(VmMigration.class), Mockito.anySetOf(Long.class));
+    }
+
+    @Test
+    public void getVmHostIdTest() {
+        VMInstanceVO vm = Mockito.mock(VMInstanceVO.class);
+        Mockito.doReturn(3l).when(vm).getHostId();
+        Mockito.doReturn(vm).when(virtualMachineService).searchVmInstanceById(1l);
+
+        Assert.assertEquals(Long.valueOf(3l), spy.getVmHostId(1l));
+    }
+
+    @Test
+    public void getVmHostIdTestVmNotFound() {
+        Assert.assertNull(spy.getVmHostId(1l));
+    }
+
+    @Test
+    public void executeMigrationsTestClusterLeaseLost() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        VmMigration firstMigration = new VmMigration(1l, 2l, 1l, 3l, 1l);
+        VmMigration dependentMigration = new VmMigration(2l, 1l, 1l, 2l, 1l);
+        migrationGraph.addMigration(firstMigration, new ArrayList<VmMigration>());
+        migrationGraph.addMigration(dependentMigration, Arrays.asList(firstMigration));
+        setupExecuteMigrations(migrationGraph);
+        Mockito.doAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                Mockito.doReturn(false).when(autonomicClusterManagementService).isClusterLeaseHeld(1l);
+                return true;
+            }
+        }).when(spy).migrateVm(firstMigration);
+
+        spy.executeMigrations(migrationGraph, alternativeTargetHostSelector);
+
+        Mockito.verify(spy).migrateVm(firstMigration);
+        Mockito.verify(spy, Mockito.times(0)).migrateVm(dependentMigration);
+    }
+
+    @Test
+    public void getClustersOfMigrationsTest() {
+        MigrationGraph migrationGraph = new MigrationGraph();
+        migrationGraph.addMigration(new VmMigration(1l, 2l, 1l, 3l, 2l), new ArrayList<VmMigration>());
+        migrationGraph.addMigration(new VmMigration(2l, 4l, 1l, 5l, 1l), new ArrayList<VmMigration>());
+
+        Set<Long> result = spy.getClustersOfMigrations(migrationGraph);
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1l, 2l)), result);
+    }
+
+    @Test
+    public void abortIfClustersLeasesWereLostTest() {
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).isClusterLeaseHeld(1l);
+        Mockito.doReturn(false).when(autonomicClusterManagementService).isClusterLeaseHeld(2l);
+
+        spy.abortIfClustersLeasesWereLost(migrationGraphScheduler, new HashSet<>(Arrays.asList(1l, 2l)));
+
+        Mockito.verify(migrationGraphScheduler).abort();
+    }
+
+    @Test
+    public void abortIfClustersLeasesWereLostTestLeasesHeld() {
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).isClusterLeaseHeld(Mockito.anyLong());
+
+        spy.abortIfClustersLeasesWereLost(migrationGraphScheduler, new HashSet<>(Arrays.asList(1l, 2l)));
+
+        Mockito.verify(migrationGraphScheduler, Mockito.times(0)).abort();
+    }
+
+    @Test
+    public void abortIfFailureRateIsExceededTest() {
+        MigrationGraphScheduler migrationGraphScheduler = setupAbortIfFailureRateIsExceeded(false, VmMigrationExecutor.MINIMUM_FINISHED_MIGRATIONS_TO_EVALUATE_FAILURE_RATE, 0.6);
+
+        spy.abortIfFailureRateIsExceeded(migrationGraphScheduler, 0.5);
+
+        Mockito.verify(migrationGraphScheduler).abort();
+    }
+
+    @Test
+    public void abortIfFailureRateIsExceededTestFailureRateNotExceeded() {
+        MigrationGraphScheduler migrationGraphScheduler = setupAbortIfFailureRateIsExceeded(false, VmMigrationExecutor.MINIMUM_FINISHED_MIGRATIONS_TO_EVALUATE_FAILURE_RATE, 0.5);
+
+        spy.abortIfFailureRateIsExceeded(migrationGraphScheduler, 0.5);
+
+        Mockito.verify(migrationGraphScheduler, Mockito.times(0)).abort();
+    }
+
+    @Test
+    public void abortIfFailureRateIsExceededTestNotEnoughFinishedMigrations() {
+        MigrationGraphScheduler migrationGraphScheduler = setupAbortIfFailureRateIsExceeded(false, VmMigrationExecutor.MINIMUM_FINISHED_MIGRATIONS_TO_EVALUATE_FAILURE_RATE - 1, 1);
+
+        spy.abortIfFailureRateIsExceeded(migrationGraphScheduler, 0.5);
+
+        Mockito.verify(migrationGraphScheduler, Mockito.times(0)).abort();
+    }
+
+    @Test
+    public void abortIfFailureRateIsExceededTestAlreadyAborted() {
+        MigrationGraphScheduler migrationGraphScheduler = setupAbortIfFailureRateIsExceeded(true, VmMigrationExecutor.MINIMUM_FINISHED_MIGRATIONS_TO_EVALUATE_FAILURE_RATE, 1);
+
+        spy.abortIfFailureRateIsExceeded(migrationGraphScheduler, 0.5);
+
+        Mockito.verify(migrationGraphScheduler, Mockito.times(0)).abort();
+    }
+
+    @Test
+    public void createMigrationTaskTest() throws Exception {
+        VmMigration migration = new VmMigration(1l, 1l, 1l, 2l, 1l);
+        Mockito.doReturn(true).when(spy).migrateVm(migration);
+
+        Assert.assertTrue(spy.createMigrationTask(migration).call());
+    }
+
+    @Test
+    public void getMigrationResultTest() throws Exception {
+        Future<Boolean> migrationFuture = Mockito.mock(Future.class);
+        Mockito.doReturn(true).when(migrationFuture).get();
+
+        Assert.assertTrue(spy.getMigrationResult(migrationFuture));
+    }
+
+    @Test
+    public void getMigrationResultTestExecutionException() throws Exception {
+        Future<Boolean> migrationFuture = Mockito.mock(Future.class);
+        Mockito.doThrow(new ExecutionException(new RuntimeException())).when(migrationFuture).get();
+
+        Assert.assertFalse(spy.getMigrationResult(migrationFuture));
+    }
+
+    @Test
+    public void migrateVmTest() throws Exception {
+        HostVO targetHost = Mockito.mock(HostVO.class);
+        Mockito.doReturn(targetHost).when(hostService).findHostById(2l);
+
+        boolean result = spy.migrateVm(new VmMigration(1l, 1l, 1l, 2l, 1l));
+
+        Assert.assertTrue(result);
+        Mockito.verify(userVmService).migrateVirtualMachine(1l, targetHost);
+    }
+
+    @Test
+    public void migrateVmTestWithException() throws Exception {
+        HostVO targetHost = Mockito.mock(HostVO.class);
+        Mockito.doReturn(targetHost).when(hostService).findHostById(2l);
+        Mockito.doThrow(Exception.class).when(userVmService).migrateVirtualMachine(1l, targetHost);
+
+        boolean result = spy.migrateVm(new VmMigration(1l, 1l, 1l, 2l, 1l));
+
+        Assert.assertFalse(result);
+        Mockito.verify(userVmService).migrateVirtualMachine(1l, targetHost);
+    }
+
+    @Test
+    public void createMigrationGraphSchedulerTest() {
+        Mockito.doReturn(3).when(autonomiccsConfigurationService).getPositiveIntegerConfiguration(VmMigrationExecutor.MAXIMUM_MIGRATIONS_PER_SOURCE_HOST_IN_CONFIGURATION_KEY,
+                VmMigrationExecutor.DEFAULT_MAXIMUM_MIGRATIONS_PER_SOURCE_HOST);
+        Mockito.doReturn(4).when(autonomiccsConfigurationService).getPositiveIntegerConfiguration(VmMigrationExecutor.MAXIMUM_MIGRATIONS_PER_TARGET_HOST_IN_CONFIGURATION_KEY,
+                VmMigrationExecutor.DEFAULT_MAXIMUM_MIGRATIONS_PER_TARGET_HOST);
+        Mockito.doReturn(5).when(autonomiccsConfigurationService).getPositiveIntegerConfiguration(VmMigrationExecutor.MAXIMUM_MIGRATIONS_PER_CLUSTER_IN_CONFIGURATION_KEY,
+                VmMigrationExecutor.DEFAULT_MAXIMUM_MIGRATIONS_PER_CLUSTER);
+
+        MigrationGraphScheduler result = spy.createMigrationGraphScheduler(new MigrationGraph());
+
+        Assert.assertEquals(3, result.getMaximumMigrationsPerSourceHost());
+        Assert.assertEquals(4, result.getMaximumMigrationsPerTargetHost());
+        Assert.assertEquals(5, result.getMaximumMigrationsPerCluster());
+    }
+
+    @Test
+    public void getMigrationTimeoutInMillisecondsTest() {
+        Mockito.doReturn(60).when(autonomiccsConfigurationService).getPositiveIntegerConfiguration(VmMigrationExecutor.MIGRATION_TIMEOUT_IN_SECONDS_IN_CONFIGURATION_KEY,
+                VmMigrationExecutor.DEFAULT_MIGRATION_TIMEOUT_IN_SECONDS);
+
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(60), spy.getMigrationTimeoutInMilliseconds());
+    }
+
+    @Test
+    public void getMaximumFailureRateTest() {
+        Mockito.doReturn(0.25).when(autonomiccsConfigurationService).getRatioConfiguration(VmMigrationExecutor.MAXIMUM_MIGRATIONS_FAILURE_RATE_IN_CONFIGURATION_KEY,
+                VmMigrationExecutor.DEFAULT_MAXIMUM_MIGRATIONS_FAILURE_RATE);
+        Assert.assertEquals(0.25, spy.getMaximumFailureRate(), 0);
+    }
+
+    private void verifyMigrationFailedWithoutRetry(VmMigration migration, MigrationGraphScheduler migrationGraphScheduler) {
+        Mockito.verify(migrationGraphScheduler).migrationFinished(migration, false);
+        Mockito.verify(migrationGraphScheduler, Mockito.times(0)).retryMigration(Mockito.any(VmMigration.class), Mockito.any(VmMigration.class));
+    }
+
+    private MigrationGraphScheduler setupAbortIfFailureRateIsExceeded(boolean aborted, int numberOfFinishedMigrations, double failureRate) {
+        MigrationGraphScheduler migrationGraphScheduler = Mockito.mock(MigrationGraphScheduler.class);
+        Mockito.doReturn(aborted).when(migrationGraphScheduler).isAborted();
+        Mockito.doReturn(numberOfFinishedMigrations).when(migrationGraphScheduler).getNumberOfFinishedMigrations();
+        Mockito.doReturn(failureRate).when(migrationGraphScheduler).getFailureRate();
+        return migrationGraphScheduler;
+    }
+
+    /**
+     * The migration executor runs the tasks in the calling thread; the scheduler is created with
+     * one migration per host at a time.
+     */
+    private void setupExecuteMigrations(MigrationGraph migrationGraph) {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Runnable)invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(migrationExecutor).execute(Mockito.any(Runnable.class));
+        Mockito.doReturn(new MigrationGraphScheduler(migrationGraph, 1, 1, 10)).when(spy).createMigrationGraphScheduler(migrationGraph);
+        Mockito.doReturn(true).when(autonomicClusterManagementService).isClusterLeaseHeld(Mockito.anyLong());
+    }
+}
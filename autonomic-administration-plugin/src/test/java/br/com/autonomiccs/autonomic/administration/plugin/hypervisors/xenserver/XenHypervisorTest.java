@@ -37,6 +37,8 @@ import org.junit.runner.RunWith;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -94,6 +96,52 @@ public class XenHypervisorTest {
         HostVO hostVo = setupShutdownHostTest();
         xenHypervisor.shutdownHost(hostVo);
         verifyShutdownHostCalledMethods();
+        Assert.assertTrue(xenHypervisor.hostsBeingShutDown.isEmpty());
+    }
+
+    @Test
+    public void shutdownHostTestPoolNotLockedWhileWaitingHostToGoDown() throws Exception {
+        HostVO hostVo = setupShutdownHostTest();
+        final Object poolLock = xenHypervisor.getPoolLock(hostVo.getClusterId());
+        Mockito.when(hostUtils.isHostReachable(Mockito.anyString())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                Assert.assertFalse(Thread.holdsLock(poolLock));
+                return false;
+            }
+        });
+
+        xenHypervisor.shutdownHost(hostVo);
+
+        Mockito.verify(hostUtils).isHostReachable(Mockito.anyString());
+    }
+
+    @Test
+    public void shutdownHostTestConnectionOpenedWhilePoolIsLocked() throws Exception {
+        HostVO hostVo = setupShutdownHostTest();
+        final Object poolLock = xenHypervisor.getPoolLock(hostVo.getClusterId());
+        final Connection conn = Mockito.mock(Connection.class);
+        Mockito.doAnswer(new Answer<Connection>() {
+            @Override
+            public Connection answer(InvocationOnMock invocation) {
+                Assert.assertTrue(Thread.holdsLock(poolLock));
+                return conn;
+            }
+        }).when(xenHypervisor).getConnection(hostVo);
+
+        xenHypervisor.shutdownHost(hostVo);
+
+        Mockito.verify(xenHypervisor).getConnection(hostVo);
+        Mockito.verify(xenHypervisor).disableAndShutdownHost(conn, host);
+    }
+
+    @Test
+    public void getPoolLockTest() {
+        Object poolLock = xenHypervisor.getPoolLock(1l);
+
+        Assert.assertSame(poolLock, xenHypervisor.getPoolLock(1l));
+        Assert.assertNotSame(poolLock, xenHypervisor.getPoolLock(2l));
+        Assert.assertSame(xenHypervisor.getPoolLock(null), xenHypervisor.getPoolLock(null));
     }
 
     @Test
@@ -211,6 +259,14 @@ public class XenHypervisorTest {
         verifyChangePoolMasterHostCalledMethods(1, 0);
     }
 
+    @Test
+    public void changePoolMasterHostTestHostBeingShutDown() throws Exception {
+        setChangePoolMasterHost("uuid", true);
+        xenHypervisor.hostsBeingShutDown.add("uuid");
+        xenHypervisor.changePoolMasterHost(conn, "hostUuid");
+        verifyChangePoolMasterHostCalledMethods(0, 0);
+    }
+
     @Test
     public void changePoolMasterHostTestFulExecution() throws Exception {
         setChangePoolMasterHost("uuid", true);
@@ -231,6 +287,29 @@ public class XenHypervisorTest {
         Mockito.verify(threadUtils, Mockito.times(90)).sleepThread(Mockito.anyInt());
     }
 
+    @Test
+    public void waitHostToGoDownTest() {
+        Mockito.doNothing().when(threadUtils).sleepThread(Mockito.anyInt());
+        Mockito.when(hostUtils.isHostReachable("hostAddress")).thenReturn(true, false);
+
+        xenHypervisor.waitHostToGoDown("hostAddress", "uuid");
+
+        Mockito.verify(threadUtils, Mockito.times(2)).sleepThread(Mockito.anyInt());
+    }
+
+    @Test
+    public void waitHostToGoDownTestHostStillReachable() {
+        Mockito.doNothing().when(threadUtils).sleepThread(Mockito.anyInt());
+        Mockito.doReturn(true).when(hostUtils).isHostReachable("hostAddress");
+
+        try {
+            xenHypervisor.waitHostToGoDown("hostAddress", "uuid");
+            Assert.fail();
+        } catch (CloudRuntimeException e) {
+            Mockito.verify(threadUtils, Mockito.times(XenHypervisor.MAXIMUM_NUMBER_OF_TRIES_WAITING_HOST_TO_GO_DOWN)).sleepThread(Mockito.anyInt());
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void getConnectionTest() throws Exception {
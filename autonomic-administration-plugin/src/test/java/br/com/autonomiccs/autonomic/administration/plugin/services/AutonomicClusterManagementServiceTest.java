@@ -31,12 +31,14 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import com.cloud.dc.ClusterVO;
 import com.cloud.dc.dao.ClusterDao;
@@ -59,6 +61,24 @@ public class AutonomicClusterManagementServiceTest {
         autonomicClusterManagementService = Mockito.spy(new AutonomicClusterManagementService());
         autonomicClusterManagementService.clusterDaoJdbc = clusterDaoJdbc;
         autonomicClusterManagementService.clusterDao = clusterDao;
+        autonomicClusterManagementService.administrationLeaseOwner = "owner";
+    }
+
+    @Test
+    public void afterPropertiesSetTest() {
+        ThreadPoolTaskScheduler leaseRenewalScheduler = Mockito.mock(ThreadPoolTaskScheduler.class);
+        autonomicClusterManagementService.leaseRenewalScheduler = leaseRenewalScheduler;
+        Mockito.doNothing().when(autonomicClusterManagementService).renewClustersAdministrationLeases();
+
+        autonomicClusterManagementService.afterPropertiesSet();
+
+        ArgumentCaptor<Runnable> leaseRenewalTask = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(leaseRenewalScheduler).setPoolSize(1);
+        Mockito.verify(leaseRenewalScheduler).initialize();
+        Mockito.verify(leaseRenewalScheduler).scheduleWithFixedDelay(leaseRenewalTask.capture(), Mockito.any(Date.class),
+                Mockito.eq(AutonomicClusterManagementService.LEASE_RENEWAL_INTERVAL_IN_MILLISECONDS));
+        leaseRenewalTask.getValue().run();
+        Mockito.verify(autonomicClusterManagementService).renewClustersAdministrationLeases();
     }
 
     @Test
@@ -113,23 +133,172 @@ public class AutonomicClusterManagementServiceTest {
         verifyCanProcessClusterCalledMethods(algorithm, 0);
     }
 
+    @Test
+    public void getClusterNextAdministrationDateTest() {
+        ClusterAdministrationHeuristicAlgorithm algorithm = Mockito.mock(ClusterAdministrationHeuristicAlgorithm.class);
+        Mockito.when(clusterDaoJdbc.getClusterLastAdminstration(Mockito.anyLong())).thenReturn(new Date(1000000l));
+        Mockito.when(algorithm.getClusterIntervalBetweenConsolidation()).thenReturn(600);
+
+        Date result = autonomicClusterManagementService.getClusterNextAdministrationDate(0l, algorithm);
+
+        Assert.assertEquals(new Date(1000000l + 600000l), result);
+        verifyCanProcessClusterCalledMethods(algorithm, 1);
+    }
+
+    @Test
+    public void getClusterNextAdministrationDateTestDateNull() {
+        ClusterAdministrationHeuristicAlgorithm algorithm = Mockito.mock(ClusterAdministrationHeuristicAlgorithm.class);
+        Mockito.when(clusterDaoJdbc.getClusterLastAdminstration(Mockito.anyLong())).thenReturn(null);
+
+        Date result = autonomicClusterManagementService.getClusterNextAdministrationDate(0l, algorithm);
+
+        Assert.assertNull(result);
+        verifyCanProcessClusterCalledMethods(algorithm, 0);
+    }
+
     @Test
     public void setClusterWorkInProgressTest() {
-        Mockito.doNothing().when(clusterDaoJdbc).setClusterAdministrationStatus(Mockito.any(ClusterAdministrationStatus.class), Mockito.anyLong());
+        Mockito.doReturn(true).when(clusterDaoJdbc).acquireClusterAdministrationLease(0l, "owner", 60);
+
+        boolean result = autonomicClusterManagementService.setClusterWorkInProgress(0l);
+
+        Assert.assertTrue(result);
+        Mockito.verify(clusterDaoJdbc).acquireClusterAdministrationLease(0l, "owner", 60);
+        Assert.assertTrue(autonomicClusterManagementService.isClusterLeaseHeld(0l));
+        Assert.assertTrue(autonomicClusterManagementService.clustersLeasesAcquisitionTimes.containsKey(0l));
+    }
+
+    @Test
+    public void setClusterWorkInProgressTestClusterAlreadyClaimedByThisManagementServer() {
+        Mockito.doReturn(true).when(clusterDaoJdbc).acquireClusterAdministrationLease(0l, "owner", 60);
         autonomicClusterManagementService.setClusterWorkInProgress(0l);
-        Mockito.verify(clusterDaoJdbc).setClusterAdministrationStatus(Mockito.any(ClusterAdministrationStatus.class), Mockito.anyLong());
+
+        boolean result = autonomicClusterManagementService.setClusterWorkInProgress(0l);
+
+        Assert.assertFalse(result);
+        Mockito.verify(clusterDaoJdbc, Mockito.times(1)).acquireClusterAdministrationLease(0l, "owner", 60);
+        Assert.assertTrue(autonomicClusterManagementService.isClusterLeaseHeld(0l));
+    }
+
+    @Test
+    public void setClusterWorkInProgressTestLeaseLostButAdministrationNotFinished() {
+        autonomicClusterManagementService.clustersLeases.put(0l, false);
+
+        boolean result = autonomicClusterManagementService.setClusterWorkInProgress(0l);
+
+        Assert.assertFalse(result);
+        Mockito.verify(clusterDaoJdbc, Mockito.times(0)).acquireClusterAdministrationLease(Mockito.anyLong(), Mockito.anyString(), Mockito.anyInt());
+    }
+
+    @Test
+    public void setClusterWorkInProgressTestLeaseHeldByAnotherManagementServer() {
+        Mockito.doReturn(false).when(clusterDaoJdbc).acquireClusterAdministrationLease(0l, "owner", 60);
+
+        boolean result = autonomicClusterManagementService.setClusterWorkInProgress(0l);
+
+        Assert.assertFalse(result);
+        Assert.assertTrue(autonomicClusterManagementService.clustersLeases.isEmpty());
+    }
+
+    @Test
+    public void setClusterWorkInProgressTestAcquireFailedWithException() {
+        Mockito.doThrow(new RuntimeException()).when(clusterDaoJdbc).acquireClusterAdministrationLease(0l, "owner", 60);
+
+        try {
+            autonomicClusterManagementService.setClusterWorkInProgress(0l);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(autonomicClusterManagementService.clustersLeases.isEmpty());
+        }
+    }
+
+    @Test
+    public void cancelClusterWorkInProgressTest() {
+        autonomicClusterManagementService.clustersLeases.put(0l, true);
+        Mockito.doReturn(true).when(clusterDaoJdbc).releaseClusterAdministrationLease(0l, "owner");
+
+        autonomicClusterManagementService.cancelClusterWorkInProgress(0l);
+
+        Mockito.verify(clusterDaoJdbc).releaseClusterAdministrationLease(0l, "owner");
+        Mockito.verify(clusterDaoJdbc, Mockito.times(0)).setClusterLastAdministration(Mockito.any(Date.class), Mockito.anyLong());
+        Assert.assertTrue(autonomicClusterManagementService.clustersLeases.isEmpty());
     }
 
     @Test
     public void markAdministrationStatusInClusterAsDoneTest() {
+        autonomicClusterManagementService.clustersLeases.put(0l, true);
+        autonomicClusterManagementService.clustersLeasesAcquisitionTimes.put(0l, System.currentTimeMillis());
         Mockito.doNothing().when(clusterDaoJdbc).setClusterLastAdministration(Mockito.any(Date.class), Mockito.anyLong());
-        Mockito.doNothing().when(clusterDaoJdbc).setClusterAdministrationStatus(Mockito.any(ClusterAdministrationStatus.class), Mockito.anyLong());
+        Mockito.doReturn(true).when(clusterDaoJdbc).releaseClusterAdministrationLease(0l, "owner");
 
         autonomicClusterManagementService.markAdministrationStatusInClusterAsDone(0l);
 
         InOrder inOrder = Mockito.inOrder(clusterDaoJdbc);
-        inOrder.verify(clusterDaoJdbc).setClusterLastAdministration(Mockito.any(Date.class), Mockito.anyLong());
-        inOrder.verify(clusterDaoJdbc).setClusterAdministrationStatus(Mockito.any(ClusterAdministrationStatus.class), Mockito.anyLong());
+        inOrder.verify(clusterDaoJdbc).setClusterLastAdministration(Mockito.any(Date.class), Mockito.eq(0l));
+        inOrder.verify(clusterDaoJdbc).releaseClusterAdministrationLease(0l, "owner");
+        Assert.assertTrue(autonomicClusterManagementService.clustersLeases.isEmpty());
+        Assert.assertTrue(autonomicClusterManagementService.clustersLeasesAcquisitionTimes.isEmpty());
+    }
+
+    @Test
+    public void markAdministrationStatusInClusterAsDoneTestLeaseLost() {
+        autonomicClusterManagementService.clustersLeases.put(0l, false);
+        Mockito.doReturn(false).when(clusterDaoJdbc).releaseClusterAdministrationLease(0l, "owner");
+
+        autonomicClusterManagementService.markAdministrationStatusInClusterAsDone(0l);
+
+        Mockito.verify(clusterDaoJdbc, Mockito.times(0)).setClusterLastAdministration(Mockito.any(Date.class), Mockito.anyLong());
+        Mockito.verify(clusterDaoJdbc).releaseClusterAdministrationLease(0l, "owner");
+        Assert.assertTrue(autonomicClusterManagementService.clustersLeases.isEmpty());
+    }
+
+    @Test
+    public void renewClustersAdministrationLeasesTest() {
+        autonomicClusterManagementService.clustersLeases.put(1l, true);
+        autonomicClusterManagementService.clustersLeases.put(2l, true);
+        autonomicClusterManagementService.clustersLeases.put(3l, false);
+        Mockito.doReturn(true).when(clusterDaoJdbc).renewClusterAdministrationLease(1l, "owner", 60);
+        Mockito.doReturn(false).when(clusterDaoJdbc).renewClusterAdministrationLease(2l, "owner", 60);
+
+        autonomicClusterManagementService.renewClustersAdministrationLeases();
+
+        Mockito.verify(clusterDaoJdbc).renewClusterAdministrationLease(1l, "owner", 60);
+        Mockito.verify(clusterDaoJdbc).renewClusterAdministrationLease(2l, "owner", 60);
+        Mockito.verify(clusterDaoJdbc, Mockito.times(0)).renewClusterAdministrationLease(3l, "owner", 60);
+        Assert.assertTrue(autonomicClusterManagementService.isClusterLeaseHeld(1l));
+        Assert.assertFalse(autonomicClusterManagementService.isClusterLeaseHeld(2l));
+        Assert.assertTrue(autonomicClusterManagementService.clustersLeases.containsKey(2l));
+    }
+
+    @Test
+    public void renewClustersAdministrationLeasesTestAdministrationTakingTooLong() {
+        autonomicClusterManagementService.clustersLeases.put(1l, true);
+        autonomicClusterManagementService.clustersLeasesAcquisitionTimes.put(1l, System.currentTimeMillis() - 60000l * 361);
+
+        autonomicClusterManagementService.renewClustersAdministrationLeases();
+
+        Mockito.verify(clusterDaoJdbc, Mockito.times(0)).renewClusterAdministrationLease(Mockito.anyLong(), Mockito.anyString(), Mockito.anyInt());
+        Assert.assertFalse(autonomicClusterManagementService.isClusterLeaseHeld(1l));
+        Assert.assertTrue(autonomicClusterManagementService.clustersLeases.containsKey(1l));
+    }
+
+    @Test
+    public void isClusterAdministrationTakingTooLongTest() {
+        autonomicClusterManagementService.clustersLeasesAcquisitionTimes.put(1l, System.currentTimeMillis() - 60000l * 361);
+        autonomicClusterManagementService.clustersLeasesAcquisitionTimes.put(2l, System.currentTimeMillis() - 60000l * 359);
+
+        Assert.assertTrue(autonomicClusterManagementService.isClusterAdministrationTakingTooLong(1l));
+        Assert.assertFalse(autonomicClusterManagementService.isClusterAdministrationTakingTooLong(2l));
+        Assert.assertFalse(autonomicClusterManagementService.isClusterAdministrationTakingTooLong(3l));
+    }
+
+    @Test
+    public void resetStuckClusterAdministrationStatusTest() {
+        autonomicClusterManagementService.resetStuckClusterAdministrationStatus(0l);
+
+        InOrder inOrder = Mockito.inOrder(clusterDaoJdbc);
+        inOrder.verify(clusterDaoJdbc).setClusterLastAdministration(Mockito.any(Date.class), Mockito.eq(0l));
+        inOrder.verify(clusterDaoJdbc).setClusterAdministrationStatus(ClusterAdministrationStatus.Done, 0l);
     }
 
     @Test
@@ -184,6 +353,21 @@ public class AutonomicClusterManagementServiceTest {
         verifyRemoveClusterStuckProcessingCalledMethods(1, 1, 0);
     }
 
+    @Test
+    @PrepareForTest(AutonomicClusterManagementService.class)
+    public void removeClusterStuckProcessingTestClusterWithLease() throws Exception {
+        List<ClusterVO> allClusters = createClusters();
+        Date lastAdministrated = getLastAdministrationDate();
+        Date current = setCurrentDate(lastAdministrated, 7);
+        PowerMockito.whenNew(Date.class).withNoArguments().thenReturn(current);
+        setRemoveClusterStuckProcessing(lastAdministrated, allClusters, ClusterAdministrationStatus.InProgress);
+        Mockito.doReturn(lastAdministrated).when(clusterDaoJdbc).getClusterAdministrationLeaseExpiration(Mockito.anyLong());
+
+        autonomicClusterManagementService.removeClusterStuckProcessing();
+
+        verifyRemoveClusterStuckProcessingCalledMethods(1, 0, 0);
+    }
+
     private Date setCurrentDate(Date lastAdministrated, int hoursToAdd) {
         Date current = new Date(lastAdministrated.getTime());
         Calendar c = Calendar.getInstance();
@@ -194,19 +378,20 @@ public class AutonomicClusterManagementServiceTest {
     }
 
     private void verifyRemoveClusterStuckProcessingCalledMethods(int getClusterAdministrationStatusTimes, int getClusterLastAdminstration,
-            int markAdministrationStatusInClusterAsDone) {
+            int resetStuckClusterAdministrationStatus) {
         Mockito.verify(clusterDao).listAll();
         InOrder inOrderClusterDaoJdbc = Mockito.inOrder(clusterDaoJdbc);
         inOrderClusterDaoJdbc.verify(clusterDaoJdbc, Mockito.times(getClusterAdministrationStatusTimes)).getClusterAdministrationStatus(Mockito.anyLong());
         inOrderClusterDaoJdbc.verify(clusterDaoJdbc, Mockito.times(getClusterLastAdminstration)).getClusterLastAdminstration(Mockito.anyLong());
-        Mockito.verify(autonomicClusterManagementService, Mockito.times(markAdministrationStatusInClusterAsDone)).markAdministrationStatusInClusterAsDone(Mockito.anyLong());
+        Mockito.verify(autonomicClusterManagementService, Mockito.times(resetStuckClusterAdministrationStatus)).resetStuckClusterAdministrationStatus(Mockito.anyLong());
     }
 
     private void setRemoveClusterStuckProcessing(Date lastAdministrated, List<ClusterVO> allClusters, ClusterAdministrationStatus clusterAdministrationStatus) {
         Mockito.doReturn(allClusters).when(clusterDao).listAll();
         Mockito.doReturn(clusterAdministrationStatus).when(clusterDaoJdbc).getClusterAdministrationStatus(Mockito.anyLong());
         Mockito.doReturn(lastAdministrated).when(clusterDaoJdbc).getClusterLastAdminstration(Mockito.anyLong());
-        Mockito.doNothing().when(autonomicClusterManagementService).markAdministrationStatusInClusterAsDone(Mockito.anyLong());
+        Mockito.doReturn(null).when(clusterDaoJdbc).getClusterAdministrationLeaseExpiration(Mockito.anyLong());
+        Mockito.doNothing().when(autonomicClusterManagementService).resetStuckClusterAdministrationStatus(Mockito.anyLong());
     }
 
     private void setCanProcessCluster(ClusterAdministrationHeuristicAlgorithm algorithm, Date date, int secondsToAdd, int intervalBetweenManagement) throws Exception {
@@ -0,0 +1,341 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.beans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact representation of a cluster to be used while planning VMs migrations. Instead of a
+ * {@link List} of {@link HostResources} (each one with its own {@link List} of {@link VmResources}),
+ * it holds the hosts capacities, hosts usage and the VM to host assignment in primitive arrays.
+ * Hosts and VMs are identified by their index in those arrays.
+ *
+ * A snapshot can be forked with {@link #fork()}; the fork shares all arrays with the original
+ * snapshot and copies the usage and assignment arrays only when one of them is changed
+ * (copy-on-write). Hosts capacities and VMs demands are never changed; therefore, they are
+ * always shared.
+ */
+public class ClusterSnapshot {
+
+    /**
+     * This constant was created to divide a number (in Bytes) by 1.000.000 (resulting in a number
+     * of Mega Bytes metrics), the same used by the administration algorithms.
+     */
+    protected final static int BYTES_TO_MEGA_BYTES = 1000000;
+
+    private final long[] hostsIds;
+    private final int[] hostsCpus;
+    private final long[] hostsCpuSpeed;
+    private final long[] hostsTotalMemoryInMegaBytes;
+    private final float[] hostsCpuOverprovisioning;
+    private final float[] hostsMemoryOverprovisioning;
+
+    private final long[] vmsIds;
+    private final int[] vmsCpus;
+    private final long[] vmsCpuSpeed;
+    private final long[] vmsMemoryInMegaBytes;
+    private final int[] vmsOriginalHost;
+
+    private final Map<Long, Integer> hostsIndexes;
+
+    private long[] hostsUsedCpu;
+    private long[] hostsUsedMemoryInMegaBytes;
+    private int[] vmsHost;
+    private boolean sharedUsage;
+    private boolean sharedAssignment;
+
+    /**
+     * It creates the snapshot of the given hosts; hosts keep the order of the given {@link List}.
+     */
+    public ClusterSnapshot(List<HostResources> hosts) {
+        int numberOfHosts = hosts.size();
+        int numberOfVms = 0;
+        for (HostResources host : hosts) {
+            numberOfVms += host.getVmsResources().size();
+        }
+        hostsIds = new long[numberOfHosts];
+        hostsCpus = new int[numberOfHosts];
+        hostsCpuSpeed = new long[numberOfHosts];
+        hostsTotalMemoryInMegaBytes = new long[numberOfHosts];
+        hostsCpuOverprovisioning = new float[numberOfHosts];
+        hostsMemoryOverprovisioning = new float[numberOfHosts];
+        hostsUsedCpu = new long[numberOfHosts];
+        hostsUsedMemoryInMegaBytes = new long[numberOfHosts];
+        hostsIndexes = new HashMap<>(numberOfHosts * 2);
+
+        vmsIds = new long[numberOfVms];
+        vmsCpus = new int[numberOfVms];
+        vmsCpuSpeed = new long[numberOfVms];
+        vmsMemoryInMegaBytes = new long[numberOfVms];
+        vmsHost = new int[numberOfVms];
+
+        int vm = 0;
+        for (int host = 0; host < numberOfHosts; host++) {
+            HostResources hostResources = hosts.get(host);
+            hostsIds[host] = hostResources.getHostId();
+            hostsCpus[host] = hostResources.getCpus();
+            hostsCpuSpeed[host] = hostResources.getSpeed();
+            hostsTotalMemoryInMegaBytes[host] = hostResources.getTotalMemoryInBytes() / BYTES_TO_MEGA_BYTES;
+            hostsCpuOverprovisioning[host] = hostResources.getCpuOverprovisioning();
+            hostsMemoryOverprovisioning[host] = hostResources.getMemoryOverprovisioning();
+            hostsUsedCpu[host] = hostResources.getUsedCpu();
+            hostsUsedMemoryInMegaBytes[host] = hostResources.getUsedMemoryInMegaBytes();
+            hostsIndexes.put(hostResources.getHostId(), host);
+
+            for (VmResources vmResources : hostResources.getVmsResources()) {
+                vmsIds[vm] = vmResources.getVmId();
+                vmsCpus[vm] = vmResources.getNumberOfCpus();
+                vmsCpuSpeed[vm] = vmResources.getCpuSpeed();
+                vmsMemoryInMegaBytes[vm] = vmResources.getMemoryInMegaBytes();
+                vmsHost[vm] = host;
+                vm++;
+            }
+        }
+        vmsOriginalHost = vmsHost.clone();
+    }
+
+    /**
+     * Fork constructor, all arrays are shared with the given snapshot.
+     */
+    private ClusterSnapshot(ClusterSnapshot snapshot) {
+        hostsIds = snapshot.hostsIds;
+        hostsCpus = snapshot.hostsCpus;
+        hostsCpuSpeed = snapshot.hostsCpuSpeed;
+        hostsTotalMemoryInMegaBytes = snapshot.hostsTotalMemoryInMegaBytes;
+        hostsCpuOverprovisioning = snapshot.hostsCpuOverprovisioning;
+        hostsMemoryOverprovisioning = snapshot.hostsMemoryOverprovisioning;
+        hostsIndexes = snapshot.hostsIndexes;
+        vmsIds = snapshot.vmsIds;
+        vmsCpus = snapshot.vmsCpus;
+        vmsCpuSpeed = snapshot.vmsCpuSpeed;
+        vmsMemoryInMegaBytes = snapshot.vmsMemoryInMegaBytes;
+        vmsOriginalHost = snapshot.vmsOriginalHost;
+        hostsUsedCpu = snapshot.hostsUsedCpu;
+        hostsUsedMemoryInMegaBytes = snapshot.hostsUsedMemoryInMegaBytes;
+        vmsHost = snapshot.vmsHost;
+        sharedUsage = true;
+        sharedAssignment = true;
+    }
+
+    /**
+     * It creates a new snapshot with the same state of this one. The fork costs O(1); the usage
+     * and assignment arrays are copied by the first change that happens in each snapshot.
+     */
+    public ClusterSnapshot fork() {
+        sharedUsage = true;
+        sharedAssignment = true;
+        return new ClusterSnapshot(this);
+    }
+
+    public int getNumberOfHosts() {
+        return hostsIds.length;
+    }
+
+    public int getNumberOfVms() {
+        return vmsIds.length;
+    }
+
+    /**
+     * @return the index of the host with the given id, or -1 if the host is not in the snapshot.
+     */
+    public int getHostIndex(long hostId) {
+        Integer index = hostsIndexes.get(hostId);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
+    public long getHostId(int host) {
+        return hostsIds[host];
+    }
+
+    public int getHostCpus(int host) {
+        return hostsCpus[host];
+    }
+
+    public long getHostCpuSpeed(int host) {
+        return hostsCpuSpeed[host];
+    }
+
+    public long getHostTotalMemoryInMegaBytes(int host) {
+        return hostsTotalMemoryInMegaBytes[host];
+    }
+
+    public float getHostCpuOverprovisioning(int host) {
+        return hostsCpuOverprovisioning[host];
+    }
+
+    public float getHostMemoryOverprovisioning(int host) {
+        return hostsMemoryOverprovisioning[host];
+    }
+
+    public long getHostUsedCpu(int host) {
+        return hostsUsedCpu[host];
+    }
+
+    public long getHostUsedMemoryInMegaBytes(int host) {
+        return hostsUsedMemoryInMegaBytes[host];
+    }
+
+    /**
+     * Returns the available CPU of the host (CPU over-provisioning * CPU speed * number of CPUs -
+     * used CPU).
+     */
+    public float getHostAvailableCpu(int host) {
+        return (hostsCpuOverprovisioning[host] * hostsCpuSpeed[host] * hostsCpus[host]) - hostsUsedCpu[host];
+    }
+
+    /**
+     * Returns the available memory of the host; it already considers the memory over-provisioning.
+     */
+    public long getHostAvailableMemoryInMegaBytes(int host) {
+        return (long) (hostsMemoryOverprovisioning[host] * hostsTotalMemoryInMegaBytes[host]) - hostsUsedMemoryInMegaBytes[host];
+    }
+
+    public long getVmId(int vm) {
+        return vmsIds[vm];
+    }
+
+    public int getVmCpus(int vm) {
+        return vmsCpus[vm];
+    }
+
+    public long getVmCpuSpeed(int vm) {
+        return vmsCpuSpeed[vm];
+    }
+
+    /**
+     * @return VM CPU demand (number of CPUs * CPU speed).
+     */
+    public long getVmCpuDemand(int vm) {
+        return vmsCpus[vm] * vmsCpuSpeed[vm];
+    }
+
+    public long getVmMemoryInMegaBytes(int vm) {
+        return vmsMemoryInMegaBytes[vm];
+    }
+
+    /**
+     * @return the index of the host that the VM is allocated in this snapshot.
+     */
+    public int getVmHost(int vm) {
+        return vmsHost[vm];
+    }
+
+    /**
+     * @return the index of the host that the VM was allocated when the snapshot was created.
+     */
+    public int getVmOriginalHost(int vm) {
+        return vmsOriginalHost[vm];
+    }
+
+    /**
+     * @return the indexes of the VMs allocated in the given host; this method iterates over all
+     *         VMs of the snapshot.
+     */
+    public int[] getHostVms(int host) {
+        int numberOfVms = 0;
+        for (int vm = 0; vm < vmsHost.length; vm++) {
+            if (vmsHost[vm] == host) {
+                numberOfVms++;
+            }
+        }
+        int[] hostVms = new int[numberOfVms];
+        int position = 0;
+        for (int vm = 0; vm < vmsHost.length; vm++) {
+            if (vmsHost[vm] == host) {
+                hostVms[position++] = vm;
+            }
+        }
+        return hostVms;
+    }
+
+    /**
+     * Checks if the host can allocate the VM, with the same rules of the administration algorithms:
+     * the host must have at least the number of CPUs of the VM, and enough CPU (number of CPUs *
+     * CPU speed) and memory available.
+     */
+    public boolean canAllocateVm(int vm, int host) {
+        if (hostsCpus[host] < vmsCpus[vm]) {
+            return false;
+        }
+        if (getHostAvailableCpu(host) < getVmCpuDemand(vm)) {
+            return false;
+        }
+        return getHostAvailableMemoryInMegaBytes(host) >= vmsMemoryInMegaBytes[vm];
+    }
+
+    /**
+     * It moves the VM to the target host, updating the usage of the host that the VM was allocated
+     * and of the target host.
+     */
+    public void migrateVm(int vm, int targetHost) {
+        int sourceHost = vmsHost[vm];
+        if (sourceHost == targetHost) {
+            return;
+        }
+        copyUsageIfShared();
+        copyAssignmentIfShared();
+        long cpuDemand = getVmCpuDemand(vm);
+        long memory = vmsMemoryInMegaBytes[vm];
+        hostsUsedCpu[sourceHost] -= cpuDemand;
+        hostsUsedMemoryInMegaBytes[sourceHost] -= memory;
+        hostsUsedCpu[targetHost] += cpuDemand;
+        hostsUsedMemoryInMegaBytes[targetHost] += memory;
+        vmsHost[vm] = targetHost;
+    }
+
+    /**
+     * @return the indexes of the VMs that are not allocated at the host they were allocated when
+     *         the snapshot was created.
+     */
+    public List<Integer> getMigratedVms() {
+        List<Integer> migratedVms = new ArrayList<>();
+        for (int vm = 0; vm < vmsHost.length; vm++) {
+            if (vmsHost[vm] != vmsOriginalHost[vm]) {
+                migratedVms.add(vm);
+            }
+        }
+        return migratedVms;
+    }
+
+    private void copyUsageIfShared() {
+        if (sharedUsage) {
+            hostsUsedCpu = hostsUsedCpu.clone();
+            hostsUsedMemoryInMegaBytes = hostsUsedMemoryInMegaBytes.clone();
+            sharedUsage = false;
+        }
+    }
+
+    private void copyAssignmentIfShared() {
+        if (sharedAssignment) {
+            vmsHost = vmsHost.clone();
+            sharedAssignment = false;
+        }
+    }
+
+}
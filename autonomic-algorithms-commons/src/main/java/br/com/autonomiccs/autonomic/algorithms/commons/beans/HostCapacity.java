@@ -0,0 +1,132 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.beans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable capacity and usage of a host, with the {@link VmDemand}s of the VMs allocated in it,
+ * as they were when the host was loaded. Changes made while planning are recorded by a
+ * {@link PlanningOverlay}; therefore, the same {@link HostCapacity} objects can be shared by any
+ * number of plans.
+ */
+public final class HostCapacity {
+
+    /**
+     * This constant was created to divide a number (in Bytes) by 1.000.000 (resulting in a number
+     * of Mega Bytes metrics), the same used by the administration algorithms.
+     */
+    protected final static int BYTES_TO_MEGA_BYTES = 1000000;
+
+    private final long hostId;
+    private final int cpus;
+    private final long cpuSpeed;
+    private final long totalMemoryInMegaBytes;
+    private final float cpuOverprovisioning;
+    private final float memoryOverprovisioning;
+    private final long usedCpu;
+    private final long usedMemoryInMegaBytes;
+    private final List<VmDemand> vms;
+
+    /**
+     * It creates the capacity of the given {@link HostResources}; the VMs demands are created from
+     * the host {@link VmResources}.
+     */
+    public HostCapacity(HostResources host) {
+        hostId = host.getHostId();
+        cpus = host.getCpus();
+        cpuSpeed = host.getSpeed();
+        totalMemoryInMegaBytes = host.getTotalMemoryInBytes() / BYTES_TO_MEGA_BYTES;
+        cpuOverprovisioning = host.getCpuOverprovisioning();
+        memoryOverprovisioning = host.getMemoryOverprovisioning();
+        usedCpu = host.getUsedCpu();
+        usedMemoryInMegaBytes = host.getUsedMemoryInMegaBytes();
+        List<VmDemand> hostVms = new ArrayList<>(host.getVmsResources().size());
+        for (VmResources vmResources : host.getVmsResources()) {
+            hostVms.add(new VmDemand(vmResources));
+        }
+        vms = Collections.unmodifiableList(hostVms);
+    }
+
+    public long getHostId() {
+        return hostId;
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    public long getCpuSpeed() {
+        return cpuSpeed;
+    }
+
+    public long getTotalMemoryInMegaBytes() {
+        return totalMemoryInMegaBytes;
+    }
+
+    public float getCpuOverprovisioning() {
+        return cpuOverprovisioning;
+    }
+
+    public float getMemoryOverprovisioning() {
+        return memoryOverprovisioning;
+    }
+
+    public long getUsedCpu() {
+        return usedCpu;
+    }
+
+    public long getUsedMemoryInMegaBytes() {
+        return usedMemoryInMegaBytes;
+    }
+
+    /**
+     * @return CPU capacity of the host (CPU over-provisioning * CPU speed * number of CPUs).
+     */
+    public float getCpuCapacity() {
+        return cpuOverprovisioning * cpuSpeed * cpus;
+    }
+
+    /**
+     * @return memory capacity of the host; it already considers the memory over-provisioning.
+     */
+    public long getMemoryCapacityInMegaBytes() {
+        return (long) (memoryOverprovisioning * totalMemoryInMegaBytes);
+    }
+
+    /**
+     * @return the (unmodifiable) {@link List} of VMs allocated in the host when it was loaded.
+     */
+    public List<VmDemand> getVms() {
+        return vms;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HostCapacity [hostId=%d, cpus=%d, cpuSpeed=%d, totalMemoryInMegaBytes=%d, usedCpu=%d, usedMemoryInMegaBytes=%d, vms=%d]", hostId, cpus,
+                cpuSpeed, totalMemoryInMegaBytes, usedCpu, usedMemoryInMegaBytes, vms.size());
+    }
+
+}
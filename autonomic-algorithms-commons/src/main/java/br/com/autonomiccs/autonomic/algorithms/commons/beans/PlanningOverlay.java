@@ -0,0 +1,238 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.beans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Mutable plan of VMs migrations over an immutable {@link List} of {@link HostCapacity}. The
+ * overlay does not change (nor copy) the hosts; it only records the changes made by the plan: the
+ * VMs that are not at their original host and the CPU and memory usage deltas of the hosts
+ * affected by them.
+ *
+ * A plan can be forked with {@link #fork()}; the fork shares the hosts with the original plan and
+ * copies only the recorded changes, costing O(number of changes) instead of a deep copy of the
+ * hosts and their VMs.
+ */
+public class PlanningOverlay {
+
+    private final List<HostCapacity> hosts;
+    private final Map<Long, HostCapacity> hostsById;
+    private final Map<Long, HostCapacity> vmsOriginalHost;
+
+    private final Map<Long, HostCapacity> vmsHost;
+    private final Map<Long, Long> hostsUsedCpuDelta;
+    private final Map<Long, Long> hostsUsedMemoryDelta;
+
+    /**
+     * It creates an empty plan (without changes) over the given hosts.
+     */
+    public PlanningOverlay(List<HostCapacity> hosts) {
+        this.hosts = Collections.unmodifiableList(new ArrayList<>(hosts));
+        hostsById = new HashMap<>(hosts.size() * 2);
+        Map<Long, HostCapacity> originalHosts = new HashMap<>();
+        for (HostCapacity host : hosts) {
+            hostsById.put(host.getHostId(), host);
+            for (VmDemand vm : host.getVms()) {
+                originalHosts.put(vm.getVmId(), host);
+            }
+        }
+        vmsOriginalHost = originalHosts;
+        vmsHost = new HashMap<>();
+        hostsUsedCpuDelta = new HashMap<>();
+        hostsUsedMemoryDelta = new HashMap<>();
+    }
+
+    /**
+     * Fork constructor; the hosts are shared and the changes of the given plan are copied.
+     */
+    private PlanningOverlay(PlanningOverlay plan) {
+        hosts = plan.hosts;
+        hostsById = plan.hostsById;
+        vmsOriginalHost = plan.vmsOriginalHost;
+        vmsHost = new HashMap<>(plan.vmsHost);
+        hostsUsedCpuDelta = new HashMap<>(plan.hostsUsedCpuDelta);
+        hostsUsedMemoryDelta = new HashMap<>(plan.hostsUsedMemoryDelta);
+    }
+
+    /**
+     * It creates a new plan with the same changes of this one; changes made in one of the plans are
+     * not seen by the other.
+     */
+    public PlanningOverlay fork() {
+        return new PlanningOverlay(this);
+    }
+
+    /**
+     * @return the (unmodifiable) {@link List} of hosts, in the order given when the plan was created.
+     */
+    public List<HostCapacity> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * @return the host with the given 'id', or null if the host is not in the plan.
+     */
+    public HostCapacity getHost(long hostId) {
+        return hostsById.get(hostId);
+    }
+
+    public long getHostUsedCpu(HostCapacity host) {
+        return host.getUsedCpu() + getDelta(hostsUsedCpuDelta, host);
+    }
+
+    public long getHostUsedMemoryInMegaBytes(HostCapacity host) {
+        return host.getUsedMemoryInMegaBytes() + getDelta(hostsUsedMemoryDelta, host);
+    }
+
+    /**
+     * @return the available CPU of the host ({@link HostCapacity#getCpuCapacity()} - used CPU).
+     */
+    public float getHostAvailableCpu(HostCapacity host) {
+        return host.getCpuCapacity() - getHostUsedCpu(host);
+    }
+
+    /**
+     * @return the available memory of the host; it already considers the memory over-provisioning.
+     */
+    public long getHostAvailableMemoryInMegaBytes(HostCapacity host) {
+        return host.getMemoryCapacityInMegaBytes() - getHostUsedMemoryInMegaBytes(host);
+    }
+
+    /**
+     * Checks if the host can allocate the VM, with the same rules of the administration algorithms:
+     * the host must have at least the number of CPUs of the VM, and enough CPU (number of CPUs *
+     * CPU speed) and memory available.
+     */
+    public boolean canAllocateVm(VmDemand vm, HostCapacity host) {
+        if (host.getCpus() < vm.getNumberOfCpus()) {
+            return false;
+        }
+        if (getHostAvailableCpu(host) < vm.getCpuDemand()) {
+            return false;
+        }
+        return getHostAvailableMemoryInMegaBytes(host) >= vm.getMemoryInMegaBytes();
+    }
+
+    /**
+     * @return the host that the VM is allocated in this plan.
+     */
+    public HostCapacity getVmHost(VmDemand vm) {
+        HostCapacity host = vmsHost.get(vm.getVmId());
+        if (host == null) {
+            return vmsOriginalHost.get(vm.getVmId());
+        }
+        return host;
+    }
+
+    /**
+     * @return the VMs allocated in the given host in this plan: its original VMs that were not moved
+     *         out plus the VMs moved into it.
+     */
+    public List<VmDemand> getHostVms(HostCapacity host) {
+        List<VmDemand> hostVms = new ArrayList<>(host.getVms().size());
+        for (VmDemand vm : host.getVms()) {
+            if (!vmsHost.containsKey(vm.getVmId())) {
+                hostVms.add(vm);
+            }
+        }
+        for (Entry<Long, HostCapacity> vmHost : vmsHost.entrySet()) {
+            if (vmHost.getValue() == host) {
+                hostVms.add(findVm(vmHost.getKey()));
+            }
+        }
+        return hostVms;
+    }
+
+    /**
+     * It moves the VM to the target host, recording the usage deltas of the host that the VM was
+     * allocated and of the target host.
+     */
+    public void migrateVm(VmDemand vm, HostCapacity targetHost) {
+        HostCapacity sourceHost = getVmHost(vm);
+        if (sourceHost == targetHost) {
+            return;
+        }
+        addDelta(hostsUsedCpuDelta, sourceHost, -vm.getCpuDemand());
+        addDelta(hostsUsedMemoryDelta, sourceHost, -vm.getMemoryInMegaBytes());
+        addDelta(hostsUsedCpuDelta, targetHost, vm.getCpuDemand());
+        addDelta(hostsUsedMemoryDelta, targetHost, vm.getMemoryInMegaBytes());
+        if (vmsOriginalHost.get(vm.getVmId()) == targetHost) {
+            vmsHost.remove(vm.getVmId());
+        } else {
+            vmsHost.put(vm.getVmId(), targetHost);
+        }
+    }
+
+    /**
+     * @return the VMs that are not at their original host, mapped ('id' of the VM) to the 'id' of
+     *         the host they are allocated in this plan.
+     */
+    public Map<Long, Long> getMigrations() {
+        Map<Long, Long> migrations = new HashMap<>();
+        for (Entry<Long, HostCapacity> vmHost : vmsHost.entrySet()) {
+            migrations.put(vmHost.getKey(), vmHost.getValue().getHostId());
+        }
+        return migrations;
+    }
+
+    /**
+     * @return the number of VMs that are not at their original host.
+     */
+    public int getNumberOfMigrations() {
+        return vmsHost.size();
+    }
+
+    private VmDemand findVm(long vmId) {
+        for (VmDemand vm : vmsOriginalHost.get(vmId).getVms()) {
+            if (vm.getVmId() == vmId) {
+                return vm;
+            }
+        }
+        return null;
+    }
+
+    private long getDelta(Map<Long, Long> deltas, HostCapacity host) {
+        Long delta = deltas.get(host.getHostId());
+        return delta == null ? 0 : delta;
+    }
+
+    /**
+     * It adds the given value to the delta of the host; deltas that become zero are removed, keeping
+     * only the hosts affected by the plan.
+     */
+    private void addDelta(Map<Long, Long> deltas, HostCapacity host, long value) {
+        long delta = getDelta(deltas, host) + value;
+        if (delta == 0) {
+            deltas.remove(host.getHostId());
+        } else {
+            deltas.put(host.getHostId(), delta);
+        }
+    }
+
+}
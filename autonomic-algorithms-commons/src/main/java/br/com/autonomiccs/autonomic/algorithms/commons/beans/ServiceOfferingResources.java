@@ -0,0 +1,58 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.beans;
+
+/**
+ * Contains the resources of a service offering (service offering id, cpus, cpu speed and memory)
+ * that are needed to create the {@link VmResources} of the VMs using it.
+ */
+public class ServiceOfferingResources {
+    private long serviceOfferingId;
+    private int cpus;
+    private long cpuSpeed;
+    private long memory;
+
+    public ServiceOfferingResources(long serviceOfferingId, int cpus, long cpuSpeed, long memory) {
+        this.serviceOfferingId = serviceOfferingId;
+        this.cpus = cpus;
+        this.cpuSpeed = cpuSpeed;
+        this.memory = memory;
+    }
+
+    public long getServiceOfferingId() {
+        return serviceOfferingId;
+    }
+
+    public int getNumberOfCpus() {
+        return cpus;
+    }
+
+    public long getCpuSpeed() {
+        return cpuSpeed;
+    }
+
+    public long getMemoryInMegaBytes() {
+        return memory;
+    }
+
+}
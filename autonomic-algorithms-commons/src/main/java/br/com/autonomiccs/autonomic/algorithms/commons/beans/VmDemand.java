@@ -0,0 +1,77 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.beans;
+
+/**
+ * Immutable resources demanded by a VM (number of CPUs, CPU speed and memory). Planning code can
+ * share instances of this class freely, since they are never changed.
+ */
+public final class VmDemand {
+    private final long vmId;
+    private final int cpus;
+    private final long cpuSpeed;
+    private final long memoryInMegaBytes;
+
+    public VmDemand(long vmId, int cpus, long cpuSpeed, long memoryInMegaBytes) {
+        this.vmId = vmId;
+        this.cpus = cpus;
+        this.cpuSpeed = cpuSpeed;
+        this.memoryInMegaBytes = memoryInMegaBytes;
+    }
+
+    /**
+     * It creates the demand of the given {@link VmResources}.
+     */
+    public VmDemand(VmResources vmResources) {
+        this(vmResources.getVmId(), vmResources.getNumberOfCpus(), vmResources.getCpuSpeed(), vmResources.getMemoryInMegaBytes());
+    }
+
+    public long getVmId() {
+        return vmId;
+    }
+
+    public int getNumberOfCpus() {
+        return cpus;
+    }
+
+    public long getCpuSpeed() {
+        return cpuSpeed;
+    }
+
+    /**
+     * @return VM CPU demand (number of CPUs * CPU speed).
+     */
+    public long getCpuDemand() {
+        return cpus * cpuSpeed;
+    }
+
+    public long getMemoryInMegaBytes() {
+        return memoryInMegaBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("VmDemand [vmId=%d, cpus=%d, cpuSpeed=%d, memoryInMegaBytes=%d]", vmId, cpus, cpuSpeed, memoryInMegaBytes);
+    }
+
+}
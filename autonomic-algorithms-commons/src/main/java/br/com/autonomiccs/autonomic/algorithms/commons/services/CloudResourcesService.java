@@ -29,6 +29,7 @@ import org.springframework.stereotype.Component;
 
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.CloudResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.ClusterResourcesUp;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
 
 /**
  * Provides operations over {@link CloudResources} objects.
@@ -57,4 +58,20 @@ public class CloudResourcesService {
         return new CloudResources(clustersResourcesUp, uMemory, mem, uCpu, cpuFreq, cpuN);
     }
 
+    /**
+     * It subtracts the resources of the given host (the same way they are summed by
+     * {@link ClusterResourcesService#createClusterResourcesUp(long, String, java.util.List)}) from the
+     * given {@link CloudResources}. It allows to keep the cloud resources up to date while hosts
+     * are powered off, without aggregating all clusters again; VMs migrations between hosts of the
+     * cloud do not change the cloud resources. The {@link ClusterResourcesUp} list of the cloud is
+     * not changed.
+     */
+    public void removeHostResources(CloudResources cloudResources, HostResources host) {
+        cloudResources.setMemoryInBytes(cloudResources.getMemoryInBytes() - (long) (host.getTotalMemoryInBytes() * host.getMemoryOverprovisioning()));
+        cloudResources.setUsedMemory(cloudResources.getUsedMemory() - host.getUsedMemoryInMegaBytes());
+        cloudResources.setUsedCpu(cloudResources.getUsedCpu() - host.getUsedCpu());
+        cloudResources.setCpuSpeed(cloudResources.getCpuSpeed() - (long) (host.getSpeed() * host.getCpuOverprovisioning()));
+        cloudResources.setCpus(cloudResources.getCpus() - host.getCpus());
+    }
+
 }
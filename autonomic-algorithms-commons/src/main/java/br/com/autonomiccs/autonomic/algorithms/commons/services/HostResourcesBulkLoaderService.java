@@ -0,0 +1,121 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.springframework.stereotype.Component;
+
+import com.cloud.host.Host.Type;
+import com.cloud.host.HostVO;
+import com.cloud.host.dao.HostDao;
+import com.cloud.org.Cluster;
+import com.cloud.vm.VMInstanceVO;
+import com.cloud.vm.dao.VMInstanceDao;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+/**
+ * This class loads the {@link HostResources} of all hosts of a cluster (or of a zone) at once.
+ * Instead of listing the VMs of each host and loading the over-provisioning factors for each host
+ * (as {@link HostResourcesService#createHostResources(HostVO)} does), it lists the hosts and the
+ * VMs of the cluster (zone) with one query each and loads the over-provisioning factors only once.
+ */
+@Component
+public class HostResourcesBulkLoaderService {
+
+    @Inject
+    private HostDao hostDao;
+
+    @Inject
+    private VMInstanceDao vmInstanceDao;
+
+    @Inject
+    private HostResourcesService hostResourcesService;
+
+    /**
+     * It returns the {@link HostResources} of the hosts that are 'Up' and 'Enabled' in the given
+     * cluster; the VMs of the cluster are listed with {@link VMInstanceDao#listByClusterId(long)}.
+     */
+    public List<HostResources> loadClusterHostsResources(Cluster cluster) {
+        List<HostVO> hosts = hostDao.listAllUpAndEnabledNonHAHosts(Type.Routing, cluster.getId(), cluster.getPodId(), cluster.getDataCenterId(), null);
+        if (hosts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<VMInstanceVO> vms = vmInstanceDao.listByClusterId(cluster.getId());
+        return createHostsResources(hosts, vms);
+    }
+
+    /**
+     * It returns the {@link HostResources} of the hosts that are 'Up' and 'Enabled' in the given
+     * zone, grouped by the 'id' of their clusters; the VMs of the zone are listed with
+     * {@link VMInstanceDao#listByZoneId(long)}.
+     */
+    public Map<Long, List<HostResources>> loadZoneHostsResourcesByCluster(long zoneId) {
+        Map<Long, List<HostResources>> hostsByCluster = new HashMap<>();
+        List<HostVO> hosts = hostDao.listAllUpAndEnabledNonHAHosts(Type.Routing, null, null, zoneId, null);
+        if (hosts.isEmpty()) {
+            return hostsByCluster;
+        }
+        List<VMInstanceVO> vms = vmInstanceDao.listByZoneId(zoneId);
+        List<HostResources> hostsResources = createHostsResources(hosts, vms);
+        for (int i = 0; i < hosts.size(); i++) {
+            Long clusterId = hosts.get(i).getClusterId();
+            if (!hostsByCluster.containsKey(clusterId)) {
+                hostsByCluster.put(clusterId, new ArrayList<HostResources>());
+            }
+            hostsByCluster.get(clusterId).add(hostsResources.get(i));
+        }
+        return hostsByCluster;
+    }
+
+    /**
+     * It creates the {@link HostResources} of the given hosts (in the same order) and allocates to
+     * them the given VMs; VMs that are not in any of the given hosts or that are not using the host
+     * resources ({@link HostResourcesService#isVmCurrentlyUsingHostResource(VMInstanceVO)}) are
+     * ignored. The {@link VmResources} are created with
+     * {@link HostResourcesService#createVmResources(VMInstanceVO)} and the {@link HostResources}
+     * with {@link HostResourcesService#createHostsResources(List, Map)}.
+     */
+    protected List<HostResources> createHostsResources(List<HostVO> hosts, List<VMInstanceVO> vms) {
+        Map<Long, List<VmResources>> hostsVmsResources = new HashMap<>();
+        for (HostVO hostVO : hosts) {
+            hostsVmsResources.put(hostVO.getId(), new ArrayList<VmResources>());
+        }
+        for (VMInstanceVO vm : vms) {
+            List<VmResources> hostVmsResources = hostsVmsResources.get(vm.getHostId());
+            if (hostVmsResources == null || !hostResourcesService.isVmCurrentlyUsingHostResource(vm)) {
+                continue;
+            }
+            hostVmsResources.add(hostResourcesService.createVmResources(vm));
+        }
+        return hostResourcesService.createHostsResources(hosts, hostsVmsResources);
+    }
+
+}
@@ -24,22 +24,22 @@
 package br.com.autonomiccs.autonomic.algorithms.commons.services;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 
-import org.apache.cloudstack.framework.config.dao.ConfigurationDao;
-import org.apache.cloudstack.framework.config.impl.ConfigurationVO;
 import org.springframework.stereotype.Component;
 
 import com.cloud.host.HostVO;
-import com.cloud.service.ServiceOfferingVO;
-import com.cloud.service.dao.ServiceOfferingDao;
 import com.cloud.vm.VMInstanceVO;
 import com.cloud.vm.VirtualMachine;
 import com.cloud.vm.dao.VMInstanceDao;
 
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.OverprovisioningFactors;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ServiceOfferingResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 
 /**
@@ -48,14 +48,11 @@ import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 @Component
 public class HostResourcesService {
 
-    private final static String CPU_OVERPROVISIONING_CONFIGURARTION_NAME = "cpu.overprovisioning.factor";
-    private final static String MEMORY_OVERPROVISIONING_CONFIGURARTION_NAME = "mem.overprovisioning.factor";
-
     @Inject
-    private ServiceOfferingDao serviceOfferingDao;
+    private ServiceOfferingResourcesCache serviceOfferingResourcesCache;
 
     @Inject
-    private ConfigurationDao configurationDao;
+    private OverprovisioningFactorsCache overprovisioningFactorsCache;
 
     @Inject
     private VMInstanceDao vmInstanceDao;
@@ -84,8 +81,8 @@ public class HostResourcesService {
      * method. It also sets VMs resources using
      * {@link HostResources#setVmsResources(List)} method, calculates the
      * allocated resources (using {@link #createHostResources(HostVO)} method)
-     * and loads the over-provisioning factors (using
-     * {@link #loadHostOverprovisioningFactors(HostResources)} method).
+     * and loads the over-provisioning factors of the host cluster (using
+     * {@link #loadHostOverprovisioningFactors(HostResources, Long)} method).
      *
      * @param hostVO
      * @param consolidationAlgorithm
@@ -96,12 +93,44 @@ public class HostResourcesService {
         List<VmResources> vms = listVmsFromHost(host);
         host.setVmsResources(vms);
         calculateHostResourcesAllocated(host);
-        loadHostOverprovisioningFactors(host);
+        loadHostOverprovisioningFactors(host, hostVO.getClusterId());
         return host;
     }
 
     /**
-     * @return lists system and user VMs (running, migrating and starting).
+     * It creates the {@link HostResources} of the given hosts (in the same order), allocating to
+     * each host the VMs that are mapped to its 'id' in the given map (hosts that are not in the map
+     * have no VMs). The over-provisioning factors are loaded once for each cluster of the given
+     * hosts.
+     */
+    public List<HostResources> createHostsResources(List<HostVO> hostsVO, Map<Long, List<VmResources>> hostsVmsResources) {
+        List<HostResources> hosts = new ArrayList<>();
+        if (hostsVO.isEmpty()) {
+            return hosts;
+        }
+        Map<Long, OverprovisioningFactors> clustersOverprovisioningFactors = new HashMap<>();
+        for (HostVO hostVO : hostsVO) {
+            HostResources host = createAndConfigureHostResources(hostVO);
+            List<VmResources> vms = hostsVmsResources.get(hostVO.getId());
+            if (vms != null) {
+                host.setVmsResources(vms);
+            }
+            calculateHostResourcesAllocated(host);
+            OverprovisioningFactors overprovisioningFactors = clustersOverprovisioningFactors.get(hostVO.getClusterId());
+            if (overprovisioningFactors == null) {
+                overprovisioningFactors = getOverprovisioningFactors(hostVO.getClusterId());
+                clustersOverprovisioningFactors.put(hostVO.getClusterId(), overprovisioningFactors);
+            }
+            host.setCpuOverprovisioning(overprovisioningFactors.getCpuOverprovisioning());
+            host.setMemoryOverprovisioning(overprovisioningFactors.getMemoryOverprovisioning());
+            hosts.add(host);
+        }
+        return hosts;
+    }
+
+    /**
+     * @return lists system and user VMs (running, migrating and starting). The resources of the VMs
+     *         service offerings are retrieved with {@link #createVmResources(VMInstanceVO)}.
      */
     protected List<VmResources> listVmsFromHost(HostResources host) {
         List<VMInstanceVO> vmInstanceList = vmInstanceDao.listByHostId(host.getHostId());
@@ -111,12 +140,20 @@ public class HostResourcesService {
             if (!isVmCurrentlyUsingHostResource(vmInstance)) {
                 continue;
             }
-            ServiceOfferingVO serviceOffering = serviceOfferingDao.findById(vmInstance.getServiceOfferingId());
-            vmResourcesList.add(new VmResources(vmInstance.getId(), serviceOffering.getCpu(), serviceOffering.getSpeed(), serviceOffering.getRamSize()));
+            vmResourcesList.add(createVmResources(vmInstance));
         }
         return vmResourcesList;
     }
 
+    /**
+     * It creates the {@link VmResources} of the given VM with the resources of its service offering,
+     * retrieved from the {@link ServiceOfferingResourcesCache}.
+     */
+    protected VmResources createVmResources(VMInstanceVO vmInstance) {
+        ServiceOfferingResources serviceOffering = serviceOfferingResourcesCache.getServiceOfferingResources(vmInstance.getServiceOfferingId());
+        return new VmResources(vmInstance.getId(), serviceOffering.getNumberOfCpus(), serviceOffering.getCpuSpeed(), serviceOffering.getMemoryInMegaBytes());
+    }
+
     /**
      * Checks if the VM is currently using the host resource. If the VM is in
      * {@link com.cloud.vm.VirtualMachine.State#Running}, {@link com.cloud.vm.VirtualMachine.State#Migrating} or {@link com.cloud.vm.VirtualMachine.State#Starting},
@@ -153,21 +190,24 @@ public class HostResourcesService {
     }
 
     /**
-     * Loads the over-provisioning factos of a given {@link HostResources}. To
-     * load a overprovision factor it uses the
-     * {@link ConfigurationDao#findByName(String)} using the
-     * "CPU_OVERPROVISIONING_CONFIGURARTION_NAME" to get the cpu
-     * over-provisioning and "MEMORY_OVERPROVISIONING_CONFIGURARTION_NAME" get
-     * the memory over-provisioning.
+     * Loads the over-provisioning factors of a given {@link HostResources}, using the factors of
+     * the given cluster ({@link #getOverprovisioningFactors(Long)}).
      *
      * @param host
+     * @param clusterId
      */
-    protected void loadHostOverprovisioningFactors(HostResources host) {
-        ConfigurationVO configVO = configurationDao.findByName(CPU_OVERPROVISIONING_CONFIGURARTION_NAME);
-        host.setCpuOverprovisioning(Float.parseFloat(configVO.getValue()));
+    protected void loadHostOverprovisioningFactors(HostResources host, Long clusterId) {
+        OverprovisioningFactors overprovisioningFactors = getOverprovisioningFactors(clusterId);
+        host.setCpuOverprovisioning(overprovisioningFactors.getCpuOverprovisioning());
+        host.setMemoryOverprovisioning(overprovisioningFactors.getMemoryOverprovisioning());
+    }
 
-        configVO = configurationDao.findByName(MEMORY_OVERPROVISIONING_CONFIGURARTION_NAME);
-        host.setMemoryOverprovisioning(Float.parseFloat(configVO.getValue()));
+    /**
+     * @return the over-provisioning factors of the given cluster, retrieved from the
+     *         {@link OverprovisioningFactorsCache} (the cluster values override the global ones).
+     */
+    protected OverprovisioningFactors getOverprovisioningFactors(Long clusterId) {
+        return overprovisioningFactorsCache.getOverprovisioningFactors(clusterId);
     }
 
 }
@@ -0,0 +1,180 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.services;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.apache.cloudstack.framework.config.dao.ConfigurationDao;
+import org.apache.cloudstack.framework.config.impl.ConfigurationVO;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import com.cloud.dc.ClusterDetailsVO;
+import com.cloud.dc.dao.ClusterDetailsDao;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.OverprovisioningFactors;
+
+/**
+ * This class caches the {@link OverprovisioningFactors} of each cluster. The factors of a cluster
+ * are the global "cpu.overprovisioning.factor" and "mem.overprovisioning.factor" configurations,
+ * overridden by the cluster details ("cpuOvercommitRatio" and "memoryOvercommitRatio") when the
+ * cluster has them. Each entry expires after a time to live; entries can also be invalidated when
+ * the configurations or the cluster details are changed.
+ */
+@Component
+public class OverprovisioningFactorsCache {
+
+    private final static String CPU_OVERPROVISIONING_CONFIGURARTION_NAME = "cpu.overprovisioning.factor";
+    private final static String MEMORY_OVERPROVISIONING_CONFIGURARTION_NAME = "mem.overprovisioning.factor";
+    private final static String CPU_OVERPROVISIONING_CLUSTER_DETAIL_NAME = "cpuOvercommitRatio";
+    private final static String MEMORY_OVERPROVISIONING_CLUSTER_DETAIL_NAME = "memoryOvercommitRatio";
+
+    protected final static long DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS = 60 * 1000;
+
+    @Inject
+    private ConfigurationDao configurationDao;
+
+    @Inject
+    private ClusterDetailsDao clusterDetailsDao;
+
+    private long timeToLiveInMilliseconds = DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS;
+
+    private CachedOverprovisioningFactors globalOverprovisioningFactors;
+    private Map<Long, CachedOverprovisioningFactors> clustersOverprovisioningFactors = new HashMap<>();
+
+    /**
+     * It returns the {@link OverprovisioningFactors} of the cluster with the given 'id'; if the
+     * 'id' is null, it returns the global factors (
+     * {@link #getGlobalOverprovisioningFactors()}). If the cluster factors are not cached (or
+     * their entry has expired), they are loaded and cached.
+     */
+    public OverprovisioningFactors getOverprovisioningFactors(Long clusterId) {
+        if (clusterId == null) {
+            return getGlobalOverprovisioningFactors();
+        }
+        synchronized (clustersOverprovisioningFactors) {
+            CachedOverprovisioningFactors cachedFactors = clustersOverprovisioningFactors.get(clusterId);
+            if (cachedFactors != null && !isExpired(cachedFactors)) {
+                return cachedFactors.overprovisioningFactors;
+            }
+        }
+        OverprovisioningFactors globalFactors = getGlobalOverprovisioningFactors();
+        float cpuOverprovisioning = getClusterOverprovisioningFactor(clusterId, CPU_OVERPROVISIONING_CLUSTER_DETAIL_NAME, globalFactors.getCpuOverprovisioning());
+        float memoryOverprovisioning = getClusterOverprovisioningFactor(clusterId, MEMORY_OVERPROVISIONING_CLUSTER_DETAIL_NAME, globalFactors.getMemoryOverprovisioning());
+        OverprovisioningFactors clusterFactors = new OverprovisioningFactors(cpuOverprovisioning, memoryOverprovisioning);
+        synchronized (clustersOverprovisioningFactors) {
+            clustersOverprovisioningFactors.put(clusterId, new CachedOverprovisioningFactors(clusterFactors, getCurrentTimeInMilliseconds()));
+        }
+        return clusterFactors;
+    }
+
+    /**
+     * It returns the global {@link OverprovisioningFactors} (loaded with
+     * {@link ConfigurationDao#findByName(String)}); they are cached as the clusters factors.
+     */
+    public synchronized OverprovisioningFactors getGlobalOverprovisioningFactors() {
+        if (globalOverprovisioningFactors == null || isExpired(globalOverprovisioningFactors)) {
+            float cpuOverprovisioning = getConfigurationFactor(CPU_OVERPROVISIONING_CONFIGURARTION_NAME);
+            float memoryOverprovisioning = getConfigurationFactor(MEMORY_OVERPROVISIONING_CONFIGURARTION_NAME);
+            globalOverprovisioningFactors = new CachedOverprovisioningFactors(new OverprovisioningFactors(cpuOverprovisioning, memoryOverprovisioning),
+                    getCurrentTimeInMilliseconds());
+        }
+        return globalOverprovisioningFactors.overprovisioningFactors;
+    }
+
+    /**
+     * @return the value of the given configuration as a float.
+     */
+    protected float getConfigurationFactor(String configurationName) {
+        ConfigurationVO configVO = configurationDao.findByName(configurationName);
+        return Float.parseFloat(configVO.getValue());
+    }
+
+    /**
+     * It returns the value of the given cluster detail (loaded with
+     * {@link ClusterDetailsDao#findDetail(long, String)}) as a float; if the cluster does not have
+     * the detail, it returns the given default factor.
+     */
+    protected float getClusterOverprovisioningFactor(long clusterId, String detailName, float defaultFactor) {
+        ClusterDetailsVO clusterDetail = clusterDetailsDao.findDetail(clusterId, detailName);
+        if (clusterDetail == null || StringUtils.isBlank(clusterDetail.getValue())) {
+            return defaultFactor;
+        }
+        return Float.parseFloat(clusterDetail.getValue());
+    }
+
+    /**
+     * It removes the factors of the given cluster from the cache; it should be called when the
+     * over-provisioning details of the cluster are changed.
+     */
+    public void invalidate(long clusterId) {
+        synchronized (clustersOverprovisioningFactors) {
+            clustersOverprovisioningFactors.remove(clusterId);
+        }
+    }
+
+    /**
+     * It removes the global and all clusters factors from the cache; it should be called when the
+     * global over-provisioning configurations are changed.
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            globalOverprovisioningFactors = null;
+        }
+        synchronized (clustersOverprovisioningFactors) {
+            clustersOverprovisioningFactors.clear();
+        }
+    }
+
+    public void setTimeToLiveInMilliseconds(long timeToLiveInMilliseconds) {
+        this.timeToLiveInMilliseconds = timeToLiveInMilliseconds;
+    }
+
+    private boolean isExpired(CachedOverprovisioningFactors cachedFactors) {
+        return getCurrentTimeInMilliseconds() - cachedFactors.cachedAtInMilliseconds >= timeToLiveInMilliseconds;
+    }
+
+    /**
+     * @return the current time in milliseconds ({@link System#currentTimeMillis()}).
+     */
+    protected long getCurrentTimeInMilliseconds() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Holds cached {@link OverprovisioningFactors} and the time they were cached at.
+     */
+    private static class CachedOverprovisioningFactors {
+        private OverprovisioningFactors overprovisioningFactors;
+        private long cachedAtInMilliseconds;
+
+        private CachedOverprovisioningFactors(OverprovisioningFactors overprovisioningFactors, long cachedAtInMilliseconds) {
+            this.overprovisioningFactors = overprovisioningFactors;
+            this.cachedAtInMilliseconds = cachedAtInMilliseconds;
+        }
+    }
+
+}
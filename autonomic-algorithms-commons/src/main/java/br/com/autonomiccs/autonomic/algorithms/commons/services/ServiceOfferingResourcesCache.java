@@ -0,0 +1,200 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import org.springframework.stereotype.Component;
+
+import com.cloud.service.ServiceOfferingVO;
+import com.cloud.service.dao.ServiceOfferingDao;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ServiceOfferingResources;
+
+/**
+ * This class caches the {@link ServiceOfferingResources} of the service offerings, avoiding to
+ * load a service offering from the database for each VM of a host. The cache is bounded (the
+ * least recently used service offerings are evicted) and each entry expires after a time to live;
+ * entries can also be invalidated when a service offering is changed or removed.
+ */
+@Component
+public class ServiceOfferingResourcesCache {
+
+    protected final static int DEFAULT_MAXIMUM_SIZE = 512;
+    protected final static long DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS = 10 * 60 * 1000;
+
+    @Inject
+    private ServiceOfferingDao serviceOfferingDao;
+
+    private long timeToLiveInMilliseconds = DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS;
+
+    private AtomicLong hitCount = new AtomicLong();
+    private AtomicLong missCount = new AtomicLong();
+
+    private LeastRecentlyUsedCache cache = new LeastRecentlyUsedCache(DEFAULT_MAXIMUM_SIZE);
+
+    /**
+     * It returns the {@link ServiceOfferingResources} of the service offering with the given 'id'.
+     * If it is not cached (or its entry has expired), the service offering is loaded with
+     * {@link ServiceOfferingDao#findById(Object)} and cached; if there is no service offering with
+     * the given 'id', it returns null.
+     */
+    public ServiceOfferingResources getServiceOfferingResources(long serviceOfferingId) {
+        ServiceOfferingResources serviceOfferingResources = getCachedServiceOfferingResources(serviceOfferingId);
+        if (serviceOfferingResources != null) {
+            hitCount.incrementAndGet();
+            return serviceOfferingResources;
+        }
+        missCount.incrementAndGet();
+        ServiceOfferingVO serviceOffering = serviceOfferingDao.findById(serviceOfferingId);
+        if (serviceOffering == null) {
+            return null;
+        }
+        serviceOfferingResources = new ServiceOfferingResources(serviceOfferingId, serviceOffering.getCpu(), serviceOffering.getSpeed(), serviceOffering.getRamSize());
+        synchronized (cache) {
+            cache.put(serviceOfferingId, new CachedServiceOfferingResources(serviceOfferingResources, getCurrentTimeInMilliseconds()));
+        }
+        return serviceOfferingResources;
+    }
+
+    /**
+     * It returns the cached {@link ServiceOfferingResources} of the given service offering; if it is
+     * not cached or if its entry has expired (the expired entry is removed), it returns null.
+     */
+    protected ServiceOfferingResources getCachedServiceOfferingResources(long serviceOfferingId) {
+        synchronized (cache) {
+            CachedServiceOfferingResources cachedServiceOfferingResources = cache.get(serviceOfferingId);
+            if (cachedServiceOfferingResources == null) {
+                return null;
+            }
+            if (getCurrentTimeInMilliseconds() - cachedServiceOfferingResources.cachedAtInMilliseconds >= timeToLiveInMilliseconds) {
+                cache.remove(serviceOfferingId);
+                return null;
+            }
+            return cachedServiceOfferingResources.serviceOfferingResources;
+        }
+    }
+
+    /**
+     * It removes the given service offering from the cache; it should be called when a service
+     * offering is updated or removed.
+     */
+    public void invalidate(long serviceOfferingId) {
+        synchronized (cache) {
+            cache.remove(serviceOfferingId);
+        }
+    }
+
+    /**
+     * It removes all service offerings from the cache.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of service offerings in the cache (including expired entries not removed yet).
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the percentage (from 0 to 1) of requests answered by the cache; it returns 0 if
+     *         there was no request.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long requests = hits + missCount.get();
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) hits / requests;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        synchronized (cache) {
+            cache.maximumSize = maximumSize;
+        }
+    }
+
+    public void setTimeToLiveInMilliseconds(long timeToLiveInMilliseconds) {
+        this.timeToLiveInMilliseconds = timeToLiveInMilliseconds;
+    }
+
+    /**
+     * @return the current time in milliseconds ({@link System#currentTimeMillis()}).
+     */
+    protected long getCurrentTimeInMilliseconds() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * A {@link LinkedHashMap} in access order that removes its least recently used entry when its
+     * size is bigger than the maximum size.
+     */
+    @SuppressWarnings("serial")
+    private static class LeastRecentlyUsedCache extends LinkedHashMap<Long, CachedServiceOfferingResources> {
+        private int maximumSize;
+
+        private LeastRecentlyUsedCache(int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedServiceOfferingResources> eldest) {
+            return size() > maximumSize;
+        }
+    }
+
+    /**
+     * Holds a cached {@link ServiceOfferingResources} and the time it was cached at.
+     */
+    private static class CachedServiceOfferingResources {
+        private ServiceOfferingResources serviceOfferingResources;
+        private long cachedAtInMilliseconds;
+
+        private CachedServiceOfferingResources(ServiceOfferingResources serviceOfferingResources, long cachedAtInMilliseconds) {
+            this.serviceOfferingResources = serviceOfferingResources;
+            this.cachedAtInMilliseconds = cachedAtInMilliseconds;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.beans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClusterSnapshotTest {
+
+    private final static long MEGA_BYTES_TO_BYTES = 1000000l;
+
+    private ClusterSnapshot clusterSnapshot;
+
+    @Before
+    public void setup() {
+        List<HostResources> hosts = new ArrayList<>();
+        hosts.add(createHost(10l, 4, 3));
+        hosts.add(createHost(20l, 4, 1));
+        hosts.add(createHost(30l, 4, 0));
+        clusterSnapshot = new ClusterSnapshot(hosts);
+    }
+
+    @Test
+    public void clusterSnapshotTest() {
+        Assert.assertEquals(3, clusterSnapshot.getNumberOfHosts());
+        Assert.assertEquals(4, clusterSnapshot.getNumberOfVms());
+        Assert.assertEquals(1, clusterSnapshot.getHostIndex(20l));
+        Assert.assertEquals(-1, clusterSnapshot.getHostIndex(40l));
+        Assert.assertEquals(20l, clusterSnapshot.getHostId(1));
+        Assert.assertEquals(8192l, clusterSnapshot.getHostTotalMemoryInMegaBytes(0));
+        Assert.assertEquals(3000l, clusterSnapshot.getHostUsedCpu(0));
+        Assert.assertEquals(1536l, clusterSnapshot.getHostUsedMemoryInMegaBytes(0));
+        Assert.assertEquals(1, clusterSnapshot.getVmHost(3));
+        Assert.assertTrue(Arrays.equals(new int[] {0, 1, 2}, clusterSnapshot.getHostVms(0)));
+        Assert.assertEquals(0, clusterSnapshot.getHostVms(2).length);
+    }
+
+    @Test
+    public void getHostAvailableResourcesTest() {
+        Assert.assertEquals(1000f, clusterSnapshot.getHostAvailableCpu(0), 0.0001f);
+        Assert.assertEquals(6656l, clusterSnapshot.getHostAvailableMemoryInMegaBytes(0));
+        Assert.assertEquals(4000f, clusterSnapshot.getHostAvailableCpu(2), 0.0001f);
+    }
+
+    @Test
+    public void canAllocateVmTest() {
+        Assert.assertTrue(clusterSnapshot.canAllocateVm(0, 2));
+        Assert.assertTrue(clusterSnapshot.canAllocateVm(0, 0));
+    }
+
+    @Test
+    public void canAllocateVmTestNotEnoughCpu() {
+        clusterSnapshot.migrateVm(3, 0);
+        Assert.assertFalse(clusterSnapshot.canAllocateVm(1, 0));
+    }
+
+    @Test
+    public void migrateVmTest() {
+        clusterSnapshot.migrateVm(0, 2);
+
+        Assert.assertEquals(2, clusterSnapshot.getVmHost(0));
+        Assert.assertEquals(0, clusterSnapshot.getVmOriginalHost(0));
+        Assert.assertEquals(2000l, clusterSnapshot.getHostUsedCpu(0));
+        Assert.assertEquals(1024l, clusterSnapshot.getHostUsedMemoryInMegaBytes(0));
+        Assert.assertEquals(1000l, clusterSnapshot.getHostUsedCpu(2));
+        Assert.assertEquals(512l, clusterSnapshot.getHostUsedMemoryInMegaBytes(2));
+        Assert.assertEquals(Arrays.asList(0), clusterSnapshot.getMigratedVms());
+    }
+
+    @Test
+    public void migrateVmTestSameHost() {
+        clusterSnapshot.migrateVm(0, 0);
+
+        Assert.assertEquals(3000l, clusterSnapshot.getHostUsedCpu(0));
+        Assert.assertTrue(clusterSnapshot.getMigratedVms().isEmpty());
+    }
+
+    @Test
+    public void forkTest() {
+        ClusterSnapshot fork = clusterSnapshot.fork();
+        fork.migrateVm(0, 2);
+
+        Assert.assertEquals(2, fork.getVmHost(0));
+        Assert.assertEquals(1000l, fork.getHostUsedCpu(2));
+        Assert.assertEquals(0, clusterSnapshot.getVmHost(0));
+        Assert.assertEquals(0l, clusterSnapshot.getHostUsedCpu(2));
+        Assert.assertTrue(clusterSnapshot.getMigratedVms().isEmpty());
+    }
+
+    @Test
+    public void forkTestChangingOriginalSnapshot() {
+        ClusterSnapshot fork = clusterSnapshot.fork();
+        clusterSnapshot.migrateVm(3, 2);
+        ClusterSnapshot forkOfFork = fork.fork();
+        forkOfFork.migrateVm(0, 1);
+
+        Assert.assertEquals(2, clusterSnapshot.getVmHost(3));
+        Assert.assertEquals(1, fork.getVmHost(3));
+        Assert.assertEquals(0, fork.getVmHost(0));
+        Assert.assertEquals(1, forkOfFork.getVmHost(0));
+        Assert.assertEquals(1, forkOfFork.getVmHost(3));
+        Assert.assertEquals(2000l, forkOfFork.getHostUsedCpu(1));
+        Assert.assertEquals(1000l, fork.getHostUsedCpu(1));
+        Assert.assertEquals(0l, clusterSnapshot.getHostUsedCpu(1));
+    }
+
+    private HostResources createHost(long hostId, int cpus, int numberOfVms) {
+        HostResources host = new HostResources();
+        host.setHostId(hostId);
+        host.setCpus(cpus);
+        host.setSpeed(1000l);
+        host.setCpuOverprovisioning(1f);
+        host.setMemoryOverprovisioning(1f);
+        host.setTotalMemoryInBytes(8192l * MEGA_BYTES_TO_BYTES);
+        List<VmResources> vms = new ArrayList<>();
+        for (int i = 0; i < numberOfVms; i++) {
+            vms.add(new VmResources(hostId + i, 1, 1000l, 512l));
+        }
+        host.setVmsResources(vms);
+        host.setUsedCpu(numberOfVms * 1000l);
+        host.setUsedMemoryInMegaBytes(numberOfVms * 512l);
+        return host;
+    }
+}
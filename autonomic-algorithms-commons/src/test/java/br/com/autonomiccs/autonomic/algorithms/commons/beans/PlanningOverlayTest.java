@@ -0,0 +1,191 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.beans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlanningOverlayTest {
+
+    private final static long MEGA_BYTES_TO_BYTES = 1000000l;
+
+    private List<HostCapacity> hosts;
+    private PlanningOverlay plan;
+
+    @Before
+    public void setup() {
+        hosts = new ArrayList<>();
+        hosts.add(new HostCapacity(createHost(10l, 4, 3)));
+        hosts.add(new HostCapacity(createHost(20l, 4, 1)));
+        hosts.add(new HostCapacity(createHost(30l, 4, 0)));
+        plan = new PlanningOverlay(hosts);
+    }
+
+    @Test
+    public void hostCapacityTest() {
+        HostCapacity host = hosts.get(0);
+        Assert.assertEquals(10l, host.getHostId());
+        Assert.assertEquals(8192l, host.getTotalMemoryInMegaBytes());
+        Assert.assertEquals(4000f, host.getCpuCapacity(), 0.0001f);
+        Assert.assertEquals(3000l, host.getUsedCpu());
+        Assert.assertEquals(1536l, host.getUsedMemoryInMegaBytes());
+        Assert.assertEquals(3, host.getVms().size());
+        Assert.assertEquals(1000l, host.getVms().get(0).getCpuDemand());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void hostCapacityTestVmsUnmodifiable() {
+        hosts.get(0).getVms().clear();
+    }
+
+    @Test
+    public void planningOverlayTest() {
+        Assert.assertEquals(hosts, plan.getHosts());
+        Assert.assertSame(hosts.get(1), plan.getHost(20l));
+        Assert.assertNull(plan.getHost(40l));
+        Assert.assertEquals(1000f, plan.getHostAvailableCpu(hosts.get(0)), 0.0001f);
+        Assert.assertEquals(6656l, plan.getHostAvailableMemoryInMegaBytes(hosts.get(0)));
+        Assert.assertSame(hosts.get(1), plan.getVmHost(hosts.get(1).getVms().get(0)));
+        Assert.assertEquals(0, plan.getNumberOfMigrations());
+    }
+
+    @Test
+    public void migrateVmTest() {
+        VmDemand vm = hosts.get(0).getVms().get(0);
+
+        plan.migrateVm(vm, hosts.get(2));
+
+        Assert.assertSame(hosts.get(2), plan.getVmHost(vm));
+        Assert.assertEquals(2000l, plan.getHostUsedCpu(hosts.get(0)));
+        Assert.assertEquals(1024l, plan.getHostUsedMemoryInMegaBytes(hosts.get(0)));
+        Assert.assertEquals(1000l, plan.getHostUsedCpu(hosts.get(2)));
+        Assert.assertEquals(512l, plan.getHostUsedMemoryInMegaBytes(hosts.get(2)));
+        Assert.assertEquals(2, plan.getHostVms(hosts.get(0)).size());
+        Assert.assertEquals(Arrays.asList(vm), plan.getHostVms(hosts.get(2)));
+        Assert.assertEquals(3000l, hosts.get(0).getUsedCpu());
+        Assert.assertEquals(3, hosts.get(0).getVms().size());
+    }
+
+    @Test
+    public void migrateVmTestBackToOriginalHost() {
+        VmDemand vm = hosts.get(0).getVms().get(0);
+
+        plan.migrateVm(vm, hosts.get(2));
+        plan.migrateVm(vm, hosts.get(1));
+        plan.migrateVm(vm, hosts.get(0));
+
+        Assert.assertEquals(0, plan.getNumberOfMigrations());
+        Assert.assertEquals(3000l, plan.getHostUsedCpu(hosts.get(0)));
+        Assert.assertEquals(1000l, plan.getHostUsedCpu(hosts.get(1)));
+        Assert.assertEquals(0l, plan.getHostUsedCpu(hosts.get(2)));
+    }
+
+    @Test
+    public void migrateVmTestSameHost() {
+        VmDemand vm = hosts.get(0).getVms().get(0);
+
+        plan.migrateVm(vm, hosts.get(0));
+
+        Assert.assertEquals(0, plan.getNumberOfMigrations());
+        Assert.assertEquals(3000l, plan.getHostUsedCpu(hosts.get(0)));
+    }
+
+    @Test
+    public void canAllocateVmTest() {
+        Assert.assertTrue(plan.canAllocateVm(hosts.get(0).getVms().get(0), hosts.get(2)));
+        Assert.assertTrue(plan.canAllocateVm(hosts.get(1).getVms().get(0), hosts.get(0)));
+    }
+
+    @Test
+    public void canAllocateVmTestNotEnoughCpu() {
+        plan.migrateVm(hosts.get(1).getVms().get(0), hosts.get(0));
+
+        Assert.assertFalse(plan.canAllocateVm(hosts.get(0).getVms().get(0), hosts.get(0)));
+        Assert.assertFalse(plan.canAllocateVm(new VmDemand(1l, 1, 1l, 1l), hosts.get(0)));
+    }
+
+    @Test
+    public void canAllocateVmTestNotEnoughCpus() {
+        Assert.assertFalse(plan.canAllocateVm(new VmDemand(1l, 8, 1l, 1l), hosts.get(2)));
+    }
+
+    @Test
+    public void canAllocateVmTestNotEnoughMemory() {
+        Assert.assertFalse(plan.canAllocateVm(new VmDemand(1l, 1, 1l, 8193l), hosts.get(2)));
+    }
+
+    @Test
+    public void forkTest() {
+        VmDemand firstVm = hosts.get(0).getVms().get(0);
+        VmDemand secondVm = hosts.get(0).getVms().get(1);
+        plan.migrateVm(firstVm, hosts.get(2));
+
+        PlanningOverlay fork = plan.fork();
+        fork.migrateVm(secondVm, hosts.get(2));
+        plan.migrateVm(firstVm, hosts.get(1));
+
+        Assert.assertEquals(1, plan.getNumberOfMigrations());
+        Assert.assertEquals(0l, plan.getHostUsedCpu(hosts.get(2)));
+        Assert.assertEquals(2000l, plan.getHostUsedCpu(hosts.get(1)));
+        Assert.assertEquals(2, fork.getNumberOfMigrations());
+        Assert.assertEquals(2000l, fork.getHostUsedCpu(hosts.get(2)));
+        Assert.assertEquals(1000l, fork.getHostUsedCpu(hosts.get(0)));
+        Assert.assertSame(plan.getHosts(), fork.getHosts());
+    }
+
+    @Test
+    public void getMigrationsTest() {
+        plan.migrateVm(hosts.get(0).getVms().get(0), hosts.get(2));
+        plan.migrateVm(hosts.get(1).getVms().get(0), hosts.get(2));
+
+        Map<Long, Long> migrations = plan.getMigrations();
+
+        Assert.assertEquals(2, migrations.size());
+        Assert.assertEquals(Long.valueOf(30l), migrations.get(10l));
+        Assert.assertEquals(Long.valueOf(30l), migrations.get(20l));
+    }
+
+    private HostResources createHost(long hostId, int cpus, int numberOfVms) {
+        HostResources host = new HostResources();
+        host.setHostId(hostId);
+        host.setCpus(cpus);
+        host.setSpeed(1000l);
+        host.setCpuOverprovisioning(1f);
+        host.setMemoryOverprovisioning(1f);
+        host.setTotalMemoryInBytes(8192l * MEGA_BYTES_TO_BYTES);
+        List<VmResources> vms = new ArrayList<>();
+        for (int i = 0; i < numberOfVms; i++) {
+            vms.add(new VmResources(hostId + i, 1, 1000l, 512l));
+        }
+        host.setVmsResources(vms);
+        host.setUsedCpu(numberOfVms * 1000l);
+        host.setUsedMemoryInMegaBytes(numberOfVms * 512l);
+        return host;
+    }
+}
@@ -49,6 +49,22 @@ public class CloudResourcesServiceTest extends ClusterResourcesServiceTest {
         executeCreateCloudResourcesTest(clustersResourcesUp);
     }
 
+    @Test
+    public void removeHostResourcesTest() {
+        List<ClusterResourcesUp> clustersResourcesUp = createAllClustersResources(4);
+        CloudResources cloud = cloudResourcesService.createCloudResources(clustersResourcesUp);
+        HostResources host = clustersResourcesUp.get(0).getHostsResources().get(0);
+
+        cloudResourcesService.removeHostResources(cloud, host);
+
+        Assert.assertEquals(4, cloud.getClusters().size());
+        Assert.assertEquals(4 * 3, cloud.getCpus());
+        Assert.assertEquals(512 * 3, cloud.getUsedMemory());
+        Assert.assertEquals(1000l * 3, cloud.getUsedCpu());
+        Assert.assertEquals(2000l * 3, cloud.getCpuSpeed());
+        Assert.assertEquals(8192l * MEGA_BYTES_TO_BYTES * 3, cloud.getMemoryInBytes());
+    }
+
     private void executeCreateCloudResourcesTest(List<ClusterResourcesUp> clustersResourcesUp) {
         int amountCLusters = clustersResourcesUp.size();
         CloudResources cloud = cloudResourcesService.createCloudResources(clustersResourcesUp);
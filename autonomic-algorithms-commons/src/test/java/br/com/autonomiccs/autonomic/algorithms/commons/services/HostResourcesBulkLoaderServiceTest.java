@@ -0,0 +1,168 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import com.cloud.host.Host.Type;
+import com.cloud.host.HostVO;
+import com.cloud.host.dao.HostDao;
+import com.cloud.org.Cluster;
+import com.cloud.vm.VMInstanceVO;
+import com.cloud.vm.VirtualMachine;
+import com.cloud.vm.dao.VMInstanceDao;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.OverprovisioningFactors;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HostResourcesBulkLoaderServiceTest {
+
+    @Spy
+    @InjectMocks
+    private HostResourcesBulkLoaderService spy;
+    @Mock
+    private HostDao hostDao;
+    @Mock
+    private VMInstanceDao vmInstanceDao;
+    @Spy
+    private HostResourcesService hostResourcesService = new HostResourcesService();
+
+    private Cluster cluster;
+
+    @Before
+    public void setup() {
+        cluster = Mockito.mock(Cluster.class);
+        Mockito.doReturn(1l).when(cluster).getId();
+        Mockito.doReturn(2l).when(cluster).getPodId();
+        Mockito.doReturn(3l).when(cluster).getDataCenterId();
+
+        Mockito.doAnswer(new Answer<VmResources>() {
+            @Override
+            public VmResources answer(InvocationOnMock invocation) {
+                VMInstanceVO vm = (VMInstanceVO) invocation.getArguments()[0];
+                return new VmResources(vm.getId(), 1, 1000l, 512l);
+            }
+        }).when(hostResourcesService).createVmResources(Mockito.any(VMInstanceVO.class));
+
+        Mockito.doReturn(new OverprovisioningFactors(1.5f, 2f)).when(hostResourcesService).getOverprovisioningFactors(Mockito.anyLong());
+    }
+
+    @Test
+    public void loadClusterHostsResourcesTest() {
+        List<HostVO> hosts = Arrays.asList(createHost(1l, 1l), createHost(2l, 1l));
+        Mockito.doReturn(hosts).when(hostDao).listAllUpAndEnabledNonHAHosts(Type.Routing, 1l, 2l, 3l, null);
+        List<VMInstanceVO> vms = Arrays.asList(createVm(1l, 1l, VirtualMachine.State.Running), createVm(2l, 1l, VirtualMachine.State.Stopped),
+                createVm(3l, 2l, VirtualMachine.State.Migrating), createVm(4l, 5l, VirtualMachine.State.Running));
+        Mockito.doReturn(vms).when(vmInstanceDao).listByClusterId(1l);
+
+        List<HostResources> result = spy.loadClusterHostsResources(cluster);
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(1l, result.get(0).getHostId());
+        Assert.assertEquals(1, result.get(0).getVmsResources().size());
+        Assert.assertEquals(1l, result.get(0).getVmsResources().get(0).getVmId());
+        Assert.assertEquals(1000l, result.get(0).getUsedCpu());
+        Assert.assertEquals(512l, result.get(0).getUsedMemoryInMegaBytes());
+        Assert.assertEquals(2l, result.get(1).getHostId());
+        Assert.assertEquals(3l, result.get(1).getVmsResources().get(0).getVmId());
+        Assert.assertEquals(1.5f, result.get(1).getCpuOverprovisioning(), 0f);
+        Assert.assertEquals(2f, result.get(1).getMemoryOverprovisioning(), 0f);
+        Mockito.verify(hostResourcesService, Mockito.times(2)).createVmResources(Mockito.any(VMInstanceVO.class));
+        Mockito.verify(hostResourcesService).getOverprovisioningFactors(1l);
+    }
+
+    @Test
+    public void loadClusterHostsResourcesTestNoHosts() {
+        Mockito.doReturn(new ArrayList<HostVO>()).when(hostDao).listAllUpAndEnabledNonHAHosts(Type.Routing, 1l, 2l, 3l, null);
+
+        List<HostResources> result = spy.loadClusterHostsResources(cluster);
+
+        Assert.assertTrue(result.isEmpty());
+        Mockito.verify(vmInstanceDao, Mockito.times(0)).listByClusterId(Mockito.anyLong());
+    }
+
+    @Test
+    public void loadZoneHostsResourcesByClusterTest() {
+        List<HostVO> hosts = Arrays.asList(createHost(1l, 10l), createHost(2l, 20l), createHost(3l, 10l));
+        Mockito.doReturn(hosts).when(hostDao).listAllUpAndEnabledNonHAHosts(Type.Routing, null, null, 3l, null);
+        List<VMInstanceVO> vms = Arrays.asList(createVm(1l, 3l, VirtualMachine.State.Running), createVm(2l, 2l, VirtualMachine.State.Starting));
+        Mockito.doReturn(vms).when(vmInstanceDao).listByZoneId(3l);
+
+        Map<Long, List<HostResources>> result = spy.loadZoneHostsResourcesByCluster(3l);
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(2, result.get(10l).size());
+        Assert.assertEquals(1l, result.get(10l).get(0).getHostId());
+        Assert.assertTrue(result.get(10l).get(0).getVmsResources().isEmpty());
+        Assert.assertEquals(3l, result.get(10l).get(1).getHostId());
+        Assert.assertEquals(1, result.get(10l).get(1).getVmsResources().size());
+        Assert.assertEquals(1, result.get(20l).size());
+        Assert.assertEquals(2l, result.get(20l).get(0).getVmsResources().get(0).getVmId());
+    }
+
+    @Test
+    public void loadZoneHostsResourcesByClusterTestNoHosts() {
+        Mockito.doReturn(new ArrayList<HostVO>()).when(hostDao).listAllUpAndEnabledNonHAHosts(Type.Routing, null, null, 3l, null);
+
+        Map<Long, List<HostResources>> result = spy.loadZoneHostsResourcesByCluster(3l);
+
+        Assert.assertTrue(result.isEmpty());
+        Mockito.verify(vmInstanceDao, Mockito.times(0)).listByZoneId(Mockito.anyLong());
+    }
+
+    private HostVO createHost(long hostId, long clusterId) {
+        HostVO host = Mockito.mock(HostVO.class);
+        Mockito.doReturn(hostId).when(host).getId();
+        Mockito.doReturn(clusterId).when(host).getClusterId();
+        Mockito.doReturn(2000l).when(host).getSpeed();
+        Mockito.doReturn(4).when(host).getCpus();
+        Mockito.doReturn(8192l).when(host).getTotalMemory();
+        return host;
+    }
+
+    private VMInstanceVO createVm(long vmId, long hostId, VirtualMachine.State state) {
+        VMInstanceVO vm = Mockito.mock(VMInstanceVO.class);
+        Mockito.doReturn(vmId).when(vm).getId();
+        Mockito.doReturn(hostId).when(vm).getHostId();
+        Mockito.doReturn(state).when(vm).getState();
+        return vm;
+    }
+
+}
@@ -24,11 +24,12 @@
 package br.com.autonomiccs.autonomic.algorithms.commons.services;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
-import org.apache.cloudstack.framework.config.dao.ConfigurationDao;
-import org.apache.cloudstack.framework.config.impl.ConfigurationVO;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -41,14 +42,13 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import com.cloud.host.HostVO;
 import com.cloud.hypervisor.Hypervisor.HypervisorType;
-import com.cloud.service.ServiceOfferingVO;
-import com.cloud.service.dao.ServiceOfferingDao;
-import com.cloud.storage.Storage.ProvisioningType;
 import com.cloud.vm.VMInstanceVO;
 import com.cloud.vm.VirtualMachine;
 import com.cloud.vm.dao.VMInstanceDao;
 
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.OverprovisioningFactors;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ServiceOfferingResources;
 import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -57,9 +57,9 @@ public class HostResourcesServiceTest {
     @InjectMocks
     private HostResourcesService hostResourcesService;
     @Mock
-    private ServiceOfferingDao serviceOfferingDao;
+    private ServiceOfferingResourcesCache serviceOfferingResourcesCache;
     @Mock
-    private ConfigurationDao configurationDao;
+    private OverprovisioningFactorsCache overprovisioningFactorsCache;
     @Mock
     private VMInstanceDao vmInstanceDao;
 
@@ -80,12 +80,11 @@ public class HostResourcesServiceTest {
         HostResources hostResources = Mockito.mock(HostResources.class);
         Mockito.when(hostResources.getHostId()).thenReturn(1l);
 
-        ServiceOfferingVO serviceOfferingVO = new ServiceOfferingVO("name", 1, 512, 1000, 1000, 1000, true, "displayText", ProvisioningType.THIN, true, true, "tags", true,
-                com.cloud.vm.VirtualMachine.Type.User, true);
+        ServiceOfferingResources serviceOfferingResources = new ServiceOfferingResources(1l, 1, 1000, 512);
 
         List<VMInstanceVO> vmsInstanceVO = createRunningVmIistanceVo(2);
         Mockito.when(vmInstanceDao.listByHostId(1l)).thenReturn(vmsInstanceVO);
-        Mockito.when(serviceOfferingDao.findById(1l)).thenReturn(serviceOfferingVO);
+        Mockito.when(serviceOfferingResourcesCache.getServiceOfferingResources(1l)).thenReturn(serviceOfferingResources);
 
         List<VmResources> vmResourcesList = hostResourcesService.listVmsFromHost(hostResources);
 
@@ -107,7 +106,7 @@ public class HostResourcesServiceTest {
         Mockito.doReturn(vms).when(spy).listVmsFromHost(host);
 
         Mockito.doNothing().when(spy).calculateHostResourcesAllocated(host);
-        Mockito.doNothing().when(spy).loadHostOverprovisioningFactors(host);
+        Mockito.doNothing().when(spy).loadHostOverprovisioningFactors(host, hostVo.getClusterId());
 
         HostResources hostResourcesReturned = spy.createHostResources(hostVo);
         Assert.assertEquals(vms, hostResourcesReturned.getVmsResources());
@@ -116,7 +115,7 @@ public class HostResourcesServiceTest {
         inOrder.verify(spy).createAndConfigureHostResources(hostVo);
         inOrder.verify(spy).listVmsFromHost(host);
         inOrder.verify(spy).calculateHostResourcesAllocated(host);
-        inOrder.verify(spy).loadHostOverprovisioningFactors(host);
+        inOrder.verify(spy).loadHostOverprovisioningFactors(host, hostVo.getClusterId());
     }
 
     @Test
@@ -204,22 +203,44 @@ public class HostResourcesServiceTest {
     @Test
     public void loadHostOverprovisioningFactorsTest() {
         HostResources hostResources = new HostResources();
+        Mockito.when(overprovisioningFactorsCache.getOverprovisioningFactors(1l)).thenReturn(new OverprovisioningFactors(1.5f, 2f));
 
-        ConfigurationVO configurationVOCpu = Mockito.mock(ConfigurationVO.class);
-        ConfigurationVO configurationVOMem = Mockito.mock(ConfigurationVO.class);
-
-        Mockito.when(configurationDao.findByName("cpu.overprovisioning.factor")).thenReturn(configurationVOCpu);
-        Mockito.when(configurationVOCpu.getValue()).thenReturn("1.5");
-
-        Mockito.when(configurationDao.findByName("mem.overprovisioning.factor")).thenReturn(configurationVOMem);
-        Mockito.when(configurationVOMem.getValue()).thenReturn("2.0");
-
-        hostResourcesService.loadHostOverprovisioningFactors(hostResources);
+        hostResourcesService.loadHostOverprovisioningFactors(hostResources, 1l);
 
         Assert.assertEquals(1.5, hostResources.getCpuOverprovisioning(), 0f);
         Assert.assertEquals(2.0, hostResources.getMemoryOverprovisioning(), 0f);
     }
 
+    @Test
+    public void createHostsResourcesTest() {
+        HostVO firstHostVo = Mockito.mock(HostVO.class);
+        Mockito.when(firstHostVo.getId()).thenReturn(1l);
+        Mockito.when(firstHostVo.getClusterId()).thenReturn(10l);
+        HostVO secondHostVo = Mockito.mock(HostVO.class);
+        Mockito.when(secondHostVo.getId()).thenReturn(2l);
+        Mockito.when(secondHostVo.getClusterId()).thenReturn(10l);
+        HostResources firstHost = new HostResources();
+        HostResources secondHost = new HostResources();
+        HostResourcesService spy = Mockito.spy(new HostResourcesService());
+        Mockito.doReturn(firstHost).when(spy).createAndConfigureHostResources(firstHostVo);
+        Mockito.doReturn(secondHost).when(spy).createAndConfigureHostResources(secondHostVo);
+        Mockito.doReturn(new OverprovisioningFactors(1.5f, 2f)).when(spy).getOverprovisioningFactors(10l);
+        List<VmResources> vms = hostResourcesUtils.createSmallVms(2);
+        Map<Long, List<VmResources>> hostsVmsResources = new HashMap<>();
+        hostsVmsResources.put(firstHostVo.getId(), vms);
+
+        List<HostResources> result = spy.createHostsResources(Arrays.asList(firstHostVo, secondHostVo), hostsVmsResources);
+
+        Assert.assertEquals(Arrays.asList(firstHost, secondHost), result);
+        Assert.assertEquals(vms, firstHost.getVmsResources());
+        Assert.assertTrue(secondHost.getVmsResources().isEmpty());
+        Assert.assertEquals(2f, secondHost.getMemoryOverprovisioning(), 0f);
+        Assert.assertEquals(1.5f, firstHost.getCpuOverprovisioning(), 0f);
+        Mockito.verify(spy).getOverprovisioningFactors(10l);
+        Mockito.verify(spy).calculateHostResourcesAllocated(firstHost);
+        Mockito.verify(spy).calculateHostResourcesAllocated(secondHost);
+    }
+
     private List<VMInstanceVO> createRunningVmIistanceVo(int amount) {
         List<VMInstanceVO> vms = new ArrayList<VMInstanceVO>();
         for(int i = 0; i<amount; i++) {
@@ -0,0 +1,142 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.services;
+
+import org.apache.cloudstack.framework.config.dao.ConfigurationDao;
+import org.apache.cloudstack.framework.config.impl.ConfigurationVO;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.cloud.dc.ClusterDetailsVO;
+import com.cloud.dc.dao.ClusterDetailsDao;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.OverprovisioningFactors;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OverprovisioningFactorsCacheTest {
+
+    @Spy
+    @InjectMocks
+    private OverprovisioningFactorsCache spy;
+    @Mock
+    private ConfigurationDao configurationDao;
+    @Mock
+    private ClusterDetailsDao clusterDetailsDao;
+
+    @Before
+    public void setup() {
+        setupConfiguration("cpu.overprovisioning.factor", "1.5");
+        setupConfiguration("mem.overprovisioning.factor", "1.0");
+        Mockito.doReturn(0l).when(spy).getCurrentTimeInMilliseconds();
+    }
+
+    @Test
+    public void getOverprovisioningFactorsTestClusterWithoutDetails() {
+        OverprovisioningFactors result = spy.getOverprovisioningFactors(1l);
+
+        Assert.assertEquals(1.5f, result.getCpuOverprovisioning(), 0f);
+        Assert.assertEquals(1f, result.getMemoryOverprovisioning(), 0f);
+    }
+
+    @Test
+    public void getOverprovisioningFactorsTestClusterOverride() {
+        setupClusterDetail(1l, "cpuOvercommitRatio", "4");
+        setupClusterDetail(1l, "memoryOvercommitRatio", " ");
+
+        OverprovisioningFactors result = spy.getOverprovisioningFactors(1l);
+
+        Assert.assertEquals(4f, result.getCpuOverprovisioning(), 0f);
+        Assert.assertEquals(1f, result.getMemoryOverprovisioning(), 0f);
+    }
+
+    @Test
+    public void getOverprovisioningFactorsTestNullCluster() {
+        OverprovisioningFactors result = spy.getOverprovisioningFactors(null);
+
+        Assert.assertEquals(1.5f, result.getCpuOverprovisioning(), 0f);
+        Mockito.verify(clusterDetailsDao, Mockito.times(0)).findDetail(Mockito.anyLong(), Mockito.anyString());
+    }
+
+    @Test
+    public void getOverprovisioningFactorsTestCached() {
+        OverprovisioningFactors firstResult = spy.getOverprovisioningFactors(1l);
+        OverprovisioningFactors secondResult = spy.getOverprovisioningFactors(1l);
+        spy.getOverprovisioningFactors(2l);
+
+        Assert.assertSame(firstResult, secondResult);
+        Mockito.verify(clusterDetailsDao).findDetail(1l, "cpuOvercommitRatio");
+        Mockito.verify(configurationDao).findByName("cpu.overprovisioning.factor");
+        Mockito.verify(configurationDao).findByName("mem.overprovisioning.factor");
+    }
+
+    @Test
+    public void getOverprovisioningFactorsTestExpiredEntry() {
+        spy.setTimeToLiveInMilliseconds(100);
+        spy.getOverprovisioningFactors(1l);
+        Mockito.doReturn(100l).when(spy).getCurrentTimeInMilliseconds();
+
+        spy.getOverprovisioningFactors(1l);
+
+        Mockito.verify(clusterDetailsDao, Mockito.times(2)).findDetail(1l, "cpuOvercommitRatio");
+        Mockito.verify(configurationDao, Mockito.times(2)).findByName("cpu.overprovisioning.factor");
+    }
+
+    @Test
+    public void invalidateTest() {
+        spy.getOverprovisioningFactors(1l);
+
+        spy.invalidate(1l);
+        spy.getOverprovisioningFactors(1l);
+
+        Mockito.verify(clusterDetailsDao, Mockito.times(2)).findDetail(1l, "cpuOvercommitRatio");
+        Mockito.verify(configurationDao).findByName("cpu.overprovisioning.factor");
+    }
+
+    @Test
+    public void invalidateAllTest() {
+        spy.getOverprovisioningFactors(1l);
+
+        spy.invalidateAll();
+        spy.getOverprovisioningFactors(1l);
+
+        Mockito.verify(clusterDetailsDao, Mockito.times(2)).findDetail(1l, "cpuOvercommitRatio");
+        Mockito.verify(configurationDao, Mockito.times(2)).findByName("cpu.overprovisioning.factor");
+    }
+
+    private void setupConfiguration(String name, String value) {
+        ConfigurationVO configurationVO = Mockito.mock(ConfigurationVO.class);
+        Mockito.doReturn(value).when(configurationVO).getValue();
+        Mockito.doReturn(configurationVO).when(configurationDao).findByName(name);
+    }
+
+    private void setupClusterDetail(long clusterId, String name, String value) {
+        Mockito.doReturn(new ClusterDetailsVO(clusterId, name, value)).when(clusterDetailsDao).findDetail(clusterId, name);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.algorithms.commons.services;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.cloud.service.ServiceOfferingVO;
+import com.cloud.service.dao.ServiceOfferingDao;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ServiceOfferingResources;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServiceOfferingResourcesCacheTest {
+
+    @Spy
+    @InjectMocks
+    private ServiceOfferingResourcesCache spy;
+    @Mock
+    private ServiceOfferingDao serviceOfferingDao;
+
+    @Before
+    public void setup() {
+        for (long serviceOfferingId = 1; serviceOfferingId <= 3; serviceOfferingId++) {
+            ServiceOfferingVO serviceOffering = Mockito.mock(ServiceOfferingVO.class);
+            Mockito.doReturn((int) serviceOfferingId).when(serviceOffering).getCpu();
+            Mockito.doReturn(1000).when(serviceOffering).getSpeed();
+            Mockito.doReturn(512).when(serviceOffering).getRamSize();
+            Mockito.doReturn(serviceOffering).when(serviceOfferingDao).findById(serviceOfferingId);
+        }
+        Mockito.doReturn(0l).when(spy).getCurrentTimeInMilliseconds();
+    }
+
+    @Test
+    public void getServiceOfferingResourcesTest() {
+        ServiceOfferingResources result = spy.getServiceOfferingResources(2l);
+
+        Assert.assertEquals(2l, result.getServiceOfferingId());
+        Assert.assertEquals(2, result.getNumberOfCpus());
+        Assert.assertEquals(1000l, result.getCpuSpeed());
+        Assert.assertEquals(512l, result.getMemoryInMegaBytes());
+        Assert.assertEquals(1, spy.getSize());
+        Assert.assertEquals(0, spy.getHitCount());
+        Assert.assertEquals(1, spy.getMissCount());
+    }
+
+    @Test
+    public void getServiceOfferingResourcesTestCached() {
+        ServiceOfferingResources firstResult = spy.getServiceOfferingResources(1l);
+        ServiceOfferingResources secondResult = spy.getServiceOfferingResources(1l);
+        spy.getServiceOfferingResources(1l);
+
+        Assert.assertSame(firstResult, secondResult);
+        Mockito.verify(serviceOfferingDao).findById(1l);
+        Assert.assertEquals(2, spy.getHitCount());
+        Assert.assertEquals(1, spy.getMissCount());
+        Assert.assertEquals(2d / 3, spy.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void getServiceOfferingResourcesTestExpiredEntry() {
+        spy.setTimeToLiveInMilliseconds(100);
+        spy.getServiceOfferingResources(1l);
+        Mockito.doReturn(99l).when(spy).getCurrentTimeInMilliseconds();
+        spy.getServiceOfferingResources(1l);
+        Mockito.doReturn(100l).when(spy).getCurrentTimeInMilliseconds();
+        spy.getServiceOfferingResources(1l);
+
+        Mockito.verify(serviceOfferingDao, Mockito.times(2)).findById(1l);
+        Assert.assertEquals(1, spy.getHitCount());
+    }
+
+    @Test
+    public void getServiceOfferingResourcesTestLeastRecentlyUsedEvicted() {
+        spy.setMaximumSize(2);
+        spy.getServiceOfferingResources(1l);
+        spy.getServiceOfferingResources(2l);
+        spy.getServiceOfferingResources(1l);
+        spy.getServiceOfferingResources(3l);
+
+        Assert.assertEquals(2, spy.getSize());
+        Assert.assertNotNull(spy.getCachedServiceOfferingResources(1l));
+        Assert.assertNull(spy.getCachedServiceOfferingResources(2l));
+        Assert.assertNotNull(spy.getCachedServiceOfferingResources(3l));
+    }
+
+    @Test
+    public void getServiceOfferingResourcesTestServiceOfferingNotFound() {
+        ServiceOfferingResources result = spy.getServiceOfferingResources(4l);
+
+        Assert.assertNull(result);
+        Assert.assertEquals(0, spy.getSize());
+    }
+
+    @Test
+    public void invalidateTest() {
+        spy.getServiceOfferingResources(1l);
+        spy.getServiceOfferingResources(2l);
+
+        spy.invalidate(1l);
+
+        Assert.assertEquals(1, spy.getSize());
+        Assert.assertNull(spy.getCachedServiceOfferingResources(1l));
+        spy.getServiceOfferingResources(1l);
+        Mockito.verify(serviceOfferingDao, Mockito.times(2)).findById(1l);
+    }
+
+    @Test
+    public void invalidateAllTest() {
+        spy.getServiceOfferingResources(1l);
+        spy.getServiceOfferingResources(2l);
+
+        spy.invalidateAll();
+
+        Assert.assertEquals(0, spy.getSize());
+    }
+
+    @Test
+    public void getHitRateTestNoRequests() {
+        Assert.assertEquals(0d, spy.getHitRate(), 0d);
+    }
+
+}
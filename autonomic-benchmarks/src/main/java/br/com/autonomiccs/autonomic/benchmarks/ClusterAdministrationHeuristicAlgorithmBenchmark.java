@@ -0,0 +1,158 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.TimeBudgetedClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+
+/**
+ * JMH benchmarks for the {@link ClusterAdministrationHeuristicAlgorithm} methods that are executed
+ * in every administration of a cluster ({@link ClusterAdministrationHeuristicAlgorithm#rankHosts(List)},
+ * {@link ClusterAdministrationHeuristicAlgorithm#mapVMsToHost(List)} and
+ * {@link ClusterAdministrationHeuristicAlgorithm#rankHostToPowerOff(List)}). Each benchmark is
+ * executed for every heuristic in the 'br.com.autonomiccs.autonomic.administration.algorithms.impl'
+ * package and for clusters from 10 to 10,000 hosts, created with the
+ * {@link SyntheticClusterGenerator}. Heuristics with a planning time budget (
+ * {@link TimeBudgetedClusterAdministrationHeuristicAlgorithm}) use a fixed budget, so their mapping
+ * results are comparable between runs.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ClusterAdministrationHeuristicAlgorithmBenchmark {
+
+    private final static String ALGORITHMS_PACKAGE = "br.com.autonomiccs.autonomic.administration.algorithms.impl.";
+
+    /**
+     * The synthetic cluster that is used by all benchmarks; it is created once per trial (for each
+     * combination of parameters).
+     */
+    @State(Scope.Thread)
+    public static class ClusterState {
+
+        @Param({ "ClusterManagementDummyAlgorithm", "ConsolidationAlgorithmBase", "ConsolidationScoredPreferenceForSmallHosts", "ConsolidationScoredPreferenceForBigHosts",
+            "ConsolidationXenHaPreferenceForBigHostsHomogeneousEnvironment", "VmsDispersionAlgorithmForHomogeneousEnvironment",
+            "ConsolidationVectorBinPackingBestFitDecreasing", "ConsolidationMigrationCostAwareBestFitDecreasing", "ConsolidationSimulatedAnnealingWithTimeBudget" })
+        public String algorithm;
+
+        /**
+         * Planning time budget of the heuristics that implement
+         * {@link TimeBudgetedClusterAdministrationHeuristicAlgorithm}.
+         */
+        @Param({ "100" })
+        public long planningTimeBudgetInMilliseconds;
+
+        @Param({ "10", "100", "1000", "10000" })
+        public int numberOfHosts;
+
+        @Param({ "0.4" })
+        public double averageMemoryLoad;
+
+        @Param({ "42" })
+        public long seed;
+
+        protected List<HostResources> hosts;
+        protected List<HostResources> idleHosts;
+        protected ClusterAdministrationHeuristicAlgorithm heuristic;
+
+        @Setup(Level.Trial)
+        public void createCluster() {
+            SyntheticClusterGenerator generator = new SyntheticClusterGenerator(seed);
+            hosts = generator.createCluster(numberOfHosts, averageMemoryLoad);
+            idleHosts = generator.createIdleHosts(Math.max(1, numberOfHosts / 10));
+            heuristic = createHeuristic(algorithm, planningTimeBudgetInMilliseconds);
+            heuristic.rankHosts(hosts);
+        }
+    }
+
+    /**
+     * The {@link ClusterAdministrationHeuristicAlgorithm#mapVMsToHost(List)} changes the hosts
+     * usage and may depend on data calculated while ranking hosts; thus, before each invocation a
+     * new heuristic is created and the hosts are ranked again (outside of the measured time).
+     */
+    @State(Scope.Thread)
+    public static class RankedClusterState {
+
+        protected ClusterAdministrationHeuristicAlgorithm heuristic;
+        protected List<HostResources> rankedHosts;
+
+        @Setup(Level.Invocation)
+        public void rankHosts(ClusterState cluster) {
+            heuristic = createHeuristic(cluster.algorithm, cluster.planningTimeBudgetInMilliseconds);
+            rankedHosts = heuristic.rankHosts(cluster.hosts);
+        }
+    }
+
+    @Benchmark
+    public List<HostResources> rankHosts(ClusterState cluster) {
+        return cluster.heuristic.rankHosts(cluster.hosts);
+    }
+
+    @Benchmark
+    public Map<Long, HostResources> mapVMsToHost(RankedClusterState rankedCluster) {
+        return rankedCluster.heuristic.mapVMsToHost(rankedCluster.rankedHosts);
+    }
+
+    @Benchmark
+    public List<HostResources> rankHostToPowerOff(ClusterState cluster) {
+        return cluster.heuristic.rankHostToPowerOff(cluster.idleHosts);
+    }
+
+    /**
+     * It creates an instance of the heuristic with the given simple class name; the class must be
+     * in the 'br.com.autonomiccs.autonomic.administration.algorithms.impl' package. If the heuristic
+     * has a planning time budget, it is set to the given budget.
+     */
+    protected static ClusterAdministrationHeuristicAlgorithm createHeuristic(String algorithm, long planningTimeBudgetInMilliseconds) {
+        try {
+            ClusterAdministrationHeuristicAlgorithm heuristic = (ClusterAdministrationHeuristicAlgorithm) Class.forName(ALGORITHMS_PACKAGE + algorithm).newInstance();
+            if (heuristic instanceof TimeBudgetedClusterAdministrationHeuristicAlgorithm) {
+                ((TimeBudgetedClusterAdministrationHeuristicAlgorithm) heuristic).setPlanningTimeBudgetInMilliseconds(planningTimeBudgetInMilliseconds);
+            }
+            return heuristic;
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException(String.format("Could not create heuristic [algorithm=%s]", algorithm), e);
+        }
+    }
+
+}
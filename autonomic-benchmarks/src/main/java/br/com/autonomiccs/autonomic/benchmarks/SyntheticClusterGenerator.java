@@ -0,0 +1,146 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+/**
+ * This class creates synthetic clusters ({@link List} of {@link HostResources}) to be used by the
+ * benchmarks. Hosts are picked from a set of hardware configurations and filled with VMs picked from
+ * a set of service offerings until they reach a random memory load; the same seed always produces
+ * the same cluster.
+ */
+public class SyntheticClusterGenerator {
+
+    /**
+     * This constant was created to multiply a number (in Mega Bytes) by 1.000.000 (resulting in a
+     * number of Bytes), the same proportion used by the administration algorithms.
+     */
+    protected final static long MEGA_BYTES_TO_BYTES = 1000000;
+
+    /**
+     * Hosts configurations, each line contains the number of CPUs, the CPU speed (MHz) and the
+     * memory (MB).
+     */
+    protected final static long[][] HOSTS_CONFIGURATIONS = { { 8, 2000, 32768 }, { 16, 2400, 65536 }, { 24, 2600, 131072 }, { 32, 2900, 262144 } };
+
+    /**
+     * Service offerings, each line contains the number of CPUs, the CPU speed (MHz) and the memory
+     * (MB).
+     */
+    protected final static long[][] VMS_OFFERINGS = { { 1, 500, 512 }, { 1, 1000, 1024 }, { 2, 1000, 2048 }, { 2, 2000, 4096 }, { 4, 2000, 8192 }, { 8, 2000, 16384 },
+        { 8, 2000, 65536 } };
+
+    private final static float CPU_OVERPROVISIONING = 2;
+    private final static float MEMORY_OVERPROVISIONING = 1;
+
+    private final Random random;
+    private long nextVmId = 1;
+
+    public SyntheticClusterGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * It creates a cluster with the given number of hosts. Each host memory load is drawn
+     * uniformly between zero and twice the given average memory load (limited to 95% of the host
+     * memory), thus the cluster has an heterogeneous workload.
+     *
+     * @param numberOfHosts
+     * @param averageMemoryLoad
+     *            between 0 and 1
+     * @return {@link List} of {@link HostResources}
+     */
+    public List<HostResources> createCluster(int numberOfHosts, double averageMemoryLoad) {
+        List<HostResources> hosts = new ArrayList<>(numberOfHosts);
+        for (int i = 0; i < numberOfHosts; i++) {
+            HostResources host = createHost(i);
+            double memoryLoad = Math.min(0.95, random.nextDouble() * 2 * averageMemoryLoad);
+            fillHostWithVms(host, memoryLoad);
+            hosts.add(host);
+        }
+        return hosts;
+    }
+
+    /**
+     * It creates the given number of hosts without VMs (idle hosts).
+     */
+    public List<HostResources> createIdleHosts(int numberOfHosts) {
+        List<HostResources> hosts = new ArrayList<>(numberOfHosts);
+        for (int i = 0; i < numberOfHosts; i++) {
+            hosts.add(createHost(i));
+        }
+        return hosts;
+    }
+
+    /**
+     * It creates a {@link HostResources} with a random configuration from
+     * {@link #HOSTS_CONFIGURATIONS}.
+     */
+    protected HostResources createHost(long hostId) {
+        long[] configuration = HOSTS_CONFIGURATIONS[random.nextInt(HOSTS_CONFIGURATIONS.length)];
+        HostResources host = new HostResources();
+        host.setHostId(hostId);
+        host.setHostName("host-" + hostId);
+        host.setCpus((int) configuration[0]);
+        host.setSpeed(configuration[1]);
+        host.setTotalMemoryInBytes(configuration[2] * MEGA_BYTES_TO_BYTES);
+        host.setCpuOverprovisioning(CPU_OVERPROVISIONING);
+        host.setMemoryOverprovisioning(MEMORY_OVERPROVISIONING);
+        return host;
+    }
+
+    /**
+     * It adds random VMs into the host until its memory usage reaches the given load. A VM is only
+     * added if the host has enough CPU and memory to support it.
+     */
+    protected void fillHostWithVms(HostResources host, double memoryLoad) {
+        long hostMemory = (long) (host.getTotalMemoryInBytes() / MEGA_BYTES_TO_BYTES * host.getMemoryOverprovisioning());
+        long hostCpu = (long) (host.getCpus() * host.getSpeed() * host.getCpuOverprovisioning());
+        long targetMemory = (long) (hostMemory * memoryLoad);
+
+        List<VmResources> vms = new ArrayList<>();
+        long usedMemory = 0, usedCpu = 0;
+        int failedAttempts = 0;
+        while (usedMemory < targetMemory && failedAttempts < VMS_OFFERINGS.length) {
+            long[] offering = VMS_OFFERINGS[random.nextInt(VMS_OFFERINGS.length)];
+            long vmCpu = offering[0] * offering[1];
+            if (offering[0] > host.getCpus() || usedMemory + offering[2] > hostMemory || usedCpu + vmCpu > hostCpu) {
+                failedAttempts++;
+                continue;
+            }
+            vms.add(new VmResources(nextVmId++, (int) offering[0], offering[1], offering[2]));
+            usedMemory += offering[2];
+            usedCpu += vmCpu;
+        }
+        host.setVmsResources(vms);
+        host.setUsedMemoryInMegaBytes(usedMemory);
+        host.setUsedCpu(usedCpu);
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.benchmarks;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+
+public class SyntheticClusterGeneratorTest {
+
+    @Test
+    public void createClusterTest() {
+        List<HostResources> hosts = new SyntheticClusterGenerator(1).createCluster(100, 0.4);
+
+        Assert.assertEquals(100, hosts.size());
+        for (HostResources host : hosts) {
+            long usedMemory = 0, usedCpu = 0;
+            for (VmResources vm : host.getVmsResources()) {
+                Assert.assertTrue(vm.getNumberOfCpus() <= host.getCpus());
+                usedMemory += vm.getMemoryInMegaBytes();
+                usedCpu += vm.getNumberOfCpus() * vm.getCpuSpeed();
+            }
+            Assert.assertEquals(usedMemory, host.getUsedMemoryInMegaBytes());
+            Assert.assertEquals(usedCpu, host.getUsedCpu());
+            Assert.assertTrue(usedMemory <= host.getTotalMemoryInBytes() / SyntheticClusterGenerator.MEGA_BYTES_TO_BYTES);
+            Assert.assertTrue(usedCpu <= host.getCpus() * host.getSpeed() * host.getCpuOverprovisioning());
+        }
+    }
+
+    @Test
+    public void createClusterSameSeedTest() {
+        List<HostResources> hosts = new SyntheticClusterGenerator(7).createCluster(50, 0.5);
+        List<HostResources> otherHosts = new SyntheticClusterGenerator(7).createCluster(50, 0.5);
+
+        for (int i = 0; i < hosts.size(); i++) {
+            Assert.assertEquals(hosts.get(i).getTotalMemoryInBytes(), otherHosts.get(i).getTotalMemoryInBytes());
+            Assert.assertEquals(hosts.get(i).getUsedMemoryInMegaBytes(), otherHosts.get(i).getUsedMemoryInMegaBytes());
+            Assert.assertEquals(hosts.get(i).getVmsResources().size(), otherHosts.get(i).getVmsResources().size());
+        }
+    }
+
+    @Test
+    public void createClusterHostsWithoutLoadTest() {
+        List<HostResources> hosts = new SyntheticClusterGenerator(1).createCluster(10, 0);
+        for (HostResources host : hosts) {
+            Assert.assertTrue(host.getVmsResources().isEmpty());
+            Assert.assertEquals(0, host.getUsedMemoryInMegaBytes());
+        }
+    }
+
+    @Test
+    public void createIdleHostsTest() {
+        List<HostResources> hosts = new SyntheticClusterGenerator(1).createIdleHosts(10);
+
+        Assert.assertEquals(10, hosts.size());
+        for (int i = 0; i < hosts.size(); i++) {
+            Assert.assertEquals(i, hosts.get(i).getHostId());
+            Assert.assertTrue(hosts.get(i).getVmsResources().isEmpty());
+            Assert.assertEquals(0, hosts.get(i).getUsedCpu());
+        }
+    }
+
+}
@@ -39,6 +39,11 @@ public class ClusterJdbcDao extends JdbcDaoSupport {
     private String sqlGetClusterLastAdministration = "SELECT last_administration FROM cluster WHERE id=?;";
     private String sqlSetClusterLastAdministration = "UPDATE cluster SET last_administration=? WHERE id=?;";
 
+    private String sqlAcquireClusterAdministrationLease = "UPDATE cluster SET administration_status='InProgress', administration_owner=?, administration_lease_expiration=DATE_ADD(NOW(), INTERVAL ? SECOND) WHERE id=? AND (administration_status IS NULL OR administration_status<>'InProgress' OR administration_lease_expiration<NOW());";
+    private String sqlRenewClusterAdministrationLease = "UPDATE cluster SET administration_lease_expiration=DATE_ADD(NOW(), INTERVAL ? SECOND) WHERE id=? AND administration_status='InProgress' AND administration_owner=?;";
+    private String sqlReleaseClusterAdministrationLease = "UPDATE cluster SET administration_status='Done', administration_owner=NULL, administration_lease_expiration=NULL WHERE id=? AND administration_owner=?;";
+    private String sqlGetClusterAdministrationLeaseExpiration = "SELECT administration_lease_expiration FROM cluster WHERE id=?;";
+
     /**
      * It returns the 'last_administration' column of the 'cluster' table.
      */
@@ -73,4 +78,46 @@ public class ClusterJdbcDao extends JdbcDaoSupport {
         getJdbcTemplate().update(sqlSetClusterLastAdministration, args);
     }
 
+    /**
+     * It sets the cluster as {@link ClusterAdministrationStatus#InProgress} and owned by the given
+     * owner for the given number of seconds, in a single conditional update; the lease is acquired
+     * only if the cluster is not in progress or if its lease has expired. The lease expiration uses
+     * the database clock, so that all management servers share the same time reference.
+     *
+     * @return true if the lease was acquired
+     */
+    public boolean acquireClusterAdministrationLease(long clusterId, String owner, int leaseInSeconds) {
+        Object[] args = { owner, leaseInSeconds, clusterId };
+        return getJdbcTemplate().update(sqlAcquireClusterAdministrationLease, args) == 1;
+    }
+
+    /**
+     * It extends the lease of the cluster for the given number of seconds, if the cluster is still
+     * {@link ClusterAdministrationStatus#InProgress} and owned by the given owner.
+     *
+     * @return true if the lease was renewed; false if it was lost
+     */
+    public boolean renewClusterAdministrationLease(long clusterId, String owner, int leaseInSeconds) {
+        Object[] args = { leaseInSeconds, clusterId, owner };
+        return getJdbcTemplate().update(sqlRenewClusterAdministrationLease, args) == 1;
+    }
+
+    /**
+     * It sets the cluster as {@link ClusterAdministrationStatus#Done} and clears its lease, if the
+     * cluster is owned by the given owner.
+     *
+     * @return true if the lease was released
+     */
+    public boolean releaseClusterAdministrationLease(long clusterId, String owner) {
+        Object[] args = { clusterId, owner };
+        return getJdbcTemplate().update(sqlReleaseClusterAdministrationLease, args) == 1;
+    }
+
+    /**
+     * It returns the 'administration_lease_expiration' column of the 'cluster' table.
+     */
+    public Date getClusterAdministrationLeaseExpiration(long clusterId) {
+        return getJdbcTemplate().queryForObject(sqlGetClusterAdministrationLeaseExpiration, Date.class, clusterId);
+    }
+
 }
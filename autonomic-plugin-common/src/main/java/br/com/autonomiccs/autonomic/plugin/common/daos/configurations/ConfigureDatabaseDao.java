@@ -22,16 +22,22 @@
  */
 package br.com.autonomiccs.autonomic.plugin.common.daos.configurations;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 
 import br.com.autonomiccs.autonomic.administration.algorithms.impl.ClusterManagementDummyAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.ConsolidationAlgorithmBase;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.VmsDispersionAlgorithmForHomogeneousEnvironment;
 import br.com.autonomiccs.autonomic.plugin.common.services.AutonomicClusterManagementHeuristicService;
 
 /**
  * Configures the CloudStack database, inserting (if needed)
  * 'administration_status' and 'start_type' columns into 'host' table; It also
- * inserts 'administration_status' and 'last_consolidated' columns into 'cluster'
- * table.
+ * inserts 'administration_status', 'last_consolidated', 'administration_owner' and
+ * 'administration_lease_expiration' columns into 'cluster' table and the Autonomiccs
+ * configurations ({@link #AUTONOMICCS_CONFIGURATIONS}) into 'configuration' table.
  */
 public class ConfigureDatabaseDao extends JdbcDaoSupport {
 
@@ -47,6 +53,12 @@ public class ConfigureDatabaseDao extends JdbcDaoSupport {
     private String sqlHasClusterLastAdministrationColumn = "SHOW COLUMNS FROM cluster LIKE 'last_administration';";
     private String sqlCreateClusterLastAdministrationColumn = "ALTER TABLE cluster ADD last_administration DATETIME;";
 
+    private String sqlHasClusterAdministrationOwnerColumn = "SHOW COLUMNS FROM cluster LIKE 'administration_owner';";
+    private String sqlCreateClusterAdministrationOwnerColumn = "ALTER TABLE cluster ADD administration_owner VARCHAR(255);";
+
+    private String sqlHasClusterAdministrationLeaseExpirationColumn = "SHOW COLUMNS FROM cluster LIKE 'administration_lease_expiration';";
+    private String sqlCreateClusterAdministrationLeaseExpirationColumn = "ALTER TABLE cluster ADD administration_lease_expiration DATETIME;";
+
     private String sqlHasClusterAdministrationAlgorithmsInConfiguration = String.format("SELECT * FROM configuration WHERE name='%s';",
             AutonomicClusterManagementHeuristicService.CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY);
     private String sqlInsertIntoConfigurationClusterAlgorithms = String.format(
@@ -54,6 +66,51 @@ public class ConfigureDatabaseDao extends JdbcDaoSupport {
             AutonomicClusterManagementHeuristicService.CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY,
             ClusterManagementDummyAlgorithm.class.getCanonicalName(), ClusterManagementDummyAlgorithm.class.getCanonicalName());
 
+    private String sqlHasConfiguration = "SELECT * FROM configuration WHERE name='%s';";
+    private String sqlInsertIntoConfiguration = "INSERT INTO configuration (category,instance,component,name,value,description,default_value,updated,scope,is_dynamic) VALUES ('Advanced','DEFAULT','autonomicClusterManager','%s',%s,'%s',%s,null,'%s',0);";
+
+    protected final static String GLOBAL_SCOPE = "Global";
+    protected final static String CLUSTER_SCOPE = "Cluster";
+
+    /**
+     * Configurations of the Autonomiccs platform that are inserted (if needed) into the
+     * 'configuration' table, so that they can be found and changed by the system administrators;
+     * configurations with the 'Cluster' scope can be overridden by cluster details. Configurations
+     * without value make the heuristics use their own defaults. The configurations of the
+     * administration plugin executors are named here, as this module does not depend on it; their
+     * values are the executors defaults.
+     */
+    protected final static List<AutonomiccsConfiguration> AUTONOMICCS_CONFIGURATIONS = Arrays.asList(
+            new AutonomiccsConfiguration(AutonomicClusterManagementHeuristicService.CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY, null,
+                    "Planning time budget (milliseconds) of time budgeted heuristics; if blank, the heuristic default budget is used.", CLUSTER_SCOPE),
+            new AutonomiccsConfiguration(AutonomicClusterManagementHeuristicService.CLUSTER_INTERVAL_BETWEEN_CONSOLIDATION_IN_CONFIGURATION_KEY, null, String.format(
+                    "Interval (seconds) between two consolidations of a cluster; if blank, the heuristic default interval is used (%d seconds for the consolidation heuristics).",
+                    ConsolidationAlgorithmBase.DEFAULT_CLUSTER_INTERVAL_BETWEEN_CONSOLIDATION), CLUSTER_SCOPE),
+            new AutonomiccsConfiguration(AutonomicClusterManagementHeuristicService.MAXIMUM_USAGE_TO_POWER_OFF_HOSTS_IN_CONFIGURATION_KEY, null, String.format(
+                    "Maximum usage (greater than 0 and up to 1) of the cloud resources that still allows hosts to be powered off; if blank, the heuristic default usage is used (%s for the consolidation heuristics).",
+                    ConsolidationAlgorithmBase.DEFAULT_MAXIMUM_USAGE_TO_POWER_OFF_HOSTS), CLUSTER_SCOPE),
+            new AutonomiccsConfiguration(AutonomicClusterManagementHeuristicService.MAXIMUM_NUMBER_OF_HOSTS_TO_EVACUATE_IN_CONFIGURATION_KEY, null,
+                    "Maximum number of hosts evacuated by each migration plan (0 for no limit); if blank, the heuristic default number is used.", CLUSTER_SCOPE),
+            new AutonomiccsConfiguration(AutonomicClusterManagementHeuristicService.NUMBER_OF_STANDARD_DEVIATION_CANDIDATES_IN_CONFIGURATION_KEY, null, String.format(
+                    "Number of standard deviations (at least 1) simulated by the VMs dispersion heuristic; if blank, the heuristic default number is used (%d).",
+                    VmsDispersionAlgorithmForHomogeneousEnvironment.DEFAULT_NUMBER_OF_STANDARD_DEVIATION_CANDIDATES), CLUSTER_SCOPE),
+            new AutonomiccsConfiguration(AutonomicClusterManagementHeuristicService.CROSS_CLUSTER_PLANNING_IN_CONFIGURATION_KEY, "false",
+                    "If true, clusters that share zone wide storage and use the same heuristic configuration are planned together.", GLOBAL_SCOPE),
+            new AutonomiccsConfiguration("autonomiccs.clustermanager.migrations.max.per.source.host", "2",
+                    "Maximum number of concurrent VMs migrations leaving the same host.", GLOBAL_SCOPE),
+            new AutonomiccsConfiguration("autonomiccs.clustermanager.migrations.max.per.target.host", "2",
+                    "Maximum number of concurrent VMs migrations arriving at the same host.", GLOBAL_SCOPE),
+            new AutonomiccsConfiguration("autonomiccs.clustermanager.migrations.max.per.cluster", "10",
+                    "Maximum number of concurrent VMs migrations in the same cluster.", GLOBAL_SCOPE),
+            new AutonomiccsConfiguration("autonomiccs.clustermanager.migrations.timeout.seconds", "1800",
+                    "Time (seconds) that a VM migration can take before it is abandoned and retried.", GLOBAL_SCOPE),
+            new AutonomiccsConfiguration("autonomiccs.clustermanager.migrations.max.attempts", "2",
+                    "Maximum number of attempts of each VM migration that fails or times out.", GLOBAL_SCOPE),
+            new AutonomiccsConfiguration("autonomiccs.clustermanager.migrations.max.failure.rate", "0.5",
+                    "Rate (greater than 0 and up to 1) of failed VMs migrations of a migration plan that aborts the remaining migrations.", GLOBAL_SCOPE),
+            new AutonomiccsConfiguration("autonomiccs.clustermanager.hosts.shutdown.max.concurrent", "5",
+                    "Maximum number of hosts shut down at the same time after a migration plan is executed.", GLOBAL_SCOPE));
+
     private String sqlHasAutonomiccsSystemVmTable = "SHOW TABLES LIKE 'AutonomiccsSystemVm';";
     private String sqlCreateAutonomiccsSystemVmTable = "CREATE TABLE AutonomiccsSystemVm(id BIGINT(20) UNSIGNED, public_ip_address VARCHAR(40), management_ip_address VARCHAR(40));";
 
@@ -77,9 +134,20 @@ public class ConfigureDatabaseDao extends JdbcDaoSupport {
         if (!hasClusterLastConsolidatedColumn()) {
             createClusterLastConsolidatedColumn();
         }
+        if (!hasClusterAdministrationOwnerColumn()) {
+            createClusterAdministrationOwnerColumn();
+        }
+        if (!hasClusterAdministrationLeaseExpirationColumn()) {
+            createClusterAdministrationLeaseExpirationColumn();
+        }
         if (!hasClusterManagerAlgorithmsInConfiguration()) {
             insertClusterManagerAlgorithmsInConfiguration();
         }
+        for (AutonomiccsConfiguration configuration : AUTONOMICCS_CONFIGURATIONS) {
+            if (!hasConfiguration(configuration.name)) {
+                insertConfiguration(configuration);
+            }
+        }
         if (!hasAutonomiccsSystemVmTable()) {
             createAutonomiccsSystemVmTable();
         }
@@ -141,6 +209,35 @@ public class ConfigureDatabaseDao extends JdbcDaoSupport {
         getJdbcTemplate().execute(sqlCreateClusterLastAdministrationColumn);
     }
 
+    /**
+     * It returns true if there is an 'administration_owner' column at the 'cluster' table.
+     */
+    protected boolean hasClusterAdministrationOwnerColumn() {
+        return !getJdbcTemplate().queryForList(sqlHasClusterAdministrationOwnerColumn).isEmpty();
+    }
+
+    /**
+     * It creates the 'administration_owner' column at the 'cluster' table.
+     */
+    protected void createClusterAdministrationOwnerColumn() {
+        getJdbcTemplate().execute(sqlCreateClusterAdministrationOwnerColumn);
+    }
+
+    /**
+     * It returns true if there is an 'administration_lease_expiration' column at the 'cluster'
+     * table.
+     */
+    protected boolean hasClusterAdministrationLeaseExpirationColumn() {
+        return !getJdbcTemplate().queryForList(sqlHasClusterAdministrationLeaseExpirationColumn).isEmpty();
+    }
+
+    /**
+     * It creates the 'administration_lease_expiration' column at the 'cluster' table.
+     */
+    protected void createClusterAdministrationLeaseExpirationColumn() {
+        getJdbcTemplate().execute(sqlCreateClusterAdministrationLeaseExpirationColumn);
+    }
+
     /**
      * It returns true if it has a row with the 'autonomiccs.clustermanager.algorithm' at the table
      * 'configuration'.
@@ -157,6 +254,23 @@ public class ConfigureDatabaseDao extends JdbcDaoSupport {
         getJdbcTemplate().execute(sqlInsertIntoConfigurationClusterAlgorithms);
     }
 
+    /**
+     * It returns true if it has a row with the given configuration name at the table
+     * 'configuration'.
+     */
+    protected boolean hasConfiguration(String configurationName) {
+        return !getJdbcTemplate().queryForList(String.format(sqlHasConfiguration, configurationName)).isEmpty();
+    }
+
+    /**
+     * It inserts a row with the given Autonomiccs configuration at the table 'configuration'; its
+     * value is also used as the default value.
+     */
+    protected void insertConfiguration(AutonomiccsConfiguration configuration) {
+        String value = configuration.value == null ? "null" : String.format("'%s'", configuration.value);
+        getJdbcTemplate().execute(String.format(sqlInsertIntoConfiguration, configuration.name, value, configuration.description, value, configuration.scope));
+    }
+
     /**
      * It returns true if there is a table called 'AutonomiccsSystemVm'.
      */
@@ -171,4 +285,21 @@ public class ConfigureDatabaseDao extends JdbcDaoSupport {
         getJdbcTemplate().execute(sqlCreateAutonomiccsSystemVmTable);
     }
 
+    /**
+     * A row of the 'configuration' table inserted by the Autonomiccs platform.
+     */
+    protected static class AutonomiccsConfiguration {
+        protected final String name;
+        protected final String value;
+        protected final String description;
+        protected final String scope;
+
+        protected AutonomiccsConfiguration(String name, String value, String description, String scope) {
+            this.name = name;
+            this.value = value;
+            this.description = description;
+            this.scope = scope;
+        }
+    }
+
 }
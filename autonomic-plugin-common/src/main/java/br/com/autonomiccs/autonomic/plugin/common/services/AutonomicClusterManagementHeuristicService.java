@@ -22,8 +22,11 @@
  */
 package br.com.autonomiccs.autonomic.plugin.common.services;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.cloudstack.framework.config.dao.ConfigurationDao;
 import org.apache.commons.lang.StringUtils;
@@ -32,37 +35,321 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.cloud.dc.ClusterVO;
+
 import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.DispersionClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.TimeBudgetedClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.TunableClusterAdministrationHeuristicAlgorithm;
 import br.com.autonomiccs.autonomic.administration.algorithms.impl.ClusterManagementDummyAlgorithm;
 
 /**
  * This class manages the instantiation of cluster administration heuristics; those classes
- * implement the interface {@link ClusterAdministrationHeuristicAlgorithm}.
+ * implement the interface {@link ClusterAdministrationHeuristicAlgorithm}. The configured heuristic
+ * is instantiated once and shared; the configuration is checked again only after a time to live,
+ * and the heuristic is instantiated again only if the configured value has changed.
+ *
+ * Each cluster can override the global configurations (heuristic, planning time budget,
+ * consolidation and dispersion parameters) with cluster details of the same name; each cluster has its own
+ * instance of the heuristic ({@link #getAdministrationAlgorithm(long)}), configured with the
+ * cluster parameters.
  */
 @Service("autonomicClusterManagementHeuristicService")
 public class AutonomicClusterManagementHeuristicService {
 
     public final static String CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.algorithm";
+    public final static String CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.planning.time.budget";
+    public final static String CROSS_CLUSTER_PLANNING_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.crosscluster.planning";
+    public final static String CLUSTER_INTERVAL_BETWEEN_CONSOLIDATION_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.consolidation.interval";
+    public final static String MAXIMUM_USAGE_TO_POWER_OFF_HOSTS_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.consolidation.max.usage";
+    public final static String MAXIMUM_NUMBER_OF_HOSTS_TO_EVACUATE_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.consolidation.max.evacuated.hosts";
+    public final static String NUMBER_OF_STANDARD_DEVIATION_CANDIDATES_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.dispersion.stddev.candidates";
+
+    /**
+     * Configurations that can be set for each cluster; the cluster heuristic is instantiated again
+     * when any of them changes.
+     */
+    protected final static List<String> CLUSTER_CONFIGURATION_KEYS = Arrays.asList(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY,
+            CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY, CLUSTER_INTERVAL_BETWEEN_CONSOLIDATION_IN_CONFIGURATION_KEY, MAXIMUM_USAGE_TO_POWER_OFF_HOSTS_IN_CONFIGURATION_KEY,
+            MAXIMUM_NUMBER_OF_HOSTS_TO_EVACUATE_IN_CONFIGURATION_KEY, NUMBER_OF_STANDARD_DEVIATION_CANDIDATES_IN_CONFIGURATION_KEY);
+
+    protected final static long DEFAULT_ALGORITHM_CONFIGURATION_TIME_TO_LIVE_IN_MILLISECONDS = 60 * 1000;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    protected final Map<String, Class<? extends ClusterAdministrationHeuristicAlgorithm>> algorithmsMap = new HashMap<>();
+    protected final Map<String, Class<? extends ClusterAdministrationHeuristicAlgorithm>> algorithmsMap = new ConcurrentHashMap<>();
+
+    /**
+     * Heuristics used by each cluster (cluster 'id' to heuristic) with the cluster configuration
+     * used to create them.
+     */
+    protected final Map<Long, ClusterAdministrationAlgorithm> clustersAlgorithms = new HashMap<>();
+
+    private long algorithmConfigurationTimeToLiveInMilliseconds = DEFAULT_ALGORITHM_CONFIGURATION_TIME_TO_LIVE_IN_MILLISECONDS;
+
+    private ClusterAdministrationHeuristicAlgorithm administrationAlgorithm;
+
+    /**
+     * Value of the 'autonomiccs.clustermanager.algorithm' configuration used to create the
+     * {@link #administrationAlgorithm}.
+     */
+    private String administrationAlgorithmName;
+    private long administrationAlgorithmCheckedAtInMilliseconds;
+    private long administrationAlgorithmVersion;
 
     @Autowired
     protected ConfigurationDao configurationDao;
 
+    @Autowired
+    protected ClusterService clusterService;
+
+    @Autowired
+    protected AutonomiccsConfigurationService autonomiccsConfigurationService;
+
     /**
      * Returns the instance of the Administration algorithm configured by the system administrator;
      * if it can not find the configured heuristic it returns the
-     * {@link ClusterManagementDummyAlgorithm}.
+     * {@link ClusterManagementDummyAlgorithm}. The instance is shared by all callers; the
+     * configuration is read again only when the time to live of the last check expires, and a new
+     * instance is created (with {@link #createAdministrationAlgorithm(String)}) only if the
+     * configured value has changed.
+     */
+    public synchronized ClusterAdministrationHeuristicAlgorithm getAdministrationAlgorithm() {
+        long currentTime = getCurrentTimeInMilliseconds();
+        if (administrationAlgorithm != null && currentTime - administrationAlgorithmCheckedAtInMilliseconds < algorithmConfigurationTimeToLiveInMilliseconds) {
+            return administrationAlgorithm;
+        }
+        String algorithmName = StringUtils.trimToEmpty(configurationDao.getValue(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY));
+        administrationAlgorithmCheckedAtInMilliseconds = currentTime;
+        if (administrationAlgorithm == null || !algorithmName.equals(administrationAlgorithmName)) {
+            administrationAlgorithm = createAdministrationAlgorithm(algorithmName);
+            administrationAlgorithmName = algorithmName;
+            administrationAlgorithmVersion++;
+            logger.info(String.format("Using the administration algorithm [%s] (version [%d]).", administrationAlgorithm.getClass().getName(), administrationAlgorithmVersion));
+        }
+        return administrationAlgorithm;
+    }
+
+    /**
+     * It creates the Administration algorithm with the given name; if the name is blank it returns
+     * the {@link ClusterManagementDummyAlgorithm}.
      */
-    public ClusterAdministrationHeuristicAlgorithm getAdministrationAlgorithm() {
-        String algorithmName = configurationDao.getValue(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY);
+    protected ClusterAdministrationHeuristicAlgorithm createAdministrationAlgorithm(String algorithmName) {
         if (StringUtils.isBlank(algorithmName)) {
             return getDummyClusterManagementHeuristc();
         }
         return getInstanceOfClass(algorithmName);
     }
 
+    /**
+     * Returns the instance of the Administration algorithm configured to manage the cluster with the
+     * given id. The cluster configuration ({@link #getClusterConfiguration(long)}) is read again
+     * only when the time to live of the last check expires, and a new instance is created (with
+     * {@link #createClusterAdministrationAlgorithm(long, Map)}) only if the cluster configuration
+     * has changed.
+     */
+    public ClusterAdministrationHeuristicAlgorithm getAdministrationAlgorithm(long clusterId) {
+        synchronized (clustersAlgorithms) {
+            long currentTime = getCurrentTimeInMilliseconds();
+            ClusterAdministrationAlgorithm clusterAlgorithm = clustersAlgorithms.get(clusterId);
+            if (clusterAlgorithm != null && currentTime - clusterAlgorithm.checkedAtInMilliseconds < algorithmConfigurationTimeToLiveInMilliseconds) {
+                return clusterAlgorithm.algorithm;
+            }
+            Map<String, String> clusterConfiguration = getClusterConfiguration(clusterId);
+            if (clusterAlgorithm == null || !clusterConfiguration.equals(clusterAlgorithm.configuration)) {
+                clusterAlgorithm = new ClusterAdministrationAlgorithm(clusterConfiguration, createClusterAdministrationAlgorithm(clusterId, clusterConfiguration));
+                clustersAlgorithms.put(clusterId, clusterAlgorithm);
+                logger.info(String.format("Using the administration algorithm [%s] on cluster [id=%d] with configuration %s.", clusterAlgorithm.algorithm.getClass().getName(), clusterId,
+                        clusterConfiguration));
+            }
+            clusterAlgorithm.checkedAtInMilliseconds = currentTime;
+            return clusterAlgorithm.algorithm;
+        }
+    }
+
+    /**
+     * It returns the value of each configuration in {@link #CLUSTER_CONFIGURATION_KEYS} for the
+     * cluster with the given id (using {@link #getClusterConfigurationValue(long, String)}).
+     */
+    protected Map<String, String> getClusterConfiguration(long clusterId) {
+        Map<String, String> clusterConfiguration = new HashMap<>();
+        for (String configurationKey : CLUSTER_CONFIGURATION_KEYS) {
+            clusterConfiguration.put(configurationKey, getClusterConfigurationValue(clusterId, configurationKey));
+        }
+        return clusterConfiguration;
+    }
+
+    /**
+     * It returns the value of the cluster detail with the given name; if the cluster does not have
+     * it, the value of the global configuration is returned. Blank values are returned as an empty
+     * string.
+     */
+    protected String getClusterConfigurationValue(long clusterId, String configurationKey) {
+        String value = clusterService.getClusterDetailValue(clusterId, configurationKey);
+        if (StringUtils.isBlank(value)) {
+            value = configurationDao.getValue(configurationKey);
+        }
+        return StringUtils.trimToEmpty(value);
+    }
+
+    /**
+     * It creates the Administration algorithm of the cluster with the given configuration (using
+     * {@link #createAdministrationAlgorithm(String)}). If the algorithm is a
+     * {@link TimeBudgetedClusterAdministrationHeuristicAlgorithm}, its planning time budget is
+     * configured with
+     * {@link #configurePlanningTimeBudget(long, String, TimeBudgetedClusterAdministrationHeuristicAlgorithm)};
+     * if it is a {@link TunableClusterAdministrationHeuristicAlgorithm}, its parameters are
+     * configured with
+     * {@link #configureConsolidationParameters(long, Map, TunableClusterAdministrationHeuristicAlgorithm)};
+     * if it is a {@link DispersionClusterAdministrationHeuristicAlgorithm}, its number of standard
+     * deviation candidates is configured with
+     * {@link #configureNumberOfStandardDeviationCandidates(long, String, DispersionClusterAdministrationHeuristicAlgorithm)}.
+     */
+    protected ClusterAdministrationHeuristicAlgorithm createClusterAdministrationAlgorithm(long clusterId, Map<String, String> clusterConfiguration) {
+        ClusterAdministrationHeuristicAlgorithm administrationAlgorithm = createAdministrationAlgorithm(clusterConfiguration.get(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY));
+        if (administrationAlgorithm instanceof TimeBudgetedClusterAdministrationHeuristicAlgorithm) {
+            configurePlanningTimeBudget(clusterId, clusterConfiguration.get(CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY),
+                    (TimeBudgetedClusterAdministrationHeuristicAlgorithm)administrationAlgorithm);
+        }
+        if (administrationAlgorithm instanceof TunableClusterAdministrationHeuristicAlgorithm) {
+            configureConsolidationParameters(clusterId, clusterConfiguration, (TunableClusterAdministrationHeuristicAlgorithm)administrationAlgorithm);
+        }
+        if (administrationAlgorithm instanceof DispersionClusterAdministrationHeuristicAlgorithm) {
+            configureNumberOfStandardDeviationCandidates(clusterId, clusterConfiguration.get(NUMBER_OF_STANDARD_DEVIATION_CANDIDATES_IN_CONFIGURATION_KEY),
+                    (DispersionClusterAdministrationHeuristicAlgorithm)administrationAlgorithm);
+        }
+        return administrationAlgorithm;
+    }
+
+    /**
+     * It returns true if the Administration algorithm ({@link #getAdministrationAlgorithm()}) or the
+     * algorithm of any cluster ({@link #getAdministrationAlgorithm(long)}) can shutdown hosts.
+     */
+    public boolean canAnyAdministrationAlgorithmShutdownHosts() {
+        if (getAdministrationAlgorithm().canHeuristicShutdownHosts()) {
+            return true;
+        }
+        for (ClusterVO cluster : clusterService.listAllClusters()) {
+            if (cluster.getRemoved() == null && getAdministrationAlgorithm(cluster.getId()).canHeuristicShutdownHosts()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of times the Administration algorithm was instantiated; it changes every
+     *         time the configured algorithm changes.
+     */
+    public synchronized long getAdministrationAlgorithmVersion() {
+        return administrationAlgorithmVersion;
+    }
+
+    public void setAlgorithmConfigurationTimeToLiveInMilliseconds(long algorithmConfigurationTimeToLiveInMilliseconds) {
+        this.algorithmConfigurationTimeToLiveInMilliseconds = algorithmConfigurationTimeToLiveInMilliseconds;
+    }
+
+    /**
+     * @return the current time in milliseconds ({@link System#currentTimeMillis()}).
+     */
+    protected long getCurrentTimeInMilliseconds() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * It sets the planning time budget (milliseconds) of the algorithm with the value of the
+     * 'autonomiccs.clustermanager.planning.time.budget' configuration of the cluster (
+     * {@link #getClusterConfigurationValue(long, String)}). If it is not a positive number, the
+     * algorithm keeps its default budget ({@link AutonomiccsConfigurationService#parseLong(String, String, long, long)}).
+     */
+    protected void configurePlanningTimeBudget(long clusterId, String planningTimeBudget, TimeBudgetedClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+        administrationAlgorithm.setPlanningTimeBudgetInMilliseconds(autonomiccsConfigurationService.parseLong(
+                getClusterConfigurationName(clusterId, CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY), planningTimeBudget, 1, administrationAlgorithm.getPlanningTimeBudgetInMilliseconds()));
+    }
+
+    /**
+     * It sets the interval between consolidations (seconds), the maximum usage to power off hosts
+     * (from 0 to 1) and the maximum number of hosts evacuated by each migration plan (0 for no
+     * limit) of the algorithm with the values of the
+     * 'autonomiccs.clustermanager.consolidation.interval',
+     * 'autonomiccs.clustermanager.consolidation.max.usage' and
+     * 'autonomiccs.clustermanager.consolidation.max.evacuated.hosts' configurations of the cluster
+     * (read with {@link AutonomiccsConfigurationService}). Values that are not valid are ignored;
+     * then, the algorithm keeps its default values.
+     */
+    protected void configureConsolidationParameters(long clusterId, Map<String, String> clusterConfiguration, TunableClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+        administrationAlgorithm.setClusterIntervalBetweenConsolidation(autonomiccsConfigurationService.parseInteger(
+                getClusterConfigurationName(clusterId, CLUSTER_INTERVAL_BETWEEN_CONSOLIDATION_IN_CONFIGURATION_KEY),
+                clusterConfiguration.get(CLUSTER_INTERVAL_BETWEEN_CONSOLIDATION_IN_CONFIGURATION_KEY), 0, administrationAlgorithm.getClusterIntervalBetweenConsolidation()));
+        administrationAlgorithm.setMaximumUsageToPowerOffHosts(autonomiccsConfigurationService.parseRatio(
+                getClusterConfigurationName(clusterId, MAXIMUM_USAGE_TO_POWER_OFF_HOSTS_IN_CONFIGURATION_KEY),
+                clusterConfiguration.get(MAXIMUM_USAGE_TO_POWER_OFF_HOSTS_IN_CONFIGURATION_KEY), administrationAlgorithm.getMaximumUsageToPowerOffHosts()));
+        administrationAlgorithm.setMaximumNumberOfHostsToEvacuate(autonomiccsConfigurationService.parseInteger(
+                getClusterConfigurationName(clusterId, MAXIMUM_NUMBER_OF_HOSTS_TO_EVACUATE_IN_CONFIGURATION_KEY),
+                clusterConfiguration.get(MAXIMUM_NUMBER_OF_HOSTS_TO_EVACUATE_IN_CONFIGURATION_KEY), 0, administrationAlgorithm.getMaximumNumberOfHostsToEvacuate()));
+    }
+
+    /**
+     * It sets the number of standard deviations simulated by the algorithm with the value of the
+     * 'autonomiccs.clustermanager.dispersion.stddev.candidates' configuration of the cluster. If it
+     * is not a positive number, the algorithm keeps its default number (
+     * {@link AutonomiccsConfigurationService#parseInteger(String, String, int, int)}).
+     */
+    protected void configureNumberOfStandardDeviationCandidates(long clusterId, String numberOfStandardDeviationCandidates,
+            DispersionClusterAdministrationHeuristicAlgorithm administrationAlgorithm) {
+        administrationAlgorithm.setNumberOfStandardDeviationCandidates(autonomiccsConfigurationService.parseInteger(
+                getClusterConfigurationName(clusterId, NUMBER_OF_STANDARD_DEVIATION_CANDIDATES_IN_CONFIGURATION_KEY), numberOfStandardDeviationCandidates, 1,
+                administrationAlgorithm.getNumberOfStandardDeviationCandidates()));
+    }
+
+    /**
+     * It returns the name of the given configuration of the cluster with the given id, used in the
+     * log messages of {@link AutonomiccsConfigurationService}.
+     */
+    private String getClusterConfigurationName(long clusterId, String configurationKey) {
+        return String.format("%s of cluster [id=%d]", configurationKey, clusterId);
+    }
+
+    /**
+     * It returns true if the 'autonomiccs.clustermanager.crosscluster.planning' configuration is
+     * 'true'; then, clusters that share zone wide storage are planned together.
+     */
+    public boolean isCrossClusterPlanningEnabled() {
+        return Boolean.parseBoolean(StringUtils.trim(configurationDao.getValue(CROSS_CLUSTER_PLANNING_IN_CONFIGURATION_KEY)));
+    }
+
+    /**
+     * It returns true if the given heuristics are instances of the same class configured with the
+     * same parameters (the planning time budget of
+     * {@link TimeBudgetedClusterAdministrationHeuristicAlgorithm}, the number of standard deviation
+     * candidates of {@link DispersionClusterAdministrationHeuristicAlgorithm} and the consolidation
+     * parameters of {@link TunableClusterAdministrationHeuristicAlgorithm}); only clusters whose
+     * heuristics match can be planned together.
+     */
+    public boolean isSameAdministrationAlgorithmConfiguration(ClusterAdministrationHeuristicAlgorithm administrationAlgorithm,
+            ClusterAdministrationHeuristicAlgorithm otherAdministrationAlgorithm) {
+        if (administrationAlgorithm.getClass() != otherAdministrationAlgorithm.getClass()
+                || administrationAlgorithm.getClusterIntervalBetweenConsolidation() != otherAdministrationAlgorithm.getClusterIntervalBetweenConsolidation()) {
+            return false;
+        }
+        if (administrationAlgorithm instanceof TimeBudgetedClusterAdministrationHeuristicAlgorithm
+                && ((TimeBudgetedClusterAdministrationHeuristicAlgorithm)administrationAlgorithm).getPlanningTimeBudgetInMilliseconds() != ((TimeBudgetedClusterAdministrationHeuristicAlgorithm)otherAdministrationAlgorithm)
+                        .getPlanningTimeBudgetInMilliseconds()) {
+            return false;
+        }
+        if (administrationAlgorithm instanceof DispersionClusterAdministrationHeuristicAlgorithm
+                && ((DispersionClusterAdministrationHeuristicAlgorithm)administrationAlgorithm).getNumberOfStandardDeviationCandidates() != ((DispersionClusterAdministrationHeuristicAlgorithm)otherAdministrationAlgorithm)
+                        .getNumberOfStandardDeviationCandidates()) {
+            return false;
+        }
+        if (administrationAlgorithm instanceof TunableClusterAdministrationHeuristicAlgorithm) {
+            TunableClusterAdministrationHeuristicAlgorithm tunableAlgorithm = (TunableClusterAdministrationHeuristicAlgorithm)administrationAlgorithm;
+            TunableClusterAdministrationHeuristicAlgorithm otherTunableAlgorithm = (TunableClusterAdministrationHeuristicAlgorithm)otherAdministrationAlgorithm;
+            return Double.compare(tunableAlgorithm.getMaximumUsageToPowerOffHosts(), otherTunableAlgorithm.getMaximumUsageToPowerOffHosts()) == 0
+                    && tunableAlgorithm.getMaximumNumberOfHostsToEvacuate() == otherTunableAlgorithm.getMaximumNumberOfHostsToEvacuate();
+        }
+        return true;
+    }
+
     /**
      * This method tries to instantiate a object with the given full qualified class name.
      */
@@ -112,4 +399,19 @@ public class AutonomicClusterManagementHeuristicService {
     protected ClusterAdministrationHeuristicAlgorithm getDummyClusterManagementHeuristc() {
         return getInstanceOfClass(ClusterManagementDummyAlgorithm.class);
     }
+
+    /**
+     * The heuristic of a cluster, the cluster configuration used to create it and the last time
+     * (milliseconds) the configuration was checked.
+     */
+    protected static class ClusterAdministrationAlgorithm {
+        private final Map<String, String> configuration;
+        private final ClusterAdministrationHeuristicAlgorithm algorithm;
+        private long checkedAtInMilliseconds;
+
+        protected ClusterAdministrationAlgorithm(Map<String, String> configuration, ClusterAdministrationHeuristicAlgorithm algorithm) {
+            this.configuration = configuration;
+            this.algorithm = algorithm;
+        }
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.plugin.common.services;
+
+import org.apache.cloudstack.framework.config.dao.ConfigurationDao;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class reads the numeric configurations of the Autonomiccs platform. Values that are not
+ * set are replaced by the given default values; values that are not valid are also replaced by
+ * them, logging a warning.
+ */
+@Service
+public class AutonomiccsConfigurationService {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    protected ConfigurationDao configurationDao;
+
+    /**
+     * It returns the value of the given global configuration; if it is not set or it is not a
+     * positive number, it returns the given default value.
+     */
+    public int getPositiveIntegerConfiguration(String configurationKey, int defaultValue) {
+        return parseInteger(configurationKey, configurationDao.getValue(configurationKey), 1, defaultValue);
+    }
+
+    /**
+     * It returns the value of the given global configuration; if it is not set or it is not a
+     * number greater than 0 and lower or equal to 1, it returns the given default value.
+     */
+    public double getRatioConfiguration(String configurationKey, double defaultValue) {
+        return parseRatio(configurationKey, configurationDao.getValue(configurationKey), defaultValue);
+    }
+
+    /**
+     * It returns the given value of the configuration as an integer; if it is blank, or it is not a
+     * number greater or equal to the given minimum value, it returns the given default value. The
+     * configuration name is used only in the log messages.
+     */
+    public int parseInteger(String configurationName, String value, int minimumValue, int defaultValue) {
+        return (int)parseLong(configurationName, value, minimumValue, Integer.MAX_VALUE, defaultValue);
+    }
+
+    /**
+     * It returns the given value of the configuration as a long; if it is blank, or it is not a
+     * number greater or equal to the given minimum value, it returns the given default value.
+     */
+    public long parseLong(String configurationName, String value, long minimumValue, long defaultValue) {
+        return parseLong(configurationName, value, minimumValue, Long.MAX_VALUE, defaultValue);
+    }
+
+    /**
+     * It returns the given value of the configuration as a ratio; if it is blank, or it is not a
+     * number greater than 0 and lower or equal to 1, it returns the given default value.
+     */
+    public double parseRatio(String configurationName, String value, double defaultValue) {
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            double ratio = Double.parseDouble(value.trim());
+            if (ratio > 0 && ratio <= 1) {
+                return ratio;
+            }
+        } catch (NumberFormatException e) {
+            logger.debug(String.format("Configuration [%s] is not a number [%s].", configurationName, value), e);
+        }
+        logger.warn(String.format("Invalid value [%s] for configuration [%s], using the default value [%.2f].", value, configurationName, defaultValue));
+        return defaultValue;
+    }
+
+    private long parseLong(String configurationName, String value, long minimumValue, long maximumValue, long defaultValue) {
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            long configurationValue = Long.parseLong(value.trim());
+            if (configurationValue >= minimumValue && configurationValue <= maximumValue) {
+                return configurationValue;
+            }
+        } catch (NumberFormatException e) {
+            logger.debug(String.format("Configuration [%s] is not a number [%s].", configurationName, value), e);
+        }
+        logger.warn(String.format("Invalid value [%s] for configuration [%s], using the default value [%d].", value, configurationName, defaultValue));
+        return defaultValue;
+    }
+}
@@ -0,0 +1,575 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.plugin.common.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.cloud.dc.DataCenterVO;
+import com.cloud.host.Host;
+import com.cloud.host.HostVO;
+import com.cloud.host.Status;
+import com.cloud.org.Cluster;
+import com.cloud.utils.fsm.StateListener;
+import com.cloud.utils.fsm.StateMachine2;
+import com.cloud.vm.VirtualMachine;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ServiceOfferingResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.services.HostResourcesBulkLoaderService;
+import br.com.autonomiccs.autonomic.algorithms.commons.services.HostResourcesService;
+import br.com.autonomiccs.autonomic.algorithms.commons.services.ServiceOfferingResourcesCache;
+
+/**
+ * This class keeps an in-memory model of the resources allocated to VMs in each host of the cloud.
+ * The model is loaded once (when it is first used) and then it is kept up to date by listening to
+ * the VMs state transitions (start, stop, migration) and to the hosts status transitions; the
+ * hosts usage is held in primitive arrays indexed by host.
+ * The listeners only queue the transitions (they never wait for the model lock, which is held while
+ * the model is loaded); the queued transitions are applied by the readers of the model. Since the
+ * listeners only see the transitions of this management server (and events may be missed), each
+ * zone of the model is periodically reconciled with the database ({@link #reconcileWithDatabase()})
+ * and each cluster is reconciled before it is planned ({@link #reconcileCluster(Cluster)}).
+ */
+@Service
+public class CloudResourceModelService implements InitializingBean {
+
+    private final static int INITIAL_NUMBER_OF_HOSTS = 64;
+    private static final long ONE_MINUTE_IN_MILLISECONDS = 60000;
+    private static final int NUMBER_OF_MINUTES_BETWEEN_RECONCILIATIONS = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private ZoneService zoneService;
+
+    @Autowired
+    private HostService hostService;
+
+    @Autowired
+    private HostResourcesService hostResourcesService;
+
+    @Autowired
+    private HostResourcesBulkLoaderService hostResourcesBulkLoaderService;
+
+    @Autowired
+    private ServiceOfferingResourcesCache serviceOfferingResourcesCache;
+
+    protected VmStateListener vmStateListener = new VmStateListener();
+    protected HostStatusListener hostStatusListener = new HostStatusListener();
+
+    private volatile boolean loaded;
+
+    private final Queue<ModelTransition> pendingTransitions = new ConcurrentLinkedQueue<>();
+
+    private Map<Long, Integer> hostsIndexes = new HashMap<>();
+    private Map<Long, Long> hostsZones = new HashMap<>();
+    private Map<Long, Long> hostsClusters = new HashMap<>();
+    private int numberOfHosts;
+    private long[] hostsUsedCpu = new long[INITIAL_NUMBER_OF_HOSTS];
+    private long[] hostsUsedMemoryInMegaBytes = new long[INITIAL_NUMBER_OF_HOSTS];
+    private boolean[] hostsUp = new boolean[INITIAL_NUMBER_OF_HOSTS];
+
+    private Map<Long, VmResources> vmsResources = new HashMap<>();
+    private Map<Long, Long> vmsHosts = new HashMap<>();
+
+    /**
+     * It registers the listeners of VMs state transitions and hosts status transitions.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        VirtualMachine.State.getStateMachine().registerListener(vmStateListener);
+        Status.getStateMachine().registerListener(hostStatusListener);
+        logger.info("Cloud resource model service initialized.");
+    }
+
+    /**
+     * It creates the {@link HostResources} of the given hosts (with
+     * {@link HostResourcesService#createHostsResources(List, Map)}), taking their VMs from the
+     * model instead of the database.
+     */
+    public synchronized List<HostResources> createHostsResources(List<HostVO> hosts) {
+        loadIfNeeded();
+        Map<Long, List<VmResources>> hostsVmsResources = new HashMap<>();
+        for (HostVO host : hosts) {
+            hostsVmsResources.put(host.getId(), new ArrayList<VmResources>());
+        }
+        for (Entry<Long, Long> vmHost : vmsHosts.entrySet()) {
+            List<VmResources> hostVmsResources = hostsVmsResources.get(vmHost.getValue());
+            if (hostVmsResources != null) {
+                VmResources vm = vmsResources.get(vmHost.getKey());
+                hostVmsResources.add(new VmResources(vm.getVmId(), vm.getNumberOfCpus(), vm.getCpuSpeed(), vm.getMemoryInMegaBytes()));
+            }
+        }
+        return hostResourcesService.createHostsResources(hosts, hostsVmsResources);
+    }
+
+    /**
+     * @return the cpu (number of cpus * cpu speed) allocated to VMs in the given host.
+     */
+    public synchronized long getHostUsedCpu(long hostId) {
+        loadIfNeeded();
+        Integer hostIndex = hostsIndexes.get(hostId);
+        return hostIndex == null ? 0 : hostsUsedCpu[hostIndex];
+    }
+
+    /**
+     * @return the memory (in MB) allocated to VMs in the given host.
+     */
+    public synchronized long getHostUsedMemoryInMegaBytes(long hostId) {
+        loadIfNeeded();
+        Integer hostIndex = hostsIndexes.get(hostId);
+        return hostIndex == null ? 0 : hostsUsedMemoryInMegaBytes[hostIndex];
+    }
+
+    /**
+     * It discards the model and loads it again from the database.
+     */
+    public synchronized void reload() {
+        hostsIndexes.clear();
+        hostsZones.clear();
+        hostsClusters.clear();
+        numberOfHosts = 0;
+        Arrays.fill(hostsUsedCpu, 0);
+        Arrays.fill(hostsUsedMemoryInMegaBytes, 0);
+        Arrays.fill(hostsUp, false);
+        vmsResources.clear();
+        vmsHosts.clear();
+        loaded = false;
+        loadIfNeeded();
+    }
+
+    /**
+     * If the model was not loaded yet, it loads the hosts that are 'Up' (and their VMs) of each
+     * enabled zone with {@link HostResourcesBulkLoaderService#loadZoneHostsResourcesByCluster(long)}.
+     * Then, it applies the transitions queued by the listeners. Transitions queued before the model
+     * is loaded are discarded, since they are already in the database when it gets loaded.
+     */
+    protected synchronized void loadIfNeeded() {
+        if (!loaded) {
+            loaded = true;
+            pendingTransitions.clear();
+            try {
+                for (DataCenterVO zone : zoneService.listAllZonesEnabled()) {
+                    addZoneHosts(zone.getId(), hostResourcesBulkLoaderService.loadZoneHostsResourcesByCluster(zone.getId()));
+                }
+            } catch (RuntimeException e) {
+                loaded = false;
+                throw e;
+            }
+            logger.info(String.format("Cloud resource model loaded with [%d] hosts and [%d] VMs.", numberOfHosts, vmsResources.size()));
+        }
+        applyPendingTransitions();
+    }
+
+    /**
+     * It reconciles the model with the database, replacing the hosts of each enabled zone (with
+     * {@link #reconcileZone(long)}); it catches changes made by other management servers and
+     * transitions that were not seen by the listeners. Nothing is done if the model was not loaded.
+     */
+    @Scheduled(initialDelay = ONE_MINUTE_IN_MILLISECONDS * NUMBER_OF_MINUTES_BETWEEN_RECONCILIATIONS, fixedDelay = ONE_MINUTE_IN_MILLISECONDS
+            * NUMBER_OF_MINUTES_BETWEEN_RECONCILIATIONS)
+    public void reconcileWithDatabase() {
+        if (!loaded) {
+            return;
+        }
+        for (DataCenterVO zone : zoneService.listAllZonesEnabled()) {
+            try {
+                reconcileZone(zone.getId());
+            } catch (Exception e) {
+                logger.error(String.format("Could not reconcile the cloud resource model of zone [id=%d] with the database.", zone.getId()), e);
+            }
+        }
+    }
+
+    /**
+     * It loads the hosts that are 'Up' (and their VMs) of the given zone from the database, without
+     * holding the model lock, and then replaces the hosts of that zone in the model. The queued
+     * transitions are applied before the zone is loaded and again after it is replaced, so that the
+     * transitions that happen while the zone is loaded are not lost.
+     */
+    protected void reconcileZone(long zoneId) {
+        synchronized (this) {
+            applyPendingTransitions();
+        }
+        Map<Long, List<HostResources>> zoneHostsByCluster = hostResourcesBulkLoaderService.loadZoneHostsResourcesByCluster(zoneId);
+        synchronized (this) {
+            List<Long> zoneHosts = new ArrayList<>();
+            for (Entry<Long, Long> hostZone : hostsZones.entrySet()) {
+                if (hostZone.getValue() == zoneId) {
+                    zoneHosts.add(hostZone.getKey());
+                }
+            }
+            removeHosts(zoneHosts);
+            addZoneHosts(zoneId, zoneHostsByCluster);
+            applyPendingTransitions();
+        }
+        logger.debug(String.format("Cloud resource model of zone [id=%d] reconciled with the database.", zoneId));
+    }
+
+    /**
+     * It loads the hosts that are 'Up' (and their VMs) of the given cluster from the database (with
+     * {@link HostResourcesBulkLoaderService#loadClusterHostsResources(Cluster)}), without holding
+     * the model lock, and then replaces the hosts of that cluster in the model, as
+     * {@link #reconcileZone(long)} does for a zone. It is called when the cluster administration
+     * lease is acquired, so that the cluster is planned with the VMs moved by other management
+     * servers. Nothing is done if the model was not loaded, as it is then loaded from the database.
+     */
+    public void reconcileCluster(Cluster cluster) {
+        if (!loaded) {
+            return;
+        }
+        synchronized (this) {
+            applyPendingTransitions();
+        }
+        List<HostResources> clusterHostsResources = hostResourcesBulkLoaderService.loadClusterHostsResources(cluster);
+        synchronized (this) {
+            List<Long> clusterHosts = new ArrayList<>();
+            for (Entry<Long, Long> hostCluster : hostsClusters.entrySet()) {
+                if (hostCluster.getValue() == cluster.getId()) {
+                    clusterHosts.add(hostCluster.getKey());
+                }
+            }
+            removeHosts(clusterHosts);
+            addClusterHosts(cluster.getDataCenterId(), cluster.getId(), clusterHostsResources);
+            applyPendingTransitions();
+        }
+        logger.debug(String.format("Cloud resource model of cluster [id=%d] reconciled with the database.", cluster.getId()));
+    }
+
+    /**
+     * It removes the VMs of the given hosts from the model and marks the hosts as not 'Up'.
+     */
+    protected void removeHosts(List<Long> hosts) {
+        for (Long hostId : hosts) {
+            deallocateHostVms(hostId);
+            hostsUp[hostsIndexes.get(hostId)] = false;
+            hostsZones.remove(hostId);
+            hostsClusters.remove(hostId);
+        }
+    }
+
+    /**
+     * It adds to the model the given hosts (that are 'Up') of the given zone and their VMs.
+     */
+    protected void addZoneHosts(long zoneId, Map<Long, List<HostResources>> zoneHostsByCluster) {
+        for (Entry<Long, List<HostResources>> clusterHosts : zoneHostsByCluster.entrySet()) {
+            addClusterHosts(zoneId, clusterHosts.getKey(), clusterHosts.getValue());
+        }
+    }
+
+    /**
+     * It adds to the model the given hosts (that are 'Up') of the given cluster and their VMs.
+     */
+    protected void addClusterHosts(long zoneId, long clusterId, List<HostResources> clusterHosts) {
+        for (HostResources host : clusterHosts) {
+            hostsUp[getOrAddHostIndex(host.getHostId())] = true;
+            hostsZones.put(host.getHostId(), zoneId);
+            hostsClusters.put(host.getHostId(), clusterId);
+            for (VmResources vm : host.getVmsResources()) {
+                allocateVm(vm, host.getHostId());
+            }
+        }
+    }
+
+    /**
+     * It queues the state transition of the given VM, if the model is loaded; it does not wait for
+     * the model lock. The VM values are copied, as the given object may change before the
+     * transition is applied.
+     */
+    protected void queueVmStateTransition(VirtualMachine vm, VirtualMachine.State newState) {
+        if (loaded) {
+            pendingTransitions.add(new VmStateTransition(vm.getId(), vm.getHostId(), vm.getServiceOfferingId(), newState));
+        }
+    }
+
+    /**
+     * It queues the status transition of the given host, if the model is loaded; it does not wait
+     * for the model lock.
+     */
+    protected void queueHostStatusTransition(long hostId, Status newStatus) {
+        if (loaded) {
+            pendingTransitions.add(new HostStatusTransition(hostId, newStatus));
+        }
+    }
+
+    /**
+     * It applies (in order) the transitions queued by the listeners; it must be called holding the
+     * model lock.
+     */
+    protected void applyPendingTransitions() {
+        ModelTransition transition;
+        while ((transition = pendingTransitions.poll()) != null) {
+            try {
+                transition.applyTo(this);
+            } catch (Exception e) {
+                logger.error(String.format("Could not update the cloud resource model with the transition [%s].", transition), e);
+            }
+        }
+    }
+
+    /**
+     * It updates the model after a VM state transition: the VM is removed from the host it was
+     * allocated to and, if the new state uses host resources ({@link #isVmStateUsingHostResources}),
+     * it is allocated to its current host.
+     */
+    protected void updateVm(long vmId, Long hostId, long serviceOfferingId, VirtualMachine.State newState) {
+        deallocateVm(vmId);
+        if (hostId == null || !isVmStateUsingHostResources(newState)) {
+            return;
+        }
+        ServiceOfferingResources serviceOffering = serviceOfferingResourcesCache.getServiceOfferingResources(serviceOfferingId);
+        if (serviceOffering == null) {
+            logger.warn(String.format("Could not find the service offering [id=%d] of VM [id=%d].", serviceOfferingId, vmId));
+            return;
+        }
+        allocateVm(new VmResources(vmId, serviceOffering.getNumberOfCpus(), serviceOffering.getCpuSpeed(), serviceOffering.getMemoryInMegaBytes()), hostId);
+    }
+
+    /**
+     * It updates the model after a host status transition. When a host comes back 'Up', its VMs are
+     * loaded again from the database (with {@link HostResourcesService#createHostResources(HostVO)}),
+     * since their state may have changed while the host was not reachable.
+     */
+    protected void updateHostStatus(long hostId, Status newStatus) {
+        int hostIndex = getOrAddHostIndex(hostId);
+        boolean wasUp = hostsUp[hostIndex];
+        hostsUp[hostIndex] = newStatus == Status.Up;
+        if (hostsUp[hostIndex] && !wasUp) {
+            reloadHostVms(hostId);
+        }
+    }
+
+    /**
+     * It removes the VMs of the given host from the model and allocates the VMs loaded from the
+     * database.
+     */
+    protected void reloadHostVms(long hostId) {
+        deallocateHostVms(hostId);
+        HostVO hostVO = hostService.findHostById(hostId);
+        if (hostVO == null) {
+            return;
+        }
+        for (VmResources vm : hostResourcesService.createHostResources(hostVO).getVmsResources()) {
+            allocateVm(vm, hostId);
+        }
+    }
+
+    /**
+     * It removes the VMs allocated to the given host from the model.
+     */
+    protected void deallocateHostVms(long hostId) {
+        List<Long> hostVms = new ArrayList<>();
+        for (Entry<Long, Long> vmHost : vmsHosts.entrySet()) {
+            if (vmHost.getValue() == hostId) {
+                hostVms.add(vmHost.getKey());
+            }
+        }
+        for (Long vmId : hostVms) {
+            deallocateVm(vmId);
+        }
+    }
+
+    /**
+     * It allocates the given VM in the given host (adding the host to the model if needed); if the VM
+     * is already allocated to a host, it is removed from it first.
+     */
+    protected void allocateVm(VmResources vm, long hostId) {
+        deallocateVm(vm.getVmId());
+        int hostIndex = getOrAddHostIndex(hostId);
+        hostsUsedCpu[hostIndex] += vm.getCpuSpeed() * vm.getNumberOfCpus();
+        hostsUsedMemoryInMegaBytes[hostIndex] += vm.getMemoryInMegaBytes();
+        vmsResources.put(vm.getVmId(), vm);
+        vmsHosts.put(vm.getVmId(), hostId);
+    }
+
+    /**
+     * It removes the VM with the given 'id' from the host it is allocated to; if the VM is not in the
+     * model, nothing is done.
+     */
+    protected void deallocateVm(long vmId) {
+        VmResources vm = vmsResources.remove(vmId);
+        if (vm == null) {
+            return;
+        }
+        int hostIndex = hostsIndexes.get(vmsHosts.remove(vmId));
+        hostsUsedCpu[hostIndex] -= vm.getCpuSpeed() * vm.getNumberOfCpus();
+        hostsUsedMemoryInMegaBytes[hostIndex] -= vm.getMemoryInMegaBytes();
+    }
+
+    /**
+     * It returns the index of the given host in the model arrays; hosts that are not in the model
+     * are added (as not 'Up'), growing the arrays if needed.
+     */
+    protected int getOrAddHostIndex(long hostId) {
+        Integer hostIndex = hostsIndexes.get(hostId);
+        if (hostIndex != null) {
+            return hostIndex;
+        }
+        if (numberOfHosts == hostsUp.length) {
+            int newLength = hostsUp.length * 2;
+            hostsUsedCpu = Arrays.copyOf(hostsUsedCpu, newLength);
+            hostsUsedMemoryInMegaBytes = Arrays.copyOf(hostsUsedMemoryInMegaBytes, newLength);
+            hostsUp = Arrays.copyOf(hostsUp, newLength);
+        }
+        hostsIndexes.put(hostId, numberOfHosts);
+        return numberOfHosts++;
+    }
+
+    /**
+     * A VM uses the resources of its host when it is {@link VirtualMachine.State#Running},
+     * {@link VirtualMachine.State#Migrating} or {@link VirtualMachine.State#Starting}.
+     */
+    protected boolean isVmStateUsingHostResources(VirtualMachine.State state) {
+        return VirtualMachine.State.Running == state || VirtualMachine.State.Migrating == state || VirtualMachine.State.Starting == state;
+    }
+
+    /**
+     * A transition queued by the listeners, to be applied to the model by its readers.
+     */
+    protected static abstract class ModelTransition {
+
+        protected abstract void applyTo(CloudResourceModelService model);
+    }
+
+    /**
+     * The state transition of a VM; it is applied with
+     * {@link CloudResourceModelService#updateVm(long, Long, long, VirtualMachine.State)}.
+     */
+    protected static class VmStateTransition extends ModelTransition {
+
+        private final long vmId;
+        private final Long hostId;
+        private final long serviceOfferingId;
+        private final VirtualMachine.State newState;
+
+        protected VmStateTransition(long vmId, Long hostId, long serviceOfferingId, VirtualMachine.State newState) {
+            this.vmId = vmId;
+            this.hostId = hostId;
+            this.serviceOfferingId = serviceOfferingId;
+            this.newState = newState;
+        }
+
+        @Override
+        protected void applyTo(CloudResourceModelService model) {
+            model.updateVm(vmId, hostId, serviceOfferingId, newState);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("VM [id=%d] to state [%s] on host [id=%d]", vmId, newState, hostId);
+        }
+    }
+
+    /**
+     * The status transition of a host; it is applied with
+     * {@link CloudResourceModelService#updateHostStatus(long, Status)}.
+     */
+    protected static class HostStatusTransition extends ModelTransition {
+
+        private final long hostId;
+        private final Status newStatus;
+
+        protected HostStatusTransition(long hostId, Status newStatus) {
+            this.hostId = hostId;
+            this.newStatus = newStatus;
+        }
+
+        @Override
+        protected void applyTo(CloudResourceModelService model) {
+            model.updateHostStatus(hostId, newStatus);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("host [id=%d] to status [%s]", hostId, newStatus);
+        }
+    }
+
+    /**
+     * Listens to VMs state transitions, queuing them with
+     * {@link CloudResourceModelService#queueVmStateTransition(VirtualMachine, VirtualMachine.State)}.
+     */
+    protected class VmStateListener implements StateListener<VirtualMachine.State, VirtualMachine.Event, VirtualMachine> {
+
+        @Override
+        public boolean preStateTransitionEvent(VirtualMachine.State oldState, VirtualMachine.Event event, VirtualMachine.State newState, VirtualMachine vo, boolean status,
+                Object opaque) {
+            return true;
+        }
+
+        @Override
+        public boolean postStateTransitionEvent(StateMachine2.Transition<VirtualMachine.State, VirtualMachine.Event> transition, VirtualMachine vo, boolean status,
+                Object opaque) {
+            if (!status) {
+                return true;
+            }
+            try {
+                queueVmStateTransition(vo, transition.getToState());
+            } catch (Exception e) {
+                logger.error(String.format("Could not queue the state transition of VM [id=%d] to the cloud resource model.", vo.getId()), e);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Listens to hosts status transitions, queuing them with
+     * {@link CloudResourceModelService#queueHostStatusTransition(long, Status)}.
+     */
+    protected class HostStatusListener implements StateListener<Status, Status.Event, Host> {
+
+        @Override
+        public boolean preStateTransitionEvent(Status oldState, Status.Event event, Status newState, Host vo, boolean status, Object opaque) {
+            return true;
+        }
+
+        @Override
+        public boolean postStateTransitionEvent(StateMachine2.Transition<Status, Status.Event> transition, Host vo, boolean status, Object opaque) {
+            if (!status) {
+                return true;
+            }
+            try {
+                queueHostStatusTransition(vo.getId(), transition.getToState());
+            } catch (Exception e) {
+                logger.error(String.format("Could not queue the status transition of host [id=%d] to the cloud resource model.", vo.getId()), e);
+            }
+            return true;
+        }
+    }
+
+}
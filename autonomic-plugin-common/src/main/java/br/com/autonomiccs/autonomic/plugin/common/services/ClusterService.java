@@ -22,13 +22,18 @@
  */
 package br.com.autonomiccs.autonomic.plugin.common.services;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.cloudstack.storage.datastore.db.PrimaryDataStoreDao;
+import org.apache.commons.collections.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.cloud.dc.ClusterDetailsVO;
 import com.cloud.dc.ClusterVO;
 import com.cloud.dc.dao.ClusterDao;
+import com.cloud.dc.dao.ClusterDetailsDao;
 
 /**
  * This class is intended to execute clusters operations; that means, searching, a single clusters,
@@ -40,6 +45,10 @@ public class ClusterService {
 
     @Autowired
     private ClusterDao clusterDao;
+    @Autowired
+    private ClusterDetailsDao clusterDetailsDao;
+    @Autowired
+    private PrimaryDataStoreDao primaryDataStoreDao;
 
     /**
      * It returns all clusters in the Pod with the given id.
@@ -69,4 +78,37 @@ public class ClusterService {
         return clusterDao.listAll();
     }
 
+    /**
+     * It returns the clusters (including the given one) whose VMs can be migrated to the given
+     * cluster and vice-versa: clusters of the same zone, with the same hypervisor type, when there is
+     * zone wide primary storage for that hypervisor type. If there is no zone wide primary storage,
+     * it returns only the given cluster.
+     */
+    public List<ClusterVO> listClustersSharingZoneWideStorage(ClusterVO cluster) {
+        List<ClusterVO> clusters = new ArrayList<>();
+        long zoneId = cluster.getDataCenterId();
+        if (CollectionUtils.isEmpty(primaryDataStoreDao.findZoneWideStoragePoolsByHypervisor(zoneId, cluster.getHypervisorType()))) {
+            clusters.add(cluster);
+            return clusters;
+        }
+        for (ClusterVO zoneCluster : clusterDao.listClustersByDcId(zoneId)) {
+            if (zoneCluster.getRemoved() == null && zoneCluster.getHypervisorType() == cluster.getHypervisorType()) {
+                clusters.add(zoneCluster);
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * It returns the value of the detail with the given name of the cluster ('cluster_details'
+     * table); if the cluster does not have that detail, it returns null.
+     */
+    public String getClusterDetailValue(long clusterId, String name) {
+        ClusterDetailsVO clusterDetail = clusterDetailsDao.findDetail(clusterId, name);
+        if (clusterDetail == null) {
+            return null;
+        }
+        return clusterDetail.getValue();
+    }
+
 }
@@ -121,6 +121,14 @@ public class HostService {
         return hostDao.listAllUpAndEnabledNonHAHosts(Type.Routing, cluster.getId(), cluster.getPodId(), cluster.getDataCenterId(), null);
     }
 
+    /**
+     * It returns a list of {@link HostVO} containing all hosts that are 'Up' and 'Enabled' in the
+     * zone with the given id.
+     */
+    public List<HostVO> listAllHostsInZone(long zoneId) {
+        return hostDao.listAllUpAndEnabledNonHAHosts(Type.Routing, null, null, zoneId, null);
+    }
+
     /**
      * It returns a list of {@link VMInstanceVO} containing all VMs of the host with the given id.
      */
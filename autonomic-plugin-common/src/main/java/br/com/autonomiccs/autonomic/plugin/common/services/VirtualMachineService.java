@@ -22,9 +22,14 @@
  */
 package br.com.autonomiccs.autonomic.plugin.common.services;
 
+import org.apache.cloudstack.storage.datastore.db.PrimaryDataStoreDao;
+import org.apache.cloudstack.storage.datastore.db.StoragePoolVO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.cloud.storage.ScopeType;
+import com.cloud.storage.VolumeVO;
+import com.cloud.storage.dao.VolumeDao;
 import com.cloud.vm.VMInstanceVO;
 import com.cloud.vm.dao.VMInstanceDao;
 
@@ -33,6 +38,10 @@ public class VirtualMachineService {
 
     @Autowired
     private VMInstanceDao vmInstanceDao;
+    @Autowired
+    private VolumeDao volumeDao;
+    @Autowired
+    private PrimaryDataStoreDao primaryDataStoreDao;
 
     public VMInstanceVO searchVmInstanceById(Long vmId) {
         return vmInstanceDao.findById(vmId);
@@ -45,4 +54,21 @@ public class VirtualMachineService {
     public void remove(long id) {
         vmInstanceDao.remove(id);
     }
+
+    /**
+     * It returns true if all volumes of the VM are allocated in zone wide primary storage pools;
+     * those VMs can be migrated to hosts of other clusters of the zone.
+     */
+    public boolean isVmUsingOnlyZoneWideStorage(long vmId) {
+        for (VolumeVO volume : volumeDao.findByInstance(vmId)) {
+            if (volume.getPoolId() == null) {
+                continue;
+            }
+            StoragePoolVO storagePool = primaryDataStoreDao.findById(volume.getPoolId());
+            if (storagePool == null || storagePool.getScope() != ScopeType.ZONE) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
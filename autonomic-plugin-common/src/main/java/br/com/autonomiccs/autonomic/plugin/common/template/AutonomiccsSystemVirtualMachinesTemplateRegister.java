@@ -102,7 +102,7 @@ public class AutonomiccsSystemVirtualMachinesTemplateRegister implements Initial
      */
     @Scheduled(initialDelay = ONE_MINUTE_IN_MILLISECONDS, fixedDelay = ONE_MINUTE_IN_MILLISECONDS * NUMBER_OF_MINUTES_BETWEEN_REGISTRATION_OF_TEMPLATES)
     public void registerTemplatesIfNeeded() {
-        if (autonomicManagementHeuristicService.getAdministrationAlgorithm().canHeuristicShutdownHosts() || hostService.isThereAnyHostOnCloudDeactivatedByOurManager()) {
+        if (autonomicManagementHeuristicService.canAnyAdministrationAlgorithmShutdownHosts() || hostService.isThereAnyHostOnCloudDeactivatedByOurManager()) {
             List<HypervisorType> allHypervisorsTypeInCloud = hostService.getAllHypervisorsTypeInCloud();
             for (HypervisorType hypervisorType : allHypervisorsTypeInCloud) {
                 if (!autonomiccsSystemVmTemplateService.isTemplateRegisteredForHypervisor(hypervisorType)) {
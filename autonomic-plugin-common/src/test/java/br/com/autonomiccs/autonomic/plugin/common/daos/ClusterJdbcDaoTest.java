@@ -42,6 +42,10 @@ public class ClusterJdbcDaoTest {
     private String sqlSetClusterAdministrationStatus = "UPDATE cluster SET administration_status=? WHERE id=?;";
     private String sqlGetClusterLastAdministration = "SELECT last_administration FROM cluster WHERE id=?;";
     private String sqlSetClusterLastAdministration = "UPDATE cluster SET last_administration=? WHERE id=?;";
+    private String sqlAcquireClusterAdministrationLease = "UPDATE cluster SET administration_status='InProgress', administration_owner=?, administration_lease_expiration=DATE_ADD(NOW(), INTERVAL ? SECOND) WHERE id=? AND (administration_status IS NULL OR administration_status<>'InProgress' OR administration_lease_expiration<NOW());";
+    private String sqlRenewClusterAdministrationLease = "UPDATE cluster SET administration_lease_expiration=DATE_ADD(NOW(), INTERVAL ? SECOND) WHERE id=? AND administration_status='InProgress' AND administration_owner=?;";
+    private String sqlReleaseClusterAdministrationLease = "UPDATE cluster SET administration_status='Done', administration_owner=NULL, administration_lease_expiration=NULL WHERE id=? AND administration_owner=?;";
+    private String sqlGetClusterAdministrationLeaseExpiration = "SELECT administration_lease_expiration FROM cluster WHERE id=?;";
     private JdbcTemplate jdbcTemplate;
 
     @Before
@@ -103,4 +107,70 @@ public class ClusterJdbcDaoTest {
         Mockito.verify(jdbcTemplate).update(sqlSetClusterLastAdministration, args);
     }
 
+    @Test
+    public void acquireClusterAdministrationLeaseTest() {
+        Object[] args = { "owner", 60, 0l };
+        Mockito.doReturn(1).when(jdbcTemplate).update(sqlAcquireClusterAdministrationLease, args);
+
+        boolean result = spy.acquireClusterAdministrationLease(0l, "owner", 60);
+
+        Mockito.verify(jdbcTemplate).update(sqlAcquireClusterAdministrationLease, args);
+        Assert.assertTrue(result);
+    }
+
+    @Test
+    public void acquireClusterAdministrationLeaseTestLeaseHeld() {
+        Object[] args = { "owner", 60, 0l };
+        Mockito.doReturn(0).when(jdbcTemplate).update(sqlAcquireClusterAdministrationLease, args);
+
+        boolean result = spy.acquireClusterAdministrationLease(0l, "owner", 60);
+
+        Mockito.verify(jdbcTemplate).update(sqlAcquireClusterAdministrationLease, args);
+        Assert.assertFalse(result);
+    }
+
+    @Test
+    public void renewClusterAdministrationLeaseTest() {
+        Object[] args = { 60, 0l, "owner" };
+        Mockito.doReturn(1).when(jdbcTemplate).update(sqlRenewClusterAdministrationLease, args);
+
+        boolean result = spy.renewClusterAdministrationLease(0l, "owner", 60);
+
+        Mockito.verify(jdbcTemplate).update(sqlRenewClusterAdministrationLease, args);
+        Assert.assertTrue(result);
+    }
+
+    @Test
+    public void renewClusterAdministrationLeaseTestLeaseLost() {
+        Object[] args = { 60, 0l, "owner" };
+        Mockito.doReturn(0).when(jdbcTemplate).update(sqlRenewClusterAdministrationLease, args);
+
+        boolean result = spy.renewClusterAdministrationLease(0l, "owner", 60);
+
+        Mockito.verify(jdbcTemplate).update(sqlRenewClusterAdministrationLease, args);
+        Assert.assertFalse(result);
+    }
+
+    @Test
+    public void releaseClusterAdministrationLeaseTest() {
+        Object[] args = { 0l, "owner" };
+        Mockito.doReturn(1).when(jdbcTemplate).update(sqlReleaseClusterAdministrationLease, args);
+
+        boolean result = spy.releaseClusterAdministrationLease(0l, "owner");
+
+        Mockito.verify(jdbcTemplate).update(sqlReleaseClusterAdministrationLease, args);
+        Assert.assertTrue(result);
+    }
+
+    @Test
+    public void getClusterAdministrationLeaseExpirationTest() {
+        Date expectedDate = new Date();
+        Mockito.doReturn(expectedDate).when(jdbcTemplate).queryForObject(Mockito.eq(sqlGetClusterAdministrationLeaseExpiration), Mockito.eq(Date.class), Mockito.eq(0l));
+
+        Date result = spy.getClusterAdministrationLeaseExpiration(0l);
+
+        Mockito.verify(jdbcTemplate).queryForObject(Mockito.eq(sqlGetClusterAdministrationLeaseExpiration), Mockito.eq(Date.class), Mockito.eq(0l));
+        Assert.assertEquals(expectedDate, result);
+    }
+
 }
@@ -54,6 +54,10 @@ public class ConfigureDatabaseDaoTest {
     private String sqlCreateClusterAdministrationStatusColumn = "ALTER TABLE cluster ADD administration_status VARCHAR(60);";
     private String sqlHasClusterLastAdministrationColumn = "SHOW COLUMNS FROM cluster LIKE 'last_administration';";
     private String sqlCreateClusterLastAdministrationColumn = "ALTER TABLE cluster ADD last_administration DATETIME;";
+    private String sqlHasClusterAdministrationOwnerColumn = "SHOW COLUMNS FROM cluster LIKE 'administration_owner';";
+    private String sqlCreateClusterAdministrationOwnerColumn = "ALTER TABLE cluster ADD administration_owner VARCHAR(255);";
+    private String sqlHasClusterAdministrationLeaseExpirationColumn = "SHOW COLUMNS FROM cluster LIKE 'administration_lease_expiration';";
+    private String sqlCreateClusterAdministrationLeaseExpirationColumn = "ALTER TABLE cluster ADD administration_lease_expiration DATETIME;";
     private String sqlHasClusterAdministrationAlgorithmsInConfiguration = String.format("SELECT * FROM configuration WHERE name='%s';",
             AutonomicClusterManagementHeuristicService.CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY);
     private String sqlInsertIntoConfigurationClusterAlgorithms = String.format(
@@ -86,7 +90,10 @@ public class ConfigureDatabaseDaoTest {
         Mockito.doNothing().when(spy).createHostStartTypeColumn();
         Mockito.doNothing().when(spy).createClusterConsolidationStatusColumn();
         Mockito.doNothing().when(spy).createClusterLastConsolidatedColumn();
+        Mockito.doNothing().when(spy).createClusterAdministrationOwnerColumn();
+        Mockito.doNothing().when(spy).createClusterAdministrationLeaseExpirationColumn();
         Mockito.doNothing().when(spy).insertClusterManagerAlgorithmsInConfiguration();
+        Mockito.doNothing().when(spy).insertConfiguration(Mockito.any(ConfigureDatabaseDao.AutonomiccsConfiguration.class));
         Mockito.doNothing().when(spy).createAutonomiccsSystemVmTable();
         configureDbChecks(false);
 
@@ -180,6 +187,48 @@ public class ConfigureDatabaseDaoTest {
         Mockito.verify(jdbcTemplate).execute(Mockito.eq(sqlCreateClusterLastAdministrationColumn));
     }
 
+    @Test
+    public void hasClusterAdministrationOwnerColumnTest() {
+        Mockito.doReturn(createListOfMaps()).when(jdbcTemplate).queryForList(Mockito.eq(sqlHasClusterAdministrationOwnerColumn));
+        boolean result = spy.hasClusterAdministrationOwnerColumn();
+        verifyHasDbConfiguration(sqlHasClusterAdministrationOwnerColumn, true, result);
+    }
+
+    @Test
+    public void hasClusterAdministrationOwnerColumnTestEmpty() {
+        Mockito.doReturn(new ArrayList<Map<String, Long>>()).when(jdbcTemplate).queryForList(Mockito.eq(sqlHasClusterAdministrationOwnerColumn));
+        boolean result = spy.hasClusterAdministrationOwnerColumn();
+        verifyHasDbConfiguration(sqlHasClusterAdministrationOwnerColumn, false, result);
+    }
+
+    @Test
+    public void createClusterAdministrationOwnerColumnTest() {
+        Mockito.doNothing().when(jdbcTemplate).execute(Mockito.eq(sqlCreateClusterAdministrationOwnerColumn));
+        spy.createClusterAdministrationOwnerColumn();
+        Mockito.verify(jdbcTemplate).execute(Mockito.eq(sqlCreateClusterAdministrationOwnerColumn));
+    }
+
+    @Test
+    public void hasClusterAdministrationLeaseExpirationColumnTest() {
+        Mockito.doReturn(createListOfMaps()).when(jdbcTemplate).queryForList(Mockito.eq(sqlHasClusterAdministrationLeaseExpirationColumn));
+        boolean result = spy.hasClusterAdministrationLeaseExpirationColumn();
+        verifyHasDbConfiguration(sqlHasClusterAdministrationLeaseExpirationColumn, true, result);
+    }
+
+    @Test
+    public void hasClusterAdministrationLeaseExpirationColumnTestEmpty() {
+        Mockito.doReturn(new ArrayList<Map<String, Long>>()).when(jdbcTemplate).queryForList(Mockito.eq(sqlHasClusterAdministrationLeaseExpirationColumn));
+        boolean result = spy.hasClusterAdministrationLeaseExpirationColumn();
+        verifyHasDbConfiguration(sqlHasClusterAdministrationLeaseExpirationColumn, false, result);
+    }
+
+    @Test
+    public void createClusterAdministrationLeaseExpirationColumnTest() {
+        Mockito.doNothing().when(jdbcTemplate).execute(Mockito.eq(sqlCreateClusterAdministrationLeaseExpirationColumn));
+        spy.createClusterAdministrationLeaseExpirationColumn();
+        Mockito.verify(jdbcTemplate).execute(Mockito.eq(sqlCreateClusterAdministrationLeaseExpirationColumn));
+    }
+
     @Test
     public void hasClusterManagerAlgorithmsInConfigurationTest() {
         Mockito.doReturn(createListOfMaps()).when(jdbcTemplate).queryForList(Mockito.eq(sqlHasClusterAdministrationAlgorithmsInConfiguration));
@@ -201,6 +250,46 @@ public class ConfigureDatabaseDaoTest {
         Mockito.verify(jdbcTemplate).execute(Mockito.eq(sqlInsertIntoConfigurationClusterAlgorithms));
     }
 
+    @Test
+    public void hasConfigurationTest() {
+        String sql = "SELECT * FROM configuration WHERE name='autonomiccs.clustermanager.crosscluster.planning';";
+        Mockito.doReturn(createListOfMaps()).when(jdbcTemplate).queryForList(Mockito.eq(sql));
+
+        boolean result = spy.hasConfiguration(AutonomicClusterManagementHeuristicService.CROSS_CLUSTER_PLANNING_IN_CONFIGURATION_KEY);
+
+        verifyHasDbConfiguration(sql, true, result);
+    }
+
+    @Test
+    public void hasConfigurationTestEmpty() {
+        String sql = "SELECT * FROM configuration WHERE name='autonomiccs.clustermanager.crosscluster.planning';";
+        Mockito.doReturn(new ArrayList<Map<String, Long>>()).when(jdbcTemplate).queryForList(Mockito.eq(sql));
+
+        boolean result = spy.hasConfiguration(AutonomicClusterManagementHeuristicService.CROSS_CLUSTER_PLANNING_IN_CONFIGURATION_KEY);
+
+        verifyHasDbConfiguration(sql, false, result);
+    }
+
+    @Test
+    public void insertConfigurationTest() {
+        String sql = "INSERT INTO configuration (category,instance,component,name,value,description,default_value,updated,scope,is_dynamic) VALUES ('Advanced','DEFAULT','autonomicClusterManager','name','value','description','value',null,'Global',0);";
+        Mockito.doNothing().when(jdbcTemplate).execute(Mockito.eq(sql));
+
+        spy.insertConfiguration(new ConfigureDatabaseDao.AutonomiccsConfiguration("name", "value", "description", ConfigureDatabaseDao.GLOBAL_SCOPE));
+
+        Mockito.verify(jdbcTemplate).execute(Mockito.eq(sql));
+    }
+
+    @Test
+    public void insertConfigurationTestWithoutValue() {
+        String sql = "INSERT INTO configuration (category,instance,component,name,value,description,default_value,updated,scope,is_dynamic) VALUES ('Advanced','DEFAULT','autonomicClusterManager','name',null,'description',null,null,'Cluster',0);";
+        Mockito.doNothing().when(jdbcTemplate).execute(Mockito.eq(sql));
+
+        spy.insertConfiguration(new ConfigureDatabaseDao.AutonomiccsConfiguration("name", null, "description", ConfigureDatabaseDao.CLUSTER_SCOPE));
+
+        Mockito.verify(jdbcTemplate).execute(Mockito.eq(sql));
+    }
+
     @Test
     public void hasAutonomiccsSystemVmTableTest() {
         Mockito.doReturn(createListOfMaps()).when(jdbcTemplate).queryForList(Mockito.eq(sqlHasAutonomiccsSystemVmTable));
@@ -227,7 +316,10 @@ public class ConfigureDatabaseDaoTest {
         Mockito.doReturn(hasTablesAlreadyConfigured).when(spy).hasHostStartTypeColumn();
         Mockito.doReturn(hasTablesAlreadyConfigured).when(spy).hasClusterConsolidationStatusColumn();
         Mockito.doReturn(hasTablesAlreadyConfigured).when(spy).hasClusterLastConsolidatedColumn();
+        Mockito.doReturn(hasTablesAlreadyConfigured).when(spy).hasClusterAdministrationOwnerColumn();
+        Mockito.doReturn(hasTablesAlreadyConfigured).when(spy).hasClusterAdministrationLeaseExpirationColumn();
         Mockito.doReturn(hasTablesAlreadyConfigured).when(spy).hasClusterManagerAlgorithmsInConfiguration();
+        Mockito.doReturn(hasTablesAlreadyConfigured).when(spy).hasConfiguration(Mockito.anyString());
         Mockito.doReturn(hasTablesAlreadyConfigured).when(spy).hasAutonomiccsSystemVmTable();
     }
 
@@ -237,7 +329,12 @@ public class ConfigureDatabaseDaoTest {
         inOrder.verify(spy).hasHostStartTypeColumn();
         inOrder.verify(spy).hasClusterConsolidationStatusColumn();
         inOrder.verify(spy).hasClusterLastConsolidatedColumn();
+        inOrder.verify(spy).hasClusterAdministrationOwnerColumn();
+        inOrder.verify(spy).hasClusterAdministrationLeaseExpirationColumn();
         inOrder.verify(spy).hasClusterManagerAlgorithmsInConfiguration();
+        for (ConfigureDatabaseDao.AutonomiccsConfiguration configuration : ConfigureDatabaseDao.AUTONOMICCS_CONFIGURATIONS) {
+            inOrder.verify(spy).hasConfiguration(configuration.name);
+        }
         inOrder.verify(spy).hasAutonomiccsSystemVmTable();
     }
 
@@ -247,7 +344,12 @@ public class ConfigureDatabaseDaoTest {
         inOrder.verify(spy, Mockito.times(times)).createHostStartTypeColumn();
         inOrder.verify(spy, Mockito.times(times)).createClusterConsolidationStatusColumn();
         inOrder.verify(spy, Mockito.times(times)).createClusterLastConsolidatedColumn();
+        inOrder.verify(spy, Mockito.times(times)).createClusterAdministrationOwnerColumn();
+        inOrder.verify(spy, Mockito.times(times)).createClusterAdministrationLeaseExpirationColumn();
         inOrder.verify(spy, Mockito.times(times)).insertClusterManagerAlgorithmsInConfiguration();
+        for (ConfigureDatabaseDao.AutonomiccsConfiguration configuration : ConfigureDatabaseDao.AUTONOMICCS_CONFIGURATIONS) {
+            inOrder.verify(spy, Mockito.times(times)).insertConfiguration(configuration);
+        }
         inOrder.verify(spy, Mockito.times(times)).createAutonomiccsSystemVmTable();
     }
 
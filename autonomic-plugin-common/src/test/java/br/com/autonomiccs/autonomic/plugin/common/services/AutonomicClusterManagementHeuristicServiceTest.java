@@ -22,8 +22,14 @@
  */
 package br.com.autonomiccs.autonomic.plugin.common.services;
 
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.cloudstack.framework.config.dao.ConfigurationDao;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -32,14 +38,22 @@ import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.cloud.dc.ClusterVO;
+
 import br.com.autonomiccs.autonomic.administration.algorithms.ClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.TimeBudgetedClusterAdministrationHeuristicAlgorithm;
+import br.com.autonomiccs.autonomic.administration.algorithms.TunableClusterAdministrationHeuristicAlgorithm;
 import br.com.autonomiccs.autonomic.administration.algorithms.impl.ClusterManagementDummyAlgorithm;
 import br.com.autonomiccs.autonomic.administration.algorithms.impl.ConsolidationAlgorithmBase;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.ConsolidationSimulatedAnnealingWithTimeBudget;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.ConsolidationVectorBinPackingBestFitDecreasing;
+import br.com.autonomiccs.autonomic.administration.algorithms.impl.VmsDispersionAlgorithmForHomogeneousEnvironment;
 
 @RunWith(MockitoJUnitRunner.class)
 public class AutonomicClusterManagementHeuristicServiceTest {
 
     private String CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.algorithm";
+    private String CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY = "autonomiccs.clustermanager.planning.time.budget";
 
     @Spy
     @InjectMocks
@@ -47,6 +61,17 @@ public class AutonomicClusterManagementHeuristicServiceTest {
 
     @Mock
     private ConfigurationDao configurationDao;
+    @Mock
+    private ClusterService clusterService;
+    @Spy
+    private AutonomiccsConfigurationService autonomiccsConfigurationService = new AutonomiccsConfigurationService();
+
+    private TimeBudgetedClusterAdministrationHeuristicAlgorithm timeBudgetedAlgorithm;
+
+    @Before
+    public void setup() {
+        timeBudgetedAlgorithm = Mockito.mock(TimeBudgetedClusterAdministrationHeuristicAlgorithm.class);
+    }
 
     @Test
     public void getAdministrationAlgorithmTest() {
@@ -62,6 +87,388 @@ public class AutonomicClusterManagementHeuristicServiceTest {
         verifyGetAdministrationAlgorithm(0);
     }
 
+    @Test
+    public void getAdministrationAlgorithmTestCachedInstance() {
+        Mockito.when(configurationDao.getValue(Mockito.eq(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY))).thenReturn(ConsolidationAlgorithmBase.class.getName());
+        Mockito.doReturn(0l).when(spy).getCurrentTimeInMilliseconds();
+
+        ClusterAdministrationHeuristicAlgorithm firstResult = spy.getAdministrationAlgorithm();
+        Mockito.doReturn(59999l).when(spy).getCurrentTimeInMilliseconds();
+        ClusterAdministrationHeuristicAlgorithm secondResult = spy.getAdministrationAlgorithm();
+
+        Assert.assertEquals(ConsolidationAlgorithmBase.class, firstResult.getClass());
+        Assert.assertSame(firstResult, secondResult);
+        Assert.assertEquals(1, spy.getAdministrationAlgorithmVersion());
+        Mockito.verify(configurationDao).getValue(Mockito.eq(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY));
+        Mockito.verify(spy).createAdministrationAlgorithm(Mockito.anyString());
+    }
+
+    @Test
+    public void getAdministrationAlgorithmTestTimeToLiveExpiredSameConfiguration() {
+        Mockito.when(configurationDao.getValue(Mockito.eq(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY))).thenReturn(ConsolidationAlgorithmBase.class.getName());
+        Mockito.doReturn(0l).when(spy).getCurrentTimeInMilliseconds();
+
+        ClusterAdministrationHeuristicAlgorithm firstResult = spy.getAdministrationAlgorithm();
+        Mockito.doReturn(60000l).when(spy).getCurrentTimeInMilliseconds();
+        ClusterAdministrationHeuristicAlgorithm secondResult = spy.getAdministrationAlgorithm();
+
+        Assert.assertSame(firstResult, secondResult);
+        Assert.assertEquals(1, spy.getAdministrationAlgorithmVersion());
+        Mockito.verify(configurationDao, Mockito.times(2)).getValue(Mockito.eq(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY));
+        Mockito.verify(spy).createAdministrationAlgorithm(Mockito.anyString());
+    }
+
+    @Test
+    public void getAdministrationAlgorithmTestTimeToLiveExpiredConfigurationChanged() {
+        Mockito.when(configurationDao.getValue(Mockito.eq(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY))).thenReturn(ConsolidationAlgorithmBase.class.getName(), "");
+        Mockito.doReturn(0l).when(spy).getCurrentTimeInMilliseconds();
+
+        ClusterAdministrationHeuristicAlgorithm firstResult = spy.getAdministrationAlgorithm();
+        Mockito.doReturn(60000l).when(spy).getCurrentTimeInMilliseconds();
+        ClusterAdministrationHeuristicAlgorithm secondResult = spy.getAdministrationAlgorithm();
+
+        Assert.assertEquals(ConsolidationAlgorithmBase.class, firstResult.getClass());
+        Assert.assertEquals(ClusterManagementDummyAlgorithm.class, secondResult.getClass());
+        Assert.assertEquals(2, spy.getAdministrationAlgorithmVersion());
+    }
+
+    @Test
+    public void getAdministrationAlgorithmTestWithClusterIdCachedInstance() {
+        Map<String, String> clusterConfiguration = createClusterConfiguration("", "", "", "", "");
+        Mockito.doReturn(clusterConfiguration).when(spy).getClusterConfiguration(1l);
+        Mockito.doReturn(0l).when(spy).getCurrentTimeInMilliseconds();
+
+        ClusterAdministrationHeuristicAlgorithm firstResult = spy.getAdministrationAlgorithm(1l);
+        Mockito.doReturn(59999l).when(spy).getCurrentTimeInMilliseconds();
+        ClusterAdministrationHeuristicAlgorithm secondResult = spy.getAdministrationAlgorithm(1l);
+
+        Assert.assertEquals(ClusterManagementDummyAlgorithm.class, firstResult.getClass());
+        Assert.assertSame(firstResult, secondResult);
+        Mockito.verify(spy).getClusterConfiguration(1l);
+        Mockito.verify(spy).createClusterAdministrationAlgorithm(Mockito.eq(1l), Mockito.eq(clusterConfiguration));
+    }
+
+    @Test
+    public void getAdministrationAlgorithmTestWithClusterIdTimeToLiveExpiredSameConfiguration() {
+        Mockito.doReturn(createClusterConfiguration("", "", "", "", "")).when(spy).getClusterConfiguration(1l);
+        Mockito.doReturn(0l).when(spy).getCurrentTimeInMilliseconds();
+
+        ClusterAdministrationHeuristicAlgorithm firstResult = spy.getAdministrationAlgorithm(1l);
+        Mockito.doReturn(createClusterConfiguration("", "", "", "", "")).when(spy).getClusterConfiguration(1l);
+        Mockito.doReturn(60000l).when(spy).getCurrentTimeInMilliseconds();
+        ClusterAdministrationHeuristicAlgorithm secondResult = spy.getAdministrationAlgorithm(1l);
+
+        Assert.assertSame(firstResult, secondResult);
+        Mockito.verify(spy, Mockito.times(2)).getClusterConfiguration(1l);
+        Mockito.verify(spy).createClusterAdministrationAlgorithm(Mockito.eq(1l), Mockito.anyMapOf(String.class, String.class));
+    }
+
+    @Test
+    public void getAdministrationAlgorithmTestWithClusterIdTimeToLiveExpiredConfigurationChanged() {
+        Mockito.doReturn(createClusterConfiguration(ConsolidationAlgorithmBase.class.getName(), "", "", "", "")).when(spy).getClusterConfiguration(1l);
+        Mockito.doReturn(0l).when(spy).getCurrentTimeInMilliseconds();
+
+        ClusterAdministrationHeuristicAlgorithm firstResult = spy.getAdministrationAlgorithm(1l);
+        Mockito.doReturn(createClusterConfiguration(ConsolidationAlgorithmBase.class.getName(), "", "1800", "", "")).when(spy).getClusterConfiguration(1l);
+        Mockito.doReturn(60000l).when(spy).getCurrentTimeInMilliseconds();
+        ClusterAdministrationHeuristicAlgorithm secondResult = spy.getAdministrationAlgorithm(1l);
+
+        Assert.assertNotSame(firstResult, secondResult);
+        Assert.assertEquals(600, firstResult.getClusterIntervalBetweenConsolidation());
+        Assert.assertEquals(1800, secondResult.getClusterIntervalBetweenConsolidation());
+    }
+
+    @Test
+    public void getAdministrationAlgorithmTestWithClusterIdEachClusterHasItsInstance() {
+        Mockito.doReturn(createClusterConfiguration(ConsolidationAlgorithmBase.class.getName(), "", "", "", "")).when(spy).getClusterConfiguration(Mockito.anyLong());
+
+        ClusterAdministrationHeuristicAlgorithm firstClusterResult = spy.getAdministrationAlgorithm(1l);
+        ClusterAdministrationHeuristicAlgorithm secondClusterResult = spy.getAdministrationAlgorithm(2l);
+
+        Assert.assertEquals(ConsolidationAlgorithmBase.class, firstClusterResult.getClass());
+        Assert.assertEquals(ConsolidationAlgorithmBase.class, secondClusterResult.getClass());
+        Assert.assertNotSame(firstClusterResult, secondClusterResult);
+    }
+
+    @Test
+    public void getClusterConfigurationTest() {
+        Mockito.doReturn("value").when(spy).getClusterConfigurationValue(Mockito.eq(1l), Mockito.anyString());
+
+        Map<String, String> result = spy.getClusterConfiguration(1l);
+
+        Assert.assertEquals(createClusterConfiguration("value", "value", "value", "value", "value", "value"), result);
+    }
+
+    @Test
+    public void getClusterConfigurationValueTestClusterDetail() {
+        Mockito.doReturn(" 500 ").when(clusterService).getClusterDetailValue(Mockito.eq(1l), Mockito.eq(CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY));
+
+        String result = spy.getClusterConfigurationValue(1l, CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY);
+
+        Assert.assertEquals("500", result);
+        Mockito.verify(configurationDao, Mockito.times(0)).getValue(Mockito.anyString());
+    }
+
+    @Test
+    public void getClusterConfigurationValueTestGlobalConfiguration() {
+        Mockito.doReturn(null).when(clusterService).getClusterDetailValue(Mockito.eq(1l), Mockito.eq(CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY));
+        Mockito.doReturn("200").when(configurationDao).getValue(Mockito.eq(CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY));
+
+        String result = spy.getClusterConfigurationValue(1l, CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY);
+
+        Assert.assertEquals("200", result);
+    }
+
+    @Test
+    public void getClusterConfigurationValueTestNotConfigured() {
+        Mockito.doReturn("").when(clusterService).getClusterDetailValue(Mockito.eq(1l), Mockito.eq(CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY));
+        Mockito.doReturn(null).when(configurationDao).getValue(Mockito.eq(CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY));
+
+        String result = spy.getClusterConfigurationValue(1l, CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY);
+
+        Assert.assertEquals("", result);
+    }
+
+    @Test
+    public void createClusterAdministrationAlgorithmTestTimeBudgetedAlgorithm() {
+        Map<String, String> clusterConfiguration = createClusterConfiguration("timeBudgetedAlgorithm", "500", "", "", "");
+        Mockito.doReturn(timeBudgetedAlgorithm).when(spy).createAdministrationAlgorithm("timeBudgetedAlgorithm");
+
+        ClusterAdministrationHeuristicAlgorithm result = spy.createClusterAdministrationAlgorithm(1l, clusterConfiguration);
+
+        Assert.assertEquals(timeBudgetedAlgorithm, result);
+        Mockito.verify(spy).configurePlanningTimeBudget(Mockito.eq(1l), Mockito.eq("500"), Mockito.eq(timeBudgetedAlgorithm));
+        Mockito.verify(spy, Mockito.times(0)).configureConsolidationParameters(Mockito.anyLong(), Mockito.anyMapOf(String.class, String.class),
+                Mockito.any(TunableClusterAdministrationHeuristicAlgorithm.class));
+    }
+
+    @Test
+    public void createClusterAdministrationAlgorithmTestTunableAlgorithm() {
+        Map<String, String> clusterConfiguration = createClusterConfiguration(ConsolidationAlgorithmBase.class.getName(), "", "1800", "0.8", "");
+
+        ClusterAdministrationHeuristicAlgorithm result = spy.createClusterAdministrationAlgorithm(1l, clusterConfiguration);
+
+        Assert.assertEquals(ConsolidationAlgorithmBase.class, result.getClass());
+        Mockito.verify(spy).configureConsolidationParameters(Mockito.eq(1l), Mockito.eq(clusterConfiguration), Mockito.eq((ConsolidationAlgorithmBase)result));
+        Mockito.verify(spy, Mockito.times(0)).configurePlanningTimeBudget(Mockito.anyLong(), Mockito.anyString(), Mockito.any(TimeBudgetedClusterAdministrationHeuristicAlgorithm.class));
+    }
+
+    @Test
+    public void createClusterAdministrationAlgorithmTestDispersionAlgorithm() {
+        Map<String, String> clusterConfiguration = createClusterConfiguration(VmsDispersionAlgorithmForHomogeneousEnvironment.class.getName(), "", "", "", "", "5");
+
+        ClusterAdministrationHeuristicAlgorithm result = spy.createClusterAdministrationAlgorithm(1l, clusterConfiguration);
+
+        Assert.assertEquals(VmsDispersionAlgorithmForHomogeneousEnvironment.class, result.getClass());
+        Assert.assertEquals(5, ((VmsDispersionAlgorithmForHomogeneousEnvironment)result).getNumberOfStandardDeviationCandidates());
+        Mockito.verify(spy).configureNumberOfStandardDeviationCandidates(Mockito.eq(1l), Mockito.eq("5"), Mockito.eq((VmsDispersionAlgorithmForHomogeneousEnvironment)result));
+        Mockito.verify(spy).configureConsolidationParameters(Mockito.eq(1l), Mockito.eq(clusterConfiguration), Mockito.eq((VmsDispersionAlgorithmForHomogeneousEnvironment)result));
+    }
+
+    @Test
+    public void createClusterAdministrationAlgorithmTestAlgorithmWithoutParameters() {
+        ClusterAdministrationHeuristicAlgorithm result = spy.createClusterAdministrationAlgorithm(1l, createClusterConfiguration("", "500", "1800", "0.8", ""));
+
+        Assert.assertEquals(ClusterManagementDummyAlgorithm.class, result.getClass());
+        Mockito.verify(spy, Mockito.times(0)).configurePlanningTimeBudget(Mockito.anyLong(), Mockito.anyString(), Mockito.any(TimeBudgetedClusterAdministrationHeuristicAlgorithm.class));
+        Mockito.verify(spy, Mockito.times(0)).configureConsolidationParameters(Mockito.anyLong(), Mockito.anyMapOf(String.class, String.class),
+                Mockito.any(TunableClusterAdministrationHeuristicAlgorithm.class));
+    }
+
+    @Test
+    public void configurePlanningTimeBudgetTest() {
+        spy.configurePlanningTimeBudget(1l, "500", timeBudgetedAlgorithm);
+        Mockito.verify(timeBudgetedAlgorithm).setPlanningTimeBudgetInMilliseconds(500l);
+    }
+
+    @Test
+    public void configurePlanningTimeBudgetTestNotConfigured() {
+        Mockito.doReturn(1000l).when(timeBudgetedAlgorithm).getPlanningTimeBudgetInMilliseconds();
+        spy.configurePlanningTimeBudget(1l, "", timeBudgetedAlgorithm);
+        Mockito.verify(timeBudgetedAlgorithm).setPlanningTimeBudgetInMilliseconds(1000l);
+    }
+
+    @Test
+    public void configurePlanningTimeBudgetTestInvalidValue() {
+        Mockito.doReturn(1000l).when(timeBudgetedAlgorithm).getPlanningTimeBudgetInMilliseconds();
+        spy.configurePlanningTimeBudget(1l, "one second", timeBudgetedAlgorithm);
+        Mockito.verify(timeBudgetedAlgorithm).setPlanningTimeBudgetInMilliseconds(1000l);
+    }
+
+    @Test
+    public void configurePlanningTimeBudgetTestNotPositive() {
+        Mockito.doReturn(1000l).when(timeBudgetedAlgorithm).getPlanningTimeBudgetInMilliseconds();
+        spy.configurePlanningTimeBudget(1l, "0", timeBudgetedAlgorithm);
+        Mockito.verify(timeBudgetedAlgorithm).setPlanningTimeBudgetInMilliseconds(1000l);
+    }
+
+    @Test
+    public void configureConsolidationParametersTest() {
+        ConsolidationAlgorithmBase algorithm = new ConsolidationAlgorithmBase();
+        Map<String, String> clusterConfiguration = createClusterConfiguration("", "", "1800", "0.85", "2");
+
+        spy.configureConsolidationParameters(1l, clusterConfiguration, algorithm);
+
+        Assert.assertEquals(1800, algorithm.getClusterIntervalBetweenConsolidation());
+        Assert.assertEquals(0.85, algorithm.getMaximumUsageToPowerOffHosts(), 0);
+        Assert.assertEquals(2, algorithm.getMaximumNumberOfHostsToEvacuate());
+    }
+
+    @Test
+    public void configureConsolidationParametersTestNotConfigured() {
+        ConsolidationAlgorithmBase algorithm = new ConsolidationAlgorithmBase();
+        Map<String, String> clusterConfiguration = createClusterConfiguration("", "", "", "", "");
+
+        spy.configureConsolidationParameters(1l, clusterConfiguration, algorithm);
+
+        Assert.assertEquals(600, algorithm.getClusterIntervalBetweenConsolidation());
+        Assert.assertEquals(0.7, algorithm.getMaximumUsageToPowerOffHosts(), 0);
+        Assert.assertEquals(0, algorithm.getMaximumNumberOfHostsToEvacuate());
+    }
+
+    @Test
+    public void configureConsolidationParametersTestInvalidValues() {
+        ConsolidationAlgorithmBase algorithm = new ConsolidationAlgorithmBase();
+        Map<String, String> clusterConfiguration = createClusterConfiguration("", "", "ten minutes", "70%", "two");
+
+        spy.configureConsolidationParameters(1l, clusterConfiguration, algorithm);
+
+        Assert.assertEquals(600, algorithm.getClusterIntervalBetweenConsolidation());
+        Assert.assertEquals(0.7, algorithm.getMaximumUsageToPowerOffHosts(), 0);
+        Assert.assertEquals(0, algorithm.getMaximumNumberOfHostsToEvacuate());
+    }
+
+    @Test
+    public void configureConsolidationParametersTestValuesOutOfRange() {
+        ConsolidationAlgorithmBase algorithm = new ConsolidationAlgorithmBase();
+        Map<String, String> clusterConfiguration = createClusterConfiguration("", "", "-1", "1.5", "-1");
+
+        spy.configureConsolidationParameters(1l, clusterConfiguration, algorithm);
+
+        Assert.assertEquals(600, algorithm.getClusterIntervalBetweenConsolidation());
+        Assert.assertEquals(0.7, algorithm.getMaximumUsageToPowerOffHosts(), 0);
+        Assert.assertEquals(0, algorithm.getMaximumNumberOfHostsToEvacuate());
+    }
+
+    @Test
+    public void configureNumberOfStandardDeviationCandidatesTest() {
+        VmsDispersionAlgorithmForHomogeneousEnvironment algorithm = new VmsDispersionAlgorithmForHomogeneousEnvironment();
+        spy.configureNumberOfStandardDeviationCandidates(1l, "5", algorithm);
+        Assert.assertEquals(5, algorithm.getNumberOfStandardDeviationCandidates());
+    }
+
+    @Test
+    public void configureNumberOfStandardDeviationCandidatesTestNotConfigured() {
+        VmsDispersionAlgorithmForHomogeneousEnvironment algorithm = new VmsDispersionAlgorithmForHomogeneousEnvironment();
+        spy.configureNumberOfStandardDeviationCandidates(1l, "", algorithm);
+        Assert.assertEquals(VmsDispersionAlgorithmForHomogeneousEnvironment.DEFAULT_NUMBER_OF_STANDARD_DEVIATION_CANDIDATES, algorithm.getNumberOfStandardDeviationCandidates());
+    }
+
+    @Test
+    public void configureNumberOfStandardDeviationCandidatesTestInvalidValue() {
+        VmsDispersionAlgorithmForHomogeneousEnvironment algorithm = new VmsDispersionAlgorithmForHomogeneousEnvironment();
+        spy.configureNumberOfStandardDeviationCandidates(1l, "five", algorithm);
+        Assert.assertEquals(VmsDispersionAlgorithmForHomogeneousEnvironment.DEFAULT_NUMBER_OF_STANDARD_DEVIATION_CANDIDATES, algorithm.getNumberOfStandardDeviationCandidates());
+    }
+
+    @Test
+    public void configureNumberOfStandardDeviationCandidatesTestNotPositive() {
+        VmsDispersionAlgorithmForHomogeneousEnvironment algorithm = new VmsDispersionAlgorithmForHomogeneousEnvironment();
+        spy.configureNumberOfStandardDeviationCandidates(1l, "0", algorithm);
+        Assert.assertEquals(VmsDispersionAlgorithmForHomogeneousEnvironment.DEFAULT_NUMBER_OF_STANDARD_DEVIATION_CANDIDATES, algorithm.getNumberOfStandardDeviationCandidates());
+    }
+
+    @Test
+    public void canAnyAdministrationAlgorithmShutdownHostsTestGlobalAlgorithm() {
+        Mockito.doReturn(new ConsolidationAlgorithmBase()).when(spy).getAdministrationAlgorithm();
+
+        Assert.assertTrue(spy.canAnyAdministrationAlgorithmShutdownHosts());
+        Mockito.verify(clusterService, Mockito.times(0)).listAllClusters();
+    }
+
+    @Test
+    public void canAnyAdministrationAlgorithmShutdownHostsTestClusterAlgorithm() {
+        Mockito.doReturn(new ClusterManagementDummyAlgorithm()).when(spy).getAdministrationAlgorithm();
+        Mockito.doReturn(Arrays.asList(createCluster(1l, null), createCluster(2l, null))).when(clusterService).listAllClusters();
+        Mockito.doReturn(new ClusterManagementDummyAlgorithm()).when(spy).getAdministrationAlgorithm(1l);
+        Mockito.doReturn(new ConsolidationAlgorithmBase()).when(spy).getAdministrationAlgorithm(2l);
+
+        Assert.assertTrue(spy.canAnyAdministrationAlgorithmShutdownHosts());
+    }
+
+    @Test
+    public void canAnyAdministrationAlgorithmShutdownHostsTestNoAlgorithmCanShutdownHosts() {
+        Mockito.doReturn(new ClusterManagementDummyAlgorithm()).when(spy).getAdministrationAlgorithm();
+        Mockito.doReturn(Arrays.asList(createCluster(1l, null), createCluster(2l, new Date()))).when(clusterService).listAllClusters();
+        Mockito.doReturn(new ClusterManagementDummyAlgorithm()).when(spy).getAdministrationAlgorithm(1l);
+
+        Assert.assertFalse(spy.canAnyAdministrationAlgorithmShutdownHosts());
+        Mockito.verify(spy, Mockito.times(0)).getAdministrationAlgorithm(2l);
+    }
+
+    @Test
+    public void isCrossClusterPlanningEnabledTest() {
+        Mockito.when(configurationDao.getValue(Mockito.eq("autonomiccs.clustermanager.crosscluster.planning"))).thenReturn(" true ");
+        Assert.assertTrue(spy.isCrossClusterPlanningEnabled());
+    }
+
+    @Test
+    public void isCrossClusterPlanningEnabledTestNotConfigured() {
+        Mockito.when(configurationDao.getValue(Mockito.eq("autonomiccs.clustermanager.crosscluster.planning"))).thenReturn(null);
+        Assert.assertFalse(spy.isCrossClusterPlanningEnabled());
+    }
+
+    @Test
+    public void isSameAdministrationAlgorithmConfigurationTest() {
+        ConsolidationVectorBinPackingBestFitDecreasing algorithm = new ConsolidationVectorBinPackingBestFitDecreasing();
+        ConsolidationVectorBinPackingBestFitDecreasing otherAlgorithm = new ConsolidationVectorBinPackingBestFitDecreasing();
+        algorithm.setMaximumUsageToPowerOffHosts(0.8);
+        otherAlgorithm.setMaximumUsageToPowerOffHosts(0.8);
+
+        Assert.assertTrue(spy.isSameAdministrationAlgorithmConfiguration(algorithm, otherAlgorithm));
+    }
+
+    @Test
+    public void isSameAdministrationAlgorithmConfigurationTestDifferentClasses() {
+        Assert.assertFalse(spy.isSameAdministrationAlgorithmConfiguration(new ConsolidationVectorBinPackingBestFitDecreasing(), new ClusterManagementDummyAlgorithm()));
+    }
+
+    @Test
+    public void isSameAdministrationAlgorithmConfigurationTestDifferentConsolidationParameters() {
+        ConsolidationVectorBinPackingBestFitDecreasing algorithm = new ConsolidationVectorBinPackingBestFitDecreasing();
+        ConsolidationVectorBinPackingBestFitDecreasing otherAlgorithm = new ConsolidationVectorBinPackingBestFitDecreasing();
+        otherAlgorithm.setMaximumNumberOfHostsToEvacuate(2);
+        Assert.assertFalse(spy.isSameAdministrationAlgorithmConfiguration(algorithm, otherAlgorithm));
+
+        otherAlgorithm = new ConsolidationVectorBinPackingBestFitDecreasing();
+        otherAlgorithm.setMaximumUsageToPowerOffHosts(0.9);
+        Assert.assertFalse(spy.isSameAdministrationAlgorithmConfiguration(algorithm, otherAlgorithm));
+
+        otherAlgorithm = new ConsolidationVectorBinPackingBestFitDecreasing();
+        otherAlgorithm.setClusterIntervalBetweenConsolidation(algorithm.getClusterIntervalBetweenConsolidation() + 1);
+        Assert.assertFalse(spy.isSameAdministrationAlgorithmConfiguration(algorithm, otherAlgorithm));
+    }
+
+    @Test
+    public void isSameAdministrationAlgorithmConfigurationTestDifferentPlanningTimeBudgets() {
+        ConsolidationSimulatedAnnealingWithTimeBudget algorithm = new ConsolidationSimulatedAnnealingWithTimeBudget();
+        ConsolidationSimulatedAnnealingWithTimeBudget otherAlgorithm = new ConsolidationSimulatedAnnealingWithTimeBudget();
+        Assert.assertTrue(spy.isSameAdministrationAlgorithmConfiguration(algorithm, otherAlgorithm));
+
+        otherAlgorithm.setPlanningTimeBudgetInMilliseconds(algorithm.getPlanningTimeBudgetInMilliseconds() * 2);
+        Assert.assertFalse(spy.isSameAdministrationAlgorithmConfiguration(algorithm, otherAlgorithm));
+    }
+
+    @Test
+    public void isSameAdministrationAlgorithmConfigurationTestDifferentNumberOfStandardDeviationCandidates() {
+        VmsDispersionAlgorithmForHomogeneousEnvironment algorithm = new VmsDispersionAlgorithmForHomogeneousEnvironment();
+        VmsDispersionAlgorithmForHomogeneousEnvironment otherAlgorithm = new VmsDispersionAlgorithmForHomogeneousEnvironment();
+        Assert.assertTrue(spy.isSameAdministrationAlgorithmConfiguration(algorithm, otherAlgorithm));
+
+        otherAlgorithm.setNumberOfStandardDeviationCandidates(algorithm.getNumberOfStandardDeviationCandidates() + 2);
+        Assert.assertFalse(spy.isSameAdministrationAlgorithmConfiguration(algorithm, otherAlgorithm));
+    }
+
     @Test
     public void loadAlgorithmClassTest() throws ClassNotFoundException {
         spy.loadAlgorithmClass("br.com.autonomiccs.autonomic.administration.algorithms.impl.ClusterManagementDummyAlgorithm");
@@ -128,6 +535,30 @@ public class AutonomicClusterManagementHeuristicServiceTest {
         Mockito.verify(spy).getInstanceOfClass(Mockito.eq(ClusterManagementDummyAlgorithm.class));
     }
 
+    private Map<String, String> createClusterConfiguration(String algorithm, String planningTimeBudget, String intervalBetweenConsolidation, String maximumUsageToPowerOffHosts,
+            String maximumNumberOfHostsToEvacuate) {
+        return createClusterConfiguration(algorithm, planningTimeBudget, intervalBetweenConsolidation, maximumUsageToPowerOffHosts, maximumNumberOfHostsToEvacuate, "");
+    }
+
+    private Map<String, String> createClusterConfiguration(String algorithm, String planningTimeBudget, String intervalBetweenConsolidation, String maximumUsageToPowerOffHosts,
+            String maximumNumberOfHostsToEvacuate, String numberOfStandardDeviationCandidates) {
+        Map<String, String> clusterConfiguration = new HashMap<>();
+        clusterConfiguration.put(CLUSTER_ADMINISTRATION_ALGORITHMS_IN_CONFIGURATION_KEY, algorithm);
+        clusterConfiguration.put(CLUSTER_PLANNING_TIME_BUDGET_IN_CONFIGURATION_KEY, planningTimeBudget);
+        clusterConfiguration.put("autonomiccs.clustermanager.consolidation.interval", intervalBetweenConsolidation);
+        clusterConfiguration.put("autonomiccs.clustermanager.consolidation.max.usage", maximumUsageToPowerOffHosts);
+        clusterConfiguration.put("autonomiccs.clustermanager.consolidation.max.evacuated.hosts", maximumNumberOfHostsToEvacuate);
+        clusterConfiguration.put("autonomiccs.clustermanager.dispersion.stddev.candidates", numberOfStandardDeviationCandidates);
+        return clusterConfiguration;
+    }
+
+    private ClusterVO createCluster(long id, Date removed) {
+        ClusterVO cluster = Mockito.mock(ClusterVO.class);
+        Mockito.when(cluster.getId()).thenReturn(id);
+        Mockito.when(cluster.getRemoved()).thenReturn(removed);
+        return cluster;
+    }
+
     private void verifyGetAdministrationAlgorithm(int times) {
         Mockito.verify(spy).getDummyClusterManagementHeuristc();
         Mockito.verify(spy, Mockito.times(times)).getInstanceOfClass(Mockito.anyString());
@@ -0,0 +1,124 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.plugin.common.services;
+
+import org.apache.cloudstack.framework.config.dao.ConfigurationDao;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AutonomiccsConfigurationServiceTest {
+
+    @Spy
+    @InjectMocks
+    private AutonomiccsConfigurationService spy;
+    @Mock
+    private ConfigurationDao configurationDao;
+
+    @Test
+    public void getPositiveIntegerConfigurationTest() {
+        Mockito.doReturn(" 4 ").when(configurationDao).getValue("key");
+        Assert.assertEquals(4, spy.getPositiveIntegerConfiguration("key", 2));
+    }
+
+    @Test
+    public void getPositiveIntegerConfigurationTestNotConfigured() {
+        Mockito.doReturn(null).when(configurationDao).getValue("key");
+        Assert.assertEquals(2, spy.getPositiveIntegerConfiguration("key", 2));
+    }
+
+    @Test
+    public void getPositiveIntegerConfigurationTestNotANumber() {
+        Mockito.doReturn("four").when(configurationDao).getValue("key");
+        Assert.assertEquals(2, spy.getPositiveIntegerConfiguration("key", 2));
+    }
+
+    @Test
+    public void getPositiveIntegerConfigurationTestNotPositive() {
+        Mockito.doReturn("0").when(configurationDao).getValue("key");
+        Assert.assertEquals(2, spy.getPositiveIntegerConfiguration("key", 2));
+    }
+
+    @Test
+    public void getRatioConfigurationTest() {
+        Mockito.doReturn(" 0.25 ").when(configurationDao).getValue("key");
+        Assert.assertEquals(0.25, spy.getRatioConfiguration("key", 0.5), 0);
+    }
+
+    @Test
+    public void getRatioConfigurationTestNotConfigured() {
+        Assert.assertEquals(0.5, spy.getRatioConfiguration("key", 0.5), 0);
+    }
+
+    @Test
+    public void parseIntegerTest() {
+        Assert.assertEquals(0, spy.parseInteger("key", "0", 0, 10));
+    }
+
+    @Test
+    public void parseIntegerTestLowerThanMinimum() {
+        Assert.assertEquals(10, spy.parseInteger("key", "-1", 0, 10));
+    }
+
+    @Test
+    public void parseIntegerTestGreaterThanIntegerRange() {
+        Assert.assertEquals(10, spy.parseInteger("key", "4294967296", 0, 10));
+    }
+
+    @Test
+    public void parseIntegerTestBlank() {
+        Assert.assertEquals(10, spy.parseInteger("key", " ", 0, 10));
+    }
+
+    @Test
+    public void parseLongTest() {
+        Assert.assertEquals(4294967296l, spy.parseLong("key", "4294967296", 1, 10));
+    }
+
+    @Test
+    public void parseLongTestNotANumber() {
+        Assert.assertEquals(10, spy.parseLong("key", "one second", 1, 10));
+    }
+
+    @Test
+    public void parseRatioTest() {
+        Assert.assertEquals(1, spy.parseRatio("key", "1", 0.5), 0);
+    }
+
+    @Test
+    public void parseRatioTestNotANumber() {
+        Assert.assertEquals(0.5, spy.parseRatio("key", "70%", 0.5), 0);
+    }
+
+    @Test
+    public void parseRatioTestOutOfRange() {
+        Assert.assertEquals(0.5, spy.parseRatio("key", "0", 0.5), 0);
+        Assert.assertEquals(0.5, spy.parseRatio("key", "1.5", 0.5), 0);
+    }
+}
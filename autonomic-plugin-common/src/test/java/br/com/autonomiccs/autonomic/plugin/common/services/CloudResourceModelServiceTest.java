@@ -0,0 +1,369 @@
+/*
+ * This program is part of Autonomiccs "autonomic-platform",
+ * an open source autonomic cloud computing management platform.
+ * Copyright (C) 2016 Autonomiccs, Inc.
+ *
+ * Licensed to the Autonomiccs, Inc. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The Autonomiccs, Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package br.com.autonomiccs.autonomic.plugin.common.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import com.cloud.dc.ClusterVO;
+import com.cloud.dc.DataCenterVO;
+import com.cloud.host.HostVO;
+import com.cloud.host.Status;
+import com.cloud.vm.VMInstanceVO;
+import com.cloud.vm.VirtualMachine;
+
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.HostResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.ServiceOfferingResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.beans.VmResources;
+import br.com.autonomiccs.autonomic.algorithms.commons.services.HostResourcesBulkLoaderService;
+import br.com.autonomiccs.autonomic.algorithms.commons.services.HostResourcesService;
+import br.com.autonomiccs.autonomic.algorithms.commons.services.ServiceOfferingResourcesCache;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CloudResourceModelServiceTest {
+
+    @Spy
+    @InjectMocks
+    private CloudResourceModelService spy;
+    @Mock
+    private ZoneService zoneService;
+    @Mock
+    private HostService hostService;
+    @Mock
+    private HostResourcesService hostResourcesService;
+    @Mock
+    private HostResourcesBulkLoaderService hostResourcesBulkLoaderService;
+    @Mock
+    private ServiceOfferingResourcesCache serviceOfferingResourcesCache;
+
+    @Test
+    public void loadIfNeededTest() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l), new VmResources(2l, 1, 500l, 1024l)));
+
+        spy.loadIfNeeded();
+        spy.loadIfNeeded();
+
+        Assert.assertEquals(2500l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(1536l, spy.getHostUsedMemoryInMegaBytes(1l));
+        Mockito.verify(hostResourcesBulkLoaderService).loadZoneHostsResourcesByCluster(1l);
+    }
+
+    @Test
+    public void getHostUsedResourcesTestHostNotInModel() {
+        setupModel();
+
+        Assert.assertEquals(0l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(0l, spy.getHostUsedMemoryInMegaBytes(1l));
+    }
+
+    @Test
+    public void updateVmTestVmStarted() {
+        setupModel(createHostResources(1l));
+
+        spy.queueVmStateTransition(createVm(1l, 1l), VirtualMachine.State.Running);
+
+        Assert.assertEquals(2000l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(512l, spy.getHostUsedMemoryInMegaBytes(1l));
+    }
+
+    @Test
+    public void updateVmTestVmStopped() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l)));
+
+        spy.queueVmStateTransition(createVm(1l, null), VirtualMachine.State.Stopped);
+
+        Assert.assertEquals(0l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(0l, spy.getHostUsedMemoryInMegaBytes(1l));
+    }
+
+    @Test
+    public void updateVmTestVmMigrated() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l)), createHostResources(2l));
+
+        spy.queueVmStateTransition(createVm(1l, 2l), VirtualMachine.State.Running);
+
+        Assert.assertEquals(0l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(2000l, spy.getHostUsedCpu(2l));
+        Assert.assertEquals(512l, spy.getHostUsedMemoryInMegaBytes(2l));
+    }
+
+    @Test
+    public void queueVmStateTransitionTestModelNotLoaded() {
+        spy.queueVmStateTransition(createVm(1l, 1l), VirtualMachine.State.Running);
+        setupModel(createHostResources(1l));
+
+        Assert.assertEquals(0l, spy.getHostUsedCpu(1l));
+        Mockito.verify(serviceOfferingResourcesCache, Mockito.times(0)).getServiceOfferingResources(Mockito.anyLong());
+    }
+
+    @Test
+    public void queueVmStateTransitionTestVmCopied() {
+        setupModel(createHostResources(1l), createHostResources(2l));
+        VMInstanceVO vm = createVm(1l, 1l);
+
+        spy.queueVmStateTransition(vm, VirtualMachine.State.Running);
+        Mockito.doReturn(2l).when(vm).getHostId();
+
+        Assert.assertEquals(2000l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(0l, spy.getHostUsedCpu(2l));
+    }
+
+    @Test
+    public void updateVmTestServiceOfferingNotFound() {
+        setupModel(createHostResources(1l));
+        Mockito.doReturn(null).when(serviceOfferingResourcesCache).getServiceOfferingResources(Mockito.anyLong());
+
+        spy.queueVmStateTransition(createVm(1l, 1l), VirtualMachine.State.Running);
+
+        Assert.assertEquals(0l, spy.getHostUsedCpu(1l));
+    }
+
+    @Test
+    public void applyPendingTransitionsTestTransitionFails() {
+        setupModel(createHostResources(1l));
+        Mockito.doThrow(new RuntimeException()).when(serviceOfferingResourcesCache).getServiceOfferingResources(2l);
+        VMInstanceVO vm = createVm(2l, 1l);
+        Mockito.doReturn(2l).when(vm).getServiceOfferingId();
+
+        spy.queueVmStateTransition(vm, VirtualMachine.State.Running);
+        spy.queueVmStateTransition(createVm(1l, 1l), VirtualMachine.State.Running);
+
+        Assert.assertEquals(2000l, spy.getHostUsedCpu(1l));
+    }
+
+    @Test
+    public void updateHostStatusTestHostDown() {
+        setupModel(createHostResources(1l));
+
+        spy.queueHostStatusTransition(1l, Status.Down);
+
+        Mockito.verify(spy, Mockito.times(0)).reloadHostVms(Mockito.anyLong());
+    }
+
+    @Test
+    public void updateHostStatusTestHostBackUp() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l)));
+        HostVO hostVO = Mockito.mock(HostVO.class);
+        Mockito.doReturn(hostVO).when(hostService).findHostById(1l);
+        Mockito.doReturn(createHostResources(1l, new VmResources(2l, 1, 1000l, 256l))).when(hostResourcesService).createHostResources(hostVO);
+
+        spy.queueHostStatusTransition(1l, Status.Disconnected);
+        spy.queueHostStatusTransition(1l, Status.Up);
+
+        Assert.assertEquals(1000l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(256l, spy.getHostUsedMemoryInMegaBytes(1l));
+        Mockito.verify(spy).reloadHostVms(1l);
+    }
+
+    @Test
+    public void updateHostStatusTestHostAlreadyUp() {
+        setupModel(createHostResources(1l));
+
+        spy.queueHostStatusTransition(1l, Status.Up);
+
+        Mockito.verify(spy, Mockito.times(0)).reloadHostVms(Mockito.anyLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void createHostsResourcesTest() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l)), createHostResources(2l, new VmResources(2l, 1, 1000l, 256l)));
+        List<HostVO> hosts = Arrays.asList(createHostVO(1l), createHostVO(3l));
+
+        spy.createHostsResources(hosts);
+
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(hostResourcesService).createHostsResources(Mockito.eq(hosts), captor.capture());
+        Map<Long, List<VmResources>> hostsVmsResources = captor.getValue();
+        Assert.assertEquals(2, hostsVmsResources.size());
+        Assert.assertEquals(1, hostsVmsResources.get(1l).size());
+        Assert.assertEquals(1l, hostsVmsResources.get(1l).get(0).getVmId());
+        Assert.assertTrue(hostsVmsResources.get(3l).isEmpty());
+    }
+
+    @Test
+    public void getOrAddHostIndexTest() {
+        for (long hostId = 0; hostId < 200; hostId++) {
+            Assert.assertEquals(hostId, spy.getOrAddHostIndex(hostId));
+        }
+        Assert.assertEquals(10, spy.getOrAddHostIndex(10l));
+    }
+
+    @Test
+    public void reloadTest() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l)));
+        spy.loadIfNeeded();
+
+        spy.reload();
+
+        Assert.assertEquals(2000l, spy.getHostUsedCpu(1l));
+        Mockito.verify(hostResourcesBulkLoaderService, Mockito.times(2)).loadZoneHostsResourcesByCluster(1l);
+    }
+
+    @Test
+    public void reconcileZoneTest() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l)), createHostResources(2l, new VmResources(2l, 1, 1000l, 256l)));
+        Map<Long, List<HostResources>> zoneHostsByCluster = new HashMap<>();
+        zoneHostsByCluster.put(1l, Arrays.asList(createHostResources(1l, new VmResources(2l, 1, 1000l, 256l), new VmResources(3l, 1, 500l, 128l))));
+        Mockito.doReturn(zoneHostsByCluster).when(hostResourcesBulkLoaderService).loadZoneHostsResourcesByCluster(1l);
+
+        spy.reconcileZone(1l);
+
+        Assert.assertEquals(1500l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(384l, spy.getHostUsedMemoryInMegaBytes(1l));
+        Assert.assertEquals(0l, spy.getHostUsedCpu(2l));
+    }
+
+    @Test
+    public void reconcileZoneTestTransitionsQueuedWhileLoading() {
+        setupModel(createHostResources(1l));
+        final Map<Long, List<HostResources>> zoneHostsByCluster = new HashMap<>();
+        zoneHostsByCluster.put(1l, Arrays.asList(createHostResources(1l)));
+        Mockito.doAnswer(new Answer<Map<Long, List<HostResources>>>() {
+            @Override
+            public Map<Long, List<HostResources>> answer(InvocationOnMock invocation) {
+                spy.queueVmStateTransition(createVm(1l, 1l), VirtualMachine.State.Running);
+                return zoneHostsByCluster;
+            }
+        }).when(hostResourcesBulkLoaderService).loadZoneHostsResourcesByCluster(1l);
+
+        spy.reconcileZone(1l);
+
+        Assert.assertEquals(2000l, spy.getHostUsedCpu(1l));
+    }
+
+    @Test
+    public void reconcileClusterTest() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l)), createHostResources(2l, new VmResources(2l, 1, 1000l, 256l)));
+        ClusterVO cluster = createCluster(1l);
+        Mockito.doReturn(Arrays.asList(createHostResources(1l, new VmResources(2l, 1, 1000l, 256l), new VmResources(3l, 1, 500l, 128l)))).when(hostResourcesBulkLoaderService)
+                .loadClusterHostsResources(cluster);
+
+        spy.reconcileCluster(cluster);
+
+        Assert.assertEquals(1500l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(384l, spy.getHostUsedMemoryInMegaBytes(1l));
+        Assert.assertEquals(0l, spy.getHostUsedCpu(2l));
+    }
+
+    @Test
+    public void reconcileClusterTestOtherClusterHostsKept() {
+        setupModel(createHostResources(1l, new VmResources(1l, 2, 1000l, 512l)));
+        spy.addClusterHosts(1l, 2l, Arrays.asList(createHostResources(2l, new VmResources(2l, 1, 1000l, 256l))));
+        ClusterVO cluster = createCluster(1l);
+        Mockito.doReturn(new ArrayList<HostResources>()).when(hostResourcesBulkLoaderService).loadClusterHostsResources(cluster);
+
+        spy.reconcileCluster(cluster);
+
+        Assert.assertEquals(0l, spy.getHostUsedCpu(1l));
+        Assert.assertEquals(1000l, spy.getHostUsedCpu(2l));
+    }
+
+    @Test
+    public void reconcileClusterTestModelNotLoaded() {
+        spy.reconcileCluster(createCluster(1l));
+
+        Mockito.verify(hostResourcesBulkLoaderService, Mockito.times(0)).loadClusterHostsResources(Mockito.any(ClusterVO.class));
+    }
+
+    @Test
+    public void reconcileWithDatabaseTest() {
+        setupModel(createHostResources(1l));
+        Mockito.doThrow(new RuntimeException()).when(spy).reconcileZone(1l);
+
+        spy.reconcileWithDatabase();
+
+        Mockito.verify(spy).reconcileZone(1l);
+    }
+
+    @Test
+    public void reconcileWithDatabaseTestModelNotLoaded() {
+        spy.reconcileWithDatabase();
+
+        Mockito.verify(spy, Mockito.times(0)).reconcileZone(Mockito.anyLong());
+        Mockito.verify(zoneService, Mockito.times(0)).listAllZonesEnabled();
+    }
+
+    @Test
+    public void isVmStateUsingHostResourcesTest() {
+        Assert.assertTrue(spy.isVmStateUsingHostResources(VirtualMachine.State.Running));
+        Assert.assertTrue(spy.isVmStateUsingHostResources(VirtualMachine.State.Migrating));
+        Assert.assertTrue(spy.isVmStateUsingHostResources(VirtualMachine.State.Starting));
+        Assert.assertFalse(spy.isVmStateUsingHostResources(VirtualMachine.State.Stopped));
+        Assert.assertFalse(spy.isVmStateUsingHostResources(VirtualMachine.State.Stopping));
+    }
+
+    private void setupModel(HostResources... hosts) {
+        DataCenterVO zone = Mockito.mock(DataCenterVO.class);
+        Mockito.doReturn(1l).when(zone).getId();
+        Mockito.doReturn(Arrays.asList(zone)).when(zoneService).listAllZonesEnabled();
+        Map<Long, List<HostResources>> zoneHostsByCluster = new HashMap<>();
+        zoneHostsByCluster.put(1l, Arrays.asList(hosts));
+        Mockito.doReturn(zoneHostsByCluster).when(hostResourcesBulkLoaderService).loadZoneHostsResourcesByCluster(1l);
+        Mockito.doReturn(new ServiceOfferingResources(1l, 2, 1000l, 512l)).when(serviceOfferingResourcesCache).getServiceOfferingResources(1l);
+        spy.loadIfNeeded();
+    }
+
+    private ClusterVO createCluster(long clusterId) {
+        ClusterVO cluster = Mockito.mock(ClusterVO.class);
+        Mockito.doReturn(clusterId).when(cluster).getId();
+        Mockito.doReturn(1l).when(cluster).getDataCenterId();
+        return cluster;
+    }
+
+    private HostResources createHostResources(long hostId, VmResources... vms) {
+        HostResources host = new HostResources();
+        host.setHostId(hostId);
+        host.setVmsResources(new ArrayList<>(Arrays.asList(vms)));
+        return host;
+    }
+
+    private VMInstanceVO createVm(long vmId, Long hostId) {
+        VMInstanceVO vm = Mockito.mock(VMInstanceVO.class);
+        Mockito.doReturn(vmId).when(vm).getId();
+        Mockito.doReturn(hostId).when(vm).getHostId();
+        Mockito.doReturn(1l).when(vm).getServiceOfferingId();
+        return vm;
+    }
+
+    private HostVO createHostVO(long hostId) {
+        HostVO host = Mockito.mock(HostVO.class);
+        Mockito.doReturn(hostId).when(host).getId();
+        return host;
+    }
+}
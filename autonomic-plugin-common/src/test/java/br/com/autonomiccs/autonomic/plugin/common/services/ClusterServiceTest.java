@@ -23,8 +23,12 @@
 package br.com.autonomiccs.autonomic.plugin.common.services;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
+import org.apache.cloudstack.storage.datastore.db.PrimaryDataStoreDao;
+import org.apache.cloudstack.storage.datastore.db.StoragePoolVO;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -34,8 +38,11 @@ import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.cloud.dc.ClusterDetailsVO;
 import com.cloud.dc.ClusterVO;
 import com.cloud.dc.dao.ClusterDao;
+import com.cloud.dc.dao.ClusterDetailsDao;
+import com.cloud.hypervisor.Hypervisor.HypervisorType;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ClusterServiceTest {
@@ -45,6 +52,10 @@ public class ClusterServiceTest {
     private ClusterService spy;
     @Mock
     private ClusterDao clusterDao;
+    @Mock
+    private ClusterDetailsDao clusterDetailsDao;
+    @Mock
+    private PrimaryDataStoreDao primaryDataStoreDao;
 
     private List<ClusterVO> clusters = new ArrayList<>();
 
@@ -89,4 +100,57 @@ public class ClusterServiceTest {
         Assert.assertEquals(clusters, result);
     }
 
+    @Test
+    public void listClustersSharingZoneWideStorageTest() {
+        ClusterVO cluster = createCluster(HypervisorType.XenServer, null);
+        ClusterVO clusterWithSameHypervisor = createCluster(HypervisorType.XenServer, null);
+        ClusterVO clusterWithOtherHypervisor = createCluster(HypervisorType.KVM, null);
+        ClusterVO removedCluster = createCluster(HypervisorType.XenServer, new Date());
+        Mockito.doReturn(Arrays.asList(Mockito.mock(StoragePoolVO.class))).when(primaryDataStoreDao).findZoneWideStoragePoolsByHypervisor(1l, HypervisorType.XenServer);
+        Mockito.doReturn(Arrays.asList(cluster, clusterWithSameHypervisor, clusterWithOtherHypervisor, removedCluster)).when(clusterDao).listClustersByDcId(1l);
+
+        List<ClusterVO> result = spy.listClustersSharingZoneWideStorage(cluster);
+
+        Assert.assertEquals(Arrays.asList(cluster, clusterWithSameHypervisor), result);
+    }
+
+    @Test
+    public void listClustersSharingZoneWideStorageTestWithoutZoneWideStorage() {
+        ClusterVO cluster = createCluster(HypervisorType.XenServer, null);
+        Mockito.doReturn(new ArrayList<StoragePoolVO>()).when(primaryDataStoreDao).findZoneWideStoragePoolsByHypervisor(1l, HypervisorType.XenServer);
+
+        List<ClusterVO> result = spy.listClustersSharingZoneWideStorage(cluster);
+
+        Assert.assertEquals(Arrays.asList(cluster), result);
+        Mockito.verify(clusterDao, Mockito.times(0)).listClustersByDcId(Mockito.anyLong());
+    }
+
+    @Test
+    public void getClusterDetailValueTest() {
+        ClusterDetailsVO clusterDetail = new ClusterDetailsVO(1l, "name", "value");
+        Mockito.doReturn(clusterDetail).when(clusterDetailsDao).findDetail(1l, "name");
+
+        String result = spy.getClusterDetailValue(1l, "name");
+
+        Mockito.verify(clusterDetailsDao).findDetail(1l, "name");
+        Assert.assertEquals("value", result);
+    }
+
+    @Test
+    public void getClusterDetailValueTestDetailNotFound() {
+        Mockito.doReturn(null).when(clusterDetailsDao).findDetail(1l, "name");
+
+        String result = spy.getClusterDetailValue(1l, "name");
+
+        Assert.assertNull(result);
+    }
+
+    private ClusterVO createCluster(HypervisorType hypervisorType, Date removed) {
+        ClusterVO cluster = Mockito.mock(ClusterVO.class);
+        Mockito.doReturn(1l).when(cluster).getDataCenterId();
+        Mockito.doReturn(hypervisorType).when(cluster).getHypervisorType();
+        Mockito.doReturn(removed).when(cluster).getRemoved();
+        return cluster;
+    }
+
 }
@@ -158,6 +158,20 @@ public class HostServiceTest {
         Mockito.verify(hostDao).listAllUpAndEnabledNonHAHosts(Mockito.eq(Type.Routing), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.eq(str));
     }
 
+    @Test
+    public void listAllHostsInZoneTest() {
+        String str = null;
+        Long nullId = null;
+        List<HostVO> hosts = new ArrayList<>();
+        hosts.add(Mockito.mock(HostVO.class));
+        Mockito.doReturn(hosts).when(hostDao).listAllUpAndEnabledNonHAHosts(Type.Routing, nullId, nullId, 1l, str);
+
+        List<HostVO> result = spy.listAllHostsInZone(1l);
+
+        Assert.assertEquals(hosts, result);
+        Mockito.verify(hostDao).listAllUpAndEnabledNonHAHosts(Type.Routing, nullId, nullId, 1l, str);
+    }
+
     @Test
     public void listAllVmsFromHostTest() {
         List<VMInstanceVO> vms = new ArrayList<>();
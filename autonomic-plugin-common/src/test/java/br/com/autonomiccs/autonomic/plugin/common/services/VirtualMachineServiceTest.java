@@ -22,6 +22,11 @@
  */
 package br.com.autonomiccs.autonomic.plugin.common.services;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.cloudstack.storage.datastore.db.PrimaryDataStoreDao;
+import org.apache.cloudstack.storage.datastore.db.StoragePoolVO;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -31,6 +36,9 @@ import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.cloud.storage.ScopeType;
+import com.cloud.storage.VolumeVO;
+import com.cloud.storage.dao.VolumeDao;
 import com.cloud.vm.VMInstanceVO;
 import com.cloud.vm.dao.VMInstanceDao;
 
@@ -42,6 +50,10 @@ public class VirtualMachineServiceTest {
     private VirtualMachineService spy;
     @Mock
     private VMInstanceDao vmInstanceDao;
+    @Mock
+    private VolumeDao volumeDao;
+    @Mock
+    private PrimaryDataStoreDao primaryDataStoreDao;
 
     @Test
     public void searchVmInstanceByIdTest() {
@@ -71,4 +83,40 @@ public class VirtualMachineServiceTest {
         Mockito.verify(vmInstanceDao).remove(Mockito.anyLong());
     }
 
+    @Test
+    public void isVmUsingOnlyZoneWideStorageTest() {
+        setupVmVolumesStoragePools(ScopeType.ZONE, ScopeType.ZONE);
+        Assert.assertTrue(spy.isVmUsingOnlyZoneWideStorage(0l));
+    }
+
+    @Test
+    public void isVmUsingOnlyZoneWideStorageTestVolumeInClusterWideStorage() {
+        setupVmVolumesStoragePools(ScopeType.ZONE, ScopeType.CLUSTER);
+        Assert.assertFalse(spy.isVmUsingOnlyZoneWideStorage(0l));
+    }
+
+    @Test
+    public void isVmUsingOnlyZoneWideStorageTestVolumeWithoutStoragePool() {
+        VolumeVO volume = Mockito.mock(VolumeVO.class);
+        Mockito.doReturn(null).when(volume).getPoolId();
+        Mockito.doReturn(Arrays.asList(volume)).when(volumeDao).findByInstance(0l);
+
+        Assert.assertTrue(spy.isVmUsingOnlyZoneWideStorage(0l));
+        Mockito.verify(primaryDataStoreDao, Mockito.times(0)).findById(Mockito.anyLong());
+    }
+
+    private void setupVmVolumesStoragePools(ScopeType... storagePoolsScopes) {
+        ArrayList<VolumeVO> volumes = new ArrayList<>();
+        for (int i = 0; i < storagePoolsScopes.length; i++) {
+            long storagePoolId = i;
+            VolumeVO volume = Mockito.mock(VolumeVO.class);
+            Mockito.doReturn(storagePoolId).when(volume).getPoolId();
+            StoragePoolVO storagePool = Mockito.mock(StoragePoolVO.class);
+            Mockito.doReturn(storagePoolsScopes[i]).when(storagePool).getScope();
+            Mockito.doReturn(storagePool).when(primaryDataStoreDao).findById(storagePoolId);
+            volumes.add(volume);
+        }
+        Mockito.doReturn(volumes).when(volumeDao).findByInstance(0l);
+    }
+
 }
@@ -218,7 +218,7 @@ public class AutonomiccsSystemVirtualMachinesTemplateRegisterTest {
 
     private void configureRegisterTemplatesIfNeededTest(ClusterAdministrationHeuristicAlgorithm algorithm, boolean existDeactivatedHost,
             List<HypervisorType> allHypervisorsTypeInCloud, boolean isTemplateRegistered) throws Exception {
-        Mockito.doReturn(algorithm).when(autonomicManagementHeuristicService).getAdministrationAlgorithm();
+        Mockito.doReturn(algorithm.canHeuristicShutdownHosts()).when(autonomicManagementHeuristicService).canAnyAdministrationAlgorithmShutdownHosts();
         Mockito.doReturn(existDeactivatedHost).when(hostService).isThereAnyHostOnCloudDeactivatedByOurManager();
         Mockito.doReturn(allHypervisorsTypeInCloud).when(hostService).getAllHypervisorsTypeInCloud();
         Mockito.doReturn(isTemplateRegistered).when(autonomiccsSystemVmTemplateService).isTemplateRegisteredForHypervisor(Mockito.any(HypervisorType.class));
@@ -228,7 +228,7 @@ public class AutonomiccsSystemVirtualMachinesTemplateRegisterTest {
 
     private void verifyRegisterTemplatesIfNeededCalledMethods(int isThereAnyHostOnCloudDeactivateTimes, int getAllHypervisorsTimes, int isTemplateRegisteredTimes,
             int createRegisterTemplateTimes) throws Exception {
-        Mockito.verify(autonomicManagementHeuristicService).getAdministrationAlgorithm();
+        Mockito.verify(autonomicManagementHeuristicService).canAnyAdministrationAlgorithmShutdownHosts();
         Mockito.verify(hostService, Mockito.times(isThereAnyHostOnCloudDeactivateTimes)).isThereAnyHostOnCloudDeactivatedByOurManager();
         Mockito.verify(hostService, Mockito.times(getAllHypervisorsTimes)).getAllHypervisorsTypeInCloud();
         Mockito.verify(autonomiccsSystemVmTemplateService, Mockito.times(isTemplateRegisteredTimes)).isTemplateRegisteredForHypervisor(Mockito.any(HypervisorType.class));
@@ -71,7 +71,7 @@ public class StartHostMethodInterceptor implements MethodInterceptor, Initializi
         } catch (Exception e) {
             logger.info(String.format("Dealing with exception [%s] for method [%s], UUID of the call [%s].", e.getClass(), methodInvocation.getMethod().getName(), uuid));
             if (!hostService.isThereAnyHostOnCloudDeactivatedByOurManager()
-                    && !autonomicClusterManagementHeuristicService.getAdministrationAlgorithm().canHeuristicShutdownHosts()) {
+                    && !autonomicClusterManagementHeuristicService.canAnyAdministrationAlgorithmShutdownHosts()) {
                 throw e;
             }
             return synchronizedExecuteDeployVMStartingHostIfNeeded(methodInvocation);
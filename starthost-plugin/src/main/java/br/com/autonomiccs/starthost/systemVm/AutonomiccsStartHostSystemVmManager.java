@@ -139,7 +139,7 @@ public class AutonomiccsStartHostSystemVmManager implements InitializingBean {
      */
     @Scheduled(initialDelay = ONE_MINUTE_IN_MILLISECONDS, fixedDelay = ONE_MINUTE_IN_MILLISECONDS * NUMBER_OF_MINUTES_BETWEEN_CHECKS)
     public void checkIfAllPodsHaveStartHostSystemVmRunning() {
-        if (!autonomicManagementHeuristicService.getAdministrationAlgorithm().canHeuristicShutdownHosts() && !hostService.isThereAnyHostOnCloudDeactivatedByOurManager()) {
+        if (!autonomicManagementHeuristicService.canAnyAdministrationAlgorithmShutdownHosts() && !hostService.isThereAnyHostOnCloudDeactivatedByOurManager()) {
             return;
         }
 
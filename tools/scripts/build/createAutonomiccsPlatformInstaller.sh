@@ -58,7 +58,6 @@ then
 	mkdir -p "$AUTONOMICCS_PACKAGE_FOLDER/$AUTONOMICCS_JARS_FOLDERS/dependencies/"
 	cp "$MAVEN_REPOSITORY_PATH/org/apache/commons/commons-math3/3.6/commons-math3-3.6.jar"	$AUTONOMICCS_PACKAGE_FOLDER/$AUTONOMICCS_JARS_FOLDERS/dependencies/
 	cp "$MAVEN_REPOSITORY_PATH/org/springframework/spring-jdbc/3.2.12.RELEASE/spring-jdbc-3.2.12.RELEASE.jar"	$AUTONOMICCS_PACKAGE_FOLDER/$AUTONOMICCS_JARS_FOLDERS/dependencies/
-	cp "$MAVEN_REPOSITORY_PATH/org/springframework/integration/spring-integration-core/3.0.7.RELEASE/spring-integration-core-3.0.7.RELEASE.jar"	$AUTONOMICCS_PACKAGE_FOLDER/$AUTONOMICCS_JARS_FOLDERS/dependencies/
 	cp "$MAVEN_REPOSITORY_PATH/org/springframework/spring-tx/3.2.12.RELEASE/spring-tx-3.2.12.RELEASE.jar" 	$AUTONOMICCS_PACKAGE_FOLDER/$AUTONOMICCS_JARS_FOLDERS/dependencies/
 	echo "creating zip package now"
 	zip -r "$AUTONOMICCS_PACKAGE_FOLDER.zip" "$AUTONOMICCS_PACKAGE_FOLDER"
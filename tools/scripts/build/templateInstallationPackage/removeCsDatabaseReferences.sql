@@ -88,9 +88,44 @@ CALL drop_column_cluster_lastAdministration();
 DROP PROCEDURE drop_column_cluster_lastAdministration;
 
 -- ----------------------------------------------------------------------------------------------------------------------------------
--- Remove configuration from configuration table
+-- Drops the administration_owner column from cluster table
 -- ----------------------------------------------------------------------------------------------------------------------------------
-DELETE FROM configuration WHERE component="autonomicClusterManager";
+CREATE PROCEDURE drop_column_cluster_administrationOwner() BEGIN
+IF EXISTS(
+SELECT * FROM information_schema.COLUMNS
+WHERE table_name = 'cluster' AND column_name = 'administration_owner'
+and table_schema ='cloud'
+)
+THEN
+ALTER TABLE cluster DROP COLUMN administration_owner;
+END IF;
+END;
+
+CALL drop_column_cluster_administrationOwner();
+DROP PROCEDURE drop_column_cluster_administrationOwner;
+
+-- ----------------------------------------------------------------------------------------------------------------------------------
+-- Drops the administration_lease_expiration column from cluster table
+-- ----------------------------------------------------------------------------------------------------------------------------------
+CREATE PROCEDURE drop_column_cluster_administrationLeaseExpiration() BEGIN
+IF EXISTS(
+SELECT * FROM information_schema.COLUMNS
+WHERE table_name = 'cluster' AND column_name = 'administration_lease_expiration'
+and table_schema ='cloud'
+)
+THEN
+ALTER TABLE cluster DROP COLUMN administration_lease_expiration;
+END IF;
+END;
+
+CALL drop_column_cluster_administrationLeaseExpiration();
+DROP PROCEDURE drop_column_cluster_administrationLeaseExpiration;
+
+-- ----------------------------------------------------------------------------------------------------------------------------------
+-- Remove configuration from configuration table and the clusters configurations from cluster_details table
+-- ----------------------------------------------------------------------------------------------------------------------------------
+DELETE FROM configuration WHERE component="autonomicClusterManager" OR name LIKE "autonomiccs.%";
+DELETE FROM cluster_details WHERE name LIKE "autonomiccs.%";
 
 -- ----------------------------------------------------------------------------------------------------------------------------------
 -- Drops Autonomiccs system VMs table